@@ -434,6 +434,9 @@ public class IndexedSearchCluster extends SearchCluster
                 case ROUNDROBIN:
                     builder.distributionPolicy(DistributionPolicy.ROUNDROBIN);
                     break;
+                case LATENCY_AWARE:
+                    builder.distributionPolicy(DistributionPolicy.LATENCY_AWARE);
+                    break;
             }
         }
         builder.maxNodesDownPerGroup(rootDispatch.getMaxNodesDownPerFixedRow());
@@ -45,6 +45,7 @@ public class Tuning extends AbstractConfigProducer implements PartitionsConfig.P
                 for (PartitionsConfig.Dataset.Builder dataset : builder.dataset) {
                     switch (policy) {
                         case ADAPTIVE:
+                        case LATENCY_AWARE:
                             dataset.useroundrobinforfixedrow(false);
                             break;
                         case ROUNDROBIN:
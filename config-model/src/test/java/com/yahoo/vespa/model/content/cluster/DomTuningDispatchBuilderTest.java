@@ -88,6 +88,18 @@ public class DomTuningDispatchBuilderTest {
                         "</content>");
         assertTrue(TuningDispatch.DispatchPolicy.ADAPTIVE == dispatch.getDispatchPolicy());
     }
+    @Test
+    public void requireThatTuningDispatchPolicyLatencyAware() throws Exception {
+        TuningDispatch dispatch = newTuningDispatch(
+                "<content>" +
+                        "  <tuning>" +
+                        "    <dispatch>" +
+                        "      <dispatch-policy>latency-aware</dispatch-policy>" +
+                        "    </dispatch>" +
+                        "  </tuning>" +
+                        "</content>");
+        assertTrue(TuningDispatch.DispatchPolicy.LATENCY_AWARE == dispatch.getDispatchPolicy());
+    }
 
     private static TuningDispatch newTuningDispatch(String xml) throws Exception {
         return DomTuningDispatchBuilder.build(
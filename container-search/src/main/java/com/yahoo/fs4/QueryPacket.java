@@ -6,6 +6,7 @@ import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.prelude.query.Item;
 import com.yahoo.search.Query;
 import com.yahoo.search.dispatch.Dispatcher;
+import com.yahoo.search.dispatch.EncodedQueryTree;
 import com.yahoo.search.grouping.vespa.GroupingExecutor;
 import com.yahoo.search.query.Ranking;
 import com.yahoo.searchlib.aggregation.Grouping;
@@ -14,6 +15,7 @@ import com.yahoo.vespa.objects.BufferSerializer;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * An "extended query" packet. This is the query packets used today,
@@ -133,7 +135,9 @@ public class QueryPacket extends Packet {
         int stackLengthPosition = buffer.position();
         buffer.putInt(0);
         int stackPosition = buffer.position();
-        int stackItemCount=query.encode(buffer);
+        Optional<EncodedQueryTree> encodedQueryTree = EncodedQueryTree.cachedIn(query);
+        encodedQueryTree.ifPresent(tree -> tree.writeTo(buffer));
+        int stackItemCount = encodedQueryTree.isPresent() ? encodedQueryTree.get().itemCount() : query.encode(buffer);
         int stackLength = buffer.position() - stackPosition;
         buffer.putInt(stackItemPosition,stackItemCount);
         buffer.putInt(stackLengthPosition, stackLength);
@@ -10,8 +10,8 @@ import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.Relevance;
 import com.yahoo.data.access.Inspector;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -42,12 +42,20 @@ public class FastHit extends Hit {
     /** The global id of this document in the backend node which produced it */
     private GlobalId globalId = emptyGlobalId;
 
+    /**
+     * The raw global id of this hit, if it is not yet decoded into globalId. This is usually a view into
+     * the buffer the hit was received in, such that hits which are discarded during merging never allocate
+     * a GlobalId. Only absolute reads are done on this, so it may be shared between clones.
+     */
+    private transient ByteBuffer rawGlobalId = null;
+
     /** Full information pointing to the location of further data for this hit. Lazily set */
     private URI indexUri = null;
 
     private transient QueryPacketData queryPacketData = null;
 
-    private transient byte[] sortData = null;
+    /** The sort data of this hit, possibly a view into the buffer it was received in. Only absolute reads are done on this */
+    private transient ByteBuffer sortData = null;
     private transient Sorting sortDataSorting = null;
 
     /**
@@ -110,9 +118,30 @@ public class FastHit extends Hit {
     }
 
     /** Returns the global id of this document in the backend node which produced it */
-    public GlobalId getGlobalId() { return globalId; }
+    public GlobalId getGlobalId() {
+        if (rawGlobalId != null) {
+            byte[] raw = new byte[Math.min(GlobalId.LENGTH, rawGlobalId.remaining())];
+            for (int i = 0; i < raw.length; i++)
+                raw[i] = rawGlobalId.get(rawGlobalId.position() + i);
+            globalId = new GlobalId(raw);
+            rawGlobalId = null;
+        }
+        return globalId;
+    }
+
+    public void setGlobalId(GlobalId globalId) {
+        this.globalId = globalId;
+        this.rawGlobalId = null;
+    }
 
-    public void setGlobalId(GlobalId globalId) { this.globalId = globalId; }
+    /**
+     * Sets the global id of this hit from the remaining bytes of the given buffer, without copying.
+     * The global id is decoded from the buffer on first access, so the buffer content must not be changed
+     * while it is referenced by this hit.
+     */
+    public void setGlobalId(ByteBuffer rawGlobalId) {
+        this.rawGlobalId = rawGlobalId;
+    }
 
     public int getPartId() { return partId; }
 
@@ -154,6 +183,14 @@ public class FastHit extends Hit {
     public QueryPacketData getQueryPacketData() { return queryPacketData; }
 
     public void setSortData(byte[] data, Sorting sorting) {
+        setSortData(data == null ? null : ByteBuffer.wrap(data), sorting);
+    }
+
+    /**
+     * Sets the sort data of this hit to the remaining bytes of the given buffer, without copying.
+     * The buffer content must not be changed while it is referenced by this hit.
+     */
+    public void setSortData(ByteBuffer data, Sorting sorting) {
         this.sortData = data;
         this.sortDataSorting = sorting;
     }
@@ -166,16 +203,18 @@ public class FastHit extends Hit {
         if (!left.hasSortData(sorting) || !right.hasSortData(sorting)) {
             return 0; // cannot sort
         }
-        int i = Arrays.mismatch(left.sortData, right.sortData);
+        ByteBuffer l = left.sortData;
+        ByteBuffer r = right.sortData;
+        int i = l.mismatch(r);
         if (i < 0) {
             return 0;
         }
-        int max = Integer.min(left.sortData.length, right.sortData.length);
+        int max = Integer.min(l.remaining(), r.remaining());
         if (i >= max) {
-            return left.sortData.length - right.sortData.length;
+            return l.remaining() - r.remaining();
         }
-        int vl = (int) left.sortData[i] & 0xFF;
-        int vr = (int) right.sortData[i] & 0xFF;
+        int vl = (int) l.get(l.position() + i) & 0xFF;
+        int vr = (int) r.get(r.position() + i) & 0xFF;
         int diff = vl - vr;
         return diff;
     }
@@ -187,6 +226,15 @@ public class FastHit extends Hit {
         summaries.add(0, new SummaryData(this, docsumDef, value, 1 + summaries.size()));
     }
 
+    /** Returns the summary data most recently added to this for the given summary definition, or null if none. For internal use */
+    public Inspector getSummaryData(DocsumDefinition docsumDef) {
+        for (SummaryData summaryData : summaries) {
+            if (summaryData.type.getName().equals(docsumDef.getName()))
+                return summaryData.data;
+        }
+        return null;
+    }
+
     /**
      * <p>Returns a field value from this Hit. The value is either a stored value from the Document represented by
      * this Hit, or a generated value added during later processing.</p>
@@ -347,7 +395,7 @@ public class FastHit extends Hit {
 
     @Override
     public String toString() {
-        return super.toString() + " [fasthit, globalid: " + globalId + ", partId: "
+        return super.toString() + " [fasthit, globalid: " + getGlobalId() + ", partId: "
                + partId + ", distributionkey: " + distributionKey + "]";
     }
 
@@ -361,6 +409,18 @@ public class FastHit extends Hit {
         }
     }
 
+    /** Returns a copy of this which shares the immutable summary data but not the lists of summaries and removed fields */
+    @Override
+    public FastHit clone() {
+        FastHit clone = (FastHit) super.clone();
+        clone.summaries = new ArrayList<>(Math.max(1, summaries.size()));
+        for (SummaryData summaryData : summaries)
+            clone.summaries.add(new SummaryData(clone, summaryData.type, summaryData.data, summaryData.index));
+        if (removedFields != null)
+            clone.removedFields = new HashSet<>(removedFields);
+        return clone;
+    }
+
     private void appendAsHex(GlobalId gid, StringBuilder sb) {
         byte[] rawGid = gid.getRawId();
         for (byte b : rawGid) {
@@ -183,7 +183,7 @@ public class FastSearcher extends VespaBackEndSearcher {
         Query query = result.getQuery();
         traceQuery(getName(), "fill", query, query.getOffset(), query.getHits(), 1, quotedSummaryClass(summaryClass));
 
-        try (FillInvoker invoker = getFillInvoker(result)) {
+        try (FillInvoker invoker = dispatcher.withDocsumCache(getFillInvoker(result), result, this)) {
             invoker.fill(result, summaryClass);
         }
     }
@@ -0,0 +1,96 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.query.Model;
+import com.yahoo.search.query.Presentation;
+import com.yahoo.search.query.Ranking;
+import com.yahoo.search.query.ranking.MatchPhase;
+
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * A canonical fingerprint of the parts of a query which determines the result returned from the backend:
+ * The query tree, the ranking, the presentation (summary class and bolding), the sources and the
+ * requested window of hits.
+ * <p>
+ * The timeout and other aspects which only decide <i>how</i> the query is executed are not part of the key,
+ * such that queries which only differ in those will share cache entries.
+ *
+ * @author agent
+ */
+public final class QueryCacheKey {
+
+    private final String canonicalForm;
+    private final int hashCode;
+
+    private QueryCacheKey(String canonicalForm) {
+        this.canonicalForm = canonicalForm;
+        this.hashCode = canonicalForm.hashCode();
+    }
+
+    /** Returns the cache key of the given query */
+    public static QueryCacheKey of(Query query) {
+        StringBuilder b = new StringBuilder(256);
+        appendModel(query.getModel(), b);
+        appendRanking(query.getRanking(), b);
+        appendPresentation(query.getPresentation(), b);
+        b.append("|offset=").append(query.getOffset());
+        b.append("|hits=").append(query.getHits());
+        return new QueryCacheKey(b.toString());
+    }
+
+    private static void appendModel(Model model, StringBuilder b) {
+        b.append("query=").append(model.getQueryTree().getRoot());
+        b.append("|language=").append(model.getLanguage());
+        b.append("|sources=").append(new TreeSet<>(model.getSources()));
+        b.append("|restrict=").append(new TreeSet<>(model.getRestrict()));
+        b.append("|searchPath=").append(model.getSearchPath());
+    }
+
+    private static void appendRanking(Ranking ranking, StringBuilder b) {
+        b.append("|profile=").append(ranking.getProfile());
+        b.append("|sorting=").append(ranking.getSorting());
+        b.append("|location=").append(ranking.getLocation());
+        b.append("|freshness=").append(ranking.getFreshness());
+        b.append("|listFeatures=").append(ranking.getListFeatures());
+        b.append("|features=").append(ranking.getFeatures());
+        b.append("|properties=").append(ranking.getProperties());
+        MatchPhase matchPhase = ranking.getMatchPhase();
+        if (matchPhase.getAttribute() != null) {
+            b.append("|matchPhase=").append(matchPhase.getAttribute())
+             .append(',').append(matchPhase.getAscending())
+             .append(',').append(matchPhase.getMaxHits())
+             .append(',').append(matchPhase.getMaxFilterCoverage());
+            if (matchPhase.getDiversity().getAttribute() != null)
+                b.append(',').append(matchPhase.getDiversity().getAttribute())
+                 .append(',').append(matchPhase.getDiversity().getMinGroups())
+                 .append(',').append(matchPhase.getDiversity().getCutoffFactor())
+                 .append(',').append(matchPhase.getDiversity().getCutoffStrategy());
+        }
+    }
+
+    private static void appendPresentation(Presentation presentation, StringBuilder b) {
+        b.append("|summary=").append(presentation.getSummary());
+        b.append("|bolding=").append(presentation.getBolding());
+    }
+
+    /** Returns the number of bytes (approximately) used by this key */
+    long byteSize() { return 2L * canonicalForm.length() + 48; }
+
+    @Override
+    public int hashCode() { return hashCode; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if ( ! (o instanceof QueryCacheKey)) return false;
+        QueryCacheKey other = (QueryCacheKey) o;
+        return hashCode == other.hashCode && Objects.equals(canonicalForm, other.canonicalForm);
+    }
+
+    @Override
+    public String toString() { return canonicalForm; }
+
+}
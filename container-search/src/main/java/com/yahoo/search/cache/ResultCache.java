@@ -0,0 +1,113 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A cache of results which is bounded by the (estimated) number of bytes used by the cached results.
+ * Entries expire after a fixed time to live, and are not invalidated when the content changes,
+ * so a result may be served until it is that much older than the content. The least recently
+ * used entries are evicted first when the cache is full. See {@link SizeBoundedCache}.
+ * <p>
+ * This is thread safe.
+ *
+ * @author agent
+ */
+public class ResultCache {
+
+    /** An estimate of the fixed cost of a hit, not counting its fields */
+    private static final int HIT_OVERHEAD_BYTES = 128;
+
+    /** An estimate of the fixed cost of a cache entry, including its result */
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final SizeBoundedCache<QueryCacheKey, Result> cache;
+
+    public ResultCache(long maxSizeBytes, Duration timeToLive, Clock clock) {
+        this.cache = new SizeBoundedCache<>(maxSizeBytes, timeToLive, clock);
+    }
+
+    /**
+     * Returns a copy of the cached result for the given key, or empty if there is no valid entry for it.
+     * The returned result and its hits are set to belong to the given query, and the hits are marked as cached.
+     */
+    public Optional<Result> get(QueryCacheKey key, Query query) {
+        Optional<Result> cached = cache.get(key);
+        if (cached.isEmpty()) return Optional.empty();
+
+        Result result = cached.get().clone();
+        result.setQuery(query);
+        bindToQuery(result.hits(), query);
+        return Optional.of(result);
+    }
+
+    /**
+     * Adds a copy of the given result to this under the given key, replacing any existing entry.
+     * Entries are evicted in least recently used order until the new entry fits.
+     * The result is not cached if it is larger than the cache itself.
+     *
+     * @param key the key to add the result under
+     * @param result the result to add
+     * @return whether the result was added to the cache
+     */
+    public boolean put(QueryCacheKey key, Result result) {
+        long size = key.byteSize() + ENTRY_OVERHEAD_BYTES + estimateSize(result.hits());
+        if (size > cache.maxSizeBytes()) return false;
+
+        return cache.put(key, result.clone(), size);
+    }
+
+    /** Removes all entries in this */
+    public void clear() { cache.clear(); }
+
+    /** Returns the number of entries in this */
+    public int entryCount() { return cache.entryCount(); }
+
+    /** Returns the estimated number of bytes currently used by the entries in this */
+    public long sizeBytes() { return cache.sizeBytes(); }
+
+    /** Returns the max number of bytes this will use */
+    public long maxSizeBytes() { return cache.maxSizeBytes(); }
+
+    private static void bindToQuery(HitGroup hits, Query query) {
+        for (Hit hit : hits.asUnorderedHits()) {
+            hit.resetQuery(query);
+            if (hit instanceof HitGroup) {
+                bindToQuery((HitGroup)hit, query);
+            }
+            else {
+                hit.setCached(true);
+            }
+        }
+        hits.analyze();
+    }
+
+    /** Returns a rough estimate of the memory used by the given hits */
+    static long estimateSize(HitGroup hits) {
+        long[] size = new long[] { HIT_OVERHEAD_BYTES };
+        for (Hit hit : hits.asUnorderedHits()) {
+            if (hit instanceof HitGroup) {
+                size[0] += estimateSize((HitGroup)hit);
+            }
+            else {
+                size[0] += HIT_OVERHEAD_BYTES;
+                hit.forEachField((name, value) -> size[0] += 2L * name.length() + estimateSize(value));
+            }
+        }
+        return size[0];
+    }
+
+    private static long estimateSize(Object value) {
+        if (value instanceof CharSequence) return 40 + 2L * ((CharSequence)value).length();
+        if (value instanceof byte[]) return 16 + ((byte[])value).length;
+        return 32;
+    }
+
+}
@@ -0,0 +1,98 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.inject.Inject;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.PhaseNames;
+import com.yahoo.yolean.chain.Before;
+import com.yahoo.yolean.chain.Provides;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Returns results of previous identical queries from a {@link ResultCache} instead of sending the query
+ * on to the backend. Place this before the searcher dispatching to the content cluster (such as FastSearcher).
+ * <p>
+ * Queries are cached on their {@link QueryCacheKey}. Results are cached before they are filled,
+ * so only the search phase is saved when the cache is hit.
+ * Results which have errors, reduced coverage, or contain grouping are not cached,
+ * and the cache is bypassed entirely when the query sets <code>noCache</code>.
+ * Cached results are not invalidated by feeding, so results may be stale by up to the configured time to live.
+ * <p>
+ * Metrics: This emits the count metrics result_cache_hit and result_cache_miss, and the
+ * gauges result_cache_size_bytes and result_cache_entries.
+ *
+ * @author agent
+ */
+@Provides(ResultCacheSearcher.RESULT_CACHE)
+@Before(PhaseNames.BACKEND)
+public class ResultCacheSearcher extends Searcher {
+
+    /** Constant containing the name this Provides - "resultCache", for ordering constraints */
+    public static final String RESULT_CACHE = "resultCache";
+
+    private static final String HIT_METRIC = "result_cache_hit";
+    private static final String MISS_METRIC = "result_cache_miss";
+    private static final String SIZE_METRIC = "result_cache_size_bytes";
+    private static final String ENTRIES_METRIC = "result_cache_entries";
+
+    private final ResultCache cache;
+    private final Metric metric;
+    private final Metric.Context metricContext;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, Metric metric) {
+        this(config, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a timer to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, Metric metric, Clock clock) {
+        this.cache = new ResultCache(config.maxSizeBytes(),
+                                     Duration.ofMillis((long)(config.timeToLive() * 1000)),
+                                     clock);
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache() || ! query.getSelect().getGrouping().isEmpty())
+            return execution.search(query);
+
+        QueryCacheKey key = QueryCacheKey.of(query);
+        Optional<Result> cached = cache.get(key, query);
+        if (cached.isPresent()) {
+            metric.add(HIT_METRIC, 1, metricContext);
+            query.trace("Returning cached result", false, 3);
+            return cached.get();
+        }
+
+        metric.add(MISS_METRIC, 1, metricContext);
+        Result result = execution.search(query);
+        if (isCacheable(result)) {
+            cache.put(key, result);
+            metric.set(SIZE_METRIC, cache.sizeBytes(), metricContext);
+            metric.set(ENTRIES_METRIC, cache.entryCount(), metricContext);
+        }
+        return result;
+    }
+
+    /** Returns the cache used by this */
+    public ResultCache cache() { return cache; }
+
+    private boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        if (coverage != null && (coverage.isDegraded() || ! coverage.getFull())) return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,106 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * A cache which is bounded by the (estimated) number of bytes used by its entries, as given by the user.
+ * Entries expire after a fixed time to live. The least recently used entries are evicted first
+ * when the cache is full.
+ * <p>
+ * This is thread safe. Values are handed out as they are stored, so they should not be modified.
+ *
+ * @author agent
+ */
+public class SizeBoundedCache<K, V> {
+
+    private final long maxSizeBytes;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    /** The entries of this in access order, such that the least recently used entry is first */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(1024, 0.75f, true);
+
+    private long sizeBytes = 0;
+
+    public SizeBoundedCache(long maxSizeBytes, Duration timeToLive, Clock clock) {
+        if (maxSizeBytes < 0) throw new IllegalArgumentException("Max cache size cannot be negative, got " + maxSizeBytes);
+        this.maxSizeBytes = maxSizeBytes;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+    }
+
+    /** Returns the value cached for the given key, or empty if there is no valid entry for it */
+    public synchronized Optional<V> get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) return Optional.empty();
+        if (entry.expiresAt <= clock.millis()) {
+            remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(entry.value);
+    }
+
+    /**
+     * Adds the given value to this under the given key, replacing any existing entry.
+     * Entries are evicted in least recently used order until the new entry fits.
+     * The value is not cached if it is larger than the cache itself.
+     *
+     * @param key the key to add the value under
+     * @param value the value to add
+     * @param sizeBytes the estimated number of bytes used by the key and value
+     * @return whether the value was added to the cache
+     */
+    public synchronized boolean put(K key, V value, long sizeBytes) {
+        if (sizeBytes > maxSizeBytes) return false;
+
+        remove(key);
+        for (Iterator<Entry<V>> i = entries.values().iterator(); this.sizeBytes + sizeBytes > maxSizeBytes && i.hasNext(); ) {
+            this.sizeBytes -= i.next().sizeBytes;
+            i.remove();
+        }
+        entries.put(key, new Entry<>(value, sizeBytes, clock.millis() + timeToLiveMillis));
+        this.sizeBytes += sizeBytes;
+        return true;
+    }
+
+    /** Removes all entries in this */
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    /** Returns the number of entries in this */
+    public synchronized int entryCount() { return entries.size(); }
+
+    /** Returns the estimated number of bytes currently used by the entries in this */
+    public synchronized long sizeBytes() { return sizeBytes; }
+
+    /** Returns the max number of bytes this will use */
+    public long maxSizeBytes() { return maxSizeBytes; }
+
+    private void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null)
+            sizeBytes -= removed.sizeBytes;
+    }
+
+    private static class Entry<V> {
+
+        final V value;
+        final long sizeBytes;
+        final long expiresAt;
+
+        Entry(V value, long sizeBytes, long expiresAt) {
+            this.value = value;
+            this.sizeBytes = sizeBytes;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.data.access.Inspector;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A fill invoker which fills hits from a {@link DocsumCache} when possible, and only delegates the remaining hits
+ * to a wrapped fill invoker. Summaries fetched by the wrapped invoker are added to the cache.
+ *
+ * @author agent
+ */
+class CachingFillInvoker extends FillInvoker {
+
+    static final String HIT_METRIC = "docsum_cache_hit";
+    static final String MISS_METRIC = "docsum_cache_miss";
+    static final String SIZE_METRIC = "docsum_cache_size_bytes";
+
+    private final FillInvoker invoker;
+    private final DocsumCache cache;
+    private final DocumentDatabase documentDb;
+    private final Metric metric;
+    private final Metric.Context metricContext;
+
+    private final List<FastHit> misses = new ArrayList<>();
+
+    CachingFillInvoker(FillInvoker invoker, DocsumCache cache, DocumentDatabase documentDb, Metric metric, Metric.Context metricContext) {
+        this.invoker = invoker;
+        this.cache = cache;
+        this.documentDb = documentDb;
+        this.metric = metric;
+        this.metricContext = metricContext;
+    }
+
+    @Override
+    protected void sendFillRequest(Result result, String summaryClass) {
+        DocsumDefinition docsumDefinition = documentDb.getDocsumDefinitionSet().getDocsum(summaryClass);
+        int hits = 0;
+        for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); ) {
+            Hit hit = i.next();
+            if ( ! (hit instanceof FastHit) || isFilled(hit, summaryClass)) continue;
+
+            FastHit fastHit = (FastHit)hit;
+            Optional<Inspector> summary = cache.get(fastHit.getGlobalId(), summaryClass, documentDb.getName());
+            if (summary.isPresent()) {
+                fastHit.setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
+                fastHit.addSummary(docsumDefinition, summary.get());
+                fastHit.setFilled(summaryClass);
+                hits++;
+            } else {
+                misses.add(fastHit);
+            }
+        }
+        metric.add(HIT_METRIC, hits, metricContext);
+        metric.add(MISS_METRIC, misses.size(), metricContext);
+        result.getQuery().trace(false, 5, "Filled ", hits, " hits from the docsum cache");
+
+        if ( ! misses.isEmpty())
+            invoker.sendFillRequest(result, summaryClass);
+    }
+
+    @Override
+    protected void getFillResults(Result result, String summaryClass) {
+        if (misses.isEmpty()) return;
+
+        invoker.getFillResults(result, summaryClass);
+        DocsumDefinition docsumDefinition = documentDb.getDocsumDefinitionSet().getDocsum(summaryClass);
+        for (FastHit hit : misses) {
+            if ( ! isFilled(hit, summaryClass)) continue;
+            Inspector summary = hit.getSummaryData(docsumDefinition);
+            if (summary != null)
+                cache.put(hit.getGlobalId(), summaryClass, documentDb.getName(), summary);
+        }
+        metric.set(SIZE_METRIC, cache.sizeBytes(), metricContext);
+    }
+
+    @Override
+    protected void release() {
+        invoker.close();
+    }
+
+    /** Returns whether this hit is explicitly filled with the given summary class (not just unfillable) */
+    private static boolean isFilled(Hit hit, String summaryClass) {
+        return hit.getFilled() != null && hit.getFilled().contains(summaryClass);
+    }
+
+}
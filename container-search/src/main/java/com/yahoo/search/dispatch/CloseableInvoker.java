@@ -2,7 +2,6 @@
 package com.yahoo.search.dispatch;
 
 import java.io.Closeable;
-import java.util.function.BiConsumer;
 
 /**
  * CloseableInvoker is an abstract implementation of {@link Closeable} with an additional hook for
@@ -14,11 +13,28 @@ import java.util.function.BiConsumer;
 public abstract class CloseableInvoker implements Closeable {
     protected abstract void release();
 
-    private BiConsumer<Boolean, Long> teardown = null;
+    /** A hook which is called with the outcome of an invoker when it is closed */
+    @FunctionalInterface
+    public interface Teardown {
+
+        /**
+         * Called when the invoker is closed
+         *
+         * @param success whether the invoker completed successfully
+         * @param cancelled whether the invoker was closed because its result was not needed, in which
+         *                  case the time is a lower bound of the time it would have needed to complete
+         * @param timeMs the time in milliseconds from the teardown was set until the invoker was closed
+         */
+        void accept(boolean success, boolean cancelled, long timeMs);
+
+    }
+
+    private Teardown teardown = null;
     private boolean success = false;
+    private boolean cancelled = false;
     private long startTime = 0;
 
-    public void teardown(BiConsumer<Boolean, Long> teardown) {
+    public void teardown(Teardown teardown) {
         this.teardown = teardown;
         this.startTime = System.currentTimeMillis();
     }
@@ -27,10 +43,15 @@ public abstract class CloseableInvoker implements Closeable {
         this.success = success;
     }
 
+    /** Marks this as cancelled: Its result is not used because another invoker completed first */
+    protected void setCancelled() {
+        this.cancelled = true;
+    }
+
     @Override
     public final void close() {
         if (teardown != null) {
-            teardown.accept(success, System.currentTimeMillis() - startTime);
+            teardown.accept(success, cancelled, System.currentTimeMillis() - startTime);
             teardown = null;
         }
         release();
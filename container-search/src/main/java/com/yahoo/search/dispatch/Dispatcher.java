@@ -4,6 +4,7 @@ package com.yahoo.search.dispatch;
 import com.yahoo.component.AbstractComponent;
 import com.yahoo.container.handler.VipStatus;
 import com.yahoo.jdisc.Metric;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
 import com.yahoo.prelude.fastsearch.FS4InvokerFactory;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
@@ -19,12 +20,17 @@ import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A dispatcher communicates with search nodes to perform queries and fill hits.
@@ -41,6 +47,9 @@ import java.util.Set;
 public class Dispatcher extends AbstractComponent {
     private static final String FDISPATCH_METRIC = "dispatch_fdispatch";
     private static final String INTERNAL_METRIC = "dispatch_internal";
+    private static final String HEDGED_METRIC = "dispatch_hedged";
+    private static final String GROUP_LATENCY_METRIC = "dispatch_group_latency_p90";
+    private static final String GROUP_IN_FLIGHT_METRIC = "dispatch_group_queries_in_flight";
 
     private static final int MAX_GROUP_SELECTION_ATTEMPTS = 3;
 
@@ -50,6 +59,9 @@ public class Dispatcher extends AbstractComponent {
     /** If enabled, search queries will use protobuf rpc */
     public static final CompoundName dispatchProtobuf = new CompoundName("dispatch.protobuf");
 
+    /** If enabled, searches which are slow to complete in a group will also be sent to another group */
+    public static final CompoundName dispatchHedging = new CompoundName("dispatch.hedging");
+
     /** A model of the search cluster this dispatches to */
     private final SearchCluster searchCluster;
 
@@ -57,12 +69,21 @@ public class Dispatcher extends AbstractComponent {
     private final boolean multilevelDispatch;
     private final boolean internalDispatchByDefault;
     private final boolean dispatchWithProtobuf;
+    private final double hedgingPercentile;
+    private final long minHedgingDelayMillis;
+
+    /** Recent search latencies in this cluster, used to decide when to send hedged searches */
+    private final LatencyHistogram searchLatencies = new LatencyHistogram(10000, 100);
 
     private final FS4InvokerFactory fs4InvokerFactory;
     private final RpcInvokerFactory rpcInvokerFactory;
 
     private final Metric metric;
     private final Metric.Context metricContext;
+    private final Map<Integer, Metric.Context> groupMetricContexts = new ConcurrentHashMap<>();
+
+    /** The cache of query independent document summaries, or empty if disabled */
+    private final Optional<DocsumCache> docsumCache;
 
     public Dispatcher(String clusterId, DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool, int containerClusterSize,
             VipStatus vipStatus, Metric metric) {
@@ -77,11 +98,12 @@ public class Dispatcher extends AbstractComponent {
     public Dispatcher(SearchCluster searchCluster, DispatchConfig dispatchConfig, FS4InvokerFactory fs4InvokerFactory,
             RpcInvokerFactory rpcInvokerFactory, Metric metric) {
         this.searchCluster = searchCluster;
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, dispatchConfig.distributionPolicy());
         this.multilevelDispatch = dispatchConfig.useMultilevelDispatch();
         this.internalDispatchByDefault = !dispatchConfig.useFdispatchByDefault();
         this.dispatchWithProtobuf = dispatchConfig.dispatchWithProtobuf();
+        this.hedgingPercentile = dispatchConfig.hedgingPercentile();
+        this.minHedgingDelayMillis = (long)(dispatchConfig.minHedgingDelay() * 1000);
 
         this.fs4InvokerFactory = fs4InvokerFactory;
         this.rpcInvokerFactory = rpcInvokerFactory;
@@ -89,6 +111,12 @@ public class Dispatcher extends AbstractComponent {
         this.metric = metric;
         this.metricContext = metric.createContext(null);
 
+        this.docsumCache = dispatchConfig.docsumCacheSize() > 0
+                           ? Optional.of(new DocsumCache(dispatchConfig.docsumCacheSize(),
+                                                         Duration.ofMillis((long)(dispatchConfig.docsumCacheTimeToLive() * 1000)),
+                                                         Clock.systemUTC()))
+                           : Optional.empty();
+
         searchCluster.startClusterMonitoring(dispatchWithProtobuf ? rpcInvokerFactory : fs4InvokerFactory);
     }
 
@@ -116,6 +144,25 @@ public class Dispatcher extends AbstractComponent {
         return Optional.empty();
     }
 
+    /**
+     * Returns the given fill invoker wrapped to use the docsum cache if that is enabled, and the summaries
+     * requested by the given result do not depend on its query. Otherwise the given invoker is returned.
+     * Cached summaries are not invalidated by feed, so they may be stale for up to the time to live of the cache.
+     */
+    public FillInvoker withDocsumCache(FillInvoker invoker, Result result, VespaBackEndSearcher searcher) {
+        if (docsumCache.isEmpty()) return invoker;
+
+        Query query = result.getQuery();
+        DocumentDatabase documentDb = searcher.getDocumentDatabase(query);
+        if (documentDb == null || query.getNoCache() || searcher.summaryNeedsQuery(query)) return invoker;
+        return new CachingFillInvoker(invoker, docsumCache.get(), documentDb, metric, metricContext);
+    }
+
+    /** Returns the cache of query independent document summaries, or empty if it is disabled */
+    public Optional<DocsumCache> docsumCache() {
+        return docsumCache;
+    }
+
     public Optional<SearchInvoker> getSearchInvoker(Query query, VespaBackEndSearcher searcher) {
         if (multilevelDispatch || !query.properties().getBoolean(dispatchInternal, internalDispatchByDefault)) {
             emitDispatchMetric(Optional.empty());
@@ -188,8 +235,8 @@ public class Dispatcher extends AbstractComponent {
             if (invoker.isPresent()) {
                 query.trace(false, 2, "Dispatching internally to search group ", group.id());
                 query.getModel().setSearchPath("/" + group.id());
-                invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
-                return invoker;
+                invoker.get().teardown((success, cancelled, time) -> releaseGroup(group, success, cancelled, time));
+                return Optional.of(hedgedIfEnabled(query, invoker.get(), group, invokerFactory, searcher));
             } else {
                 loadBalancer.releaseGroup(group, false, 0);
                 if (rejected == null) {
@@ -202,6 +249,67 @@ public class Dispatcher extends AbstractComponent {
         return Optional.empty();
     }
 
+    private void releaseGroup(Group group, boolean success, boolean cancelled, long searchTimeMs) {
+        loadBalancer.releaseGroup(group, success, cancelled, searchTimeMs);
+        if (success || cancelled) {
+            // The time of a cancelled search is a lower bound of its search time. It is recorded nevertheless,
+            // as leaving out the searches which were slow enough to be hedged would bias the latencies low.
+            searchLatencies.record(searchTimeMs / 1000.0);
+        }
+        emitGroupMetrics(group);
+    }
+
+    /** Returns the recent search latencies in this cluster. For testing. */
+    LatencyHistogram searchLatencies() { return searchLatencies; }
+
+    /** Returns the load balancer of this. For testing. */
+    LoadBalancer loadBalancer() { return loadBalancer; }
+
+    private void emitGroupMetrics(Group group) {
+        Metric.Context context = groupMetricContexts.computeIfAbsent(group.id(),
+                                                                     id -> metric.createContext(Map.of("groupId", String.valueOf(id))));
+        metric.set(GROUP_IN_FLIGHT_METRIC, loadBalancer.queriesInFlight(group), context);
+        OptionalDouble latency = loadBalancer.searchTimePercentile(group);
+        if (latency.isPresent()) {
+            metric.set(GROUP_LATENCY_METRIC, latency.getAsDouble(), context);
+        }
+    }
+
+    /**
+     * Returns an invoker which also sends the query to another group if the given group is slower than
+     * the configured percentile of recent search latencies, or the given invoker if hedging is disabled
+     * or not possible.
+     */
+    private SearchInvoker hedgedIfEnabled(Query query, SearchInvoker invoker, Group group,
+                                          InvokerFactory invokerFactory, VespaBackEndSearcher searcher) {
+        if (hedgingPercentile <= 0 || searchCluster.orderedGroups().size() < 2) return invoker;
+        if ( ! query.properties().getBoolean(dispatchHedging, true)) return invoker;
+
+        OptionalDouble latency = searchLatencies.percentile(hedgingPercentile);
+        if (latency.isEmpty()) return invoker;
+
+        long delay = Math.max(minHedgingDelayMillis, (long)(latency.getAsDouble() * 1000));
+        return new HedgedSearchInvoker(invoker, delay,
+                                       backupQuery -> getBackupInvoker(backupQuery, group, invokerFactory, searcher),
+                                       () -> metric.add(HEDGED_METRIC, 1, metricContext));
+    }
+
+    /** Returns an invoker for a group other than the given one, which has full coverage, or empty if none */
+    private Optional<SearchInvoker> getBackupInvoker(Query query, Group primary, InvokerFactory invokerFactory,
+                                                     VespaBackEndSearcher searcher) {
+        Optional<Group> groupInCluster = loadBalancer.takeGroup(Set.of(primary.id()));
+        if (groupInCluster.isEmpty()) return Optional.empty();
+
+        Group group = groupInCluster.get();
+        Optional<SearchInvoker> invoker = invokerFactory.createSearchInvoker(searcher, query, OptionalInt.of(group.id()), group.nodes(), false);
+        if (invoker.isEmpty()) {
+            loadBalancer.releaseGroup(group, false, 0);
+            return Optional.empty();
+        }
+        invoker.get().teardown((success, cancelled, time) -> releaseGroup(group, success, cancelled, time));
+        return invoker;
+    }
+
     private void emitDispatchMetric(Optional<SearchInvoker> invoker) {
         if (invoker.isEmpty()) {
             metric.add(FDISPATCH_METRIC, 1, metricContext);
@@ -0,0 +1,132 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.data.access.ArrayTraverser;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.ObjectTraverser;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.GlobalId;
+import com.yahoo.search.cache.SizeBoundedCache;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A cache of document summaries keyed on global id, summary class and document type, which is bounded
+ * by the number of bytes of the cached summaries. Summaries are stored in binary slime form,
+ * such that a cached summary does not keep the reply it was received in alive.
+ * Entries expire after a fixed time to live, and are not invalidated when documents are fed, so a cached
+ * summary may be up to that much older than the document. The least recently used entries are evicted first
+ * when the cache is full.
+ * <p>
+ * Only summaries which do not depend on the query (see VespaBackEndSearcher.summaryNeedsQuery) can be cached.
+ * <p>
+ * This is thread safe.
+ *
+ * @author agent
+ */
+public class DocsumCache {
+
+    /** An estimate of the fixed cost of a cache entry */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final SizeBoundedCache<Key, byte[]> cache;
+
+    public DocsumCache(long maxSizeBytes, Duration timeToLive, Clock clock) {
+        this.cache = new SizeBoundedCache<>(maxSizeBytes, timeToLive, clock);
+    }
+
+    /** Returns the cached summary of the given document, or empty if there is no valid entry for it */
+    public Optional<Inspector> get(GlobalId globalId, String summaryClass, String documentType) {
+        return cache.get(new Key(globalId, summaryClass, documentType))
+                    .map(summary -> new SlimeAdapter(BinaryFormat.decode(summary).get()));
+    }
+
+    /**
+     * Adds a copy of the given summary to this, replacing any existing entry.
+     *
+     * @return whether the summary was added to the cache
+     */
+    public boolean put(GlobalId globalId, String summaryClass, String documentType, Inspector summary) {
+        byte[] encoded = encode(summary);
+        return cache.put(new Key(globalId, summaryClass, documentType), encoded, ENTRY_OVERHEAD_BYTES + encoded.length);
+    }
+
+    public void clear() { cache.clear(); }
+
+    public int entryCount() { return cache.entryCount(); }
+
+    /** Returns the estimated number of bytes used by the entries of this */
+    public long sizeBytes() { return cache.sizeBytes(); }
+
+    public long maxSizeBytes() { return cache.maxSizeBytes(); }
+
+    private static byte[] encode(Inspector summary) {
+        Slime slime = new Slime();
+        copyObject(summary, slime.setObject());
+        return BinaryFormat.encode(slime);
+    }
+
+    private static void copyObject(Inspector from, Cursor to) {
+        from.traverse((ObjectTraverser) (name, value) -> {
+            switch (value.type()) {
+                case BOOL:   to.setBool(name, value.asBool()); break;
+                case LONG:   to.setLong(name, value.asLong()); break;
+                case DOUBLE: to.setDouble(name, value.asDouble()); break;
+                case STRING: to.setString(name, value.asUtf8()); break;
+                case DATA:   to.setData(name, value.asData()); break;
+                case ARRAY:  copyArray(value, to.setArray(name)); break;
+                case OBJECT: copyObject(value, to.setObject(name)); break;
+                default:     to.setNix(name); break;
+            }
+        });
+    }
+
+    private static void copyArray(Inspector from, Cursor to) {
+        from.traverse((ArrayTraverser) (index, value) -> {
+            switch (value.type()) {
+                case BOOL:   to.addBool(value.asBool()); break;
+                case LONG:   to.addLong(value.asLong()); break;
+                case DOUBLE: to.addDouble(value.asDouble()); break;
+                case STRING: to.addString(value.asUtf8()); break;
+                case DATA:   to.addData(value.asData()); break;
+                case ARRAY:  copyArray(value, to.addArray()); break;
+                case OBJECT: copyObject(value, to.addObject()); break;
+                default:     to.addNix(); break;
+            }
+        });
+    }
+
+    private static class Key {
+
+        private final GlobalId globalId;
+        private final String summaryClass;
+        private final String documentType;
+
+        Key(GlobalId globalId, String summaryClass, String documentType) {
+            this.globalId = globalId;
+            this.summaryClass = summaryClass;
+            this.documentType = documentType;
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(globalId, summaryClass, documentType); }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return globalId.equals(other.globalId) &&
+                   Objects.equals(summaryClass, other.summaryClass) &&
+                   Objects.equals(documentType, other.documentType);
+        }
+
+    }
+
+}
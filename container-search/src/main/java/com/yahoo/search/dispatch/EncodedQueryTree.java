@@ -0,0 +1,93 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.google.protobuf.ByteString;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.Query;
+import com.yahoo.search.query.QueryTree;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * The encoded query stack of the query tree of a query. This is the same for all the nodes a query is
+ * dispatched to, so it is encoded once, when first needed, and shared, read only, by the invokers of
+ * all the nodes while the query is being dispatched.
+ *
+ * @author agent
+ */
+public final class EncodedQueryTree {
+
+    private static final CompoundName encodedQueryTreeKey = new CompoundName("dispatch.encodedQueryTree");
+    private static final int initialBufferSize = 10 * 1024;
+
+    private final QueryTree queryTree;
+
+    private int itemCount;
+    private ByteString stack = null;
+
+    private EncodedQueryTree(QueryTree queryTree) {
+        this.queryTree = queryTree;
+    }
+
+    /** Returns the number of items in the encoded query stack */
+    public int itemCount() {
+        encode();
+        return itemCount;
+    }
+
+    /** Returns the encoded query stack */
+    public ByteString stack() {
+        encode();
+        return stack;
+    }
+
+    /** Writes the encoded query stack to the given buffer */
+    public void writeTo(ByteBuffer buffer) {
+        stack().copyTo(buffer);
+    }
+
+    /** Returns the query tree encoding stored in the given query while dispatching it, if any */
+    public static Optional<EncodedQueryTree> cachedIn(Query query) {
+        Object cached = query.properties().get(encodedQueryTreeKey);
+        return cached instanceof EncodedQueryTree ? Optional.of((EncodedQueryTree)cached) : Optional.empty();
+    }
+
+    /** Returns the query tree encoding stored in the given query if any, or encodes the query tree otherwise */
+    public static EncodedQueryTree of(Query query) {
+        return cachedIn(query).orElseGet(() -> new EncodedQueryTree(query.getModel().getQueryTree()));
+    }
+
+    /**
+     * Stores an encoding of the query tree of the given query in the query, such that it is reused
+     * when encoding the query for each node. The query tree must not be modified before the encoding
+     * is removed by calling {@link #removeFrom}.
+     */
+    static void storeIn(Query query) {
+        query.properties().set(encodedQueryTreeKey, new EncodedQueryTree(query.getModel().getQueryTree()));
+    }
+
+    /** Removes the query tree encoding stored in the given query, if any */
+    static void removeFrom(Query query) {
+        query.properties().set(encodedQueryTreeKey, null);
+    }
+
+    private synchronized void encode() {
+        if (stack != null) return;
+
+        int bufferSize = initialBufferSize;
+        while (true) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+                itemCount = queryTree.encode(buffer);
+                buffer.flip();
+                stack = ByteString.copyFrom(buffer);
+                return;
+            } catch (BufferOverflowException e) {
+                bufferSize *= 2;
+            }
+        }
+    }
+
+}
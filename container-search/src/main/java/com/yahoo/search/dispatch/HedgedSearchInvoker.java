@@ -0,0 +1,130 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * HedgedSearchInvoker sends a search query to a primary {@link SearchInvoker}, and if that has not
+ * signalled that a response is available within a given delay, also sends a copy of the query to a backup
+ * invoker (normally targeting another group). An {@link InterleavedSearchInvoker} signals this when the
+ * minimum search coverage is reached, such that its result is then produced within the adaptive timeout.
+ * The result of whichever signals first is used, and the other invoker is closed as cancelled, such that
+ * the time it was given is recorded as a lower bound of its search time rather than as a failure.
+ *
+ * @author agent
+ */
+class HedgedSearchInvoker extends SearchInvoker implements ResponseMonitor<SearchInvoker> {
+
+    private final SearchInvoker primary;
+    private final long hedgingDelayMillis;
+    private final Function<Query, Optional<SearchInvoker>> backupSupplier;
+    private final Runnable onHedge;
+    private final LinkedBlockingQueue<SearchInvoker> completed = new LinkedBlockingQueue<>();
+
+    private SearchInvoker backup = null;
+    private Query query;
+
+    /**
+     * Creates a hedged search invoker
+     *
+     * @param primary the invoker to send the query to first
+     * @param hedgingDelayMillis the time to wait for the primary before sending the query to a backup invoker
+     * @param backupSupplier supplies the backup invoker for the given copy of the query, or empty if none is available
+     * @param onHedge called when the query is sent to a backup invoker
+     */
+    HedgedSearchInvoker(SearchInvoker primary, long hedgingDelayMillis,
+                        Function<Query, Optional<SearchInvoker>> backupSupplier, Runnable onHedge) {
+        super(Optional.empty());
+        this.primary = primary;
+        this.hedgingDelayMillis = hedgingDelayMillis;
+        this.backupSupplier = backupSupplier;
+        this.onHedge = onHedge;
+    }
+
+    @Override
+    protected void sendSearchRequest(Query query) throws IOException {
+        this.query = query;
+        primary.setMonitor(this);
+        primary.sendSearchRequest(query);
+    }
+
+    @Override
+    protected Result getSearchResult(Execution execution) throws IOException {
+        SearchInvoker winner = primary;
+        try {
+            SearchInvoker first = completed.poll(Math.min(hedgingDelayMillis, Math.max(0, query.getTimeLeft())), TimeUnit.MILLISECONDS);
+            if (first == null && query.getTimeLeft() > 0) {
+                sendToBackup();
+                first = completed.poll(Math.max(0, query.getTimeLeft()), TimeUnit.MILLISECONDS);
+            }
+            if (first != null) {
+                winner = first;
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while waiting for search results", e);
+        }
+
+        if (winner == backup) {
+            query.trace(false, 2, "Using the result of the hedged search");
+        }
+        // The other invoker has not been needed, so the time it has spent so far is a lower bound of its search time
+        SearchInvoker loser = (winner == primary) ? backup : primary;
+        if (loser != null) {
+            loser.setCancelled();
+        }
+        Result result = winner.getSearchResult(execution);
+        winner.setFinalStatus(result.hits().getError() == null);
+        if (winner == backup) {
+            bindTo(query, result);
+        }
+        return result;
+    }
+
+    /**
+     * Sends a copy of the query to a backup invoker. The copy does not have the search path which
+     * selected the group of the primary, and is not changed by the primary invoker while it is searching.
+     */
+    private void sendToBackup() throws IOException {
+        Query backupQuery = query.clone();
+        backupQuery.getModel().setSearchPath(null);
+        Optional<SearchInvoker> candidate = backupSupplier.apply(backupQuery);
+        if (candidate.isEmpty()) return;
+
+        backup = candidate.get();
+        onHedge.run();
+        query.trace(false, 2, "No response after ", hedgingDelayMillis, " ms: Sending hedged search");
+        backup.setMonitor(this);
+        backup.sendSearchRequest(backupQuery);
+    }
+
+    /** Makes the given result of the backup query belong to the original query, which is the one filled later */
+    private static void bindTo(Query query, Result result) {
+        result.setQuery(query);
+        for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); )
+            i.next().resetQuery(query);
+    }
+
+    @Override
+    protected void release() {
+        primary.close();
+        if (backup != null) {
+            backup.close();
+        }
+    }
+
+    @Override
+    public void responseAvailable(SearchInvoker from) {
+        completed.add(from);
+    }
+
+}
@@ -1,22 +1,29 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.prelude.fastsearch.SortDataHitSorter;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.search.query.Sorting;
 import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -27,7 +34,8 @@ import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
 /**
  * InterleavedSearchInvoker uses multiple {@link SearchInvoker} objects to interface with content
  * nodes in parallel. Operationally it first sends requests to all contained invokers and then
- * collects the results. The user of this class is responsible for merging the results if needed.
+ * collects the results. The concrete hits of the partial results are merged incrementally as they arrive,
+ * keeping only the hits which can be part of the requested window of hits.
  *
  * @author ollivir
  */
@@ -38,6 +46,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private final SearchCluster searchCluster;
     private final LinkedBlockingQueue<SearchInvoker> availableForProcessing;
     private final Set<Integer> alreadyFailedNodes;
+    private final AtomicInteger responses = new AtomicInteger(0);
+    /** The number of responses needed for the minimum search coverage, after which the adaptive timeout applies */
+    private final int minimumResponses;
     private Query query;
 
     private boolean adaptiveTimeoutCalculated = false;
@@ -47,6 +58,14 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
     private Result result = null;
 
+    /** The best hits merged so far, in order, never more than offset + hits */
+    private List<Hit> mergedHits = new ArrayList<>();
+    /** Used to hold the hits of the next merge to avoid allocating a new list for each partial result */
+    private List<Hit> mergeBuffer = new ArrayList<>();
+    private final List<Hit> incomingHits = new ArrayList<>();
+    private Comparator<Hit> hitComparator;
+    private int maxMergedHits;
+
     private long answeredDocs = 0;
     private long answeredActiveDocs = 0;
     private long answeredSoonActiveDocs = 0;
@@ -56,8 +75,6 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private boolean timedOut = false;
     private boolean degradedByMatchPhase = false;
 
-    private boolean trimResult = false;
-
     public InterleavedSearchInvoker(Collection<SearchInvoker> invokers, SearchCluster searchCluster, Set<Integer> alreadyFailedNodes) {
         super(Optional.empty());
         this.invokers = Collections.newSetFromMap(new IdentityHashMap<>());
@@ -65,6 +82,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         this.searchCluster = searchCluster;
         this.availableForProcessing = newQueue();
         this.alreadyFailedNodes = alreadyFailedNodes;
+        this.minimumResponses = minimumResponses(this.invokers.size(), searchCluster);
     }
 
     /**
@@ -80,13 +98,22 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
         int originalHits = query.getHits();
         int originalOffset = query.getOffset();
+        maxMergedHits = originalHits + originalOffset;
+        hitComparator = hitComparator(query.getRanking().getSorting());
         query.setHits(query.getHits() + query.getOffset());
         query.setOffset(0);
-        trimResult = originalHits != query.getHits() || originalOffset != query.getOffset();
 
-        for (SearchInvoker invoker : invokers) {
-            invoker.sendSearchRequest(query);
-            askedNodes++;
+        if (invokers.size() > 1)
+            EncodedQueryTree.storeIn(query);
+        try {
+            for (SearchInvoker invoker : invokers) {
+                invoker.sendSearchRequest(query);
+                askedNodes++;
+            }
+        }
+        finally {
+            if (invokers.size() > 1)
+                EncodedQueryTree.removeFrom(query);
         }
 
         query.setHits(originalHits);
@@ -115,18 +142,21 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         if (result == null) {
             result = new Result(query);
         }
+        addMergedHits();
         insertNetworkErrors();
         result.setCoverage(createCoverage());
-        trimResult(execution);
         Result ret = result;
         result = null;
         return ret;
     }
 
-    private void trimResult(Execution execution) {
-        if (trimResult) {
-            result.hits().trim(query.getOffset(), query.getHits());
+    /** Adds the merged hits to the result, skipping the hits below the requested offset */
+    private void addMergedHits() {
+        int first = Math.min(query.getOffset(), mergedHits.size());
+        for (int i = first; i < mergedHits.size(); i++) {
+            result.hits().add(mergedHits.get(i));
         }
+        mergedHits.clear();
     }
 
     private void insertNetworkErrors() {
@@ -199,11 +229,46 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         collectCoverage(partialResult.getCoverage(true));
 
         if (result == null) {
-            result = partialResult;
-            return;
+            result = new Result(query);
         }
         result.mergeWith(partialResult);
-        result.hits().addAll(partialResult.hits().asUnorderedHits());
+        for (Hit hit : partialResult.hits().asUnorderedHits()) {
+            if (hit.isAuxiliary()) {
+                result.hits().add(hit);
+            } else {
+                incomingHits.add(hit);
+            }
+        }
+        mergeIncomingHits();
+    }
+
+    /**
+     * Merges the incoming hits with the hits merged so far, keeping at most maxMergedHits.
+     * The hits from one node are already ordered (making the sort here linear),
+     * so merging stops as soon as the remaining hits cannot be competitive.
+     */
+    private void mergeIncomingHits() {
+        incomingHits.sort(hitComparator);
+        mergeBuffer.clear();
+        int i = 0, j = 0;
+        while (mergeBuffer.size() < maxMergedHits && (i < mergedHits.size() || j < incomingHits.size())) {
+            if (j == incomingHits.size()
+                || (i < mergedHits.size() && hitComparator.compare(mergedHits.get(i), incomingHits.get(j)) <= 0)) {
+                mergeBuffer.add(mergedHits.get(i++));
+            } else {
+                mergeBuffer.add(incomingHits.get(j++));
+            }
+        }
+        incomingHits.clear();
+
+        List<Hit> merged = mergeBuffer;
+        mergeBuffer = mergedHits;
+        mergedHits = merged;
+    }
+
+    private static Comparator<Hit> hitComparator(Sorting sorting) {
+        if (sorting == null) return Comparator.naturalOrder();
+        return SortDataHitSorter.getComparator(sorting, Comparator.naturalOrder());
     }
 
     private void collectCoverage(Coverage source) {
@@ -268,16 +333,24 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         }
     }
 
+    /**
+     * Receives responses from the contained invokers, and notifies the monitor of this when enough have responded
+     * to reach the minimum search coverage. The result of this is then available within the adaptive timeout.
+     */
     @Override
     public void responseAvailable(SearchInvoker from) {
         if (availableForProcessing != null) {
             availableForProcessing.add(from);
         }
+        if (responses.incrementAndGet() == minimumResponses) {
+            responseAvailable();
+        }
     }
 
-    @Override
-    protected void setMonitor(ResponseMonitor<SearchInvoker> monitor) {
-        // never to be called
+    private static int minimumResponses(int invokers, SearchCluster searchCluster) {
+        double minimumCoverage = searchCluster.dispatchConfig().minSearchCoverage();
+        if (minimumCoverage >= 100.0) return invokers;
+        return Math.max(1, (int) Math.ceil(invokers * minimumCoverage / 100.0));
     }
 
     // For overriding in tests
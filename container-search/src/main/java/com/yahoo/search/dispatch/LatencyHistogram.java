@@ -0,0 +1,86 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import java.util.OptionalDouble;
+
+/**
+ * A histogram of latencies used to estimate latency percentiles. Buckets grow exponentially
+ * (four per power of two, starting at one microsecond), such that the relative error of an estimate
+ * is bounded by about 19%. Old samples are forgotten by halving all counts each time a window
+ * of new samples has been recorded, so the estimates follow changes in latency.
+ *
+ * This class is multithread safe.
+ *
+ * @author agent
+ */
+class LatencyHistogram {
+
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int BUCKET_COUNT = 128;
+    private static final double LOG2 = Math.log(2);
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private final int window;
+    private final int minSamples;
+    private long samples = 0;
+    private long samplesInWindow = 0;
+
+    /**
+     * Creates a latency histogram
+     *
+     * @param window the number of samples to record before the weight of the older samples is halved
+     * @param minSamples the minimum number of samples which must be recorded before percentiles are estimated
+     */
+    LatencyHistogram(int window, int minSamples) {
+        this.window = window;
+        this.minSamples = minSamples;
+    }
+
+    /** Records a latency given in seconds */
+    synchronized void record(double latency) {
+        buckets[bucketOf(latency)]++;
+        samples++;
+        if (++samplesInWindow >= window) {
+            samples = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = buckets[i] >> 1;
+                samples += buckets[i];
+            }
+            samplesInWindow = 0;
+        }
+    }
+
+    /**
+     * Returns an estimate (upper bound) of the given percentile of the recorded latencies in seconds,
+     * or empty if too few latencies are recorded.
+     *
+     * @param percentile the percentile to return, in the range (0, 100]
+     */
+    synchronized OptionalDouble percentile(double percentile) {
+        if (samples < minSamples || samples == 0) return OptionalDouble.empty();
+
+        long rank = (long)Math.ceil(samples * percentile / 100.0);
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += buckets[i];
+            if (accumulated >= rank)
+                return OptionalDouble.of(upperBoundOf(i));
+        }
+        return OptionalDouble.of(upperBoundOf(BUCKET_COUNT - 1));
+    }
+
+    /** Returns the number of samples currently contributing to the estimates */
+    synchronized long samples() { return samples; }
+
+    private static int bucketOf(double latency) {
+        double micros = latency * 1_000_000;
+        if (micros <= 1) return 0;
+        int bucket = (int)(Math.log(micros) / LOG2 * BUCKETS_PER_DOUBLING);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private static double upperBoundOf(int bucket) {
+        return Math.pow(2, (double)(bucket + 1) / BUCKETS_PER_DOUBLING) / 1_000_000;
+    }
+
+}
@@ -3,10 +3,12 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Random;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -30,13 +32,21 @@ public class LoadBalancer {
     private final List<GroupStatus> scoreboard;
     private final GroupScheduler scheduler;
 
+    private static final double LATENCY_PERCENTILE = 90;
+
     public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+        this(searchCluster, roundRobin ? DispatchConfig.DistributionPolicy.ROUNDROBIN : DispatchConfig.DistributionPolicy.ADAPTIVE);
+    }
+
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy.Enum policy) {
         this.scoreboard = new ArrayList<>(searchCluster.groups().size());
         for (Group group : searchCluster.orderedGroups()) {
             scoreboard.add(new GroupStatus(group));
         }
-        if (roundRobin || scoreboard.size() == 1) {
+        if (policy == DispatchConfig.DistributionPolicy.ROUNDROBIN || scoreboard.size() == 1) {
             this.scheduler = new RoundRobinScheduler(scoreboard);
+        } else if (policy == DispatchConfig.DistributionPolicy.LATENCY_AWARE) {
+            this.scheduler = new LatencyAwareScheduler(new Random(), scoreboard);
         } else {
             this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
         }
@@ -76,18 +86,75 @@ public class LoadBalancer {
      *            query execution time in milliseconds, used for adaptive load balancing
      */
     public void releaseGroup(Group group, boolean success, double searchTimeMs) {
+        releaseGroup(group, success, false, searchTimeMs);
+    }
+
+    /**
+     * Release an allocation given by {@link #takeGroup}. The release must be done exactly once for each allocation.
+     *
+     * @param group
+     *            previously allocated group
+     * @param success
+     *            was the query successful
+     * @param cancelled
+     *            was the query cancelled because its result was not needed, in which case the search time is
+     *            recorded as a lower bound of the search time of the group
+     * @param searchTimeMs
+     *            query execution time in milliseconds, used for adaptive load balancing
+     */
+    public void releaseGroup(Group group, boolean success, boolean cancelled, double searchTimeMs) {
         synchronized (this) {
             for (GroupStatus sched : scoreboard) {
                 if (sched.group.id() == group.id()) {
-                    sched.release(success, (double) searchTimeMs / 1000.0);
+                    sched.release(success, cancelled, (double) searchTimeMs / 1000.0);
                     break;
                 }
             }
         }
     }
 
+    /**
+     * Returns the 90th percentile of the recent search times in seconds of the given group,
+     * or empty if the group is unknown or has too few recent searches.
+     */
+    public OptionalDouble searchTimePercentile(Group group) {
+        synchronized (this) {
+            for (GroupStatus gs : scoreboard) {
+                if (gs.group.id() == group.id()) {
+                    return gs.latencies.percentile(LATENCY_PERCENTILE);
+                }
+            }
+            return OptionalDouble.empty();
+        }
+    }
+
+    /** Returns the number of search times currently contributing to the percentile of the given group. For testing. */
+    long searchTimeSamples(Group group) {
+        synchronized (this) {
+            for (GroupStatus gs : scoreboard) {
+                if (gs.group.id() == group.id()) {
+                    return gs.latencies.samples();
+                }
+            }
+            return 0;
+        }
+    }
+
+    /** Returns the number of queries currently allocated to the given group */
+    public int queriesInFlight(Group group) {
+        synchronized (this) {
+            for (GroupStatus gs : scoreboard) {
+                if (gs.group.id() == group.id()) {
+                    return gs.allocations;
+                }
+            }
+            return 0;
+        }
+    }
+
     static class GroupStatus {
         private final Group group;
+        private final LatencyHistogram latencies = new LatencyHistogram(1000, 20);
         private int allocations = 0;
         private long queries = 0;
         private double averageSearchTime = INITIAL_QUERY_TIME;
@@ -101,19 +168,38 @@ public class LoadBalancer {
         }
 
         void release(boolean success, double searchTime) {
+            release(success, false, searchTime);
+        }
+
+        /**
+         * Releases an allocation. The search time of a cancelled query is a lower bound of the time it would have
+         * needed, but is recorded nevertheless: Queries are cancelled when they are slower than the query they
+         * were hedged with, so leaving them out would make slow groups look fast.
+         */
+        void release(boolean success, boolean cancelled, double searchTime) {
             allocations--;
             if (allocations < 0) {
                 log.warning("Double free of query target group detected");
                 allocations = 0;
             }
-            if (success) {
+            if (success || cancelled) {
                 searchTime = Math.max(searchTime, MIN_QUERY_TIME);
                 double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
                 averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
                 queries++;
+                latencies.record(searchTime);
             }
         }
 
+        /**
+         * Returns the predicted time in seconds until a new query to this group completes: The 90th percentile
+         * of the recent search times (or the average if there are too few), times the queries in flight plus this one.
+         */
+        double predictedCompletionTime() {
+            double searchTime = latencies.percentile(LATENCY_PERCENTILE).orElse(averageSearchTime);
+            return searchTime * (allocations + 1);
+        }
+
         double averageSearchTime() {
             return averageSearchTime;
         }
@@ -254,4 +340,54 @@ public class LoadBalancer {
             return selectGroup(needle, false, rejectedGroups);
         }
     }
+
+    /**
+     * Selects two random groups and chooses the one with the lowest predicted completion time
+     * ("power of two choices"), which avoids herding on a single group while still steering
+     * queries away from groups which are slow or have many queries in flight.
+     */
+    static class LatencyAwareScheduler implements GroupScheduler {
+        private final Random random;
+        private final List<GroupStatus> scoreboard;
+
+        public LatencyAwareScheduler(Random random, List<GroupStatus> scoreboard) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+        }
+
+        private List<GroupStatus> candidates(boolean requireCoverage, Set<Integer> rejected) {
+            List<GroupStatus> candidates = new ArrayList<>(scoreboard.size());
+            for (GroupStatus gs : scoreboard) {
+                if (rejected == null || !rejected.contains(gs.group.id())) {
+                    if (!requireCoverage || gs.group.hasSufficientCoverage()) {
+                        candidates.add(gs);
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            List<GroupStatus> candidates = candidates(true, rejectedGroups);
+            if (candidates.isEmpty()) {
+                // fallback - any coverage better than none
+                candidates = candidates(false, rejectedGroups);
+            }
+            if (candidates.isEmpty()) {
+                return Optional.empty();
+            }
+            if (candidates.size() == 1) {
+                return Optional.of(candidates.get(0));
+            }
+            int first = random.nextInt(candidates.size());
+            int second = random.nextInt(candidates.size() - 1);
+            if (second >= first) {
+                second++;
+            }
+            GroupStatus a = candidates.get(first);
+            GroupStatus b = candidates.get(second);
+            return Optional.of(b.predictedCompletionTime() < a.predictedCompletionTime() ? b : a);
+        }
+    }
 }
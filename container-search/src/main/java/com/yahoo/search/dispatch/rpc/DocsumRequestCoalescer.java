@@ -0,0 +1,151 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.ByteString;
+import com.yahoo.collections.Pair;
+import com.yahoo.compress.Compressor;
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces docsum requests from concurrent queries to the same node into a single request.
+ * Requests can be coalesced when they are identical except for the global ids to fetch and the timeout,
+ * i.e when they are for the same document type, summary class and rank profile and do not carry query data.
+ * A request is held for at most the configured delay (or until a batch is large enough) before it is sent,
+ * and the reply is split back out to each query by its offset in the batch.
+ *
+ * This class is multithread safe.
+ *
+ * @author agent
+ */
+class DocsumRequestCoalescer {
+
+    private static final String RPC_METHOD = "vespa.searchprotocol.getDocsums";
+
+    /** Batches are sent immediately when they contain this many hits */
+    static final int MAX_BATCH_HITS = 1000;
+
+    interface Receiver {
+
+        /** Called with the shared reply and the offset of the hits of the receiver in it, or an error */
+        void receive(Client.ResponseOrError<SharedDocsumReply> reply, int offset);
+
+    }
+
+    private final RpcResourcePool resourcePool;
+    private final long delayNanos;
+    private final ScheduledExecutorService timer;
+    private final Map<Pair<Integer, ByteString>, Batch> pending = new HashMap<>();
+
+    DocsumRequestCoalescer(RpcResourcePool resourcePool, double delaySeconds) {
+        this.resourcePool = resourcePool;
+        this.delayNanos = (long)(delaySeconds * 1_000_000_000);
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, ThreadFactoryFactory.getDaemonThreadFactory("docsum-coalescer"));
+        timer.setRemoveOnCancelPolicy(true);
+        this.timer = timer;
+    }
+
+    /**
+     * Adds a docsum request for the given hits to the next batch of requests to the given node
+     *
+     * @param nodeId the distribution key of the node to fetch docsums from
+     * @param builder the request, without global ids
+     * @param hits the hits to fetch docsums for
+     * @param query the query the docsums are fetched for
+     * @param receiver the receiver of the reply of the batch this is sent in
+     */
+    void request(int nodeId, SearchProtocol.DocsumRequest.Builder builder, List<FastHit> hits, Query query, Receiver receiver) {
+        var key = new Pair<>(nodeId, builder.clone().setTimeout(0).clearGlobalIds().build().toByteString());
+        Batch batchToSend = null;
+        synchronized (pending) {
+            Batch batch = pending.get(key);
+            if (batch == null) {
+                Batch newBatch = new Batch(nodeId, builder.clone().clearGlobalIds(), query);
+                pending.put(key, newBatch);
+                timer.schedule(() -> sendIfPending(key, newBatch), delayNanos, TimeUnit.NANOSECONDS);
+                batch = newBatch;
+            }
+            batch.add(hits, query, receiver);
+            if (batch.hitCount >= MAX_BATCH_HITS) {
+                pending.remove(key);
+                batchToSend = batch;
+            }
+        }
+        if (batchToSend != null) {
+            batchToSend.send();
+        }
+    }
+
+    private void sendIfPending(Pair<Integer, ByteString> key, Batch batch) {
+        synchronized (pending) {
+            if (pending.get(key) != batch) return; // already sent
+            pending.remove(key);
+        }
+        batch.send();
+    }
+
+    void release() {
+        timer.shutdownNow();
+    }
+
+    private class Batch {
+
+        private final int nodeId;
+        private final SearchProtocol.DocsumRequest.Builder builder;
+        private final Query firstQuery;
+        private final List<Receiver> receivers = new ArrayList<>();
+        private final List<Integer> offsets = new ArrayList<>();
+        private long maxTimeLeftMs = 0;
+        private int hitCount = 0;
+
+        Batch(int nodeId, SearchProtocol.DocsumRequest.Builder builder, Query firstQuery) {
+            this.nodeId = nodeId;
+            this.builder = builder;
+            this.firstQuery = firstQuery;
+        }
+
+        void add(List<FastHit> hits, Query query, Receiver receiver) {
+            for (FastHit hit : hits) {
+                builder.addGlobalIds(ByteString.copyFrom(hit.getGlobalId().getRawId()));
+            }
+            receivers.add(receiver);
+            offsets.add(hitCount);
+            hitCount += hits.size();
+            maxTimeLeftMs = Math.max(maxTimeLeftMs, query.getTimeLeft());
+        }
+
+        void send() {
+            Client.NodeConnection node = resourcePool.getConnection(nodeId);
+            if (node == null) {
+                deliver(Client.ResponseOrError.fromError("Could not fill hits from unknown node " + nodeId));
+                return;
+            }
+            byte[] payload = builder.setTimeout((int)maxTimeLeftMs).build().toByteArray();
+            double timeoutSeconds = ((double) maxTimeLeftMs - 3.0) / 1000.0;
+            Compressor.Compression compressionResult = resourcePool.compress(firstQuery, payload);
+            node.request(RPC_METHOD, compressionResult.type(), payload.length, compressionResult.data(),
+                         roe -> deliver(roe.response().isPresent()
+                                        ? Client.ResponseOrError.fromResponse(new SharedDocsumReply(resourcePool.compressor(), roe.response().get()))
+                                        : Client.ResponseOrError.fromError(roe.error().get())),
+                         timeoutSeconds);
+        }
+
+        private void deliver(Client.ResponseOrError<SharedDocsumReply> reply) {
+            for (int i = 0; i < receivers.size(); i++) {
+                receivers.get(i).receive(reply, offsets.get(i));
+            }
+        }
+
+    }
+
+}
@@ -4,8 +4,8 @@ import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
 import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol.StringProperty;
 import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol.TensorProperty;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
-import com.yahoo.document.GlobalId;
 import com.yahoo.fs4.GetDocSumsPacket;
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.prelude.fastsearch.DocumentDatabase;
@@ -14,9 +14,9 @@ import com.yahoo.prelude.fastsearch.GroupingListHit;
 import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.EncodedQueryTree;
 import com.yahoo.search.grouping.vespa.GroupingExecutor;
 import com.yahoo.search.query.Model;
-import com.yahoo.search.query.QueryTree;
 import com.yahoo.search.query.Ranking;
 import com.yahoo.search.query.Sorting;
 import com.yahoo.search.query.Sorting.Order;
@@ -25,13 +25,11 @@ import com.yahoo.search.result.Relevance;
 import com.yahoo.searchlib.aggregation.Grouping;
 import com.yahoo.vespa.objects.BufferSerializer;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
 public class ProtobufSerialization {
-    private static final int INITIAL_SERIALIZATION_BUFFER_SIZE = 10 * 1024;
 
     public static byte[] serializeSearchRequest(Query query, String serverId) {
         return convertFromQuery(query, serverId).toByteArray();
@@ -45,7 +43,7 @@ public class ProtobufSerialization {
         if (documentDb != null) {
             builder.setDocumentType(documentDb);
         }
-        builder.setQueryTreeBlob(serializeQueryTree(query.getModel().getQueryTree()));
+        builder.setQueryTreeBlob(EncodedQueryTree.of(query).stack());
 
         if (query.getGroupingSessionCache() || query.getRanking().getQueryCache()) {
             // TODO verify that the session key is included whenever rank properties would have been
@@ -142,7 +140,7 @@ public class ProtobufSerialization {
         var ranking = query.getRanking();
         var featureMap = ranking.getFeatures().asMap();
 
-        builder.setQueryTreeBlob(serializeQueryTree(query.getModel().getQueryTree()));
+        builder.setQueryTreeBlob(EncodedQueryTree.of(query).stack());
         if (ranking.getLocation() != null) {
             builder.setGeoLocation(ranking.getLocation().toString());
         }
@@ -158,13 +156,26 @@ public class ProtobufSerialization {
         return convertFromResult(searchResult).toByteArray();
     }
 
+    /**
+     * Deserializes a search reply into a result. The bytes fields of the reply (global ids, sort data and grouping)
+     * are not copied but are referenced in the payload by the returned hits, which only decode the global id
+     * when it is requested. The payload must therefore not be modified after this is called.
+     */
     public static Result deserializeToSearchResult(byte[] payload, Query query, VespaBackEndSearcher searcher, int partId, int distKey)
             throws InvalidProtocolBufferException {
-        var protobuf = SearchProtocol.SearchReply.parseFrom(payload);
+        var protobuf = parseSearchReply(payload);
         var result = convertToResult(query, protobuf, searcher.getDocumentDatabase(query), partId, distKey, searcher.getName());
         return result;
     }
 
+    static SearchProtocol.SearchReply parseSearchReply(byte[] payload) throws InvalidProtocolBufferException {
+        CodedInputStream input = CodedInputStream.newInstance(payload);
+        input.enableAliasing(true);
+        var protobuf = SearchProtocol.SearchReply.parser().parseFrom(input);
+        input.checkLastTagWas(0);
+        return protobuf;
+    }
+
     private static Result convertToResult(Query query, SearchProtocol.SearchReply protobuf, DocumentDatabase documentDatabase, int partId,
             int distKey, String source) {
         var result = new Result(query);
@@ -199,9 +210,9 @@ public class ProtobufSerialization {
             hit.setQuery(query);
 
             hit.setRelevance(new Relevance(replyHit.getRelevance()));
-            hit.setGlobalId(new GlobalId(replyHit.getGlobalId().toByteArray()));
+            hit.setGlobalId(replyHit.getGlobalId().asReadOnlyByteBuffer());
             if (!replyHit.getSortData().isEmpty()) {
-                hit.setSortData(replyHit.getSortData().toByteArray(), sorting);
+                hit.setSortData(replyHit.getSortData().asReadOnlyByteBuffer(), sorting);
             }
             hit.setFillable();
             hit.setCached(false);
@@ -255,20 +266,6 @@ public class ProtobufSerialization {
         return builder.build();
     }
 
-    private static ByteString serializeQueryTree(QueryTree queryTree) {
-        int bufferSize = INITIAL_SERIALIZATION_BUFFER_SIZE;
-        while (true) {
-            try {
-                ByteBuffer treeBuffer = ByteBuffer.allocate(bufferSize);
-                queryTree.encode(treeBuffer);
-                treeBuffer.flip();
-                return ByteString.copyFrom(treeBuffer);
-            } catch (java.nio.BufferOverflowException e) {
-                bufferSize *= 2;
-            }
-        }
-    }
-
     private static void mergeRankProperties(Ranking ranking, Consumer<StringProperty.Builder> stringProperties,
             Consumer<TensorProperty.Builder> tensorProperties) {
         MapConverter.convertMultiMap(ranking.getProperties().asMap(), propB -> {
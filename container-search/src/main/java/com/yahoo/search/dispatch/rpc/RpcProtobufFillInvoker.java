@@ -4,8 +4,6 @@ package com.yahoo.search.dispatch.rpc;
 import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.yahoo.collections.ListMap;
-import com.yahoo.collections.Pair;
-import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
 import com.yahoo.container.protect.Error;
 import com.yahoo.data.access.Inspector;
@@ -20,11 +18,11 @@ import com.yahoo.search.dispatch.rpc.Client.ProtobufResponse;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.slime.ArrayTraverser;
-import com.yahoo.slime.BinaryFormat;
 
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -47,7 +45,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
     private final boolean summaryNeedsQuery;
     private final String serverId;
 
-    private BlockingQueue<Pair<Client.ResponseOrError<ProtobufResponse>, List<FastHit>>> responses;
+    private BlockingQueue<Response> responses;
 
     /** Whether we have already logged/notified about an error - to avoid spamming */
     private boolean hasReportedError = false;
@@ -64,7 +62,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
 
     @Override
     protected void sendFillRequest(Result result, String summaryClass) {
-        ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
+        ListMap<Integer, FastHit> hitsByNode = hitsByNode(result, summaryClass);
 
         result.getQuery().trace(false, 5, "Sending ", hitsByNode.size(), " summary fetch requests with jrt/protobuf");
 
@@ -72,9 +70,14 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         responses = new LinkedBlockingQueue<>(outstandingResponses);
 
         var builder = ProtobufSerialization.createDocsumRequestBuilder(result.getQuery(), serverId, summaryClass, summaryNeedsQuery);
+        var coalescer = summaryNeedsQuery ? Optional.<DocsumRequestCoalescer>empty() : resourcePool.docsumRequestCoalescer();
         for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
-            var payload = ProtobufSerialization.serializeDocsumRequest(builder, nodeHits.getValue());
-            sendDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), payload, result);
+            if (coalescer.isPresent()) {
+                coalesceDocsumsRequest(coalescer.get(), nodeHits.getKey(), nodeHits.getValue(), builder, result);
+            } else {
+                var payload = ProtobufSerialization.serializeDocsumRequest(builder, nodeHits.getValue());
+                sendDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), payload, result);
+            }
         }
     }
 
@@ -96,17 +99,24 @@ public class RpcProtobufFillInvoker extends FillInvoker {
 
     /** Called by a thread belonging to the client when a valid response becomes available */
     public void receive(Client.ResponseOrError<ProtobufResponse> response, List<FastHit> hitsContext) {
-        responses.add(new Pair<>(response, hitsContext));
+        if (response.response().isPresent()) {
+            var reply = new SharedDocsumReply(resourcePool.compressor(), response.response().get());
+            responses.add(new Response(Client.ResponseOrError.fromResponse(reply), hitsContext, 0));
+        } else {
+            responses.add(new Response(Client.ResponseOrError.fromError(response.error().get()), hitsContext, 0));
+        }
     }
 
-    /** Return a map of hits by their search node (partition) id */
-    private static ListMap<Integer, FastHit> hitsByNode(Result result) {
+    /** Return a map of the hits which are not already filled with the given summary class by their search node (partition) id */
+    private static ListMap<Integer, FastHit> hitsByNode(Result result, String summaryClass) {
         ListMap<Integer, FastHit> hitsByNode = new ListMap<>();
         for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext();) {
             Hit h = i.next();
             if (!(h instanceof FastHit))
                 continue;
             FastHit hit = (FastHit) h;
+            if (hit.getFilled() != null && hit.getFilled().contains(summaryClass))
+                continue; // e.g filled from the docsum cache
 
             hitsByNode.put(hit.getDistributionKey(), hit);
         }
@@ -117,10 +127,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
     private void sendDocsumsRequest(int nodeId, List<FastHit> hits, byte[] payload, Result result) {
         Client.NodeConnection node = resourcePool.getConnection(nodeId);
         if (node == null) {
-            String error = "Could not fill hits from unknown node " + nodeId;
-            receive(Client.ResponseOrError.fromError(error), hits);
-            result.hits().addError(ErrorMessage.createEmptyDocsums(error));
-            log.warning("Got hits with partid " + nodeId + ", which is not included in the current dispatch config");
+            handleUnknownNode(nodeId, hits, result);
             return;
         }
 
@@ -131,6 +138,23 @@ public class RpcProtobufFillInvoker extends FillInvoker {
                 timeoutSeconds);
     }
 
+    /** Adds a docsums request to the next batch of requests to a node. Responses will be added to the given receiver. */
+    private void coalesceDocsumsRequest(DocsumRequestCoalescer coalescer, int nodeId, List<FastHit> hits,
+                                        SearchProtocol.DocsumRequest.Builder builder, Result result) {
+        if (resourcePool.getConnection(nodeId) == null) {
+            handleUnknownNode(nodeId, hits, result);
+            return;
+        }
+        coalescer.request(nodeId, builder, hits, result.getQuery(), (reply, offset) -> responses.add(new Response(reply, hits, offset)));
+    }
+
+    private void handleUnknownNode(int nodeId, List<FastHit> hits, Result result) {
+        String error = "Could not fill hits from unknown node " + nodeId;
+        responses.add(new Response(Client.ResponseOrError.fromError(error), hits, 0));
+        result.hits().addError(ErrorMessage.createEmptyDocsums(error));
+        log.warning("Got hits with partid " + nodeId + ", which is not included in the current dispatch config");
+    }
+
     private void processResponses(Result result, String summaryClass) throws TimeoutException {
         try {
             int skippedHits = 0;
@@ -139,13 +163,11 @@ public class RpcProtobufFillInvoker extends FillInvoker {
                 if (timeLeftMs <= 0) {
                     throwTimeout();
                 }
-                var responseAndHits = responses.poll(timeLeftMs, TimeUnit.MILLISECONDS);
-                if (responseAndHits == null) {
+                var response = responses.poll(timeLeftMs, TimeUnit.MILLISECONDS);
+                if (response == null) {
                     throwTimeout();
                 }
-                var response = responseAndHits.getFirst();
-                var hitsContext = responseAndHits.getSecond();
-                skippedHits += processResponse(result, response, hitsContext, summaryClass);
+                skippedHits += processResponse(result, response, summaryClass);
                 outstandingResponses--;
             }
             if (skippedHits != 0) {
@@ -157,8 +179,8 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         }
     }
 
-    private int processResponse(Result result, Client.ResponseOrError<ProtobufResponse> responseOrError, List<FastHit> hitsContext,
-            String summaryClass) {
+    private int processResponse(Result result, Response response, String summaryClass) {
+        var responseOrError = response.reply;
         if (responseOrError.error().isPresent()) {
             if (hasReportedError) {
                 return 0;
@@ -168,11 +190,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
             log.log(Level.WARNING, "Error fetching summary data: " + error);
             hasReportedError = true;
         } else {
-            Client.ProtobufResponse response = responseOrError.response().get();
-            CompressionType compression = CompressionType.valueOf(response.compression());
-            byte[] responseBytes = resourcePool.compressor().decompress(response.compressedPayload(), compression,
-                    response.uncompressedSize());
-            return fill(result, hitsContext, summaryClass, responseBytes);
+            return fill(result, response.hits, response.offset, summaryClass, responseOrError.response().get());
         }
         return 0;
     }
@@ -184,10 +202,9 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         });
     }
 
-    private int fill(Result result, List<FastHit> hits, String summaryClass, byte[] payload) {
+    private int fill(Result result, List<FastHit> hits, int offset, String summaryClass, SharedDocsumReply reply) {
         try {
-            var protobuf = SearchProtocol.DocsumReply.parseFrom(payload);
-            var root = BinaryFormat.decode(protobuf.getSlimeSummaries().toByteArray()).get();
+            var root = reply.root();
             var errors = root.field("errors");
             boolean hasErrors = errors.valid() && (errors.entries() > 0);
             if (hasErrors) {
@@ -200,7 +217,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
             }
             int skippedHits = 0;
             for (int i = 0; i < hits.size(); i++) {
-                Inspector summary = summaries.entry(i).field("docsum");
+                Inspector summary = summaries.entry(offset + i).field("docsum");
                 if (summary.fieldCount() != 0) {
                     hits.get(i).setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
                     hits.get(i).addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass), summary);
@@ -221,4 +238,19 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         throw new TimeoutException("Timed out waiting for summary data. " + outstandingResponses + " responses outstanding.");
     }
 
+    /** A (possibly shared) reply or error, and the hits of this and their offset in the reply */
+    private static class Response {
+
+        final Client.ResponseOrError<SharedDocsumReply> reply;
+        final List<FastHit> hits;
+        final int offset;
+
+        Response(Client.ResponseOrError<SharedDocsumReply> reply, List<FastHit> hits, int offset) {
+            this.reply = reply;
+            this.hits = hits;
+            this.offset = offset;
+        }
+
+    }
+
 }
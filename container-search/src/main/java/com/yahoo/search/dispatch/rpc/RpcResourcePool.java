@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 
 /**
@@ -33,10 +34,18 @@ public class RpcResourcePool {
     /** Connections to the search nodes this talks to, indexed by node id ("partid") */
     private final ImmutableMap<Integer, NodeConnectionPool> nodeConnectionPools;
 
+    /** Coalesces docsum requests from concurrent queries, or empty if this is disabled */
+    private final Optional<DocsumRequestCoalescer> docsumRequestCoalescer;
+
     public RpcResourcePool(Map<Integer, NodeConnection> nodeConnections) {
+        this(nodeConnections, 0.0);
+    }
+
+    public RpcResourcePool(Map<Integer, NodeConnection> nodeConnections, double docsumCoalescingDelay) {
         var builder = new ImmutableMap.Builder<Integer, NodeConnectionPool>();
         nodeConnections.forEach((key, connection) -> builder.put(key, new NodeConnectionPool(Collections.singletonList(connection))));
         this.nodeConnectionPools = builder.build();
+        this.docsumRequestCoalescer = createCoalescer(docsumCoalescingDelay);
     }
 
     public RpcResourcePool(DispatchConfig dispatchConfig) {
@@ -53,6 +62,11 @@ public class RpcResourcePool {
             builder.put(node.key(), new NodeConnectionPool(connections));
         }
         this.nodeConnectionPools = builder.build();
+        this.docsumRequestCoalescer = createCoalescer(dispatchConfig.docsumCoalescingDelay());
+    }
+
+    private Optional<DocsumRequestCoalescer> createCoalescer(double delaySeconds) {
+        return delaySeconds > 0 ? Optional.of(new DocsumRequestCoalescer(this, delaySeconds)) : Optional.empty();
     }
 
     public Compressor compressor() {
@@ -64,6 +78,10 @@ public class RpcResourcePool {
         return compressor.compress(compression, payload);
     }
 
+    Optional<DocsumRequestCoalescer> docsumRequestCoalescer() {
+        return docsumRequestCoalescer;
+    }
+
     public NodeConnection getConnection(int nodeId) {
         var pool = nodeConnectionPools.get(nodeId);
         if (pool == null) {
@@ -74,6 +92,7 @@ public class RpcResourcePool {
     }
 
     public void release() {
+        docsumRequestCoalescer.ifPresent(DocsumRequestCoalescer::release);
         nodeConnectionPools.values().forEach(NodeConnectionPool::release);
     }
 
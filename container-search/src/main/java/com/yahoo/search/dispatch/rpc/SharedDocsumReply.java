@@ -0,0 +1,48 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Inspector;
+
+/**
+ * A docsum reply from a content node, which is decompressed and decoded the first time it is accessed.
+ * A reply may be shared by the fill invokers of several queries when their requests were coalesced.
+ *
+ * This class is multithread safe.
+ *
+ * @author agent
+ */
+class SharedDocsumReply {
+
+    private final Compressor compressor;
+    private final Client.ProtobufResponse response;
+
+    private Inspector root = null;
+    private InvalidProtocolBufferException exception = null;
+
+    SharedDocsumReply(Compressor compressor, Client.ProtobufResponse response) {
+        this.compressor = compressor;
+        this.response = response;
+    }
+
+    /** Returns the root of the slime summaries of this reply */
+    synchronized Inspector root() throws InvalidProtocolBufferException {
+        if (root == null && exception == null) {
+            try {
+                CompressionType compression = CompressionType.valueOf(response.compression());
+                byte[] payload = compressor.decompress(response.compressedPayload(), compression, response.uncompressedSize());
+                var protobuf = SearchProtocol.DocsumReply.parseFrom(payload);
+                root = BinaryFormat.decode(protobuf.getSlimeSummaries().toByteArray()).get();
+            } catch (InvalidProtocolBufferException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) throw exception;
+        return root;
+    }
+
+}
@@ -45,6 +45,7 @@ import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -235,13 +236,40 @@ public class FederationSearcher extends ForkingSearcher {
         }
     }
 
+    /**
+     * Searches all the given targets. All but one are searched in separate threads while the remaining one
+     * is searched in this thread, as this thread would otherwise just be waiting for the others.
+     */
     private FederationResult search(Query query, Execution execution, Collection<Target> targets) {
+        Optional<Target> targetInThisThread = targetToSearchInThisThread(query, targets);
+        FutureResult resultInThisThread = null;
         FederationResult.Builder result = new FederationResult.Builder();
-        for (Target target : targets)
-            result.add(target, searchAsynchronously(query, execution, Window.from(targets, query), target));
+        for (Target target : targets) {
+            if (targetInThisThread.isPresent() && target == targetInThisThread.get()) {
+                resultInThisThread = futureSearch(query, execution, Window.from(targets, query), target);
+                result.add(target, resultInThisThread);
+            }
+            else {
+                result.add(target, searchAsynchronously(query, execution, Window.from(targets, query), target));
+            }
+        }
+        if (resultInThisThread != null)
+            resultInThisThread.run();
         return result.build();
     }
 
+    /**
+     * Returns the target which should be searched in this thread: The one we will wait longest for among those
+     * we must wait for, unless it should be executed for longer than we wait for it.
+     */
+    private Optional<Target> targetToSearchInThisThread(Query query, Collection<Target> targets) {
+        boolean anyMandatory = targets.stream().anyMatch(target -> ! target.federationOptions().getOptional());
+        return targets.stream()
+                      .filter(target -> ! anyMandatory || ! target.federationOptions().getOptional())
+                      .filter(target -> ! shouldExecuteTargetLongerThanThread(query, target))
+                      .max(Comparator.comparingLong(target -> target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(query.getTimeLeft())));
+    }
+
     private FutureResult searchAsynchronously(Query query, Execution execution, Window window, Target target) {
         long timeout = target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(query.getTimeLeft());
         if (timeout <= 0)
@@ -250,6 +278,16 @@ public class FederationSearcher extends ForkingSearcher {
         return new AsyncExecution(target.getChain(), execution).search(clonedQuery);
     }
 
+    /** Returns a future result of searching the given target which is not yet started */
+    private FutureResult futureSearch(Query query, Execution execution, Window window, Target target) {
+        long timeout = target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(query.getTimeLeft());
+        if (timeout <= 0)
+            return new FutureResult(() -> new Result(query, ErrorMessage.createTimeout("Timed out before federation")), execution, query);
+        Query clonedQuery = cloneFederationQuery(query, window, timeout, target);
+        Execution targetExecution = new Execution(target.getChain(), execution.context());
+        return new FutureResult(() -> targetExecution.search(clonedQuery), targetExecution, clonedQuery);
+    }
+
     private Query cloneFederationQuery(Query query, Window window, long timeout, Target target) {
         query.getModel().getQueryTree(); // performance: parse query before cloning such that it is only done once
         Query clonedQuery = Query.createNewQuery(query);
@@ -415,6 +453,7 @@ public class FederationSearcher extends ForkingSearcher {
         }
 
         List<Pair<Result, FutureResult>> futureFilledResults = new ArrayList<>();
+        FutureResult fillInThisThread = null;
         for (Entry<Chain<Searcher>, Map<Query, Result>> resultsToFillForAChain : resultsForAllChains) {
             Chain<Searcher> chain = resultsToFillForAChain.getKey();
             Execution chainExecution = (chain == null) ? execution : new Execution(chain, execution.context());
@@ -424,12 +463,20 @@ public class FederationSearcher extends ForkingSearcher {
                 if (numberOfCallsToFillNeeded == 1) {
                     chainExecution.fill(resultToFill, summaryClass);
                     propagateErrors(resultToFill, result);
+                } else if (fillInThisThread == null) { // fill one in this thread while waiting for the others
+                    fillInThisThread = new FutureResult(() -> {
+                        chainExecution.fill(resultToFill, summaryClass);
+                        return resultToFill;
+                    }, chainExecution, resultToFill.getQuery());
+                    futureFilledResults.add(new Pair<>(resultToFill, fillInThisThread));
                 } else {
                     AsyncExecution asyncFill = new AsyncExecution(chainExecution);
                     futureFilledResults.add(new Pair<>(resultToFill, asyncFill.fill(resultToFill, summaryClass)));
                 }
             }
         }
+        if (fillInThisThread != null)
+            fillInThisThread.run();
         for (Pair<Result, FutureResult> futureFilledResult : futureFilledResults) {
             // futureFilledResult is a pair of a result to be filled and the future in which that same result is filled
             Optional<Result> filledResult = futureFilledResult.getSecond().getIfAvailable(result.getQuery().getTimeLeft(), TimeUnit.MILLISECONDS);
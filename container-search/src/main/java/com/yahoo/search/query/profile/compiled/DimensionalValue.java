@@ -20,18 +20,24 @@ public class DimensionalValue<VALUE> {
 
     private final List<Value<VALUE>> values;
 
+    /** The index used to find the matching variant, or null if there are less than two variants */
+    private final VariantIndex index;
+
     /** Create a set of variants which is a single value regardless of dimensions */
     public DimensionalValue(Value<VALUE> value) {
         this.values = Collections.singletonList(value);
+        this.index = null;
     }
 
     public DimensionalValue(List<Value<VALUE>> valueVariants) {
         if (valueVariants.size() == 1) { // special cased for efficiency
             this.values = Collections.singletonList(valueVariants.get(0));
+            this.index = null;
         }
         else {
             this.values = new ArrayList<>(valueVariants);
             Collections.sort(this.values);
+            this.index = values.isEmpty() ? null : new VariantIndex(values);
         }
     }
 
@@ -39,6 +45,10 @@ public class DimensionalValue<VALUE> {
     public VALUE get(Map<String, String> context) {
         if (context == null)
             context = Collections.emptyMap();
+        if (index != null) {
+            int match = index.firstMatch(context);
+            return match < 0 ? null : values.get(match).value();
+        }
         for (Value<VALUE> value : values) {
             if (value.matches(context))
                 return value.value();
@@ -79,6 +89,86 @@ public class DimensionalValue<VALUE> {
 
     }
 
+    /**
+     * An index from the values of the dimensions of a context to the variants matching it.
+     * For each dimension bound by some variant this holds the set of variants which does not bind it,
+     * and for each value it is bound to, the set of variants which binds it to that value, as bit sets.
+     * The variants matching a context is then the intersection over all the dimensions of the variants
+     * which either does not bind the dimension or binds it to the context value, and the best match
+     * is the lowest one, as variants are sorted from the most to the least specific.
+     * This finds the value with one hash lookup per dimension, regardless of the number of variants.
+     */
+    private static final class VariantIndex {
+
+        /** The dimensions bound by any variant */
+        private final String[] dimensions;
+
+        /** The variants which are not bound in each dimension */
+        private final long[][] unbound;
+
+        /** The variants which are bound to each value in each dimension */
+        private final List<Map<String, long[]>> bound;
+
+        /** All the variants */
+        private final long[] all;
+
+        VariantIndex(List<? extends Value<?>> variants) {
+            int words = (variants.size() + 63) / 64;
+            List<String> dimensionList = new ArrayList<>();
+            for (Value<?> variant : variants) {
+                for (String dimension : variant.binding().dimensions())
+                    if ( ! dimensionList.contains(dimension))
+                        dimensionList.add(dimension);
+            }
+            dimensions = dimensionList.toArray(new String[0]);
+            unbound = new long[dimensions.length][words];
+            bound = new ArrayList<>(dimensions.length);
+            for (int i = 0; i < dimensions.length; i++)
+                bound.add(new HashMap<>());
+            all = new long[words];
+
+            for (int variant = 0; variant < variants.size(); variant++) {
+                Binding binding = variants.get(variant).binding();
+                setBit(all, variant);
+                for (int dimension = 0; dimension < dimensions.length; dimension++) {
+                    String value = valueOf(dimensions[dimension], binding);
+                    if (value == null)
+                        setBit(unbound[dimension], variant);
+                    else
+                        setBit(bound.get(dimension).computeIfAbsent(value, __ -> new long[words]), variant);
+                }
+            }
+        }
+
+        /** Returns the index of the first variant matching the given context, or -1 if none */
+        int firstMatch(Map<String, String> context) {
+            for (int word = 0; word < all.length; word++) {
+                long matching = all[word];
+                for (int dimension = 0; dimension < dimensions.length && matching != 0; dimension++) {
+                    long[] boundToContextValue = bound.get(dimension).get(context.get(dimensions[dimension]));
+                    matching &= boundToContextValue == null ? unbound[dimension][word]
+                                                            : unbound[dimension][word] | boundToContextValue[word];
+                }
+                if (matching != 0)
+                    return word * 64 + Long.numberOfTrailingZeros(matching);
+            }
+            return -1;
+        }
+
+        private static String valueOf(String dimension, Binding binding) {
+            String[] dimensions = binding.dimensions();
+            for (int i = 0; i < dimensions.length; i++)
+                if (dimensions[i].equals(dimension))
+                    return binding.dimensionValues()[i];
+            return null;
+        }
+
+        private static void setBit(long[] bits, int bit) {
+            bits[bit / 64] |= 1L << (bit % 64);
+        }
+
+    }
+
     /** A value for a particular binding */
     private static class Value<VALUE> implements Comparable<Value> {
 
@@ -12,7 +12,6 @@ import com.yahoo.data.access.Inspectable;
 import com.yahoo.data.access.Inspector;
 import com.yahoo.data.access.Type;
 import com.yahoo.data.access.simple.JsonRender;
-import com.yahoo.data.access.simple.Value;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
@@ -745,39 +744,91 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             return true;
         }
 
-        private static Inspector wrapAsMap(Inspector data) {
-            if (data.type() != Type.ARRAY) return null;
-            if (data.entryCount() == 0) return null;
-            Value.ObjectValue map = new Value.ObjectValue();
+        /** Returns whether this is an array of key/value objects with string keys, which should be rendered as a JSON object */
+        private static boolean isMap(Inspector data) {
+            if (data.type() != Type.ARRAY) return false;
+            if (data.entryCount() == 0) return false;
             for (int i = 0; i < data.entryCount(); i++) {
                 Inspector obj = data.entry(i);
-                if (obj.type() != Type.OBJECT) return null;
-                if (obj.fieldCount() != 2) return null;
-                Inspector key = obj.field("key");
-                Inspector value = obj.field("value");
-                if (key.type() != Type.STRING) return null;
-                if (! value.valid()) return null;
-                map.put(key.asString(), value);
+                if (obj.type() != Type.OBJECT) return false;
+                if (obj.fieldCount() != 2) return false;
+                if (obj.field("key").type() != Type.STRING) return false;
+                if ( ! obj.field("value").valid()) return false;
             }
-            return map;
+            return true;
         }
 
         private void renderInspector(Inspector data) throws IOException {
-            Inspector asMap = wrapAsMap(data);
-            if (asMap != null) {
-                StringBuilder intermediate = new StringBuilder();
-                JsonRender.render(asMap, intermediate, true);
-                generator.writeRawValue(intermediate.toString());
+            if (isMap(data)) {
+                generator.writeStartObject();
+                for (int i = 0; i < data.entryCount(); i++) {
+                    Inspector obj = data.entry(i);
+                    generator.writeFieldName(obj.field("key").asString());
+                    renderInspectorDirect(obj.field("value"));
+                }
+                generator.writeEndObject();
             } else {
                 renderInspectorDirect(data);
             }
-
         }
 
+        /**
+         * Streams the given data to the generator, without creating intermediate objects.
+         * This produces the same JSON as {@link JsonRender}.
+         */
         private void renderInspectorDirect(Inspector data) throws IOException {
-            StringBuilder intermediate = new StringBuilder();
-            JsonRender.render(data, intermediate, true);
-            generator.writeRawValue(intermediate.toString());
+            switch (data.type()) {
+                case EMPTY:
+                    generator.writeNull();
+                    break;
+                case BOOL:
+                    generator.writeBoolean(data.asBool());
+                    break;
+                case LONG:
+                    generator.writeNumber(data.asLong());
+                    break;
+                case DOUBLE:
+                    double value = data.asDouble();
+                    if (Double.isFinite(value))
+                        generator.writeNumber(value);
+                    else
+                        generator.writeNull();
+                    break;
+                case STRING:
+                    byte[] utf8 = data.asUtf8();
+                    generator.writeUTF8String(utf8, 0, utf8.length);
+                    break;
+                case DATA:
+                    generator.writeString(hexEncode(data.asData()));
+                    break;
+                case ARRAY:
+                    generator.writeStartArray();
+                    for (int i = 0; i < data.entryCount(); i++)
+                        renderInspectorDirect(data.entry(i));
+                    generator.writeEndArray();
+                    break;
+                case OBJECT:
+                    generator.writeStartObject();
+                    for (Map.Entry<String, Inspector> field : data.fields()) {
+                        generator.writeFieldName(field.getKey());
+                        renderInspectorDirect(field.getValue());
+                    }
+                    generator.writeEndObject();
+                    break;
+            }
+        }
+
+        private static final char[] hex = "0123456789ABCDEF".toCharArray();
+
+        private static String hexEncode(byte[] data) {
+            char[] encoded = new char[2 + data.length * 2];
+            encoded[0] = '0';
+            encoded[1] = 'x';
+            for (int i = 0; i < data.length; i++) {
+                encoded[2 + i * 2] = hex[(data[i] >> 4) & 0xf];
+                encoded[3 + i * 2] = hex[data[i] & 0xf];
+            }
+            return new String(encoded);
         }
 
         private void renderFieldContents(Object field) throws IOException {
@@ -561,6 +561,12 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
         }
     }
 
+    /**
+     * Sets the query which produced this, also if a query is already set.
+     * This is used when a hit is reused as the result of another, equivalent query.
+     */
+    public final void resetQuery(Query query) { this.query = query; }
+
     /** Attach some data to this hit for this searcher */
     public void setSearcherSpecificMetaData(Searcher searcher, Object data) {
         if (searcherSpecificMetaData == null) {
@@ -146,19 +146,6 @@ public class AsyncExecution {
 
     }
 
-    private static <T> Future<T> getFuture(Callable<T> callable) {
-        FutureTask<T> future = new FutureTask<>(callable);
-        getExecutor().execute(future);
-        return future;
-    }
-
-    private static Future<Void> runTask(Runnable runnable) {
-        return getFuture(() -> {
-            runnable.run();
-            return null;
-        });
-    }
-
     private FutureResult getFutureResult(Callable<Result> callable, Query query) {
         FutureResult future = new FutureResult(callable, execution, query);
         getExecutor().execute(future);
@@ -169,6 +156,7 @@ public class AsyncExecution {
      * Waits for all futures until the given timeout. If a FutureResult isn't
      * done when the timeout expires, it will be cancelled, and it will return a
      * result. All unfinished Futures will be cancelled.
+     * The waiting is done in the calling thread by waiting for the completion of all the futures.
      *
      * @return the list of results in the same order as returned from the task
      * collection
@@ -177,10 +165,10 @@ public class AsyncExecution {
         // Copy the list in case it is modified while we are waiting
         List<FutureResult> workingTasks = new ArrayList<>(tasks);
         try {
-            runTask(() -> {
-                for (FutureResult task : workingTasks)
-                    task.get();
-            }).get(timeoutMs, TimeUnit.MILLISECONDS);
+            CompletableFuture.allOf(workingTasks.stream()
+                                                .map(FutureResult::toCompletableFuture)
+                                                .toArray(CompletableFuture[]::new))
+                             .get(timeoutMs, TimeUnit.MILLISECONDS);
         } catch (TimeoutException | InterruptedException | ExecutionException e) {
             // Handle timeouts below
         }
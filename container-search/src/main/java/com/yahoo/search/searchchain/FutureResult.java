@@ -8,6 +8,7 @@ import com.yahoo.yolean.Exceptions;
 
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
@@ -24,6 +25,8 @@ public class FutureResult extends FutureTask<Result> {
 
     private final Query query;
 
+    private final CompletableFuture<Result> completion = new CompletableFuture<>();
+
     /** Only used for generating messages */
     private final Execution execution;
 
@@ -85,6 +88,20 @@ public class FutureResult extends FutureTask<Result> {
         }
     }
 
+    /**
+     * Returns a future which is completed with the result of this when it is done, or a result containing
+     * an error if the execution failed or was cancelled. This allows processing to be continued
+     * when the result is available, without blocking a thread waiting for it.
+     */
+    public CompletableFuture<Result> toCompletableFuture() {
+        return completion;
+    }
+
+    @Override
+    protected void done() {
+        completion.complete(isCancelled() ? new Result(getQuery(), createTimeoutError()) : get());
+    }
+
     /** Returns the query used in this execution, never null */
     public Query getQuery() {
         return query;
@@ -18,10 +18,11 @@ import com.yahoo.search.searchchain.Execution;
 import com.yahoo.yolean.chain.Provides;
 
 import java.time.Clock;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A simple rate limiter.
@@ -70,7 +71,7 @@ public class RateLimitingSearcher extends Searcher {
     private final AvailableCapacity availableCapacity;
 
     /** Capacity already allocated to this thread */
-    private final ThreadLocal<Map<String, Double>> allocatedCapacity = new ThreadLocal<>();
+    private final ThreadLocal<Map<String, Double>> allocatedCapacity = ThreadLocal.withInitial(HashMap::new);
 
     /** For emitting metrics */
     private final Counter overQuotaCounter;
@@ -111,18 +112,17 @@ public class RateLimitingSearcher extends Searcher {
 
         rate = rate / nodeCount;
 
-        if (allocatedCapacity.get() == null) // new thread
-            allocatedCapacity.set(new HashMap<>());
-        if (allocatedCapacity.get().get(id) == null) // new id in this thread
-            requestCapacity(id, rate);
+        Map<String, Double> allocatedCapacity = this.allocatedCapacity.get();
+        if (allocatedCapacity.get(id) == null) // new id in this thread
+            requestCapacity(id, rate, allocatedCapacity);
 
         // Check if there is capacity available. Cannot check for exact cost as it may be computed after execution
-        // no capacity means we're over rate. Only recheck occasionally to limit synchronization.
-        if (getAllocatedCapacity(id) <= 0 && ThreadLocalRandom.current().nextDouble() < recheckForCapacityProbability) {
-            requestCapacity(id, rate);
+        // no capacity means we're over rate. Only recheck occasionally to limit contention.
+        if (getAllocatedCapacity(id, allocatedCapacity) <= 0 && ThreadLocalRandom.current().nextDouble() < recheckForCapacityProbability) {
+            requestCapacity(id, rate, allocatedCapacity);
         }
 
-        if (rate==0 || getAllocatedCapacity(id) <= 0) { // we are still over rate: reject
+        if (rate==0 || getAllocatedCapacity(id, allocatedCapacity) <= 0) { // we are still over rate: reject
             String idDim = query.properties().getString(idDimensionKey, null);
             if (idDim == null) {
                 overQuotaCounter.add(1);
@@ -134,10 +134,10 @@ public class RateLimitingSearcher extends Searcher {
         }
 
         Result result = execution.search(query);
-        addAllocatedCapacity(id, - query.properties().getDouble(costKey, 1.0));
+        addAllocatedCapacity(id, - query.properties().getDouble(costKey, 1.0), allocatedCapacity);
 
-        if (getAllocatedCapacity(id) <= 0) // make sure we ask for more with 100% probability when first running out
-            requestCapacity(id, rate);
+        if (getAllocatedCapacity(id, allocatedCapacity) <= 0) // make sure we ask for more with 100% probability when first running out
+            requestCapacity(id, rate, allocatedCapacity);
 
         return result;
     }
@@ -146,23 +146,23 @@ public class RateLimitingSearcher extends Searcher {
         return overQuotaCounter.builder().set(dimensionName, dimensionValue).build();
     }
 
-    private double getAllocatedCapacity(String id) {
-        Double value = allocatedCapacity.get().get(id);
+    private double getAllocatedCapacity(String id, Map<String, Double> allocatedCapacity) {
+        Double value = allocatedCapacity.get(id);
         if (value == null) return 0;
         return value;
     }
 
-    private void addAllocatedCapacity(String id, double newCapacity) {
-        Double capacity = allocatedCapacity.get().get(id);
+    private void addAllocatedCapacity(String id, double newCapacity, Map<String, Double> allocatedCapacity) {
+        Double capacity = allocatedCapacity.get(id);
         if (capacity != null)
             newCapacity += capacity;
-        allocatedCapacity.get().put(id, newCapacity);
+        allocatedCapacity.put(id, newCapacity);
     }
 
-    private void requestCapacity(String id, double rate) {
-        double minimumRequested = Math.max(0, -getAllocatedCapacity(id)); // If we are below, make sure we reach 0
-        double preferredRequested = Math.max(capacityIncrement, -getAllocatedCapacity(id));
-        addAllocatedCapacity(id, availableCapacity.request(id, minimumRequested, preferredRequested, rate));
+    private void requestCapacity(String id, double rate, Map<String, Double> allocatedCapacity) {
+        double minimumRequested = Math.max(0, -getAllocatedCapacity(id, allocatedCapacity)); // If we are below, make sure we reach 0
+        double preferredRequested = Math.max(capacityIncrement, -getAllocatedCapacity(id, allocatedCapacity));
+        addAllocatedCapacity(id, availableCapacity.request(id, minimumRequested, preferredRequested, rate), allocatedCapacity);
     }
 
     /**
@@ -170,13 +170,16 @@ public class RateLimitingSearcher extends Searcher {
      * across all threads. Capacity is supplied at the rate per second given by the clients quota.
      * When all the capacity is spent, no further capacity will be handed out, leading to request rejection.
      * Capacity has a max value it will never exceed to avoid clients saving capacity for future overspending.
+     * <p>
+     * This is lock-free: Threads requesting capacity for different ids do not interact, and threads requesting
+     * capacity for the same id only contend on compare-and-set of the capacity of that id.
      */
     private static class AvailableCapacity {
 
         private final double maxAvailableCapacity;
         private final Clock clock;
 
-        private final Map<String, CapacityAllocation> available = new HashMap<>();
+        private final Map<String, CapacityAllocation> available = new ConcurrentHashMap<>();
 
         public AvailableCapacity(double maxAvailableCapacity, Clock clock) {
             this.maxAvailableCapacity = maxAvailableCapacity;
@@ -184,12 +187,10 @@ public class RateLimitingSearcher extends Searcher {
         }
 
         /** Returns an amount of capacity between 0 and the requested amount based on availability for this id */
-        public synchronized double request(String id, double minimumRequested, double preferredRequested, double rate) {
+        public double request(String id, double minimumRequested, double preferredRequested, double rate) {
             CapacityAllocation allocation = available.get(id);
-            if (allocation == null) {
-                allocation = new CapacityAllocation(rate, clock);
-                available.put(id, allocation);
-            }
+            if (allocation == null)
+                allocation = available.computeIfAbsent(id, __ -> new CapacityAllocation(rate, clock));
             return allocation.request(minimumRequested, preferredRequested, rate, maxAvailableCapacity);
         }
 
@@ -197,28 +198,41 @@ public class RateLimitingSearcher extends Searcher {
 
     private static class CapacityAllocation {
 
-        private double capacity;
+        /** The capacity, as the raw long bits of a double */
+        private final AtomicLong capacity;
         private final Clock clock;
-        private long lastAllocatedTime;
+        private final AtomicLong lastAllocatedTime;
 
         public CapacityAllocation(double initialCapacity, Clock clock) {
-            this.capacity = initialCapacity;
+            this.capacity = new AtomicLong(Double.doubleToRawLongBits(initialCapacity));
             this.clock = clock;
-            lastAllocatedTime = clock.millis();
+            this.lastAllocatedTime = new AtomicLong(clock.millis());
         }
 
         public double request(double minimumRequested, double preferredRequested, double rate, double maxAvailableCapacity) {
-            if ( preferredRequested > capacity) { // attempt to allocate more
+            if ( preferredRequested > Double.longBitsToDouble(capacity.get())) { // attempt to allocate more
                 // rate is per second so we get rate/1000 per millisecond
+                long lastTime = lastAllocatedTime.get();
                 long currentTime = clock.millis();
-                capacity += Math.min(maxAvailableCapacity, rate/1000d * (Math.max(0, currentTime - lastAllocatedTime)));
-                lastAllocatedTime = currentTime;
+                if (lastAllocatedTime.compareAndSet(lastTime, currentTime)) // the capacity for a period is added only once
+                    add(Math.min(maxAvailableCapacity, rate/1000d * (Math.max(0, currentTime - lastTime))));
+            }
+            while (true) {
+                long current = capacity.get();
+                double currentCapacity = Double.longBitsToDouble(current);
+                double grantedCapacity = Math.min(currentCapacity/10, preferredRequested); // /10 to avoid stealing all capacity when low
+                if (grantedCapacity < minimumRequested)
+                    grantedCapacity = Math.min(minimumRequested, currentCapacity);
+                if (capacity.compareAndSet(current, Double.doubleToRawLongBits(currentCapacity - grantedCapacity)))
+                    return grantedCapacity;
             }
-            double grantedCapacity = Math.min(capacity/10, preferredRequested); // /10 to avoid stealing all capacity when low
-            if (grantedCapacity < minimumRequested)
-                grantedCapacity = Math.min(minimumRequested, capacity);
-            capacity = capacity - grantedCapacity;
-            return grantedCapacity;
+        }
+
+        private void add(double addedCapacity) {
+            long current;
+            do {
+                current = capacity.get();
+            } while ( ! capacity.compareAndSet(current, Double.doubleToRawLongBits(Double.longBitsToDouble(current) + addedCapacity)));
         }
 
     }
@@ -2,6 +2,8 @@
 package com.yahoo.search.yql;
 
 import com.google.common.annotations.Beta;
+import com.google.inject.Inject;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
@@ -18,8 +20,13 @@ import com.yahoo.yolean.chain.After;
 import com.yahoo.yolean.chain.Before;
 import com.yahoo.yolean.chain.Provides;
 
+import java.util.Map;
+
 /**
  * Minimal combinator for YQL+ syntax and heuristically parsed user queries.
+ * <p>
+ * Metrics: This emits the count metrics yql_parse_cache_hit and yql_parse_cache_miss,
+ * and the gauge yql_parse_cache_entries.
  *
  * @author Steinar Knutsen
  */
@@ -36,6 +43,23 @@ public class MinimalQueryInserter extends Searcher {
     private static final CompoundName MAX_HITS = new CompoundName("maxHits");
     private static final CompoundName MAX_OFFSET = new CompoundName("maxOffset");
 
+    private static final String PARSE_CACHE_HIT_METRIC = "yql_parse_cache_hit";
+    private static final String PARSE_CACHE_MISS_METRIC = "yql_parse_cache_miss";
+    private static final String PARSE_CACHE_ENTRIES_METRIC = "yql_parse_cache_entries";
+
+    private final Metric metric;
+    private final Metric.Context metricContext;
+
+    public MinimalQueryInserter() {
+        this(new NullMetric());
+    }
+
+    @Inject
+    public MinimalQueryInserter(Metric metric) {
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+    }
+
     @Override
     public Result search(Query query, Execution execution) {
         if (query.properties().get(YQL) == null) {
@@ -53,6 +77,8 @@ public class MinimalQueryInserter extends Searcher {
             return new Result(query, ErrorMessage.createInvalidQueryParameter(
                               "Could not instantiate query from YQL", e));
         }
+        metric.add(parser.isProgramFromCache() ? PARSE_CACHE_HIT_METRIC : PARSE_CACHE_MISS_METRIC, 1, metricContext);
+        metric.set(PARSE_CACHE_ENTRIES_METRIC, YqlParser.programCache().size(), metricContext);
         if (parser.getOffset() != null) {
             int maxHits = query.properties().getInteger(MAX_HITS);
             int maxOffset = query.properties().getInteger(MAX_OFFSET);
@@ -94,4 +120,21 @@ public class MinimalQueryInserter extends Searcher {
         return execution.search(query);
     }
 
+    private static class NullMetric implements Metric {
+
+        @Override
+        public void set(String key, Number val, Context ctx) { }
+
+        @Override
+        public void add(String key, Number val, Context ctx) { }
+
+        @Override
+        public Context createContext(Map<String, ?> properties) { return NullContext.INSTANCE; }
+
+        private static class NullContext implements Context {
+            private static final NullContext INSTANCE = new NullContext();
+        }
+
+    }
+
 }
@@ -0,0 +1,444 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A cache of parsed YQL programs, keyed on the shape of the program: Its token sequence with the
+ * string and number literals left out. Most YQL traffic consists of a small number of such templates,
+ * which only differ in the literals used, so this saves most of the work of parsing with ANTLR.
+ * <p>
+ * On a miss the program is parsed as usual. Shapes seen only once are just remembered, as many programs are
+ * never repeated. When a shape is seen again, the program is parsed once more with each literal replaced by
+ * a unique sentinel value, which both tells which literals are used as plain values in the program and, if all
+ * are, is the template. The template is then bound to the literals of each request matching the shape by
+ * replacing the sentinels in a copy of the template program. Literals which are not used as plain values
+ * (such as source names) are kept as part of the key, and the template for each combination of those is made
+ * by another sentinel parse the next time it is missing, such that a miss never parses more than twice.
+ * Templates which do not reproduce the program parsed normally are never used.
+ * <p>
+ * This class is multithread safe, and the caches are segmented to avoid contention between threads.
+ *
+ * @author agent
+ */
+final class YqlParseCache {
+
+    private static final String PROGRAM_NAME = "query";
+
+    /** The maximum number of literals which is handled, to keep numeric sentinels within range */
+    private static final int MAX_LITERALS = 100_000;
+    private static final int SENTINEL_BASE = 1_800_000_000;
+    private static final Pattern STRING_SENTINEL = Pattern.compile("\u0001yql(\\d+)\u0001");
+
+    private final Cache<String, Shape> shapes;
+    private final Cache<String, Template> templates;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a parse cache
+     *
+     * @param maxEntries the max number of program templates to keep, the least recently used are
+     *                   (approximately) evicted first
+     */
+    YqlParseCache(int maxEntries) {
+        this.shapes = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        this.templates = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    /** Returns the parsed program of the given YQL, from the cache if it has a template for it */
+    Program parse(String yql) throws IOException {
+        List<Token> tokens;
+        try {
+            tokens = lex(yql);
+        }
+        catch (RuntimeException e) { // leave it to the parser to report the error
+            misses.incrementAndGet();
+            return new Program(parseUncached(yql), false);
+        }
+        List<Token> literals = literalsOf(tokens);
+        if (literals.size() > MAX_LITERALS) {
+            misses.incrementAndGet();
+            return new Program(parseUncached(yql), false);
+        }
+
+        String shapeKey = keyOf(tokens, literals, null);
+        Shape shape = shapes.getIfPresent(shapeKey);
+        String templateKey = null;
+        Template template = null;
+        if (shape != null && shape.cacheable) {
+            templateKey = keyOf(tokens, literals, shape.structural);
+            template = templates.getIfPresent(templateKey);
+            if (template != null && template.program != null) {
+                try {
+                    OperatorNode<StatementOperator> bound = template.bind(literals);
+                    hits.incrementAndGet();
+                    return new Program(bound, true);
+                }
+                catch (RuntimeException e) { // e.g duplicate map keys: leave it to the parser
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        OperatorNode<StatementOperator> program = parseUncached(yql);
+        if (shape == null) {
+            shapes.put(shapeKey, Shape.unprobed);
+        }
+        else if (shape == Shape.unprobed) {
+            Probe probe = probe(yql, literals, new BitSet(literals.size()));
+            shape = shapeOf(probe, literals);
+            shapes.put(shapeKey, shape);
+            if (shape.cacheable && shape.structural.isEmpty()) // this probe is then also the template
+                templates.put(keyOf(tokens, literals, shape.structural),
+                              templateOf(probe, shape.structural, literals, program));
+        }
+        else if (shape.cacheable && template == null) {
+            templates.put(templateKey,
+                          templateOf(probe(yql, literals, shape.structural), shape.structural, literals, program));
+        }
+        return new Program(program, false);
+    }
+
+    /** Returns the number of lookups which were resolved from a cached template */
+    long hits() { return hits.get(); }
+
+    /** Returns the number of lookups which required the program to be parsed */
+    long misses() { return misses.get(); }
+
+    /** Returns the number of program templates currently cached */
+    int size() { return (int) templates.size(); }
+
+    private static OperatorNode<StatementOperator> parseUncached(String yql) throws IOException {
+        return new ProgramParser().parse(PROGRAM_NAME, yql);
+    }
+
+    /**
+     * Parses the given program with the literals not marked as structural replaced by sentinels,
+     * or returns null if this fails
+     */
+    private static Probe probe(String yql, List<Token> literals, BitSet structural) {
+        try {
+            Map<Object, Integer> sentinels = new HashMap<>();
+            OperatorNode<StatementOperator> program = parseUncached(withSentinels(yql, literals, structural, sentinels));
+            int[] counts = new int[literals.size()];
+            BitSet embedded = new BitSet(literals.size());
+            count(program, sentinels, counts, embedded);
+            return new Probe(program, sentinels, counts, embedded);
+        }
+        catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Returns which literals are used as plain values in programs of this shape, from a probe of all literals */
+    private static Shape shapeOf(Probe probe, List<Token> literals) {
+        if (probe == null) return new Shape(new BitSet(literals.size()), false);
+
+        BitSet structural = (BitSet) probe.embedded.clone();
+        for (int i = 0; i < probe.counts.length; i++) {
+            if (probe.counts[i] != 1)
+                structural.set(i);
+        }
+        return new Shape(structural, true);
+    }
+
+    /** Creates a template for the given program from a probe of it, which is empty if it can not be templated */
+    private static Template templateOf(Probe probe, BitSet structural, List<Token> literals,
+                                       OperatorNode<StatementOperator> program) {
+        if (probe == null || ! probe.embedded.isEmpty()) return Template.empty;
+        for (int i = 0; i < probe.counts.length; i++) {
+            if ( ! structural.get(i) && probe.counts[i] != 1) return Template.empty;
+        }
+        try {
+            Template template = new Template(probe.program, probe.sentinels);
+            if ( ! template.bind(literals).equals(program)) return Template.empty;
+            return template;
+        }
+        catch (RuntimeException e) {
+            return Template.empty;
+        }
+    }
+
+    private static List<Token> lex(String yql) throws IOException {
+        yqlplusLexer lexer = new yqlplusLexer(new CaseInsensitiveInputStream(yql));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                throw new ProgramCompileException(new Location(PROGRAM_NAME, line, charPositionInLine), msg);
+            }
+        });
+        List<Token> tokens = new ArrayList<>();
+        for (Token token : lexer.getAllTokens()) {
+            if (token.getChannel() == Token.DEFAULT_CHANNEL)
+                tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /** Returns the tokens which are literal values, including those used as map keys */
+    private static List<Token> literalsOf(List<Token> tokens) {
+        List<Token> literals = new ArrayList<>();
+        for (Token token : tokens) {
+            if (isLiteral(token))
+                literals.add(token);
+        }
+        return literals;
+    }
+
+    private static boolean isLiteral(Token token) {
+        switch (token.getType()) {
+            case yqlplusParser.STRING:
+            case yqlplusParser.INT:
+            case yqlplusParser.LONG_INT:
+            case yqlplusParser.FLOAT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the key of the given token sequence, where all literals are left out except those
+     * marked as structural. If structural is null, all literals are left out.
+     */
+    private static String keyOf(List<Token> tokens, List<Token> literals, BitSet structural) {
+        StringBuilder key = new StringBuilder();
+        int literal = 0;
+        for (Token token : tokens) {
+            key.append(token.getType());
+            if (literal < literals.size() && literals.get(literal) == token) {
+                boolean keep = structural != null && structural.get(literal);
+                literal++;
+                if ( ! keep) {
+                    key.append('?');
+                    continue;
+                }
+            }
+            String text = token.getText();
+            key.append(':').append(text.length()).append(':').append(text);
+        }
+        return key.toString();
+    }
+
+    /** Returns the given YQL with all literals not marked as structural replaced by a unique sentinel */
+    private static String withSentinels(String yql, List<Token> literals, BitSet structural, Map<Object, Integer> sentinels) {
+        StringBuilder probe = new StringBuilder(yql.length() + literals.size() * 16);
+        int position = 0;
+        for (int i = 0; i < literals.size(); i++) {
+            if (structural.get(i)) continue;
+            Token token = literals.get(i);
+            probe.append(yql, position, token.getStartIndex());
+            position = token.getStopIndex() + 1;
+            switch (token.getType()) {
+                case yqlplusParser.STRING:
+                    probe.append("\"\u0001yql").append(i).append("\u0001\"");
+                    sentinels.put("\u0001yql" + i + "\u0001", i);
+                    break;
+                case yqlplusParser.INT:
+                    probe.append(SENTINEL_BASE + i);
+                    sentinels.put(SENTINEL_BASE + i, i);
+                    break;
+                case yqlplusParser.LONG_INT:
+                    probe.append(SENTINEL_BASE * 1000L + i).append('L');
+                    sentinels.put(SENTINEL_BASE * 1000L + i, i);
+                    break;
+                case yqlplusParser.FLOAT:
+                    probe.append(SENTINEL_BASE + i).append(".5");
+                    sentinels.put(SENTINEL_BASE + i + 0.5, i);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected literal " + token);
+            }
+        }
+        probe.append(yql, position, yql.length());
+        return probe.toString();
+    }
+
+    /**
+     * Counts the occurrences of each sentinel as a complete value in the given program,
+     * and marks the literals whose sentinel is found embedded in some other string value.
+     */
+    private static void count(Object value, Map<Object, Integer> sentinels, int[] counts, BitSet embedded) {
+        if (value instanceof OperatorNode) {
+            OperatorNode<?> node = (OperatorNode<?>) value;
+            for (Object argument : node.getArguments())
+                count(argument, sentinels, counts, embedded);
+            count(node.getAnnotations(), sentinels, counts, embedded);
+        }
+        else if (value instanceof List) {
+            for (Object element : (List<?>) value)
+                count(element, sentinels, counts, embedded);
+        }
+        else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                count(entry.getKey(), sentinels, counts, embedded);
+                count(entry.getValue(), sentinels, counts, embedded);
+            }
+        }
+        else if (value != null) {
+            Integer literal = sentinels.get(value);
+            if (literal != null) {
+                counts[literal]++;
+            }
+            else if (value instanceof String) {
+                Matcher matcher = STRING_SENTINEL.matcher((String) value);
+                while (matcher.find())
+                    embedded.set(Integer.parseInt(matcher.group(1)));
+            }
+        }
+    }
+
+    /** Returns the value of a literal token, converted the same way as by {@link ProgramParser} */
+    private static Object valueOf(Token literal) {
+        String text = literal.getText();
+        switch (literal.getType()) {
+            case yqlplusParser.STRING: return StringUnescaper.unquote(text);
+            case yqlplusParser.INT: return Integer.valueOf(text);
+            case yqlplusParser.LONG_INT: return Long.parseLong(text.substring(0, text.length() - 1));
+            case yqlplusParser.FLOAT: return Double.valueOf(text);
+            default: throw new IllegalStateException("Unexpected literal " + literal);
+        }
+    }
+
+    /** The result of parsing a program */
+    static final class Program {
+
+        private final OperatorNode<StatementOperator> root;
+        private final boolean cached;
+
+        private Program(OperatorNode<StatementOperator> root, boolean cached) {
+            this.root = root;
+            this.cached = cached;
+        }
+
+        /** Returns the root of the program, which is owned by the caller */
+        OperatorNode<StatementOperator> root() { return root; }
+
+        /** Returns whether this was created from a cached template */
+        boolean isCached() { return cached; }
+
+    }
+
+    /** Which literals of a program shape are kept in the template key, and whether it can be cached at all */
+    private static final class Shape {
+
+        /** The shape of programs which have been seen once, and are therefore not probed yet */
+        static final Shape unprobed = new Shape(null, false);
+
+        final BitSet structural;
+        final boolean cacheable;
+
+        Shape(BitSet structural, boolean cacheable) {
+            this.structural = structural;
+            this.cacheable = cacheable;
+        }
+
+    }
+
+    /** A program parsed with literals replaced by sentinels, and where those were found in it */
+    private static final class Probe {
+
+        final OperatorNode<StatementOperator> program;
+        final Map<Object, Integer> sentinels;
+
+        /** The number of times the sentinel of each literal is found as a complete value */
+        final int[] counts;
+
+        /** The literals whose sentinel is found embedded in some other string value */
+        final BitSet embedded;
+
+        Probe(OperatorNode<StatementOperator> program, Map<Object, Integer> sentinels, int[] counts, BitSet embedded) {
+            this.program = program;
+            this.sentinels = sentinels;
+            this.counts = counts;
+            this.embedded = embedded;
+        }
+
+    }
+
+    /** A program where literal values are replaced by sentinels */
+    private static final class Template {
+
+        /** The template of programs which cannot be templated */
+        static final Template empty = new Template(null, Collections.emptyMap());
+
+        private final OperatorNode<StatementOperator> program;
+        private final Map<Object, Integer> slots;
+
+        Template(OperatorNode<StatementOperator> program, Map<Object, Integer> slots) {
+            this.program = program;
+            this.slots = slots;
+        }
+
+        /** Returns a copy of this program with sentinels replaced by the values of the given literals */
+        @SuppressWarnings("unchecked")
+        OperatorNode<StatementOperator> bind(List<Token> literals) {
+            return (OperatorNode<StatementOperator>) bind(program, literals);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object bind(Object value, List<Token> literals) {
+            if (value instanceof OperatorNode) {
+                OperatorNode<?> node = (OperatorNode<?>) value;
+                Object[] arguments = node.getArguments();
+                for (int i = 0; i < arguments.length; i++)
+                    arguments[i] = bindArgument(arguments[i], literals);
+                return OperatorNode.create(node.getLocation(),
+                                           (Map<String, Object>) bind(node.getAnnotations(), literals),
+                                           (Operator)node.getOperator(),
+                                           arguments);
+            }
+            else if (value instanceof List) {
+                ImmutableList.Builder<Object> list = ImmutableList.builder();
+                for (Object element : (List<?>) value)
+                    list.add(bind(element, literals));
+                return list.build();
+            }
+            else if (value instanceof Map) {
+                ImmutableMap.Builder<Object, Object> map = ImmutableMap.builder();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                    map.put(bind(entry.getKey(), literals), bind(entry.getValue(), literals));
+                return map.build();
+            }
+            else if (value != null) {
+                Integer literal = slots.get(value);
+                if (literal != null)
+                    return valueOf(literals.get(literal));
+            }
+            return value;
+        }
+
+        /** Lists of nodes are mutable arguments in programs from the parser, so keep it that way */
+        private Object bindArgument(Object argument, List<Token> literals) {
+            if ( ! (argument instanceof List)) return bind(argument, literals);
+
+            List<Object> list = new ArrayList<>(((List<?>) argument).size());
+            for (Object element : (List<?>) argument)
+                list.add(bind(element, literals));
+            return list;
+        }
+
+    }
+
+}
@@ -177,6 +177,9 @@ public class YqlParser implements Parser {
     static final String WEIGHTED_SET = "weightedSet";
     static final String WEIGHT = "weight";
 
+    /** Parsed programs shared by all parser instances */
+    private static final YqlParseCache programCache = new YqlParseCache(1000);
+
     private final IndexFacts indexFacts;
     private final List<ConnectedItem> connectedItems = new ArrayList<>();
     private final List<VespaGroupingStep> groupingSteps = new ArrayList<>();
@@ -196,6 +199,7 @@ public class YqlParser implements Parser {
     private Set<String> docTypes;
     private Sorting sorting;
     private boolean queryParser = true;
+    private boolean programFromCache = false;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
     private final ParserEnvironment environment;
 
@@ -248,6 +252,7 @@ public class YqlParser implements Parser {
         currentlyParsing = query;
         docTypes = null;
         sorting = null;
+        programFromCache = false;
         // queryParser set prior to calling this
         return buildTree(parseYqlProgram());
     }
@@ -724,7 +729,9 @@ public class YqlParser implements Parser {
     private OperatorNode<?> parseYqlProgram() {
         OperatorNode<?> ast;
         try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
+            YqlParseCache.Program program = programCache.parse(currentlyParsing.getQuery());
+            programFromCache = program.isCached();
+            ast = program.root();
         } catch (Exception e) {
             throw new IllegalArgumentException(e);
         }
@@ -1488,6 +1495,12 @@ public class YqlParser implements Parser {
 
     Set<String> getYqlSources() { return yqlSources; }
 
+    /** Returns whether the YQL+ program last parsed was bound from a cached template rather than parsed */
+    boolean isProgramFromCache() { return programFromCache; }
+
+    /** Returns the cache of parsed programs shared by all parser instances */
+    static YqlParseCache programCache() { return programCache; }
+
     private static void assertHasOperator(OperatorNode<?> ast, Class<? extends Operator> expectedOperatorClass) {
         Preconditions.checkArgument(expectedOperatorClass.isInstance(ast.getOperator()),
                                     "Expected operator class %s, got %s.",
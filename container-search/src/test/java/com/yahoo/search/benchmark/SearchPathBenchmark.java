@@ -0,0 +1,320 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.fs4.BufferTooSmallException;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.jdisc.http.HttpRequest.Method;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.dispatch.InterleavedSearchInvoker;
+import com.yahoo.search.dispatch.MockSearchCluster;
+import com.yahoo.search.dispatch.SearchInvoker;
+import com.yahoo.search.dispatch.rpc.ProtobufSerialization;
+import com.yahoo.search.query.parser.Parsable;
+import com.yahoo.search.query.parser.ParserEnvironment;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+import com.yahoo.search.rendering.JsonRenderer;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.yql.MinimalQueryInserter;
+import com.yahoo.search.yql.YqlParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks the steps of the container search request path, each separately and end-to-end,
+ * using the recorded queries in queries.txt such that runs are reproducible offline.
+ * <p>
+ * Run from the container-search module directory with the test classpath:
+ * <code>SearchPathBenchmark [step ...] [-rounds N] [-iterations N]</code>, where the steps are
+ * yql, profile, query, encode, merge, render and all (end-to-end). All steps are run if none are given.
+ *
+ * @author agent
+ */
+public class SearchPathBenchmark {
+
+    static final String queryFile = "src/test/java/com/yahoo/search/benchmark/queries.txt";
+
+    private static final int nodes = 8;
+    private static final int hitsPerNode = 100;
+    private static final MockSearchCluster searchCluster = new MockSearchCluster("benchmark", 1, nodes);
+    private static final JsonRenderer rendererPrototype = new JsonRenderer();
+
+    private final List<String> requests;
+    private final Map<String, IntFunction<Object>> steps = new LinkedHashMap<>();
+
+    private final CompiledQueryProfile profile;
+    private final List<Query> parsedQueries = new ArrayList<>();
+    private final List<List<Result>> nodeResults = new ArrayList<>();
+    private final List<Result> mergedResults = new ArrayList<>();
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(1 << 20);
+
+    public SearchPathBenchmark(List<String> requests) {
+        this.requests = requests;
+        this.profile = createProfile().compile(null);
+
+        Random random = new Random(1);
+        for (String request : requests) {
+            Query query = createQuery(request);
+            insertYql(query);
+            parsedQueries.add(query);
+            List<Result> results = new ArrayList<>();
+            for (int node = 0; node < nodes; node++)
+                results.add(createNodeResult(query, node, random));
+            nodeResults.add(results);
+        }
+        for (int i = 0; i < requests.size(); i++)
+            mergedResults.add(merge(parsedQueries.get(i), nodeResults.get(i)));
+
+        steps.put("yql", this::parseYql);
+        steps.put("profile", this::compileAndLookupProfile);
+        steps.put("query", i -> createQuery(request(i)));
+        steps.put("encode", this::encode);
+        steps.put("merge", i -> merge(parsedQueries.get(i % requests.size()), nodeResults.get(i % requests.size())));
+        steps.put("render", i -> render(mergedResults.get(i % requests.size()).clone())); // rendering closes the result
+        steps.put("all", this::searchEndToEnd);
+    }
+
+    /** Returns the names of all the steps of this, in order */
+    public List<String> steps() { return new ArrayList<>(steps.keySet()); }
+
+    /** Runs a step once with the given request number, and returns its output */
+    public Object run(String step, int request) {
+        IntFunction<Object> function = steps.get(step);
+        if (function == null)
+            throw new IllegalArgumentException("Unknown step '" + step + "', expected one of " + steps());
+        return function.apply(request);
+    }
+
+    /**
+     * Measures a step by running it over all the recorded requests in a number of rounds,
+     * after running the same number of warm-up rounds.
+     *
+     * @return the median time per request in nanoseconds
+     */
+    public long measure(String step, int rounds, int iterations) {
+        long[] nanosPerRequest = new long[rounds];
+        int sink = 0;
+        for (int round = -rounds; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                sink += System.identityHashCode(run(step, i));
+            if (round >= 0)
+                nanosPerRequest[round] = (System.nanoTime() - start) / iterations;
+        }
+        if (sink == 42) out("Ignore this: " + sink); // Make sure we are not fooled by optimization by creating an observable result
+        Arrays.sort(nanosPerRequest);
+        return nanosPerRequest[rounds / 2];
+    }
+
+    private String request(int i) {
+        return requests.get(i % requests.size());
+    }
+
+    private Object parseYql(int i) {
+        Query query = parsedQueries.get(i % parsedQueries.size());
+        YqlParser parser = new YqlParser(new ParserEnvironment());
+        parser.setQueryParser(false);
+        parser.setUserQuery(query);
+        return parser.parse(Parsable.fromQueryModel(query.getModel())
+                                    .setQuery(query.properties().getString(MinimalQueryInserter.YQL)));
+    }
+
+    private Object compileAndLookupProfile(int i) {
+        CompiledQueryProfile compiled = i % 100 == 0 ? createProfile().compile(null) : profile;
+        Map<String, String> context = Collections.singletonMap("x", i % 2 == 0 ? "mobile" : "desktop");
+        Object value = null;
+        for (int property = 0; property < 10; property++)
+            value = compiled.get("a" + property + ".b.property", context);
+        return value;
+    }
+
+    private Object encode(int i) {
+        Query query = parsedQueries.get(i % parsedQueries.size());
+        encodeBuffer.clear();
+        try {
+            QueryPacket.create("container.0", query).encode(encodeBuffer, 1);
+        }
+        catch (BufferTooSmallException e) {
+            throw new IllegalStateException(e);
+        }
+        return ProtobufSerialization.serializeSearchRequest(query, "container.0");
+    }
+
+    private Object searchEndToEnd(int i) {
+        Query query = createQuery(request(i));
+        Chain<Searcher> chain = new Chain<>(new MinimalQueryInserter(), new BackendSearcher(nodeResults.get(i % requests.size())));
+        Result result = new Execution(chain, Execution.Context.createContextStub()).search(query);
+        return render(result);
+    }
+
+    private Query createQuery(String request) {
+        return new Query(HttpRequest.createTestRequest(request, Method.GET), profile);
+    }
+
+    private static void insertYql(Query query) {
+        Chain<Searcher> chain = new Chain<>(new MinimalQueryInserter());
+        Result result = new Execution(chain, Execution.Context.createContextStub()).search(query);
+        if (result.hits().getError() != null)
+            throw new IllegalArgumentException("Could not parse " + query + ": " + result.hits().getError());
+    }
+
+    private static Result merge(Query query, List<Result> results) {
+        List<SearchInvoker> invokers = results.stream().map(NodeInvoker::new).collect(Collectors.toList());
+        try (InterleavedSearchInvoker invoker = new InterleavedSearchInvoker(invokers, searchCluster, new HashSet<>())) {
+            return invoker.search(query.clone(), null);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String render(Result result) {
+        try {
+            JsonRenderer renderer = (JsonRenderer)rendererPrototype.clone();
+            renderer.init();
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            renderer.render(stream, result, new Execution(Execution.Context.createContextStub()), null).get();
+            return stream.toString(StandardCharsets.UTF_8);
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static QueryProfile createProfile() {
+        QueryProfile profile = new QueryProfile("benchmark");
+        profile.setDimensions(new String[] { "x" });
+        for (int property = 0; property < 10; property++) {
+            String name = "a" + property + ".b.property";
+            profile.set(name, "default" + property, (QueryProfileRegistry)null);
+            profile.set(name, "mobile" + property, new String[] { "mobile" }, null);
+        }
+        profile.set("hits", "10", (QueryProfileRegistry)null);
+        profile.freeze();
+        return profile;
+    }
+
+    private static Result createNodeResult(Query query, int node, Random random) {
+        Result result = new Result(query);
+        double relevance = 1.0;
+        for (int i = 0; i < hitsPerNode; i++) {
+            relevance -= random.nextDouble() / hitsPerNode;
+            FastHit hit = new FastHit("id:benchmark:music::" + node + "-" + i, relevance);
+            hit.setField("title", "Title of document " + i + " on node " + node);
+            hit.setField("artist", "Artist " + random.nextInt(1000));
+            hit.setField("year", 1950 + random.nextInt(70));
+            hit.setFilled("default");
+            result.hits().add(hit);
+        }
+        result.setTotalHitCount(10000);
+        result.setCoverage(new Coverage(10000, 10000, 1));
+        return result;
+    }
+
+    /** Returns copies of a recorded result of a content node */
+    private static class NodeInvoker extends SearchInvoker {
+
+        private final Result recorded;
+        private Query query;
+
+        NodeInvoker(Result recorded) {
+            super(Optional.empty());
+            this.recorded = recorded;
+        }
+
+        @Override
+        protected void sendSearchRequest(Query query) {
+            this.query = query;
+            responseAvailable();
+        }
+
+        @Override
+        protected Result getSearchResult(Execution execution) {
+            Result result = new Result(query);
+            for (int i = 0; i < Math.min(query.getHits(), recorded.hits().size()); i++)
+                result.hits().add(recorded.hits().get(i).clone());
+            result.setTotalHitCount(recorded.getTotalHitCount());
+            result.setCoverage(recorded.getCoverage(false));
+            return result;
+        }
+
+        @Override
+        protected void release() { }
+
+    }
+
+    /** Encodes the query as when sending it to the content nodes, and merges their recorded results */
+    private static class BackendSearcher extends Searcher {
+
+        private final List<Result> nodeResults;
+
+        BackendSearcher(List<Result> nodeResults) {
+            this.nodeResults = nodeResults;
+        }
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            ProtobufSerialization.serializeSearchRequest(query, "container.0");
+            return merge(query, nodeResults);
+        }
+
+    }
+
+    static List<String> readRequests(String file) throws IOException {
+        return Files.readAllLines(Paths.get(file)).stream()
+                    .map(String::trim)
+                    .filter(line -> ! line.isEmpty() && ! line.startsWith("#"))
+                    .collect(Collectors.toList());
+    }
+
+    private static void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int rounds = 10;
+        int iterations = 10000;
+        List<String> steps = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-rounds"))
+                rounds = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-iterations"))
+                iterations = Integer.parseInt(args[++i]);
+            else
+                steps.add(args[i]);
+        }
+
+        SearchPathBenchmark benchmark = new SearchPathBenchmark(readRequests(queryFile));
+        if (steps.isEmpty())
+            steps = benchmark.steps();
+        out("Running " + rounds + " rounds of " + iterations + " iterations over " +
+            benchmark.requests.size() + " recorded requests from " + queryFile);
+        for (String step : steps)
+            out(String.format("%-8s %10d ns/request", step, benchmark.measure(step, rounds, iterations)));
+        System.exit(0); // the search cluster monitor thread is not a daemon
+    }
+
+}
@@ -0,0 +1,29 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies that all the steps of the search path benchmark run on all the recorded queries.
+ *
+ * @author agent
+ */
+public class SearchPathBenchmarkTest {
+
+    @Test
+    public void requireThatAllStepsRunOnTheRecordedQueries() throws IOException {
+        SearchPathBenchmark benchmark = new SearchPathBenchmark(SearchPathBenchmark.readRequests(SearchPathBenchmark.queryFile));
+        for (String step : benchmark.steps()) {
+            for (int i = 0; i < 12; i++)
+                assertNotNull(benchmark.run(step, i));
+        }
+        String rendered = (String)benchmark.run("all", 0);
+        assertTrue(rendered, rendered.contains("\"id\":\"id:benchmark:music::"));
+    }
+
+}
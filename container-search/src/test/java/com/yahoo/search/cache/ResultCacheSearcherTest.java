@@ -0,0 +1,175 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author agent
+ */
+public class ResultCacheSearcherTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final CountingBackend backend = new CountingBackend();
+    private final ResultCacheSearcher cacheSearcher = new ResultCacheSearcher(
+            new ResultCacheConfig(new ResultCacheConfig.Builder().maxSizeBytes(1 << 20).timeToLive(10)),
+            mock(Metric.class),
+            clock);
+    private final Chain<Searcher> chain = new Chain<>(cacheSearcher, backend);
+
+    @Test
+    public void requireThatIdenticalQueriesAreServedFromCache() {
+        Result first = search("?query=foo&hits=3");
+        assertFalse(first.isCached());
+        Result second = search("?query=foo&hits=3&timeout=5s");
+        assertTrue(second.isCached());
+        assertEquals(1, backend.invocations);
+        assertEquals(3, second.getConcreteHitCount());
+        for (Hit hit : second.hits())
+            assertEquals(second.getQuery(), hit.getQuery());
+    }
+
+    @Test
+    public void requireThatDifferentQueriesAreNotShared() {
+        search("?query=foo&hits=3");
+        search("?query=bar&hits=3");
+        search("?query=foo&hits=4");
+        search("?query=foo&hits=3&ranking=other");
+        search("?query=foo&hits=3&presentation.summary=other");
+        assertEquals(5, backend.invocations);
+    }
+
+    @Test
+    public void requireThatEntriesExpire() {
+        search("?query=foo");
+        clock.advance(Duration.ofSeconds(9));
+        search("?query=foo");
+        assertEquals(1, backend.invocations);
+        clock.advance(Duration.ofSeconds(2));
+        search("?query=foo");
+        assertEquals(2, backend.invocations);
+    }
+
+    @Test
+    public void requireThatNoCacheAndErrorsBypassCache() {
+        search("?query=foo&noCache=true");
+        search("?query=foo&noCache=true");
+        assertEquals(2, backend.invocations);
+
+        search("?query=error");
+        search("?query=error");
+        assertEquals(4, backend.invocations);
+    }
+
+    @Test
+    public void requireThatCacheIsBoundedBySize() {
+        ResultCache cache = new ResultCache(4000, Duration.ofSeconds(10), clock);
+        for (int i = 0; i < 100; i++) {
+            Query query = new Query("?query=foo" + i);
+            Result result = backend.search(query, null);
+            cache.put(QueryCacheKey.of(query), result);
+            assertTrue(cache.sizeBytes() <= cache.maxSizeBytes());
+        }
+        assertTrue(cache.entryCount() > 0);
+        assertTrue(cache.entryCount() < 100);
+        Query last = new Query("?query=foo99");
+        assertTrue(cache.get(QueryCacheKey.of(last), last).isPresent());
+        Query first = new Query("?query=foo0");
+        assertFalse(cache.get(QueryCacheKey.of(first), first).isPresent());
+    }
+
+    @Test
+    public void requireThatFillingServedFastHitsDoesNotChangeTheCachedEntry() {
+        DocsumDefinition docsum = new DocsumDefinition("default", List.of(DocsumField.create("title", "string"),
+                                                                          DocsumField.create("year", "int64")));
+        ResultCache cache = new ResultCache(1 << 20, Duration.ofSeconds(10), clock);
+        Query query = new Query("?query=foo");
+        Result result = new Result(query);
+        FastHit hit = new FastHit("hit:0", 1.0);
+        hit.addSummary(docsum, summary("cached", 1999));
+        hit.removeField("year");
+        result.hits().add(hit);
+        cache.put(QueryCacheKey.of(query), result);
+
+        hit.addSummary(docsum, summary("original", 2000));
+        for (int i = 0; i < 3; i++) {
+            FastHit served = cachedHit(cache, query);
+            served.addSummary(docsum, summary("filled", 2001));
+            assertEquals("filled", served.getField("title"));
+            assertEquals(2001L, served.getField("year"));
+
+            FastHit next = cachedHit(cache, query);
+            assertEquals("cached", next.getField("title"));
+            assertNull(next.getField("year"));
+        }
+    }
+
+    @Test
+    public void requireThatKeyIsIndependentOfTimeout() {
+        assertEquals(QueryCacheKey.of(new Query("?query=foo&timeout=100ms")),
+                     QueryCacheKey.of(new Query("?query=foo&timeout=5s")));
+        assertNotEquals(QueryCacheKey.of(new Query("?query=foo&offset=10")),
+                        QueryCacheKey.of(new Query("?query=foo")));
+    }
+
+    private static FastHit cachedHit(ResultCache cache, Query query) {
+        return (FastHit)cache.get(QueryCacheKey.of(query), query).get().hits().get(0);
+    }
+
+    private static SlimeAdapter summary(String title, long year) {
+        Slime slime = new Slime();
+        Cursor docsum = slime.setObject();
+        docsum.setString("title", title);
+        docsum.setLong("year", year);
+        return new SlimeAdapter(slime.get());
+    }
+
+    private Result search(String request) {
+        Query query = new Query(request);
+        return new Execution(chain, Execution.Context.createContextStub()).search(query);
+    }
+
+    private static class CountingBackend extends Searcher {
+
+        int invocations = 0;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            invocations++;
+            if (query.getModel().getQueryString().equals("error"))
+                return new Result(query, ErrorMessage.createBackendCommunicationError("Failed"));
+            Result result = new Result(query);
+            for (int i = 0; i < query.getHits(); i++)
+                result.hits().add(new Hit("hit:" + i, 1.0 / (i + 1), query));
+            result.setTotalHitCount(query.getHits());
+            return result;
+        }
+
+    }
+
+}
@@ -1,20 +1,27 @@
 // Copyright 2019 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
 import com.yahoo.prelude.fastsearch.FS4InvokerFactory;
 import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
 import com.yahoo.prelude.fastsearch.test.MockMetric;
 import com.yahoo.processing.request.CompoundName;
 import com.yahoo.search.Query;
+import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.rpc.RpcInvokerFactory;
+import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.search.searchchain.Execution;
 import com.yahoo.vespa.config.search.DispatchConfig;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.Set;
 
 import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
 import static org.hamcrest.Matchers.is;
@@ -102,6 +109,107 @@ public class DispatcherTest {
         invokerFactory.verifyAllEventsProcessed();
     }
 
+    @Test
+    public void requireThatTheSearchTimeOfTheSlowerOfHedgedSearchesIsRecorded() throws IOException {
+        SearchCluster cl = new MockSearchCluster("1", 2, 1);
+        DispatchConfig config = new DispatchConfig(new DispatchConfig.Builder(createDispatchConfig()).hedgingPercentile(90)
+                                                                                                    .minHedgingDelay(0.001));
+        HedgingInvokerFactory invokerFactory = new HedgingInvokerFactory(cl, 100);
+        Dispatcher disp = new Dispatcher(cl, config, invokerFactory, new MockRpcInvokerFactory(), new MockMetric());
+        for (int i = 0; i < 100; i++) {
+            Query query = query();
+            SearchInvoker invoker = disp.getSearchInvoker(query, null).get();
+            invoker.search(query, null);
+            invoker.close();
+        }
+        assertThat(disp.searchLatencies().samples(), is(100L));
+
+        Query query = query();
+        SearchInvoker invoker = disp.getSearchInvoker(query, null).get();
+        assertThat(invoker instanceof HedgedSearchInvoker, is(true));
+        Group slowGroup = cl.group(invokerFactory.slowGroup).get();
+        long slowGroupSamples = disp.loadBalancer().searchTimeSamples(slowGroup);
+        invoker.search(query, null);
+        invoker.close();
+        assertThat(invokerFactory.created, is(102));
+        assertThat("Both the hedged searches are recorded", disp.searchLatencies().samples(), is(102L));
+        assertThat(disp.loadBalancer().searchTimeSamples(slowGroup), is(slowGroupSamples + 1));
+    }
+
+    @Test
+    public void requireThatFillsUseTheDocsumCacheUnlessTheQueryDisablesIt() {
+        SearchCluster cl = new MockSearchCluster("1", 1, 1);
+        DispatchConfig config = new DispatchConfig(new DispatchConfig.Builder(createDispatchConfig()).docsumCacheSize(1 << 20));
+        Dispatcher disp = new Dispatcher(cl, config, new MockFS4InvokerFactory(cl), new MockRpcInvokerFactory(), new MockMetric());
+        assertThat(disp.docsumCache().isPresent(), is(true));
+
+        FillInvoker invoker = disp.withDocsumCache(null, new Result(query()), new DocumentDatabaseSearcher());
+        assertThat(invoker instanceof CachingFillInvoker, is(true));
+        Query noCache = query();
+        noCache.setNoCache(true);
+        assertThat(disp.withDocsumCache(null, new Result(noCache), new DocumentDatabaseSearcher()), is((FillInvoker)null));
+    }
+
+    /** A searcher which only knows its document database, whose summaries do not need the query */
+    private static class DocumentDatabaseSearcher extends VespaBackEndSearcher {
+
+        private final DocumentDatabase documentDb = new DocumentDatabase("default", new DocsumDefinitionSet(List.of()), Set.of());
+
+        @Override
+        public DocumentDatabase getDocumentDatabase(Query query) { return documentDb; }
+
+        @Override
+        public boolean summaryNeedsQuery(Query query) { return false; }
+
+        @Override
+        protected Result doSearch2(Query query, Execution execution) { throw new UnsupportedOperationException(); }
+
+        @Override
+        protected void doPartialFill(Result result, String summaryClass) { throw new UnsupportedOperationException(); }
+
+    }
+
+    /** Creates invokers which respond at once, except the given one, which never responds */
+    private static class HedgingInvokerFactory extends FS4InvokerFactory {
+
+        private final int slowInvoker;
+        int created = 0;
+        int slowGroup = -1;
+
+        HedgingInvokerFactory(SearchCluster cl, int slowInvoker) {
+            super(null, cl);
+            this.slowInvoker = slowInvoker;
+        }
+
+        @Override
+        public Optional<SearchInvoker> createSearchInvoker(VespaBackEndSearcher searcher, Query query, OptionalInt groupId,
+                                                           List<Node> nodes, boolean acceptIncompleteCoverage) {
+            boolean respond = created++ != slowInvoker;
+            if ( ! respond) {
+                slowGroup = groupId.getAsInt();
+            }
+            return Optional.of(new SearchInvoker(Optional.empty()) {
+                private Query query;
+
+                @Override
+                protected void sendSearchRequest(Query query) {
+                    this.query = query;
+                    if (respond) {
+                        responseAvailable();
+                    }
+                }
+
+                @Override
+                protected Result getSearchResult(Execution execution) {
+                    return new Result(query);
+                }
+
+                @Override
+                protected void release() { }
+            });
+        }
+    }
+
     interface FactoryStep {
         public boolean returnInvoker(List<Node> nodes, boolean acceptIncompleteCoverage);
     }
@@ -0,0 +1,145 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.GlobalId;
+import com.yahoo.document.idstring.IdString;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.test.MockMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class DocsumCacheTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final DocsumCache cache = new DocsumCache(1 << 20, Duration.ofSeconds(10), clock);
+    private final DocumentDatabase db = db();
+    private final MockMetric metric = new MockMetric();
+
+    @Test
+    public void requireThatCachedSummariesAreNotFetchedAgain() {
+        List<String> fetched = fill(result(0, 1));
+        assertEquals(List.of("0", "1"), fetched);
+        assertEquals(2, cache.entryCount());
+
+        Result result = result(0, 1, 2);
+        fetched = fill(result);
+        assertEquals(List.of("2"), fetched);
+        for (int i = 0; i < 3; i++) {
+            Hit hit = result.hits().get(i);
+            assertTrue(hit.isFilled("summaryClass1"));
+            assertEquals("value" + i, hit.getField("field1").toString());
+            assertEquals((long)i, hit.getField("field2"));
+        }
+    }
+
+    @Test
+    public void requireThatEntriesExpire() {
+        fill(result(0));
+        clock.advance(Duration.ofSeconds(9));
+        assertEquals(List.of(), fill(result(0)));
+        clock.advance(Duration.ofSeconds(2));
+        assertEquals(List.of("0"), fill(result(0)));
+        assertEquals(List.of(), fill(result(0)));
+    }
+
+    @Test
+    public void requireThatCacheIsBoundedBySize() {
+        DocsumCache small = new DocsumCache(1000, Duration.ofSeconds(10), clock);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(small.put(gid(i), "summaryClass1", "default", summary(i)));
+            assertTrue(small.sizeBytes() <= small.maxSizeBytes());
+        }
+        assertTrue(small.entryCount() < 100);
+        assertTrue(small.get(gid(99), "summaryClass1", "default").isPresent());
+        assertFalse(small.get(gid(0), "summaryClass1", "default").isPresent());
+        assertFalse(small.get(gid(99), "otherClass", "default").isPresent());
+    }
+
+    private List<String> fill(Result result) {
+        FetchingInvoker backend = new FetchingInvoker();
+        try (FillInvoker invoker = new CachingFillInvoker(backend, cache, db, metric, null)) {
+            invoker.fill(result, "summaryClass1");
+        }
+        return backend.fetched;
+    }
+
+    private Result result(int ... ids) {
+        Result result = new Result(new Query());
+        for (int id : ids) {
+            FastHit hit = new FastHit("hit:" + id, 1.0);
+            hit.setGlobalId(gid(id));
+            hit.setFillable();
+            result.hits().add(hit);
+        }
+        return result;
+    }
+
+    private static GlobalId gid(int id) {
+        return new GlobalId(IdString.createIdString("id:ns:type::" + id));
+    }
+
+    private static SlimeAdapter summary(int id) {
+        Slime slime = new Slime();
+        Cursor docsum = slime.setObject();
+        docsum.setString("field1", "value" + id);
+        docsum.setLong("field2", id);
+        return new SlimeAdapter(slime.get());
+    }
+
+    private static DocumentDatabase db() {
+        List<DocsumField> fields = new ArrayList<>();
+        fields.add(DocsumField.create("field1", "string"));
+        fields.add(DocsumField.create("field2", "int64"));
+        DocsumDefinitionSet docsums = new DocsumDefinitionSet(Collections.singleton(new DocsumDefinition("summaryClass1", fields)));
+        return new DocumentDatabase("default", docsums, Collections.emptySet());
+    }
+
+    /** Fills all unfilled hits and records their ids */
+    private class FetchingInvoker extends FillInvoker {
+
+        final List<String> fetched = new ArrayList<>();
+
+        @Override
+        protected void sendFillRequest(Result result, String summaryClass) {
+            for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); ) {
+                FastHit hit = (FastHit)i.next();
+                if (hit.getFilled().contains(summaryClass)) continue;
+                int id = Integer.parseInt(hit.getId().toString().substring("hit:".length()));
+                hit.addSummary(db.getDocsumDefinitionSet().getDocsum(summaryClass), summary(id));
+                hit.setFilled(summaryClass);
+                fetched.add(String.valueOf(id));
+            }
+        }
+
+        @Override
+        protected void getFillResults(Result result, String summaryClass) { }
+
+        @Override
+        protected void release() { }
+
+    }
+
+}
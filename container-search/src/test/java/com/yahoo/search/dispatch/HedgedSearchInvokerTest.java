@@ -0,0 +1,164 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class HedgedSearchInvokerTest {
+
+    @Test
+    public void requireThatBackupIsNotUsedWhenPrimaryRespondsInTime() throws IOException {
+        TestInvoker primary = new TestInvoker("primary", true);
+        TestInvoker backup = new TestInvoker("backup", true);
+        AtomicInteger hedged = new AtomicInteger();
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, 5000, q -> Optional.of(backup), hedged::incrementAndGet);
+
+        Result result = invoker.search(new Query("?timeout=10s"), null);
+        invoker.close();
+
+        assertEquals("primary", result.hits().get(0).getId().toString());
+        assertFalse(backup.sent);
+        assertEquals(0, hedged.get());
+        assertTrue(primary.released);
+    }
+
+    @Test
+    public void requireThatBackupResultIsUsedWhenPrimaryIsSlow() throws IOException {
+        TestInvoker primary = new TestInvoker("primary", false);
+        TestInvoker backup = new TestInvoker("backup", true);
+        AtomicInteger hedged = new AtomicInteger();
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, 1, q -> Optional.of(backup), hedged::incrementAndGet);
+
+        Result result = invoker.search(new Query("?timeout=10s"), null);
+        invoker.close();
+
+        assertEquals("backup", result.hits().get(0).getId().toString());
+        assertTrue(backup.sent);
+        assertEquals(1, hedged.get());
+        assertTrue(primary.released);
+        assertTrue(backup.released);
+    }
+
+    @Test
+    public void requireThatBackupIsSentACopyOfTheQueryWithoutTheSearchPathOfThePrimary() throws IOException {
+        TestInvoker primary = new TestInvoker("primary", false);
+        TestInvoker backup = new TestInvoker("backup", true);
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, 1, q -> Optional.of(backup), () -> { });
+        Query query = new Query("?timeout=10s");
+        query.getModel().setSearchPath("/0");
+
+        Result result = invoker.search(query, null);
+        invoker.close();
+
+        assertSame(query, primary.query);
+        assertNotSame(query, backup.query);
+        assertNull(backup.query.getModel().getSearchPath());
+        assertEquals("/0", query.getModel().getSearchPath());
+        assertSame("The result of the backup belongs to the original query", query, result.getQuery());
+        assertSame(query, result.hits().get(0).getQuery());
+    }
+
+    @Test
+    public void requireThatBackupIsNotUsedWhenPrimaryReachesMinimumCoverageInTime() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", createDispatchConfig(50.0), 1, 2);
+        InterleavedSearchInvoker primary = new InterleavedSearchInvoker(List.of(new TestInvoker("node0", true),
+                                                                                new TestInvoker("node1", false)),
+                                                                        cluster, null);
+        TestInvoker backup = new TestInvoker("backup", true);
+        AtomicInteger hedged = new AtomicInteger();
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, 1, q -> Optional.of(backup), hedged::incrementAndGet);
+
+        Result result = invoker.search(new Query("?query=foo&timeout=10s"), null);
+        invoker.close();
+
+        assertEquals("node0", result.hits().get(0).getId().toString());
+        assertTrue(result.getCoverage(false).isDegradedByAdapativeTimeout());
+        assertFalse(backup.sent);
+        assertEquals(0, hedged.get());
+    }
+
+    @Test
+    public void requireThatPrimaryIsUsedWhenNoBackupIsAvailable() throws IOException {
+        TestInvoker primary = new TestInvoker("primary", false);
+        AtomicInteger hedged = new AtomicInteger();
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, 1, q -> Optional.empty(), hedged::incrementAndGet);
+
+        Result result = invoker.search(new Query("?timeout=50ms"), null);
+
+        assertEquals("primary", result.hits().get(0).getId().toString());
+        assertEquals(0, hedged.get());
+    }
+
+    @Test
+    public void requireThatLatencyPercentilesAreEstimated() {
+        LatencyHistogram histogram = new LatencyHistogram(1000, 10);
+        histogram.record(0.010);
+        assertFalse(histogram.percentile(50).isPresent());
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i / 1000.0);
+        assertEquals(0.050, histogram.percentile(50).getAsDouble(), 0.050 * 0.2);
+        assertEquals(0.090, histogram.percentile(90).getAsDouble(), 0.090 * 0.2);
+        assertEquals(0.100, histogram.percentile(100).getAsDouble(), 0.100 * 0.2);
+
+        for (int i = 0; i < 2000; i++)
+            histogram.record(1.0);
+        assertEquals("Old samples are forgotten", 1.0, histogram.percentile(50).getAsDouble(), 0.2);
+    }
+
+    private static class TestInvoker extends SearchInvoker {
+
+        private final String id;
+        private final boolean respond;
+        Query query;
+        boolean sent = false;
+        boolean released = false;
+
+        TestInvoker(String id, boolean respond) {
+            super(Optional.empty());
+            this.id = id;
+            this.respond = respond;
+        }
+
+        @Override
+        protected void sendSearchRequest(Query query) {
+            this.query = query;
+            sent = true;
+            if (respond)
+                responseAvailable();
+        }
+
+        @Override
+        protected Result getSearchResult(Execution execution) {
+            Result result = new Result(query);
+            result.hits().add(new Hit(id));
+            return result;
+        }
+
+        @Override
+        protected void release() {
+            released = true;
+        }
+
+    }
+
+}
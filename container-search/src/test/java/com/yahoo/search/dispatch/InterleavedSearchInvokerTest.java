@@ -1,11 +1,15 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.prelude.query.AndItem;
+import com.yahoo.prelude.query.WordItem;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.rpc.ProtobufSerialization;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
 import com.yahoo.test.ManualClock;
 import org.junit.Test;
 
@@ -204,6 +208,89 @@ public class InterleavedSearchInvokerTest {
         assertThat(cov.isDegradedByTimeout(), is(true));
     }
 
+    @Test
+    public void requireThatHitsAreMergedInOrderAndTrimmedToRequestedWindow() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 3);
+        invokers.add(new MockInvoker(0, createCoverage(1, 1, 1, 1, 1, 0), hits("a", 0.9, 0.6, 0.3, 0.1)));
+        invokers.add(new MockInvoker(1, createCoverage(1, 1, 1, 1, 1, 0), hits("b", 0.8, 0.7, 0.2)));
+        invokers.add(new MockInvoker(2, createCoverage(1, 1, 1, 1, 1, 0), hits("c", 0.95, 0.5, 0.4, 0.05)));
+        SearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+
+        expectedEvents.add(new Event(null, 100, 1));
+        expectedEvents.add(new Event(null, 100, 0));
+        expectedEvents.add(new Event(null, 100, 2));
+
+        query.setOffset(2);
+        query.setHits(4);
+        Result result = invoker.search(query, null);
+
+        assertEquals(4, result.getConcreteHitCount());
+        assertEquals(List.of("b0", "b1", "a1", "c1"), ids(result));
+    }
+
+    @Test
+    public void requireThatMergedHitsAreBoundedWithoutOffset() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 2);
+        invokers.add(new MockInvoker(0, createCoverage(1, 1, 1, 1, 1, 0), hits("a", 0.9, 0.2, 0.1)));
+        invokers.add(new MockInvoker(1, createCoverage(1, 1, 1, 1, 1, 0), hits("b", 0.8, 0.7, 0.3)));
+        SearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+
+        expectedEvents.add(new Event(null, 100, 0));
+        expectedEvents.add(new Event(null, 100, 1));
+
+        query.setHits(3);
+        Result result = invoker.search(query, null);
+
+        assertEquals(List.of("a0", "b0", "b1"), ids(result));
+    }
+
+    @Test
+    public void requireThatTheQueryTreeIsEncodedOnceForAllNodes() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 2);
+        List<Optional<EncodedQueryTree>> encodedQueryTrees = new ArrayList<>();
+        List<byte[]> requests = new ArrayList<>();
+        for (int key = 0; key < 2; key++) {
+            invokers.add(new MockInvoker(key, createCoverage(1, 1, 1, 1, 1, 0)) {
+                @Override
+                protected void sendSearchRequest(Query query) throws IOException {
+                    super.sendSearchRequest(query);
+                    encodedQueryTrees.add(EncodedQueryTree.cachedIn(query));
+                    requests.add(ProtobufSerialization.serializeSearchRequest(query, "container.0"));
+                }
+            });
+        }
+        SearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+
+        expectedEvents.add(new Event(null, 100, 0));
+        expectedEvents.add(new Event(null, 100, 1));
+
+        AndItem root = new AndItem();
+        root.addItem(new WordItem("a", "title"));
+        root.addItem(new WordItem("b", "title"));
+        query.getModel().getQueryTree().setRoot(root);
+        invoker.search(query, null);
+
+        assertTrue(encodedQueryTrees.get(0).isPresent());
+        assertTrue(encodedQueryTrees.get(0).get() == encodedQueryTrees.get(1).get());
+        assertEquals(3, encodedQueryTrees.get(0).get().itemCount());
+        assertFalse("The encoding is not kept after dispatch", EncodedQueryTree.cachedIn(query).isPresent());
+        assertEquals(EncodedQueryTree.of(query).stack(), encodedQueryTrees.get(0).get().stack());
+    }
+
+    private static List<Hit> hits(String prefix, double ... relevances) {
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < relevances.length; i++)
+            hits.add(new Hit(prefix + i, relevances[i]));
+        return hits;
+    }
+
+    private static List<String> ids(Result result) {
+        List<String> ids = new ArrayList<>();
+        for (Hit hit : result.hits())
+            ids.add(hit.getId().toString());
+        return ids;
+    }
+
     private InterleavedSearchInvoker createInterleavedInvoker(SearchCluster searchCluster, int numInvokers) {
         for (int i = 0; i < numInvokers; i++) {
             invokers.add(new MockInvoker(i));
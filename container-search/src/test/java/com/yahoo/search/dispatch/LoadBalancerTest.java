@@ -3,6 +3,7 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
+import com.yahoo.search.dispatch.LoadBalancer.LatencyAwareScheduler;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
@@ -156,6 +157,43 @@ public class LoadBalancerTest {
         assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(4));
     }
 
+    @Test
+    public void requireThatLatencyAwareSchedulerPrefersFasterOfTwoChoices() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            for (int j = 0; j < 50; j++) {
+                updateSearchTime(gs, 0.010 * (i + 1));
+            }
+            scoreboard.add(gs);
+        }
+        // Choices: (0, 1), (2, 0), (1, 2) - the second index is shifted past the first
+        Random seq = ints(0, 0, 2, 0, 1, 1);
+        LatencyAwareScheduler sched = new LatencyAwareScheduler(seq, scoreboard);
+
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0));
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0));
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1));
+    }
+
+    @Test
+    public void requireThatLatencyAwareSchedulerAccountsForQueriesInFlight() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            for (int j = 0; j < 50; j++) {
+                updateSearchTime(gs, 0.010);
+            }
+            scoreboard.add(gs);
+        }
+        scoreboard.get(0).allocate();
+        scoreboard.get(0).allocate();
+        LatencyAwareScheduler sched = new LatencyAwareScheduler(ints(0, 0), scoreboard);
+
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1));
+        assertThat(sched.takeNextGroup(Collections.singleton(1)).get().groupId(), equalTo(0));
+    }
+
     private static void updateSearchTime(GroupStatus gs, double time) {
         gs.allocate();
         gs.release(true, time);
@@ -186,4 +224,20 @@ public class LoadBalancerTest {
             }
         };
     }
+
+    private Random ints(int... values) {
+        return new Random() {
+            private int index = 0;
+
+            @Override
+            public int nextInt(int bound) {
+                int retv = values[index];
+                index++;
+                if (index >= values.length) {
+                    index = 0;
+                }
+                return retv;
+            }
+        };
+    }
 }
@@ -5,18 +5,26 @@ import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.Execution;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 class MockInvoker extends SearchInvoker {
     private final Coverage coverage;
+    private final List<Hit> hits;
     private Query query;
 
-    protected MockInvoker(int key, Coverage coverage) {
+    protected MockInvoker(int key, Coverage coverage, List<Hit> hits) {
         super(Optional.of(new Node(key, "?", 0, 0)));
         this.coverage = coverage;
+        this.hits = hits;
+    }
+
+    protected MockInvoker(int key, Coverage coverage) {
+        this(key, coverage, List.of());
     }
 
     protected MockInvoker(int key) {
@@ -34,6 +42,9 @@ class MockInvoker extends SearchInvoker {
         if (coverage != null) {
             ret.setCoverage(coverage);
         }
+        for (Hit hit : hits) {
+            ret.hits().add(hit.clone());
+        }
         return ret;
     }
 
@@ -145,6 +145,42 @@ public class FillTestCase {
         assertEquals("Could not fill hits from unknown node 1", result.hits().getError().getDetailedMessage());
     }
 
+    @Test
+    public void testCoalescedProtobufFilling() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(nodes, 0.05);
+
+        Result result1 = new Result(new Query());
+        result1.hits().add(createHit(0, 0));
+        result1.hits().add(createHit(0, 1));
+        Result result2 = new Result(new Query());
+        result2.hits().add(createHit(0, 2));
+        result2.hits().add(createHit(1, 3));
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host0", 1, "summaryClass1", map("field1", "s.0.1", "field2", 1));
+        client.setDocsumReponse("host0", 2, "summaryClass1", map("field1", "s.0.2", "field2", 2));
+        client.setDocsumReponse("host1", 3, "summaryClass1", map("field1", "s.1.3", "field2", 3));
+
+        RpcProtobufFillInvoker invoker1 = new RpcProtobufFillInvoker(rpcResourcePool, db(), "server", false);
+        RpcProtobufFillInvoker invoker2 = new RpcProtobufFillInvoker(rpcResourcePool, db(), "server", false);
+        invoker1.sendFillRequest(result1, "summaryClass1");
+        invoker2.sendFillRequest(result2, "summaryClass1");
+        invoker1.getFillResults(result1, "summaryClass1");
+        invoker2.getFillResults(result2, "summaryClass1");
+        rpcResourcePool.release();
+
+        assertEquals("One request per node", 2, client.docsumRequests());
+        assertNull(result1.hits().getError());
+        assertNull(result2.hits().getError());
+        assertEquals("s.0.0", result1.hits().get("hit:0").getField("field1").toString());
+        assertEquals("s.0.1", result1.hits().get("hit:1").getField("field1").toString());
+        assertEquals("s.0.2", result2.hits().get("hit:2").getField("field1").toString());
+        assertEquals("s.1.3", result2.hits().get("hit:3").getField("field1").toString());
+    }
+
     private DocumentDatabase db() {
         List<DocsumField> fields = new ArrayList<>();
         fields.add(DocsumField.create("field1", "string"));
@@ -1,6 +1,9 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch.rpc;
 
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
 import com.yahoo.document.GlobalId;
@@ -27,6 +30,7 @@ public class MockClient implements Client {
     private final Compressor compressor = new Compressor();
     private boolean malfunctioning = false;
     private Result searchResult;
+    private int docsumRequests = 0;
 
     /** Set to true to cause this to produce an error instead of a regular response */
     public void setMalfunctioning(boolean malfunctioning) { this.malfunctioning = malfunctioning; }
@@ -40,6 +44,9 @@ public class MockClient implements Client {
         docsums.put(new DocsumKey(nodeId, globalIdFrom(docId), docsumClass), docsumValues);
     }
 
+    /** Returns the number of protobuf docsum requests received by this */
+    public synchronized int docsumRequests() { return docsumRequests; }
+
     public GlobalId globalIdFrom(int hitId) {
         return new GlobalId(new IdIdString("", "test", "", String.valueOf(hitId)));
     }
@@ -67,6 +74,15 @@ public class MockClient implements Client {
                 GlobalId docId = new GlobalId(gid.asData());
                 docsumsToReturn.add(docsums.get(new DocsumKey(toString(), docId, docsumClass)));
             });
+            byte[] slimeBytes = encodeDocsums(docsumsToReturn);
+            CompressionType responseCompressionType = compression == CompressionType.INCOMPRESSIBLE ? CompressionType.NONE : compression;
+            Compressor.Compression compressionResult = compressor.compress(responseCompressionType, slimeBytes);
+            GetDocsumsResponse response = new GetDocsumsResponse(compressionResult.type().getCode(), slimeBytes.length,
+                    compressionResult.data(), hitsContext);
+            responseReceiver.receive(ResponseOrError.fromResponse(response));
+        }
+
+        private byte[] encodeDocsums(List<Map<String, Object>> docsumsToReturn) {
             Slime responseSlime = new Slime();
             Cursor root = responseSlime.setObject();
             Cursor docsums = root.setArray("docsums");
@@ -82,12 +98,7 @@ public class MockClient implements Client {
                         throw new RuntimeException();
                 }
             }
-            byte[] slimeBytes = BinaryFormat.encode(responseSlime);
-            CompressionType responseCompressionType = compression == CompressionType.INCOMPRESSIBLE ? CompressionType.NONE : compression;
-            Compressor.Compression compressionResult = compressor.compress(responseCompressionType, slimeBytes);
-            GetDocsumsResponse response = new GetDocsumsResponse(compressionResult.type().getCode(), slimeBytes.length,
-                    compressionResult.data(), hitsContext);
-            responseReceiver.receive(ResponseOrError.fromResponse(response));
+            return BinaryFormat.encode(responseSlime);
         }
 
         @Override
@@ -98,6 +109,10 @@ public class MockClient implements Client {
                 return;
             }
 
+            if (rpcMethod.equals("vespa.searchprotocol.getDocsums")) {
+                respondToDocsumRequest(compression, uncompressedLength, compressedPayload, responseReceiver);
+                return;
+            }
             if(searchResult == null) {
                 responseReceiver.receive(ResponseOrError.fromError("No result defined"));
                 return;
@@ -108,6 +123,28 @@ public class MockClient implements Client {
             responseReceiver.receive(ResponseOrError.fromResponse(response));
         }
 
+        private void respondToDocsumRequest(CompressionType compression, int uncompressedLength, byte[] compressedPayload,
+                                            ResponseReceiver responseReceiver) {
+            synchronized (MockClient.this) {
+                docsumRequests++;
+            }
+            SearchProtocol.DocsumRequest request;
+            try {
+                request = SearchProtocol.DocsumRequest.parseFrom(compressor.decompress(compressedPayload, compression, uncompressedLength));
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            }
+            List<Map<String, Object>> docsumsToReturn = new ArrayList<>();
+            for (ByteString gid : request.getGlobalIdsList()) {
+                GlobalId docId = new GlobalId(gid.toByteArray());
+                docsumsToReturn.add(docsums.get(new DocsumKey(toString(), docId, request.getSummaryClass())));
+            }
+            var payload = SearchProtocol.DocsumReply.newBuilder()
+                    .setSlimeSummaries(ByteString.copyFrom(encodeDocsums(docsumsToReturn))).build().toByteArray();
+            var response = new ProtobufResponse(CompressionType.NONE.getCode(), payload.length, payload);
+            responseReceiver.receive(ResponseOrError.fromResponse(response));
+        }
+
         @Override
         public void close() { }
 
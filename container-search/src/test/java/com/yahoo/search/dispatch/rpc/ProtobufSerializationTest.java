@@ -2,16 +2,22 @@
 
 package com.yahoo.search.dispatch.rpc;
 
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.ByteString;
 import com.yahoo.document.GlobalId;
 import com.yahoo.document.idstring.IdString;
 import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
 import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.searchchain.Execution;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Collections;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -29,4 +35,44 @@ public class ProtobufSerializationTest {
 
         assertThat(bytes.length, equalTo(41));
     }
+
+    @Test
+    public void testSearchReplyDeserialization() throws IOException {
+        GlobalId first = new GlobalId(IdString.createIdString("id:ns:type::first"));
+        GlobalId second = new GlobalId(IdString.createIdString("id:ns:type::second"));
+        byte[] payload = SearchProtocol.SearchReply.newBuilder()
+                .setTotalHitCount(2)
+                .setCoverageDocs(100).setActiveDocs(100)
+                .addHits(SearchProtocol.Hit.newBuilder().setGlobalId(ByteString.copyFrom(first.getRawId()))
+                                 .setRelevance(2.0).setSortData(ByteString.copyFrom(new byte[] { 1, 2 })))
+                .addHits(SearchProtocol.Hit.newBuilder().setGlobalId(ByteString.copyFrom(second.getRawId()))
+                                 .setRelevance(1.0).setSortData(ByteString.copyFrom(new byte[] { 1, (byte)0xff })))
+                .build().toByteArray();
+
+        Query query = new Query("search/?query=test&sorting=%2Bfoo");
+        Result result = ProtobufSerialization.deserializeToSearchResult(payload, query, searcher(), 0, 7);
+
+        assertThat(result.getTotalHitCount(), equalTo(2L));
+        assertThat(result.hits().size(), equalTo(2));
+        FastHit hit0 = (FastHit) result.hits().get(0);
+        FastHit hit1 = (FastHit) result.hits().get(1);
+        assertThat(hit0.getGlobalId(), equalTo(first));
+        assertThat(hit1.getGlobalId(), equalTo(second));
+        assertThat(hit0.getRelevance().getScore(), equalTo(2.0));
+        assertThat(hit1.getDistributionKey(), equalTo(7));
+        assertThat(FastHit.compareSortData(hit0, hit1, query.getRanking().getSorting()), lessThan(0));
+    }
+
+    private VespaBackEndSearcher searcher() {
+        return new VespaBackEndSearcher() {
+            @Override
+            protected Result doSearch2(Query query, Execution execution) {
+                return null;
+            }
+
+            @Override
+            protected void doPartialFill(Result result, String summaryClass) {
+            }
+        };
+    }
 }
@@ -168,6 +168,28 @@ public class FederationSearcherTest {
         assertEquals("Timed out", error.getMessage());
     }
 
+    @Test
+    public void require_that_one_of_several_targets_is_searched_in_the_calling_thread() {
+        ThreadRecordingSearcher searcher1 = new ThreadRecordingSearcher();
+        ThreadRecordingSearcher searcher2 = new ThreadRecordingSearcher();
+        ThreadRecordingSearcher searcher3 = new ThreadRecordingSearcher();
+
+        FederationTester tester = new FederationTester();
+        tester.addSearchChain("chain1", searcher1);
+        tester.addSearchChain("chain2", searcher2);
+        tester.addSearchChain("chain3", searcher3);
+
+        Result result = tester.search();
+        assertEquals(3, result.hits().size());
+        int searchedInCallingThread = 0;
+        for (ThreadRecordingSearcher searcher : Arrays.asList(searcher1, searcher2, searcher3)) {
+            assertNotNull(searcher.thread);
+            if (searcher.thread == Thread.currentThread())
+                searchedInCallingThread++;
+        }
+        assertEquals(1, searchedInCallingThread);
+    }
+
     @Test
     public void custom_federation_target() {
         ComponentId targetSelectorId = ComponentId.fromString("TargetSelector");
@@ -252,6 +274,18 @@ public class FederationSearcherTest {
         return ((HitGroup)firstHit(result)).get(0);
     }
 
+    private static class ThreadRecordingSearcher extends Searcher {
+
+        volatile Thread thread = null;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            thread = Thread.currentThread();
+            return execution.search(query);
+        }
+
+    }
+
     private static class AddHitSearcher extends Searcher {
 
         protected Hit hit = createHit();
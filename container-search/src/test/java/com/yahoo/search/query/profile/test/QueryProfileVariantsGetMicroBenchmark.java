@@ -0,0 +1,91 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.test;
+
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures lookups in a compiled query profile where each property has many variants.
+ *
+ * @author agent
+ */
+public class QueryProfileVariantsGetMicroBenchmark {
+
+    private static final int properties = 100;
+
+    private final String description;
+    private final int variantsPerDimension;
+    private final CompiledQueryProfile profile;
+    private final List<Map<String, String>> contexts = new ArrayList<>();
+    private final CompoundName[] names = new CompoundName[properties];
+
+    public QueryProfileVariantsGetMicroBenchmark(String description, int variantsPerDimension) {
+        this.description = description;
+        this.variantsPerDimension = variantsPerDimension;
+        this.profile = createProfile();
+        for (int x = 0; x <= variantsPerDimension; x++) {
+            Map<String, String> context = new HashMap<>();
+            context.put("x", "x" + x);
+            context.put("y", "y" + (x % 3));
+            context.put("query", "test");
+            contexts.add(context);
+        }
+        for (int i = 0; i < properties; i++)
+            names[i] = new CompoundName("a.property" + i);
+    }
+
+    public void benchmark(int count) {
+        getValues(count / 10); // warm-up
+        System.out.println(description);
+        long startTime = System.nanoTime();
+        getValues(count);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println("Done in " + totalTime / 1000000 + " ms (" + totalTime / count + " nanoseconds per get)");
+    }
+
+    private CompiledQueryProfile createProfile() {
+        QueryProfile main = new QueryProfile("main");
+        main.setDimensions(new String[] { "x", "y" });
+        for (int i = 0; i < properties; i++) {
+            main.set("a.property" + i, "default" + i, (QueryProfileRegistry)null);
+            for (int x = 0; x < variantsPerDimension; x++) {
+                main.set("a.property" + i, "x" + x, new String[] { "x" + x }, null);
+                main.set("a.property" + i, "x" + x + "y1", new String[] { "x" + x, "y1" }, null);
+            }
+            main.set("a.property" + i, "y2", new String[] { null, "y2" }, null);
+        }
+        main.freeze();
+        return main.compile(null);
+    }
+
+    private void getValues(int count) {
+        int sink = 0;
+        for (int i = 0; i < count; i++) {
+            Object value = profile.get(names[i % properties], contexts.get(i % contexts.size()), null);
+            if (value == null)
+                throw new RuntimeException("Expected value");
+            sink += value.hashCode();
+        }
+        if (sink == 42) System.out.println("Ignore this: " + sink); // Make sure we are not fooled by optimization by creating an observable result
+    }
+
+    public static void main(String[] args) {
+        int count = 10000000;
+        new QueryProfileVariantsGetMicroBenchmark("Getting values with    1 variant per dimension  ", 1).benchmark(count);
+        System.out.println("");
+        new QueryProfileVariantsGetMicroBenchmark("Getting values with   10 variants per dimension ", 10).benchmark(count);
+        System.out.println("");
+        new QueryProfileVariantsGetMicroBenchmark("Getting values with   30 variants per dimension ", 30).benchmark(count);
+        System.out.println("");
+        new QueryProfileVariantsGetMicroBenchmark("Getting values with  100 variants per dimension ", 100).benchmark(count);
+        System.out.println("");
+    }
+
+}
@@ -18,6 +18,7 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author bratseth
@@ -67,6 +68,35 @@ public class QueryProfileVariantsTestCase {
         assertGet("a.2.*.*","a",new String[] {"x2","y?","z?"}, profile, cprofile);
     }
 
+    @Test
+    public void testManyVariants() {
+        QueryProfile profile = new QueryProfile("test");
+        profile.setDimensions(new String[] {"x", "y"});
+        profile.set("a", "default", null);
+        for (int i = 0; i < 100; i++) {
+            profile.set("a", "x" + i, new String[] {"x" + i}, null);
+            profile.set("a", "x" + i + ",y1", new String[] {"x" + i, "y1"}, null);
+        }
+        profile.set("a", "*,y2", new String[] {null, "y2"}, null);
+        profile.set("b", "x99,y1", new String[] {"x99", "y1"}, null);
+        profile.set("b", "*,y1", new String[] {null, "y1"}, null);
+
+        CompiledQueryProfile cprofile = profile.compile(null);
+        assertEquals("default", cprofile.get("a"));
+        assertEquals("default", cprofile.get("a", toMap("x=x100")));
+        assertEquals("x0", cprofile.get("a", toMap("x=x0")));
+        assertEquals("x70", cprofile.get("a", toMap("x=x70", "y=y3")));
+        assertEquals("x99,y1", cprofile.get("a", toMap("x=x99", "y=y1")));
+        assertEquals("x3,y1", cprofile.get("a", toMap("x=x3", "y=y1")));
+        assertEquals("x3", cprofile.get("a", toMap("x=x3", "y=y2")));
+        assertEquals("*,y2", cprofile.get("a", toMap("x=x100", "y=y2")));
+        assertEquals("*,y2", cprofile.get("a", toMap("y=y2")));
+        assertEquals("x99,y1", cprofile.get("b", toMap("x=x99", "y=y1")));
+        assertEquals("*,y1", cprofile.get("b", toMap("x=x98", "y=y1")));
+        assertNull(cprofile.get("b", toMap("x=x99")));
+        assertNull(cprofile.get("b"));
+    }
+
     @Test
     public void testVariantsOfInlineCompound() {
         QueryProfile profile=new QueryProfile("test");
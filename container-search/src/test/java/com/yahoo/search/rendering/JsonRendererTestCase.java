@@ -22,6 +22,8 @@ import com.yahoo.prelude.Index;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.prelude.IndexModel;
 import com.yahoo.prelude.SearchDefinition;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumField;
 import com.yahoo.prelude.fastsearch.FastHit;
 import com.yahoo.prelude.hitfield.JSONString;
 import com.yahoo.prelude.searcher.JuniperSearcher;
@@ -63,6 +65,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -1210,6 +1213,60 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testStructuredSummaryFieldsAreStreamed() throws IOException, InterruptedException, ExecutionException {
+        String expected = "{"
+                + "    \"root\": {"
+                + "        \"children\": ["
+                + "            {"
+                + "                \"fields\": {"
+                + "                    \"title\": \"sm\u00f8rbr\u00f8d\","
+                + "                    \"tags\": {\"foo\": 1, \"b\u00e6r\": 2},"
+                + "                    \"struct\": {\"numbers\": [1, 2.5, null], \"raw\": \"0x0AFF\", \"flag\": true, \"nothing\": null}"
+                + "                },"
+                + "                \"id\": \"StructuredSummary\","
+                + "                \"relevance\": 1.0,"
+                + "                \"types\": [\"summary\"]"
+                + "            }"
+                + "        ],"
+                + "        \"fields\": {"
+                + "            \"totalCount\": 1"
+                + "        },"
+                + "        \"id\": \"toplevel\","
+                + "        \"relevance\": 1.0"
+                + "    }"
+                + "}";
+        Slime slime = new Slime();
+        Cursor docsum = slime.setObject();
+        docsum.setString("title", "sm\u00f8rbr\u00f8d");
+        Cursor tags = docsum.setArray("tags");
+        Cursor tag = tags.addObject();
+        tag.setString("key", "foo");
+        tag.setLong("value", 1);
+        tag = tags.addObject();
+        tag.setString("key", "b\u00e6r");
+        tag.setLong("value", 2);
+        Cursor struct = docsum.setObject("struct");
+        Cursor numbers = struct.setArray("numbers");
+        numbers.addLong(1);
+        numbers.addDouble(2.5);
+        numbers.addDouble(Double.NaN);
+        struct.setData("raw", new byte[] { 0x0a, (byte)0xff });
+        struct.setBool("flag", true);
+        struct.setNix("nothing");
+        List<DocsumField> fields = new ArrayList<>();
+        fields.add(DocsumField.create("title", "string"));
+        fields.add(DocsumField.create("tags", "jsonstring"));
+        fields.add(DocsumField.create("struct", "jsonstring"));
+        FastHit hit = new FastHit("StructuredSummary", 1.0);
+        hit.addSummary(new DocsumDefinition("default", fields), new SlimeAdapter(slime.get()));
+
+        Result r = newEmptyResult();
+        r.hits().add(hit);
+        r.setTotalHitCount(1L);
+        assertEqualJson(expected, render(r));
+    }
+
     @Test
     public void testThatTheJsonValidatorCanCatchErrors() {
         String json = "{"
@@ -6,6 +6,7 @@ import com.yahoo.component.chain.Chain;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.AsyncExecution;
 import com.yahoo.search.searchchain.Execution;
@@ -20,6 +21,7 @@ import java.util.concurrent.TimeUnit;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -146,6 +148,36 @@ public class AsyncExecutionTestCase {
 
     }
 
+    @Test
+    public void testCompletableFuture() throws Exception {
+        Query query = new Query("?query=test");
+        FutureResult future = new AsyncExecution(new Execution(new ResultProducingSearcher(), Execution.Context.createContextStub())).search(query);
+        Result result = future.toCompletableFuture().get(60, TimeUnit.SECONDS);
+        assertEquals("hello", result.hits().get(0).getField("test"));
+        assertSame(future.get(), result);
+    }
+
+    @Test
+    public void testCompletableFutureOfFailingExecution() throws Exception {
+        Searcher failing = new Searcher() {
+            @Override
+            public Result search(Query query, Execution execution) {
+                throw new IllegalStateException("failed");
+            }
+        };
+        FutureResult future = new AsyncExecution(new Execution(failing, Execution.Context.createContextStub())).search(new Query());
+        Result result = future.toCompletableFuture().get(60, TimeUnit.SECONDS);
+        assertNotNull(result.hits().getError());
+    }
+
+    @Test
+    public void testCompletableFutureOfCancelledExecution() throws Exception {
+        FutureResult future = new FutureResult(() -> new Result(new Query()), new Execution(Execution.Context.createContextStub()), new Query());
+        future.cancel(false);
+        Result result = future.toCompletableFuture().get(60, TimeUnit.SECONDS);
+        assertEquals(ErrorMessage.timeoutCode, result.hits().getError().getCode());
+    }
+
     @Test
     public void testAsyncExecutionTimeout() {
         Chain<Searcher> chain = new Chain<>(new Searcher() {
@@ -0,0 +1,97 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchers.test;
+
+import com.yahoo.cloud.config.ClusterInfoConfig;
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.RateLimitingConfig;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchers.RateLimitingSearcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of the rate limiting searcher when many threads query using a few hot rate ids.
+ * The capacity increment is small such that threads frequently ask for more shared capacity.
+ *
+ * @author agent
+ */
+public class RateLimitingSearcherContentionMicroBenchmark {
+
+    private static final int ids = 4;
+
+    private final int threads;
+    private final Chain<Searcher> chain;
+
+    public RateLimitingSearcherContentionMicroBenchmark(int threads) {
+        this.threads = threads;
+        RateLimitingConfig.Builder rateLimitingConfig = new RateLimitingConfig.Builder();
+        rateLimitingConfig.maxAvailableCapacity(100000);
+        rateLimitingConfig.capacityIncrement(1);
+        rateLimitingConfig.recheckForCapacityProbability(1.0);
+        ClusterInfoConfig.Builder clusterInfoConfig = new ClusterInfoConfig.Builder();
+        clusterInfoConfig.clusterId("benchmark");
+        clusterInfoConfig.nodeCount(1);
+        this.chain = new Chain<>(new RateLimitingSearcher(new RateLimitingConfig(rateLimitingConfig),
+                                                          new ClusterInfoConfig(clusterInfoConfig),
+                                                          MetricReceiver.nullImplementation),
+                                 new ResultSearcher());
+    }
+
+    /** Returns the number of queries per second over all threads */
+    public long benchmark(long durationMillis) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean(false);
+        LongAdder queries = new LongAdder();
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Query query = new Query("?rate.id=id" + (i % ids) + "&rate.quota=1000000000");
+            Thread worker = new Thread(() -> {
+                Execution.Context context = Execution.Context.createContextStub();
+                started.countDown();
+                long count = 0;
+                while ( ! stop.get()) {
+                    new Execution(chain, context).search(query.clone()); // results accumulate in a reused query
+                    count++;
+                }
+                queries.add(count);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        started.await();
+        long start = System.nanoTime();
+        Thread.sleep(durationMillis);
+        stop.set(true);
+        for (Thread worker : workers)
+            worker.join();
+        return queries.sum() * 1000000000L / (System.nanoTime() - start);
+    }
+
+    private static class ResultSearcher extends Searcher {
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            return new Result(query);
+        }
+
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long durationMillis = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+        new RateLimitingSearcherContentionMicroBenchmark(Runtime.getRuntime().availableProcessors()).benchmark(durationMillis); // warm-up
+        System.out.println("Running on " + Runtime.getRuntime().availableProcessors() + " processors");
+        for (int threads : new int[] { 1, 2, 4, 8, 16, 32, 64 }) {
+            long qps = new RateLimitingSearcherContentionMicroBenchmark(threads).benchmark(durationMillis);
+            System.out.println(String.format("%3d threads: %10d queries/s", threads, qps));
+        }
+    }
+
+}
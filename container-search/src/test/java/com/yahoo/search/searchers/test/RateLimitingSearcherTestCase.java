@@ -18,7 +18,10 @@ import org.junit.Test;
 import com.yahoo.test.ManualClock;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -78,6 +81,38 @@ public class RateLimitingSearcherTestCase {
         assertEquals(requestsToTry-2 + requestsToTry-4,         map.get(metric.point("id", "id2")).getCount());
     }
 
+    @Test
+    public void testRateLimitingFromConcurrentThreads() throws InterruptedException {
+        RateLimitingConfig.Builder rateLimitingConfig = new RateLimitingConfig.Builder();
+        rateLimitingConfig.maxAvailableCapacity(40);
+        rateLimitingConfig.capacityIncrement(1);
+        rateLimitingConfig.recheckForCapacityProbability(1.0);
+
+        ClusterInfoConfig.Builder clusterInfoConfig = new ClusterInfoConfig.Builder();
+        clusterInfoConfig.clusterId("testCluster");
+        clusterInfoConfig.nodeCount(1);
+
+        Chain<Searcher> chain = new Chain<Searcher>("test", new RateLimitingSearcher(new RateLimitingConfig(rateLimitingConfig),
+                                                                                     new ClusterInfoConfig(clusterInfoConfig),
+                                                                                     new MetricReceiver.MockReceiver(),
+                                                                                     new ManualClock()),
+                                                    new CostSettingSearcher());
+        int threadCount = 8;
+        AtomicInteger allowed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> allowed.addAndGet(tryRequests(chain, "id1", 40)));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        // The clock does not move so only the initial capacity of 40 is available,
+        // but each thread may overspend by one request as cost is subtracted after execution
+        assertTrue("Allowed " + allowed.get(), allowed.get() >= 40 - threadCount);
+        assertTrue("Allowed " + allowed.get(), allowed.get() <= 40 + threadCount);
+    }
+
     private int requestsToTry = 50;
 
     /**
@@ -86,9 +121,13 @@ public class RateLimitingSearcherTestCase {
      * and is determined by floating point arithmetic details when capacity is close to zero.
      */
     private int tryRequests(Chain<Searcher> chain, String id) {
+        return tryRequests(chain, id, 8); // allowed 8 requests per second over 4 nodes -> 2 per node
+    }
+
+    private int tryRequests(Chain<Searcher> chain, String id, int quota) {
         int allowedCount = 0;
         for (int i = 0; i < requestsToTry; i++) {
-            if (executeWasAllowed(chain, id))
+            if (executeWasAllowed(chain, id, quota))
                 allowedCount++;
         }
         return allowedCount;
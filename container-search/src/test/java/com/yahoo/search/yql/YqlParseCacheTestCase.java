@@ -0,0 +1,106 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class YqlParseCacheTestCase {
+
+    private final YqlParseCache cache = new YqlParseCache(10);
+
+    @Test
+    public void requireThatProgramsWithTheSameShapeAreBoundFromTemplate() throws IOException {
+        assertParsed("select * from sources * where title contains \"madonna\" limit 10 offset 0;", false);
+        assertParsed("select * from sources * where title contains \"prince\" limit 20 offset 5;", false);
+        assertParsed("select * from sources * where title contains 'bowie' limit 3 offset 1;", true);
+        assertParsed("select * from sources * where title contains \"prince\" and year > 1980 limit 20 offset 5;", false);
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void requireThatProgramsAreTemplatedOnlyWhenTheirShapeIsSeenAgain() throws IOException {
+        assertParsed("select * from sources * where title contains \"a\";", false);
+        assertEquals(0, cache.size());
+        assertParsed("select * from sources * where title contains \"b\";", false);
+        assertEquals(1, cache.size());
+        assertParsed("select * from sources * where title contains \"c\";", true);
+    }
+
+    @Test
+    public void requireThatLiteralsOfAllTypesAreBound() throws IOException {
+        assertParsed("select * from sources * where a > 1 and b < 2L and c = 3.5 and d contains \"x\";", false);
+        assertParsed("select * from sources * where a > 2 and b < 3L and c = 4.5 and d contains \"w\";", false);
+        assertParsed("select * from sources * where a > -7 and b < 99L and c = 1e3 and d contains \"y\\\"z\";", true);
+        assertParsed("select * from sources * where [{\"targetNumHits\": 10, \"label\": \"l\"}]wand(a, {\"x\": 1, \"y\": 2});", false);
+        assertParsed("select * from sources * where [{\"targetNumHits\": 50, \"label\": \"m\"}]wand(a, {\"x\": 3, \"y\": 4});", false);
+        assertParsed("select * from sources * where [{\"targetNumHits\": 50, \"label\": \"m\"}]wand(a, {\"x\": 3, \"z\": 4});", true);
+    }
+
+    @Test
+    public void requireThatMapKeysAreBound() throws IOException {
+        assertParsed("select * from sources * where weightedSet(a, {\"x\": 1, \"y\": 2});", false);
+        assertParsed("select * from sources * where weightedSet(a, {\"v\": 1, \"w\": 2});", false);
+        assertParsed("select * from sources * where weightedSet(a, {\"madonna\": 3, \"prince\": 4});", true);
+    }
+
+    @Test
+    public void requireThatGroupingIsPartOfTheKey() throws IOException {
+        assertParsed("select * from sources * where title contains \"a\" | all(group(a) each(output(count())));", false);
+        assertParsed("select * from sources * where title contains \"b\" | all(group(a) each(output(count())));", false);
+        assertParsed("select * from sources * where title contains \"c\" | all(group(a) each(output(count())));", true);
+        assertParsed("select * from sources * where title contains \"c\" | all(group(b) each(output(count())));", false);
+    }
+
+    @Test
+    public void requireThatLiteralsWhichAreTheSameAreBoundSeparately() throws IOException {
+        assertParsed("select * from sources * where a contains \"x\" and b contains \"x\";", false);
+        assertParsed("select * from sources * where a contains \"w\" and b contains \"w\";", false);
+        assertParsed("select * from sources * where a contains \"y\" and b contains \"z\";", true);
+    }
+
+    @Test
+    public void requireThatTheCacheIsBounded() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            assertParsed("select * from sources * where a" + i + " contains \"x\";", false);
+            assertParsed("select * from sources * where a" + i + " contains \"y\";", false);
+        }
+        assertTrue(cache.size() <= 10);
+        assertParsed("select * from sources * where a19 contains \"z\";", true);
+    }
+
+    @Test
+    public void requireThatInvalidProgramsAreReported() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.parse("select * from sources * where a contains \"x\" and;");
+                throw new AssertionError("Expected an exception");
+            }
+            catch (ProgramCompileException e) {
+                // expected
+            }
+        }
+        assertEquals(0, cache.hits());
+    }
+
+    private void assertParsed(String yql, boolean cached) throws IOException {
+        YqlParseCache.Program program = cache.parse(yql);
+        assertEquals(new ProgramParser().parse("query", yql), program.root());
+        assertEquals(new ProgramParser().parse("query", yql).toString().replaceAll(" L\\d+:\\d+", ""),
+                     program.root().toString().replaceAll(" L\\d+:\\d+", ""));
+        if (cached)
+            assertTrue("Cached: " + yql, program.isCached());
+        else
+            assertFalse("Not cached: " + yql, program.isCached());
+    }
+
+}
@@ -21,13 +21,18 @@ import java.util.ListIterator;
 import java.util.RandomAccess;
 
 /**
- * FieldValue which encapsulates a Array value
+ * FieldValue which encapsulates a Array value.
+ *
+ * The elements of an array of a numeric or string type may be held in a {@link PrimitiveList} instead of as
+ * field values. Such an array is replaced by a list of field values as soon as any of its elements are accessed
+ * in a way which allows them to be modified. This replacement happens only once also when the array is read
+ * by several threads, so reading an array from several threads is safe, as for other field values.
  *
  * @author Einar M R Rosenvinge
  */
 public final class Array<T extends FieldValue> extends CollectionFieldValue<T> implements List<T> {
 
-    private List<T> values;
+    private volatile List<T> values;
 
     public Array(DataType type) {
         this(type, 1);
@@ -56,16 +61,22 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     @Override
     public Iterator<T> fieldValueIterator() {
-        return values.iterator();
+        return inflated().iterator();
     }
 
     @Override
     public Array<T> clone() {
         Array<T> array = (Array<T>) super.clone();
-        array.values = new ArrayList<>(values.size());
+        List<T> values = this.values;
+        if (values instanceof PrimitiveList) {
+            array.values = ((PrimitiveList<T>) values).copy();
+            return array;
+        }
+        List<T> clonedValues = new ArrayList<>(values.size());
         for (T fval : values) {
-            array.values.add((T) fval.clone());
+            clonedValues.add((T) fval.clone());
         }
+        array.values = clonedValues;
         return array;
     }
 
@@ -105,11 +116,48 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
     }
 
     public List<T> getValues() {
-        return values;
+        return inflated();
     }
 
     public FieldValue getFieldValue(int index) {
-        return values.get(index);
+        return inflated().get(index);
+    }
+
+    /**
+     * Returns the values of this as a primitive list, or null if they are not held in one. The returned list must
+     * not be modified.
+     */
+    public PrimitiveList<T> getPrimitiveValues() {
+        List<T> values = this.values;
+        return (values instanceof PrimitiveList) ? (PrimitiveList<T>) values : null;
+    }
+
+    /**
+     * Replaces the values of this by the given primitive list, which is owned by this array afterwards.
+     *
+     * @throws IllegalArgumentException if the type of the values in the list is not the nested type of this array
+     */
+    public void setPrimitiveValues(PrimitiveList<T> values) {
+        if ( ! getDataType().getNestedType().equals(values.getValueType())) {
+            throw new IllegalArgumentException("Incompatible data types. Got " + values.getValueType() +
+                                               ", expected " + getDataType().getNestedType());
+        }
+        this.values = values;
+    }
+
+    /** Replaces a primitive list holding the values of this by a list of field values, and returns the list */
+    private List<T> inflated() {
+        List<T> current = values;
+        if (current instanceof PrimitiveList) {
+            synchronized (this) { // Readers must all get the same field values
+                current = values;
+                if (current instanceof PrimitiveList) {
+                    current = new ArrayList<>(current);
+                    values = current;
+                }
+            }
+        }
+        return current;
     }
 
     @Override
@@ -150,16 +198,16 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     public void add(int index, T o) {
         verifyElementCompatibility(o);
-        values.add(index, o);
+        inflated().add(index, o);
     }
 
     public boolean remove(Object o) {
-        return values.remove(o);
+        return inflated().remove(o);
     }
 
     public boolean add(T o) {
         verifyElementCompatibility(o);
-        return values.add(o);
+        return inflated().add(o);
     }
 
     @Override
@@ -174,12 +222,12 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     @Override
     public Iterator<T> iterator() {
-        return values.iterator();
+        return inflated().iterator();
     }
 
     @Override
     public boolean removeValue(FieldValue o) {
-        return super.removeValue(o, values);
+        return super.removeValue(o, inflated());
     }
 
     @Override
@@ -191,7 +239,7 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
         for (T t : c) {
             verifyElementCompatibility(t);
         }
-        return values.addAll(c);
+        return inflated().addAll(c);
     }
 
     public boolean containsAll(Collection<?> c) {
@@ -199,33 +247,33 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
     }
 
     public Object[] toArray() {
-        return values.toArray();
+        return inflated().toArray();
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T[] toArray(T[] a) {
-        return values.toArray(a);
+        return inflated().toArray(a);
     }
 
     public boolean addAll(int index, Collection<? extends T> c) {
         for (T t : c) {
             verifyElementCompatibility(t);
         }
-        return values.addAll(index, c);
+        return inflated().addAll(index, c);
     }
 
     @SuppressWarnings("deprecation")
     public boolean retainAll(Collection<?> c) {
-        return values.retainAll(c);
+        return inflated().retainAll(c);
     }
 
     @SuppressWarnings("deprecation")
     public boolean removeAll(Collection<?> c) {
-        return values.removeAll(c);
+        return inflated().removeAll(c);
     }
 
     public T get(int index) {
-        return values.get(index);
+        return inflated().get(index);
     }
 
     @SuppressWarnings("deprecation")
@@ -239,32 +287,33 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
     }
 
     public ListIterator<T> listIterator() {
-        return values.listIterator();
+        return inflated().listIterator();
     }
 
     public ListIterator<T> listIterator(final int index) {
-        return values.listIterator(index);
+        return inflated().listIterator(index);
     }
 
     public T remove(int index) {
-        return values.remove(index);
+        return inflated().remove(index);
     }
 
     @SuppressWarnings("deprecation")
     public T set(int index, T o) {
         verifyElementCompatibility(o);
-        T fval = values.set(index, o);
+        T fval = inflated().set(index, o);
         return fval;
     }
 
     public List<T> subList(int fromIndex, int toIndex) {
-        return values.subList(fromIndex, toIndex);
+        return inflated().subList(fromIndex, toIndex);
     }
 
     FieldPathIteratorHandler.ModificationStatus iterateSubset(int startPos, int endPos, FieldPath fieldPath, String variable, int nextPos, FieldPathIteratorHandler handler) {
         FieldPathIteratorHandler.ModificationStatus retVal = FieldPathIteratorHandler.ModificationStatus.NOT_MODIFIED;
 
         LinkedList<Integer> indicesToRemove = new LinkedList<Integer>();
+        List<T> values = inflated();
 
         for (int i = startPos; i <= endPos && i < values.size(); i++) {
             if (variable != null) {
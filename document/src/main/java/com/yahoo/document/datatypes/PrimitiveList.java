@@ -0,0 +1,347 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.datatypes;
+
+import com.yahoo.document.DataType;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A growable list of primitive values, used as the compact representation of the elements of an {@link Array},
+ * or the keys of a {@link WeightedSet}, whose nested type is numeric or string. This stores the values themselves
+ * rather than a field value per element, and creates a new field value each time an element is accessed, which
+ * means elements must not be modified through this list. The owning field value replaces this with a list of
+ * field values as soon as its elements are accessed in a way which would allow that.
+ *
+ * @author agent
+ */
+public abstract class PrimitiveList<T extends FieldValue> extends AbstractList<T> implements RandomAccess {
+
+    protected int size = 0;
+
+    /**
+     * Returns a new empty list for values of the given type, or null if values of this type have no compact
+     * representation
+     */
+    public static PrimitiveList<?> create(DataType type, int capacity) {
+        if (DataType.INT.equals(type)) return new Ints(capacity);
+        if (DataType.LONG.equals(type)) return new Longs(capacity);
+        if (DataType.FLOAT.equals(type)) return new Floats(capacity);
+        if (DataType.DOUBLE.equals(type)) return new Doubles(capacity);
+        if (DataType.STRING.equals(type)) return new Strings(capacity);
+        return null;
+    }
+
+    /** Returns the type of the values of this */
+    public abstract DataType getValueType();
+
+    /**
+     * Parses the given text as a value of the type of this and adds it to the end of this list.
+     *
+     * @throws IllegalArgumentException if the text is not a legal value of this type
+     */
+    public abstract void parseAndAdd(String text);
+
+    /** Returns a copy of this */
+    public abstract PrimitiveList<T> copy();
+
+    /** Returns whether any value occurs more than once in this */
+    public abstract boolean hasDuplicates();
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public void clear() { size = 0; }
+
+    protected static int grownCapacity(int capacity) {
+        return Math.max(4, capacity * 2);
+    }
+
+    /** A list of int values */
+    public static final class Ints extends PrimitiveList<IntegerFieldValue> {
+
+        private int[] values;
+
+        public Ints(int capacity) { values = new int[capacity]; }
+
+        public void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grownCapacity(size));
+            }
+            values[size++] = value;
+        }
+
+        public int getInt(int index) { return values[checkIndex(index)]; }
+
+        @Override
+        public IntegerFieldValue get(int index) { return new IntegerFieldValue(getInt(index)); }
+
+        @Override
+        public boolean add(IntegerFieldValue value) {
+            add(value.getInteger());
+            return true;
+        }
+
+        @Override
+        public DataType getValueType() { return DataType.INT; }
+
+        @Override
+        public void parseAndAdd(String text) { add(Integer.parseInt(text)); }
+
+        @Override
+        public Ints copy() {
+            Ints copy = new Ints(0);
+            copy.values = Arrays.copyOf(values, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        public boolean hasDuplicates() {
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] == sorted[i - 1]) return true;
+            }
+            return false;
+        }
+
+    }
+
+    /** A list of long values */
+    public static final class Longs extends PrimitiveList<LongFieldValue> {
+
+        private long[] values;
+
+        public Longs(int capacity) { values = new long[capacity]; }
+
+        public void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grownCapacity(size));
+            }
+            values[size++] = value;
+        }
+
+        public long getLong(int index) { return values[checkIndex(index)]; }
+
+        @Override
+        public LongFieldValue get(int index) { return new LongFieldValue(getLong(index)); }
+
+        @Override
+        public boolean add(LongFieldValue value) {
+            add(value.getLong());
+            return true;
+        }
+
+        @Override
+        public DataType getValueType() { return DataType.LONG; }
+
+        @Override
+        public void parseAndAdd(String text) { add(Long.parseLong(text)); }
+
+        @Override
+        public Longs copy() {
+            Longs copy = new Longs(0);
+            copy.values = Arrays.copyOf(values, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        public boolean hasDuplicates() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] == sorted[i - 1]) return true;
+            }
+            return false;
+        }
+
+    }
+
+    /** A list of float values */
+    public static final class Floats extends PrimitiveList<FloatFieldValue> {
+
+        private float[] values;
+
+        public Floats(int capacity) { values = new float[capacity]; }
+
+        public void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grownCapacity(size));
+            }
+            values[size++] = value;
+        }
+
+        public float getFloat(int index) { return values[checkIndex(index)]; }
+
+        @Override
+        public FloatFieldValue get(int index) { return new FloatFieldValue(getFloat(index)); }
+
+        @Override
+        public boolean add(FloatFieldValue value) {
+            add(value.getFloat());
+            return true;
+        }
+
+        @Override
+        public DataType getValueType() { return DataType.FLOAT; }
+
+        @Override
+        public void parseAndAdd(String text) { add(Float.parseFloat(text)); }
+
+        @Override
+        public Floats copy() {
+            Floats copy = new Floats(0);
+            copy.values = Arrays.copyOf(values, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        public boolean hasDuplicates() {
+            float[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            for (int i = 1; i < sorted.length; i++) {
+                if (Float.compare(sorted[i], sorted[i - 1]) == 0) return true;
+            }
+            return false;
+        }
+
+    }
+
+    /** A list of double values */
+    public static final class Doubles extends PrimitiveList<DoubleFieldValue> {
+
+        private double[] values;
+
+        public Doubles(int capacity) { values = new double[capacity]; }
+
+        public void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grownCapacity(size));
+            }
+            values[size++] = value;
+        }
+
+        public double getDouble(int index) { return values[checkIndex(index)]; }
+
+        @Override
+        public DoubleFieldValue get(int index) { return new DoubleFieldValue(getDouble(index)); }
+
+        @Override
+        public boolean add(DoubleFieldValue value) {
+            add(value.getDouble());
+            return true;
+        }
+
+        @Override
+        public DataType getValueType() { return DataType.DOUBLE; }
+
+        @Override
+        public void parseAndAdd(String text) { add(Double.parseDouble(text)); }
+
+        @Override
+        public Doubles copy() {
+            Doubles copy = new Doubles(0);
+            copy.values = Arrays.copyOf(values, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        public boolean hasDuplicates() {
+            double[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            for (int i = 1; i < sorted.length; i++) {
+                if (Double.compare(sorted[i], sorted[i - 1]) == 0) return true;
+            }
+            return false;
+        }
+
+    }
+
+    /** A list of string values, without span trees */
+    public static final class Strings extends PrimitiveList<StringFieldValue> {
+
+        private String[] values;
+
+        public Strings(int capacity) { values = new String[capacity]; }
+
+        /** Adds the given string, which must be a valid text string, to the end of this */
+        public void add(String value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grownCapacity(size));
+            }
+            values[size++] = value;
+        }
+
+        public String getString(int index) { return values[checkIndex(index)]; }
+
+        @Override
+        public StringFieldValue get(int index) {
+            StringFieldValue value = new StringFieldValue();
+            value.setUnChecked(getString(index));
+            return value;
+        }
+
+        /**
+         * Adds the string of the given value to the end of this.
+         *
+         * @throws IllegalArgumentException if the value has span trees, which strings in this can not have
+         */
+        @Override
+        public boolean add(StringFieldValue value) {
+            if (value.getSpanTreeMap() != null && ! value.getSpanTreeMap().isEmpty()) {
+                throw new IllegalArgumentException("Strings with span trees can not be added to a primitive list");
+            }
+            add(value.getString());
+            return true;
+        }
+
+        @Override
+        public DataType getValueType() { return DataType.STRING; }
+
+        @Override
+        public void parseAndAdd(String text) {
+            StringFieldValue.validateTextString(text);
+            add(text);
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(values, 0, size, null);
+            super.clear();
+        }
+
+        @Override
+        public Strings copy() {
+            Strings copy = new Strings(0);
+            copy.values = Arrays.copyOf(values, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        public boolean hasDuplicates() {
+            Set<String> seen = new HashSet<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                if ( ! seen.add(values[i])) return true;
+            }
+            return false;
+        }
+
+    }
+
+    int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+
+}
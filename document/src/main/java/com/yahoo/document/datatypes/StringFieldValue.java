@@ -57,7 +57,7 @@ public class StringFieldValue extends FieldValue {
         setValue(value);
     }
 
-    private static void validateTextString(String value) {
+    static void validateTextString(String value) {
         OptionalInt illegalCodePoint = Text.validateTextString(value);
         if (illegalCodePoint.isPresent()) {
             throw new IllegalArgumentException("The string field value contains illegal code point 0x" +
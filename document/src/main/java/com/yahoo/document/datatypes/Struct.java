@@ -5,6 +5,7 @@ import com.yahoo.collections.Hashlet;
 import com.yahoo.document.*;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
+import com.yahoo.document.serialization.SerializedFields;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
 import com.yahoo.vespa.objects.Ids;
@@ -12,6 +13,13 @@ import com.yahoo.vespa.objects.Ids;
 import java.util.*;
 
 /**
+ * A struct of field values.
+ * <p>
+ * The fields of structs read by a deserializer with lazy fields (see
+ * {@link com.yahoo.document.serialization.DocumentDeserializerFactory#createHeadWithLazyFields}) are deserialized
+ * when first accessed. Reading such a struct may therefore change it, so it is not safe for concurrent access,
+ * not even when only reading. Lazy reading is only done when explicitly requested.
+ *
  * @author Håkon Humberset
  */
 public class Struct extends StructuredFieldValue {
@@ -20,6 +28,9 @@ public class Struct extends StructuredFieldValue {
     private Hashlet<Integer, FieldValue> values = new Hashlet<>();
     private int [] order = null;
 
+    // The fields of this which are kept serialized until accessed, or null if none
+    private SerializedFields serialized = null;
+
     private int version;
 
     private int [] getInOrder() {
@@ -37,6 +48,38 @@ public class Struct extends StructuredFieldValue {
         order = null;
     }
 
+    /** Deserializes all the fields of this which are still serialized */
+    private void deserializeAll() {
+        if (serialized == null) return;
+        while (serialized.size() > 0) {
+            int id = serialized.getField(0).getId();
+            values.put(id, serialized.deserialize(id));
+        }
+        serialized = null;
+        invalidateOrder();
+    }
+
+    /**
+     * Keeps the given fields serialized in this until they are accessed. This is used by deserializers which
+     * read the fields of a struct lazily.
+     */
+    public void setSerializedFields(SerializedFields fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            removeFieldValue(fields.getField(i));
+        }
+        serialized = fields.size() > 0 ? fields : null;
+    }
+
+    /** Returns the fields of this which are still serialized, or null if none */
+    public SerializedFields getSerializedFields() {
+        return serialized;
+    }
+
+    /** Returns the fields of this which are deserialized, i.e., all fields except those in getSerializedFields() */
+    public Set<Map.Entry<Field, FieldValue>> getDeserializedFields() {
+        return new FieldSet();
+    }
+
     public Struct(DataType type) {
         super((StructDataType) type);
         this.version = Document.SERIALIZED_VERSION;
@@ -79,6 +122,7 @@ public class Struct extends StructuredFieldValue {
     @Override
     public Struct clone() {
         Struct struct = (Struct) super.clone();
+        struct.serialized = (serialized != null) ? serialized.copy() : null;
         struct.values = new Hashlet<>();
         struct.values.reserve(values.size());
         for (int i = 0; i < values.size(); i++) {
@@ -89,16 +133,19 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public void clear() {
+        serialized = null;
         values = new Hashlet<>();
         invalidateOrder();
     }
 
     @Override
     public Iterator<Map.Entry<Field, FieldValue>> iterator() {
+        deserializeAll();
         return new FieldSet().iterator();
     }
 
     public Set<Map.Entry<Field, FieldValue>> getFields() {
+        deserializeAll();
         return new FieldSet();
     }
 
@@ -117,6 +164,13 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue getFieldValue(Field field) {
+        if (serialized != null && serialized.contains(field.getId())) {
+            values.put(field.getId(), serialized.deserialize(field.getId()));
+            if (serialized.size() == 0) {
+                serialized = null;
+            }
+            invalidateOrder();
+        }
         return values.get(field.getId());
     }
 
@@ -128,7 +182,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public int getFieldCount() {
-        return values.size();
+        return values.size() + (serialized != null ? serialized.size() : 0);
     }
 
     @Override
@@ -154,6 +208,9 @@ public class Struct extends StructuredFieldValue {
                     "Inconsistent field: " + field);
         }
 
+        if (serialized != null) {
+            serialized.remove(field.getId());
+        }
         int index = values.getIndexOfKey(field.getId());
         if (index == -1) {
             values.put(field.getId(), value);
@@ -165,7 +222,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue removeFieldValue(Field field) {
-        FieldValue found = values.get(field.getId());
+        FieldValue found = getFieldValue(field);
         if (found != null) {
             Hashlet<Integer, FieldValue> copy = new Hashlet<>();
             copy.reserve(values.size() - 1);
@@ -213,11 +270,14 @@ public class Struct extends StructuredFieldValue {
         if (!super.equals(o)) return false;
 
         Struct struct = (Struct) o;
+        deserializeAll();
+        struct.deserializeAll();
         return values.equals(struct.values);
     }
 
     @Override
     public int hashCode() {
+        deserializeAll();
         int result = super.hashCode();
         result = 31 * result + values.hashCode();
         return result;
@@ -227,6 +287,7 @@ public class Struct extends StructuredFieldValue {
     public String toString() {
         StringBuilder retVal = new StringBuilder();
         retVal.append("Struct (").append(getDataType()).append("): ");
+        deserializeAll();
         int [] increasing = getInOrder();
         for (int i = 0; i < increasing.length; i++) {
             int id = increasing[i];
@@ -247,7 +308,7 @@ public class Struct extends StructuredFieldValue {
             return cmp;
         }
         Struct rhs = (Struct)obj;
-        cmp = values.size() - rhs.values.size();
+        cmp = getFieldCount() - rhs.getFieldCount();
         if (cmp != 0) {
             return cmp;
         }
@@ -26,11 +26,19 @@ import java.util.Set;
  * uses an encapsulated Map (actually a LinkedHashMap) that associates each key
  * with its weight (value).
  *
+ * The keys and weights of a weighted set of a numeric or string type may be held in {@link PrimitiveList}s
+ * instead. These are moved into the map as soon as the set is accessed by anything but its size. This happens
+ * only once also when the set is read by several threads, so reading a weighted set from several threads is safe,
+ * as for other field values.
+ *
  * @author Einar M R Rosenvinge
  */
 public final class WeightedSet<K extends FieldValue> extends CollectionFieldValue<K> implements Map<K, Integer> {
 
     private MapFieldValue<K, IntegerFieldValue> map;
+    /** The keys of this when they are not in the map, written after the map is complete */
+    private volatile PrimitiveList<K> primitiveKeys = null;
+    private PrimitiveList.Ints primitiveWeights = null;
 
     /**
      * Creates a new WeightedSet.
@@ -58,7 +66,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
 
     @Override
     public Iterator<K> fieldValueIterator() {
-        return map.keySet().iterator();
+        return inflated().keySet().iterator();
     }
 
     @Override
@@ -70,12 +78,14 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
         if (o instanceof WeightedSet) {
             WeightedSet wset = (WeightedSet) o;
             if (getDataType().equals(wset.getDataType())) {
-                map.assign(wset.map);
+                discardPrimitiveValues();
+                map.assign(wset.inflated());
             } else {
                 throw new IllegalArgumentException("Cannot assign a weighted set of type " + wset.getDataType()
                                                    + " to a weighted set of type " + getDataType());
             }
         } else if (o instanceof Map) {
+            discardPrimitiveValues();
             map = new WeightedSetWrapper((Map)o, map.getDataType());
         } else {
             throw new IllegalArgumentException("Class " + o.getClass() + " not applicable to an " + this.getClass() + " instance.");
@@ -85,7 +95,12 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
     @Override
     public WeightedSet clone() {
         WeightedSet<K> newSet = (WeightedSet<K>) super.clone();
-        newSet.map = (MapFieldValue<K, IntegerFieldValue>) map.clone();
+        PrimitiveList<K> keys = primitiveKeys;
+        if (keys != null) { // Do not read the map, which may be filled by a concurrent reader
+            newSet.setPrimitiveValuesUnChecked(keys.copy(), primitiveWeights.copy());
+        } else {
+            newSet.map = (MapFieldValue<K, IntegerFieldValue>) map.clone();
+        }
         return newSet;
     }
 
@@ -101,7 +116,8 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      * @return the number of key-weight pairs in this set
      */
     public int size() {
-        return map.size();
+        PrimitiveList<K> keys = primitiveKeys;
+        return (keys != null) ? keys.size() : map.size();
     }
 
     public boolean add(K value) {
@@ -114,12 +130,12 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
         if (map instanceof WeightedSet.WeightedSetWrapper) {
             return ((WeightedSet.WeightedSetWrapper) map).map;
         }
-        return map.getWrappedValue();
+        return inflated().getWrappedValue();
     }
 
     @Override
     public boolean contains(Object o) {
-        return map.keySet().contains(o);
+        return inflated().keySet().contains(o);
     }
 
     /**
@@ -128,17 +144,17 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      * @return true if the set is empty
      */
     public boolean isEmpty() {
-        return map.isEmpty();
+        return size() == 0;
     }
 
     @Override
     public Iterator<K> iterator() {
-        return map.keySet().iterator();
+        return inflated().keySet().iterator();
     }
 
     @Override
     public boolean removeValue(FieldValue o) {
-        return super.removeValue(o, map.keySet());
+        return super.removeValue(o, inflated().keySet());
     }
 
     /**
@@ -148,11 +164,11 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      * @return true if this set contains this key
      */
     public boolean containsKey(Object key) {
-        return map.containsKey(key);
+        return inflated().containsKey(key);
     }
 
     public boolean containsValue(Object value) {
-        return map.containsValue(value);
+        return inflated().containsValue(value);
     }
 
     /**
@@ -165,7 +181,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
         if (!(key instanceof FieldValue)) {
             throw new IllegalArgumentException("Only FieldValues are allowed as keys.");
         }
-        IntegerFieldValue ifv = map.get(key);
+        IntegerFieldValue ifv = inflated().get(key);
         return ifv != null ? ifv.getInteger() : null;
     }
 
@@ -192,7 +208,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      * @return the weight that was previously associated with this key, or null (if there was no previous key)
      */
     public IntegerFieldValue putUnChecked(K key, IntegerFieldValue weight) {
-        return map.put(key, weight);
+        return mutableMap().put(key, weight);
     }
 
     /**
@@ -202,7 +218,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      * @return the weight that was previously associated with this key, or null (if there was no previous key)
      */
     public Integer remove(Object key) {
-        IntegerFieldValue ifv = map.remove(key);
+        IntegerFieldValue ifv = mutableMap().remove(key);
         return ifv != null ? ifv.getInteger() : null;
     }
 
@@ -214,6 +230,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
 
     /** Remove all key-weight associations in this set. */
     public void clear() {
+        discardPrimitiveValues();
         map.clear();
     }
 
@@ -221,12 +238,13 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      * Reserve space for this amount of keys in order to avoid resizing
      */
     public void clearAndReserve(int count) {
+        discardPrimitiveValues();
         map = new MapFieldValue<>(new MapDataType(getDataType().getNestedType(), DataType.INT), count);
     }
 
     Map<K, Integer> getPrimitiveMap() {
         Map<K, Integer> retVal = new LinkedHashMap<>();
-        for (Entry<K, IntegerFieldValue> entry : map.entrySet()) {
+        for (Entry<K, IntegerFieldValue> entry : inflated().entrySet()) {
             retVal.put(entry.getKey(), entry.getValue().getInteger());
         }
         return retVal;
@@ -237,7 +255,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
     }
 
     public Set<K> keySet() {
-        return map.keySet();
+        return inflated().keySet();
     }
 
     public Set<Entry<K, Integer>> entrySet() {
@@ -252,7 +270,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      */
     public boolean equals(Object o) {
         if (!(o instanceof WeightedSet)) return false;
-        return (super.equals(o) && map.equals(((WeightedSet<K>)o).map));
+        return (super.equals(o) && inflated().equals(((WeightedSet<K>)o).inflated()));
     }
 
     /**
@@ -261,7 +279,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
      * @return the hash code of this set
      */
     public int hashCode() {
-        return map.hashCode();
+        return inflated().hashCode();
     }
 
     /**
@@ -272,7 +290,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("WeightedSet(").append(getDataType());
-        for (Map.Entry entry : map.entrySet()) {
+        for (Map.Entry entry : inflated().entrySet()) {
             sb.append("\n  key:   ").append(entry.getKey().getClass()).append(": ").append(entry.getKey());
             sb.append("\n  value: ").append(entry.getValue().getClass()).append(": ").append(entry.getValue());
         }
@@ -291,7 +309,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
 
     @Override
     FieldPathIteratorHandler.ModificationStatus iterateNested(FieldPath fieldPath, int pos, FieldPathIteratorHandler handler) {
-        FieldPathIteratorHandler.ModificationStatus status = map.iterateNested(fieldPath, pos, handler, this);
+        FieldPathIteratorHandler.ModificationStatus status = inflated().iterateNested(fieldPath, pos, handler, this);
         return status;
     }
 
@@ -303,7 +321,80 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
             return comp;
         }
 
-        return map.compareTo(((WeightedSet<K>)fieldValue).map);
+        return inflated().compareTo(((WeightedSet<K>)fieldValue).inflated());
+    }
+
+    /** Returns the keys of this as a primitive list, or null if they are not held in one. The list must not be modified. */
+    public PrimitiveList<K> getPrimitiveKeys() {
+        return primitiveKeys;
+    }
+
+    /**
+     * Returns the weights of the keys returned by {@link #getPrimitiveKeys()}, at the same positions, when those are
+     * not null. The list must not be modified.
+     */
+    public PrimitiveList.Ints getPrimitiveWeights() {
+        return primitiveWeights;
+    }
+
+    /**
+     * Replaces the content of this by the given keys and the weights at the same positions in the given weights.
+     * The lists are owned by this set afterwards.
+     *
+     * @param keys the keys of this, which must all be different
+     * @param weights the weights of the keys
+     * @throws IllegalArgumentException if the type of the keys is not the nested type of this set, the number of
+     *                                  keys and weights differ, or some key occurs more than once
+     */
+    public void setPrimitiveValues(PrimitiveList<K> keys, PrimitiveList.Ints weights) {
+        if ( ! getDataType().getNestedType().equals(keys.getValueType())) {
+            throw new IllegalArgumentException("Incompatible data types. Got " + keys.getValueType() +
+                                               ", expected " + getDataType().getNestedType());
+        }
+        if (keys.size() != weights.size()) {
+            throw new IllegalArgumentException("Got " + keys.size() + " keys, but " + weights.size() + " weights");
+        }
+        if (keys.hasDuplicates()) {
+            throw new IllegalArgumentException("The keys of a weighted set must be unique");
+        }
+        setPrimitiveValuesUnChecked(keys, weights);
+    }
+
+    private void setPrimitiveValuesUnChecked(PrimitiveList<K> keys, PrimitiveList.Ints weights) {
+        clearAndReserve(keys.size() * 2); // Avoid resizing when inflated
+        primitiveWeights = weights;
+        primitiveKeys = keys;
+    }
+
+    /**
+     * Moves any keys and weights held in primitive lists into the map of this, and returns the map.
+     * The weights are kept, such that a concurrent reader of the primitive keys can still read them.
+     */
+    private MapFieldValue<K, IntegerFieldValue> inflated() {
+        if (primitiveKeys != null) {
+            synchronized (this) { // Readers must all get the same field values
+                PrimitiveList<K> keys = primitiveKeys;
+                if (keys != null) {
+                    for (int i = 0; i < keys.size(); i++) {
+                        map.put(keys.get(i), new IntegerFieldValue(primitiveWeights.getInt(i)));
+                    }
+                    primitiveKeys = null;
+                }
+            }
+        }
+        return map;
+    }
+
+    /** Returns the map of this, for modification */
+    private MapFieldValue<K, IntegerFieldValue> mutableMap() {
+        MapFieldValue<K, IntegerFieldValue> map = inflated();
+        primitiveWeights = null;
+        return map;
+    }
+
+    private void discardPrimitiveValues() {
+        primitiveKeys = null;
+        primitiveWeights = null;
     }
 
 
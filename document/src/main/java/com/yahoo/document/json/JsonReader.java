@@ -29,6 +29,7 @@ import static com.yahoo.document.json.readers.JsonParserHelpers.expectArrayStart
  */
 public class JsonReader {
 
+    /** Parses the next operation, buffering its fields, or returns empty if at the end */
     public Optional<DocumentParseInfo> parseDocument() throws IOException {
         DocumentParser documentParser = new DocumentParser(parser);
         return documentParser.parse(Optional.empty());
@@ -64,13 +65,12 @@ public class JsonReader {
         DocumentId docId = new DocumentId(docIdString);
         DocumentParseInfo documentParseInfo;
         try {
-            DocumentParser documentParser = new DocumentParser(parser);
-            documentParseInfo = documentParser.parse(Optional.of(docId)).get();
+            DocumentParser documentParser = new DocumentParser(parser, typeManager);
+            documentParseInfo = documentParser.parse(docId, operationType).get();
         } catch (IOException e) {
             state = END_OF_FEED;
             throw new IllegalArgumentException(e);
         }
-        documentParseInfo.operationType = operationType;
         VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
         DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
                 getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
@@ -93,7 +93,7 @@ public class JsonReader {
         }
         Optional<DocumentParseInfo> documentParseInfo;
         try {
-            documentParseInfo = parseDocument();
+            documentParseInfo = new DocumentParser(parser, typeManager).parse(Optional.empty());
         } catch (IOException r) {
             // Jackson is not able to recover from structural parse errors
             state = END_OF_FEED;
@@ -13,6 +13,10 @@ import com.google.common.base.Preconditions;
 /**
  * Helper class to enable lookahead in the token stream.
  *
+ * A buffer may also be created to stream the tokens of a single JSON object directly from a parser, without
+ * storing them. Such a buffer only supports moving forward, and is exhausted at the end of the object, leaving
+ * the parser positioned at the end token of the object.
+ *
  * @author Steinar Knutsen
  */
 public class TokenBuffer {
@@ -32,21 +36,47 @@ public class TokenBuffer {
     private Deque<Token> buffer;
     private int nesting = 0;
 
+    /** The parser tokens are streamed from, or null if this buffers its tokens */
+    private final JsonParser source;
+    private boolean exhausted = false;
+
     public TokenBuffer() {
         this(new ArrayDeque<>());
     }
 
     private TokenBuffer(Deque<Token> buffer) {
         this.buffer = buffer;
+        this.source = null;
         if (buffer.size() > 0) {
             updateNesting(buffer.peekFirst().token);
         }
     }
 
+    private TokenBuffer(JsonParser source) {
+        this.buffer = null;
+        this.source = source;
+        Preconditions.checkArgument(source.currentToken() == JsonToken.START_OBJECT,
+                "Expected %s, got %s.", JsonToken.START_OBJECT.name(), source.currentToken());
+        updateNesting(source.currentToken());
+    }
+
+    /**
+     * Returns a buffer which streams the tokens of the object the given parser is positioned at the start of.
+     *
+     * @param parser the parser to read tokens from, which must be at the start of an object
+     * @return a streaming buffer positioned at the start of the object
+     */
+    public static TokenBuffer streaming(JsonParser parser) {
+        return new TokenBuffer(parser);
+    }
+
     /** Returns whether any tokens are available in this */
     public boolean isEmpty() { return size() == 0; }
 
     public JsonToken next() {
+        if (source != null) {
+            return nextFromSource();
+        }
         buffer.removeFirst();
         Token t = buffer.peekFirst();
         if (t == null) {
@@ -56,8 +86,28 @@ public class TokenBuffer {
         return t.token;
     }
 
+    private JsonToken nextFromSource() {
+        if (exhausted) {
+            throw new IllegalStateException("No more tokens in the object streamed");
+        }
+        if (nesting == 0) {
+            exhausted = true; // leave the parser at the end of the streamed object
+            return null;
+        }
+        JsonToken t = nextValue(source);
+        if (t == null) {
+            exhausted = true;
+            return null;
+        }
+        updateNesting(t);
+        return t;
+    }
+
     /** Returns the current token without changing position, or null if none */
     public JsonToken currentToken() {
+        if (source != null) {
+            return exhausted ? null : source.currentToken();
+        }
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.token;
@@ -65,6 +115,9 @@ public class TokenBuffer {
 
     /** Returns the current token name without changing position, or null if none */
     public String currentName() {
+        if (source != null) {
+            return exhausted ? null : currentNameFromSource();
+        }
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.name;
@@ -72,24 +125,53 @@ public class TokenBuffer {
 
     /** Returns the current token text without changing position, or null if none */
     public String currentText() {
+        if (source != null) {
+            return exhausted ? null : currentTextFromSource();
+        }
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.text;
     }
 
+    /** Returns the number of tokens available in this. For a streaming buffer, this is 1 until it is exhausted */
     public int size() {
+        if (source != null) {
+            return exhausted ? 0 : 1;
+        }
         return buffer.size();
     }
 
+    private String currentNameFromSource() {
+        try {
+            return source.getCurrentName();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String currentTextFromSource() {
+        try {
+            return source.getText();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void requireBuffered() {
+        Preconditions.checkState(source == null, "Lookahead is not supported when streaming tokens");
+    }
+
     private void add(JsonToken token, String name, String text) {
         buffer.addLast(new Token(token, name, text));
     }
 
     public void bufferObject(JsonToken first, JsonParser tokens) {
+        requireBuffered();
         bufferJsonStruct(first, tokens, JsonToken.START_OBJECT);
     }
 
     public void bufferArray(JsonToken first, JsonParser tokens) {
+        requireBuffered();
         bufferJsonStruct(first, tokens, JsonToken.START_ARRAY);
     }
 
@@ -151,6 +233,7 @@ public class TokenBuffer {
     }
 
     public String dumpContents() {
+        requireBuffered();
         StringBuilder b = new StringBuilder();
         b.append("[nesting: ").append(nesting()).append("\n");
         for (Token t : buffer) {
@@ -160,6 +243,17 @@ public class TokenBuffer {
         return b.toString();
     }
 
+    /**
+     * Moves a streaming buffer past the remaining tokens of its object, leaving the parser at the end of the object
+     * even if reading it was abandoned midway. This does nothing for a buffering buffer.
+     */
+    public void skipToEnd() {
+        if (source == null) return;
+        while ( ! exhausted) {
+            nextFromSource();
+        }
+    }
+
     public void fastForwardToEndObject() {
         JsonToken t = currentToken();
         while (t != JsonToken.END_OBJECT) {
@@ -168,6 +262,7 @@ public class TokenBuffer {
     }
 
     public TokenBuffer prefetchCurrentElement() {
+        requireBuffered();
         Deque<Token> copy = new ArrayDeque<>();
 
         if (currentToken().isScalarValue()) {
@@ -187,6 +282,7 @@ public class TokenBuffer {
     }
 
     public Token prefetchScalar(String name) {
+        requireBuffered();
         int localNesting = nesting();
         int nestingBarrier = localNesting;
         Token toReturn = null;
@@ -4,7 +4,10 @@ package com.yahoo.document.json.document;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.json.readers.DocumentParseInfo;
+import com.yahoo.document.json.readers.VespaJsonDocumentReader;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -27,10 +30,22 @@ public class DocumentParser {
     public static final String FIELDS = "fields";
     public static final String REMOVE = "remove";
     private final JsonParser parser;
+    private final DocumentTypeManager typeManager;
     private  long indentLevel;
+    private RuntimeException deferredException;
 
+    /** Creates a parser which buffers the fields of all operations */
     public DocumentParser(JsonParser parser) {
+        this(parser, null);
+    }
+
+    /**
+     * Creates a parser which reads the fields of puts directly from the stream into documents of types from the
+     * given manager, when the id and operation precede the fields, and buffers the fields of all other operations.
+     */
+    public DocumentParser(JsonParser parser, DocumentTypeManager typeManager) {
         this.parser = parser;
+        this.typeManager = typeManager;
     }
 
     /**
@@ -38,14 +53,35 @@ public class DocumentParser {
      * Returns empty is we have reached the end of the stream.
      */
     public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg) throws IOException {
-        indentLevel = 0;
         DocumentParseInfo documentParseInfo = new DocumentParseInfo();
         documentIdArg.ifPresent(documentId -> documentParseInfo.documentId = documentId);
+        return parse(documentParseInfo, documentIdArg.isPresent());
+    }
+
+    /**
+     * Parses a single document with the given id and operation, which are not read from the stream, and returns it.
+     * Returns empty is we have reached the end of the stream.
+     */
+    public Optional<DocumentParseInfo> parse(DocumentId documentId, SupportedOperation operationType) throws IOException {
+        DocumentParseInfo documentParseInfo = new DocumentParseInfo();
+        documentParseInfo.documentId = documentId;
+        documentParseInfo.operationType = operationType;
+        return parse(documentParseInfo, true);
+    }
+
+    private Optional<DocumentParseInfo> parse(DocumentParseInfo documentParseInfo,
+                                              boolean docIdAndOperationIsSetExternally) throws IOException {
+        indentLevel = 0;
+        deferredException = null;
         boolean foundItems = false;
         do {
-            foundItems |= parseOneItem(documentParseInfo, documentIdArg.isPresent() /* doc id set externally */);
+            foundItems |= parseOneItem(documentParseInfo, docIdAndOperationIsSetExternally);
         } while (indentLevel > 0L);
 
+        if (deferredException != null) { // thrown only now, to leave the stream at the next operation
+            throw deferredException;
+        }
+
         if (documentParseInfo.documentId == null) {
             if (foundItems)
                 throw new IllegalArgumentException("Missing a document operation ('put', 'update' or 'remove')");
@@ -126,7 +162,11 @@ public class DocumentParser {
             JsonToken currentToken = parser.getCurrentToken();
             // "fields" opens a dictionary and is therefore on level two which might be surprising.
             if (currentToken == JsonToken.START_OBJECT && FIELDS.equals(parser.getCurrentName())) {
-                documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
+                if (canReadPutFromStream(documentParseInfo)) {
+                    readPutFromStream(documentParseInfo);
+                } else {
+                    documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
+                }
                 processIndent();
             }
         } catch (IOException e) {
@@ -134,6 +174,30 @@ public class DocumentParser {
         }
     }
 
+    private boolean canReadPutFromStream(DocumentParseInfo documentParseInfo) {
+        return typeManager != null
+               && documentParseInfo.operationType == SupportedOperation.PUT
+               && documentParseInfo.documentId != null
+               && documentParseInfo.put == null
+               && documentParseInfo.fieldsBuffer.isEmpty();
+    }
+
+    private void readPutFromStream(DocumentParseInfo documentParseInfo) {
+        try {
+            DocumentType documentType = typeManager.getDocumentType(documentParseInfo.documentId.getDocType());
+            if (documentType == null) {
+                parser.skipChildren();
+                throw new IllegalArgumentException(String.format("Document type %s does not exist",
+                                                                 documentParseInfo.documentId.getDocType()));
+            }
+            documentParseInfo.put = new VespaJsonDocumentReader().readPut(documentType, documentParseInfo.documentId, parser);
+        } catch (IOException e) {
+            throw new RuntimeException("Got IO exception while parsing document", e);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            deferredException = e;
+        }
+    }
+
     private static SupportedOperation operationNameToOperationType(String operationName) {
         switch (operationName) {
             case PUT:
@@ -4,8 +4,10 @@ package com.yahoo.document.json.readers;
 import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Preconditions;
 import com.yahoo.document.DataType;
+import com.yahoo.document.datatypes.Array;
 import com.yahoo.document.datatypes.CollectionFieldValue;
 import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.PrimitiveList;
 import com.yahoo.document.json.TokenBuffer;
 
 import java.util.List;
@@ -27,10 +29,31 @@ public class ArrayReader {
         int initNesting = buffer.nesting();
         expectArrayStart(buffer.currentToken());
         buffer.next();
+        if (parent instanceof Array && parent.isEmpty()) {
+            PrimitiveList primitives = PrimitiveList.create(valueType, 16);
+            if (primitives != null) {
+                fillPrimitives(buffer, initNesting, valueType, primitives);
+                ((Array) parent).setPrimitiveValues(primitives);
+                return;
+            }
+        }
         while (buffer.nesting() >= initNesting) {
             Preconditions.checkArgument(buffer.currentToken() != JsonToken.VALUE_NULL, "Illegal null value for array entry");
             parent.add(readSingleValue(buffer, valueType));
             buffer.next();
         }
     }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void fillPrimitives(TokenBuffer buffer, int initNesting, DataType valueType, PrimitiveList primitives) {
+        while (buffer.nesting() >= initNesting) {
+            Preconditions.checkArgument(buffer.currentToken() != JsonToken.VALUE_NULL, "Illegal null value for array entry");
+            if (buffer.currentToken().isScalarValue()) {
+                primitives.parseAndAdd(buffer.currentText());
+            } else {
+                primitives.add(readSingleValue(buffer, valueType));
+            }
+            buffer.next();
+        }
+    }
 }
@@ -1,9 +1,11 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.document.json.readers;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Preconditions;
 import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentOperation;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.DocumentRemove;
@@ -49,6 +51,11 @@ public class VespaJsonDocumentReader {
         try {
             switch (documentParseInfo.operationType) {
                 case PUT:
+                    if (documentParseInfo.put != null) { // already read from the stream
+                        Preconditions.checkState(documentParseInfo.fieldsBuffer.isEmpty(), "Dangling data at end of operation");
+                        documentOperation = documentParseInfo.put;
+                        break;
+                    }
                     documentOperation = new DocumentPut(new Document(documentType, documentParseInfo.documentId));
                     readPut(documentParseInfo.fieldsBuffer, (DocumentPut) documentOperation);
                     verifyEndState(documentParseInfo.fieldsBuffer, JsonToken.END_OBJECT);
@@ -88,6 +95,31 @@ public class VespaJsonDocumentReader {
         }
     }
 
+    /**
+     * Reads a put directly from the given parser, without buffering its fields.
+     *
+     * @param documentType the type of the document to put
+     * @param documentId the id of the document to put
+     * @param parser the parser, which must be positioned at the start of the "fields" object of the put
+     * @return the put, with the parser positioned at the end of the "fields" object
+     */
+    public DocumentPut readPut(DocumentType documentType, DocumentId documentId, JsonParser parser) {
+        DocumentPut put = new DocumentPut(new Document(documentType, documentId));
+        TokenBuffer buffer = TokenBuffer.streaming(parser);
+        try {
+            readPut(buffer, put);
+            verifyEndState(buffer, JsonToken.END_OBJECT);
+        } catch (RuntimeException e) {
+            try {
+                buffer.skipToEnd(); // leave the parser after the put, as when it is buffered
+            } catch (RuntimeException skipException) {
+                e.addSuppressed(skipException);
+            }
+            throw e;
+        }
+        return put;
+    }
+
     // Exposed for unit testing...
     public void readUpdate(TokenBuffer buffer, DocumentUpdate update) {
         if (buffer.isEmpty())
@@ -6,7 +6,13 @@ import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.document.select.parser.SelectInput;
 import com.yahoo.document.select.parser.SelectParser;
 import com.yahoo.document.select.parser.TokenMgrException;
+import com.yahoo.document.select.rule.DocumentNode;
+import com.yahoo.document.select.rule.EmbracedNode;
 import com.yahoo.document.select.rule.ExpressionNode;
+import com.yahoo.document.select.rule.LogicNode;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * <p>A document selector is a filter which accepts or rejects documents
@@ -21,6 +27,9 @@ public class DocumentSelector {
 
     private ExpressionNode expression;
 
+    /** The document types which must all match for this to accept a document, checked before evaluating the rest */
+    private final List<DocumentNode> requiredTypes = new ArrayList<>();
+
     /**
      * Creates a document selector from a Document Selection Language string
      *
@@ -40,6 +49,22 @@ public class DocumentSelector {
             throw (ParseException)t.initCause(e instanceof ParseException ?
                                               new ParseException(input.formatException(e.getMessage())) : e);
         }
+        addRequiredTypes(expression);
+    }
+
+    /** Adds the document types which are and-ed with the rest of the given expression */
+    private void addRequiredTypes(ExpressionNode node) {
+        if (node instanceof DocumentNode) {
+            requiredTypes.add((DocumentNode)node);
+        } else if (node instanceof EmbracedNode) {
+            addRequiredTypes(((EmbracedNode)node).getNode());
+        } else if (node instanceof LogicNode) {
+            List<LogicNode.NodeItem> items = ((LogicNode)node).getItems();
+            if (items.stream().anyMatch(item -> item.getOperator() == LogicNode.OR)) return;
+            for (LogicNode.NodeItem item : items) {
+                addRequiredTypes(item.getNode());
+            }
+        }
     }
 
     /**
@@ -61,6 +86,10 @@ public class DocumentSelector {
      * @throws RuntimeException if the evaluation enters an illegal state
      */
     public Result accepts(Context context) {
+        // A selection such as "music and music.year > 2000" is false for all other document types
+        for (DocumentNode type : requiredTypes) {
+            if (type.evaluate(context) == Boolean.FALSE) return Result.FALSE;
+        }
         return Result.toResult(expression.evaluate(context));
     }
 
@@ -18,6 +18,9 @@ public class AttributeNode implements ExpressionNode {
     private ExpressionNode value;
     private final List<Item> items = new ArrayList<Item>();
 
+    // The field path last resolved by this, reused for documents of the same type.
+    private volatile ResolvedFieldPath resolved = null;
+
     public AttributeNode(ExpressionNode value, List items) {
         this.value = value;
         for (Object obj : items) {
@@ -121,10 +124,10 @@ public class AttributeNode implements ExpressionNode {
         throw new IllegalStateException("Function '" + function + "' is not supported.");
     }
 
-    private static Object evaluateFieldPath(String fieldPth, Object value) {
+    private Object evaluateFieldPath(String fieldPth, Object value) {
         if (value instanceof DocumentPut) {
             final Document doc = ((DocumentPut) value).getDocument();
-            FieldPath fieldPath = doc.getDataType().buildFieldPath(fieldPth);
+            FieldPath fieldPath = resolveFieldPath(doc.getDataType(), fieldPth);
             IteratorHandler handler = new IteratorHandler();
             doc.iterateNested(fieldPath, 0, handler);
             if (handler.values.isEmpty()) {
@@ -141,6 +144,34 @@ public class AttributeNode implements ExpressionNode {
         return Result.FALSE;
     }
 
+    /**
+     * Returns the given field path in the given document type. Selections are nearly always evaluated over
+     * documents of the same type, so the path is resolved once and reused until the type changes.
+     */
+    private FieldPath resolveFieldPath(DocumentType type, String path) {
+        ResolvedFieldPath last = resolved;
+        if (last == null || last.type != type || ! last.path.equals(path)) {
+            last = new ResolvedFieldPath(type, path, type.buildFieldPath(path));
+            resolved = last;
+        }
+        return last.fieldPath;
+    }
+
+    /** An immutable field path resolved in a document type, such that it may be shared by threads */
+    private static final class ResolvedFieldPath {
+
+        final DocumentType type;
+        final String path;
+        final FieldPath fieldPath;
+
+        ResolvedFieldPath(DocumentType type, String path, FieldPath fieldPath) {
+            this.type = type;
+            this.path = path;
+            this.fieldPath = fieldPath;
+        }
+
+    }
+
     private static Object evaluateFunction(String function, Object value) {
         if (value instanceof VariableValueList) {
             VariableValueList retVal = new VariableValueList();
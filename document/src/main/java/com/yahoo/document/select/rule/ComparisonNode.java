@@ -23,6 +23,9 @@ public class ComparisonNode implements ExpressionNode {
     // The operator string for this.
     private String operator;
 
+    // The pattern last compiled by this, reused as long as the right-hand-side evaluates to the same string.
+    private volatile CompiledPattern pattern = null;
+
     /**
      * Constructs a new comparison node.
      *
@@ -386,11 +389,21 @@ public class ComparisonNode implements ExpressionNode {
     private Result evaluateString(Object lhs, Object rhs) {
         String left = "" + lhs; // Allows null objects to evaluate to string.
         String right = "" + rhs;
-        if (operator.equals("=~")) {
-            return Result.toResult(Pattern.compile(right).matcher(left).find());
-        } else {
-            return Result.toResult(Pattern.compile(globToRegex(right)).matcher(left).find());
+        return Result.toResult(compilePattern(operator, right).matcher(left).find());
+    }
+
+    /**
+     * Returns the pattern of the given regex or glob operand. The right-hand-side is nearly always a literal,
+     * so the pattern is compiled on the first evaluation and reused for the following ones.
+     */
+    private Pattern compilePattern(String operator, String source) {
+        CompiledPattern compiled = pattern;
+        if (compiled == null || ! compiled.source.equals(source) || ! compiled.operator.equals(operator)) {
+            compiled = new CompiledPattern(operator, source,
+                                           Pattern.compile(operator.equals("=~") ? source : globToRegex(source)));
+            pattern = compiled;
         }
+        return compiled.pattern;
     }
 
     /**
@@ -444,6 +457,21 @@ public class ComparisonNode implements ExpressionNode {
         visitor.visit(this);
     }
 
+    /** An immutable pattern compiled from the given operand and operator, such that it may be shared by threads */
+    private static final class CompiledPattern {
+
+        final String operator;
+        final String source;
+        final Pattern pattern;
+
+        CompiledPattern(String operator, String source, Pattern pattern) {
+            this.operator = operator;
+            this.source = source;
+            this.pattern = pattern;
+        }
+
+    }
+
     // Inherit doc from Object.
     @Override
     public String toString() {
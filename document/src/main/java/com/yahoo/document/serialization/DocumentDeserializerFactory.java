@@ -19,6 +19,18 @@ public class DocumentDeserializerFactory {
         return new VespaDocumentDeserializerHead(manager, buf);
     }
 
+    /**
+     * Creates a de-serializer for the current head document format, which keeps the fields of the documents it reads
+     * serialized until they are accessed. Fields which are never accessed are serialized again by copying their
+     * original bytes. Documents read by this are not safe for concurrent access, not even for reading, and corrupt
+     * fields cause a DeserializationException when they are first accessed rather than when the document is read.
+     */
+    public static DocumentDeserializer createHeadWithLazyFields(DocumentTypeManager manager, GrowableByteBuffer buf) {
+        VespaDocumentDeserializerHead deserializer = new VespaDocumentDeserializerHead(manager, buf);
+        deserializer.setLazyFields(true);
+        return deserializer;
+    }
+
     /**
      * Creates a de-serializer for the 6.x document format.
      * This format is an extension of the 4.2 format.
@@ -0,0 +1,130 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.io.GrowableByteBuffer;
+
+import java.util.Arrays;
+
+/**
+ * The fields of a struct which are kept in their serialized form until they are accessed. A struct read by a
+ * deserializer with lazy fields holds one of these, which deserializes a field the first time its value is needed,
+ * and which lets a serializer copy the original bytes of the fields that were never accessed.
+ *
+ * This is not thread safe, and neither is the struct holding it: even reading the fields of such a struct
+ * modifies it.
+ *
+ * @author agent
+ */
+public final class SerializedFields {
+
+    private final DocumentTypeManager manager;
+    private Field[] fields;
+    private byte[][] data;
+    private int[] offsets;
+    private int[] lengths;
+    private int size = 0;
+
+    SerializedFields(DocumentTypeManager manager) {
+        this.manager = manager;
+        this.fields = new Field[4];
+        this.data = new byte[4][];
+        this.offsets = new int[4];
+        this.lengths = new int[4];
+    }
+
+    private SerializedFields(SerializedFields other) {
+        this.manager = other.manager;
+        this.fields = Arrays.copyOf(other.fields, other.size);
+        this.data = Arrays.copyOf(other.data, other.size);
+        this.offsets = Arrays.copyOf(other.offsets, other.size);
+        this.lengths = Arrays.copyOf(other.lengths, other.size);
+        this.size = other.size;
+    }
+
+    /** Adds a field serialized at the given position in the given data, which must not be modified afterwards */
+    void add(Field field, byte[] data, int offset, int length) {
+        if (size == fields.length) {
+            int capacity = Math.max(4, size * 2);
+            fields = Arrays.copyOf(fields, capacity);
+            this.data = Arrays.copyOf(this.data, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        fields[size] = field;
+        this.data[size] = data;
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+
+    /** Returns the number of fields which are still serialized */
+    public int size() { return size; }
+
+    /** Returns the field at the given index, which is less than {@link #size()} */
+    public Field getField(int index) { return fields[index]; }
+
+    /** Returns whether the field with the given id is still serialized in this */
+    public boolean contains(int fieldId) {
+        return indexOf(fieldId) >= 0;
+    }
+
+    /**
+     * Deserializes and removes the field with the given id from this.
+     *
+     * @return the value of the field, or null if it is not serialized in this
+     * @throws DeserializationException if the value of the field can not be deserialized
+     */
+    public FieldValue deserialize(int fieldId) {
+        int index = indexOf(fieldId);
+        if (index < 0) return null;
+
+        Field field = fields[index];
+        VespaDocumentDeserializer6 in = new VespaDocumentDeserializer6(manager, GrowableByteBuffer.wrap(data[index]));
+        in.position(offsets[index]);
+        FieldValue value = field.getDataType().createFieldValue();
+        value.deserialize(field, in);
+        removeAt(index);
+        return value;
+    }
+
+    /** Removes the field with the given id from this, if present */
+    public void remove(int fieldId) {
+        int index = indexOf(fieldId);
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    /** Returns a copy of this, sharing the serialized data */
+    public SerializedFields copy() {
+        return new SerializedFields(this);
+    }
+
+    /** Writes the serialized value of the field at the given index to the given buffer */
+    void write(int index, GrowableByteBuffer buffer) {
+        buffer.put(data[index], offsets[index], lengths[index]);
+    }
+
+    private int indexOf(int fieldId) {
+        for (int i = 0; i < size; i++) {
+            if (fields[i].getId() == fieldId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        size--;
+        System.arraycopy(fields, index + 1, fields, index, size - index);
+        System.arraycopy(data, index + 1, data, index, size - index);
+        System.arraycopy(offsets, index + 1, offsets, index, size - index);
+        System.arraycopy(lengths, index + 1, lengths, index, size - index);
+        fields[size] = null;
+        data[size] = null;
+    }
+
+}
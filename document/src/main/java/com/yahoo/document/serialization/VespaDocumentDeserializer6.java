@@ -28,6 +28,7 @@ import com.yahoo.document.datatypes.IntegerFieldValue;
 import com.yahoo.document.datatypes.LongFieldValue;
 import com.yahoo.document.datatypes.MapFieldValue;
 import com.yahoo.document.datatypes.PredicateFieldValue;
+import com.yahoo.document.datatypes.PrimitiveList;
 import com.yahoo.document.datatypes.Raw;
 import com.yahoo.document.datatypes.ReferenceFieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
@@ -88,6 +89,7 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
     private List<SpanNode> spanNodes;
     private List<Annotation> annotations;
     private int[] stringPositions;
+    private boolean lazyFields = false;
 
     VespaDocumentDeserializer6(DocumentTypeManager manager, GrowableByteBuffer buf) {
         super(buf);
@@ -95,6 +97,14 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         this.version = Document.SERIALIZED_VERSION;
     }
 
+    /**
+     * Sets whether the fields of documents should be kept serialized until they are accessed,
+     * instead of being deserialized when the document is read. This only applies to the current document format.
+     */
+    void setLazyFields(boolean lazyFields) {
+        this.lazyFields = lazyFields;
+    }
+
     final public DocumentTypeManager getDocumentTypeManager() { return manager; }
 
     public void read(Document document) {
@@ -130,11 +140,20 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         Struct b = doc.getBody();
         h.clear();
         b.clear();
+        SerializedFields headerFields = null, bodyFields = null;
+        if (lazyFields && version == Document.SERIALIZED_VERSION) {
+            headerFields = new SerializedFields(manager);
+            bodyFields = new SerializedFields(manager);
+        }
         if ((content & 0x2) != 0) {
-            readHeaderBody(h, b);
+            readHeaderBody(h, b, headerFields, bodyFields);
         }
         if ((content & 0x4) != 0) {
-            readHeaderBody(b, h);
+            readHeaderBody(b, h, bodyFields, headerFields);
+        }
+        if (headerFields != null) {
+            h.setSerializedFields(headerFields);
+            b.setSerializedFields(bodyFields);
         }
 
         if (version < 8) {
@@ -153,8 +172,17 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
 
     public <T extends FieldValue> void read(FieldBase field, Array<T> array) {
         int numElements = getNumCollectionElems();
-        ArrayList<T> list = new ArrayList<T>(numElements);
         ArrayDataType type = array.getDataType();
+        PrimitiveList<T> primitives = (PrimitiveList<T>) PrimitiveList.create(type.getNestedType(), numElements);
+        if (primitives != null) {
+            int startPos = position();
+            if (readPrimitives(primitives, numElements)) {
+                array.setPrimitiveValues(primitives);
+                return;
+            }
+            position(startPos);
+        }
+        ArrayList<T> list = new ArrayList<T>(numElements);
         for (int i = 0; i < numElements; i++) {
             if (version < 7) {
                 getInt(null); // We don't need size for anything
@@ -167,6 +195,43 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         array.addAll(list);
     }
 
+    private boolean readPrimitives(PrimitiveList<?> values, int numElements) {
+        for (int i = 0; i < numElements; i++) {
+            if (version < 7) {
+                getInt(null); // We don't need size for anything
+            }
+            if ( ! readPrimitive(values)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a value the way a field value of the type of the given list is read, and adds it to the list.
+     *
+     * @return false if the value can not be held in the list, in which case the position of this is undefined
+     */
+    private boolean readPrimitive(PrimitiveList<?> values) {
+        if (values instanceof PrimitiveList.Ints) {
+            ((PrimitiveList.Ints) values).add(getInt(null));
+        } else if (values instanceof PrimitiveList.Longs) {
+            ((PrimitiveList.Longs) values).add(getLong(null));
+        } else if (values instanceof PrimitiveList.Floats) {
+            ((PrimitiveList.Floats) values).add(getFloat(null));
+        } else if (values instanceof PrimitiveList.Doubles) {
+            ((PrimitiveList.Doubles) values).add(getDouble(null));
+        } else if (values instanceof PrimitiveList.Strings) {
+            byte coding = getByte(null);
+            if ((coding & 64) == 64) return false; // Span trees must be read into a string field value
+            int length = getInt1_4Bytes(null);
+            byte[] stringArray = getBytes(null, length - 1);
+            getByte(null); // Skip 0-termination
+            ((PrimitiveList.Strings) values).add(Utf8.toString(stringArray));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
     public <K extends FieldValue, V extends FieldValue> void read(FieldBase field, MapFieldValue<K, V> map) {
         int numElements = getNumCollectionElems();
         Map<K,V> hash = new HashMap<>();
@@ -370,7 +435,12 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         buf = bigBuf;
     }
 
-    private void readHeaderBody(Struct primary, Struct alternate) {
+    /**
+     * Reads the fields of a header or body block into the struct they belong to, or into the serialized fields
+     * of that struct when these are not null.
+     */
+    private void readHeaderBody(Struct primary, Struct alternate,
+                                SerializedFields primaryFields, SerializedFields alternateFields) {
         primary.setVersion(version);
         int startPos = position();
 
@@ -445,7 +515,10 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
                   s = alternate;
                 }
             }
-            if (s != null) {
+            if (s != null && primaryFields != null) {
+              (s == primary ? primaryFields : alternateFields).add(structField, destination, posBefore,
+                                                                  fieldIdsAndLengths.get(i).second.intValue());
+            } else if (s != null) {
               FieldValue value = structField.getDataType().createFieldValue();
               value.deserialize(structField, this);
               s.setFieldValue(structField, value);
@@ -470,6 +543,16 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
             throw new DeserializationException("Bad number of weighted set elements, " + numElements);
         }
 
+        PrimitiveList<T> keys = (PrimitiveList<T>) PrimitiveList.create(type.getNestedType(), numElements);
+        if (keys != null) {
+            int startPos = position();
+            PrimitiveList.Ints weights = new PrimitiveList.Ints(numElements);
+            if (readPrimitiveWeightedSet(keys, weights, numElements)) {
+                ws.setPrimitiveValues(keys, weights);
+                return;
+            }
+            position(startPos);
+        }
         ws.clearAndReserve(numElements * 2); // Avoid resizing
         for (int i = 0; i < numElements; i++) {
             int size = getInt(null);
@@ -481,6 +564,15 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
 
     }
 
+    private boolean readPrimitiveWeightedSet(PrimitiveList<?> keys, PrimitiveList.Ints weights, int numElements) {
+        for (int i = 0; i < numElements; i++) {
+            getInt(null); // We don't need size for anything
+            if ( ! readPrimitive(keys)) return false;
+            weights.add(getInt(null));
+        }
+        return ! keys.hasDuplicates(); // Only the map keeps the last weight of repeated keys
+    }
+
     public void read(FieldBase field, AnnotationReference value) {
         int seqId = buf.getInt1_2_4Bytes();
         try {
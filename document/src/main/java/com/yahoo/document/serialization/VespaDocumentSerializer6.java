@@ -30,6 +30,7 @@ import com.yahoo.document.datatypes.IntegerFieldValue;
 import com.yahoo.document.datatypes.LongFieldValue;
 import com.yahoo.document.datatypes.MapFieldValue;
 import com.yahoo.document.datatypes.PredicateFieldValue;
+import com.yahoo.document.datatypes.PrimitiveList;
 import com.yahoo.document.datatypes.Raw;
 import com.yahoo.document.datatypes.ReferenceFieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
@@ -142,6 +143,13 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
     public <T extends FieldValue> void write(FieldBase field, Array<T> array) {
         buf.putInt1_2_4Bytes(array.size());
 
+        PrimitiveList<T> primitives = array.getPrimitiveValues();
+        if (primitives != null) {
+            for (int i = 0; i < primitives.size(); i++) {
+                writePrimitive(primitives, i);
+            }
+            return;
+        }
         List<T> lst = array.getValues();
         for (FieldValue value : lst) {
             value.serialize(this);
@@ -259,11 +267,7 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         if (!value.getSpanTrees().isEmpty()) {
             coding |= 64;
         }
-        buf.put(coding);
-        buf.putInt1_4Bytes(stringBytes.length + 1);
-
-        buf.put(stringBytes);
-        buf.put(((byte) 0));
+        writeString(coding, stringBytes);
 
         Map<String, SpanTree> trees = value.getSpanTreeMap();
         if ((trees != null) && !trees.isEmpty()) {
@@ -295,6 +299,31 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         }
     }
 
+    private void writeString(byte coding, byte[] stringBytes) {
+        buf.put(coding);
+        buf.putInt1_4Bytes(stringBytes.length + 1);
+
+        buf.put(stringBytes);
+        buf.put(((byte) 0));
+    }
+
+    /** Writes the value at the given index in the given list the way a field value of the same type is written */
+    private void writePrimitive(PrimitiveList<?> values, int index) {
+        if (values instanceof PrimitiveList.Ints) {
+            buf.putInt(((PrimitiveList.Ints) values).getInt(index));
+        } else if (values instanceof PrimitiveList.Longs) {
+            buf.putLong(((PrimitiveList.Longs) values).getLong(index));
+        } else if (values instanceof PrimitiveList.Floats) {
+            buf.putFloat(((PrimitiveList.Floats) values).getFloat(index));
+        } else if (values instanceof PrimitiveList.Doubles) {
+            buf.putDouble(((PrimitiveList.Doubles) values).getDouble(index));
+        } else if (values instanceof PrimitiveList.Strings) {
+            writeString((byte) 0, createUTF8CharArray(((PrimitiveList.Strings) values).getString(index)));
+        } else {
+            throw new SerializationException("Can not serialize values of type " + values.getValueType());
+        }
+    }
+
     @Override
     public void write(FieldBase field, TensorFieldValue value) {
         if (value.getTensor().isPresent()) {
@@ -338,7 +367,17 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         List<Integer> fieldIds = new LinkedList<>();
         List<java.lang.Integer> fieldLengths = new LinkedList<>();
 
-        for (Map.Entry<Field, FieldValue> value : s.getFields()) {
+        SerializedFields serialized = s.getSerializedFields();
+        for (int i = 0; serialized != null && i < serialized.size(); i++) {
+            // Fields which were never accessed since this was deserialized are copied as they are
+            int startPos = buffer.position();
+            serialized.write(i, buffer);
+
+            fieldLengths.add(buffer.position() - startPos);
+            fieldIds.add(serialized.getField(i).getId(s.getVersion()));
+        }
+
+        for (Map.Entry<Field, FieldValue> value : s.getDeserializedFields()) {
 
             int startPos = buffer.position();
             value.getValue().serialize(value.getKey(), this);
@@ -406,6 +445,22 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         putInt(null, type.getNestedType().getId());
         putInt(null, ws.size());
 
+        PrimitiveList<T> keys = ws.getPrimitiveKeys();
+        if (keys != null) {
+            PrimitiveList.Ints weights = ws.getPrimitiveWeights();
+            for (int i = 0; i < keys.size(); i++) {
+                int sizePos = buf.position();
+                putInt(null, 0);
+                int startPos = buf.position();
+                writePrimitive(keys, i);
+                putInt(null, weights.getInt(i));
+                int finalPos = buf.position();
+                buf.position(sizePos);
+                putInt(null, finalPos - startPos);
+                buf.position(finalPos);
+            }
+            return;
+        }
         Iterator<T> it = ws.fieldValueIterator();
         while (it.hasNext()) {
             FieldValue key = it.next();
@@ -0,0 +1,128 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.sun.management.ThreadMXBean;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.document.WeightedSetDataType;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.text.Utf8;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures the throughput of reading a feed of puts of documents with text, array, weighted set and tensor fields,
+ * when the fields of each put are read directly from the stream, because the id comes first, and when they are
+ * buffered, because the fields come first.
+ *
+ * usage: JsonReaderBenchmark [documents] [tensor size] [seconds]
+ *
+ * @author agent
+ */
+public class JsonReaderBenchmark {
+
+    private final DocumentTypeManager types = new DocumentTypeManager();
+    private final JsonFactory parserFactory = new JsonFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+
+    public JsonReaderBenchmark(int tensorSize) {
+        DocumentType type = new DocumentType("article");
+        type.addField(new Field("title", DataType.STRING));
+        type.addField(new Field("body", DataType.STRING));
+        type.addField(new Field("popularity", DataType.INT));
+        type.addField(new Field("tags", new ArrayDataType(DataType.STRING)));
+        type.addField(new Field("categories", new WeightedSetDataType(DataType.STRING, false, false)));
+        type.addField(new Field("embedding",
+                                new TensorDataType(new TensorType.Builder().indexed("x", tensorSize).build())));
+        types.registerDocumentType(type);
+    }
+
+    /** Returns a feed of the given number of puts, with the fields first or last in each put */
+    public byte[] feed(int documents, int tensorSize, boolean fieldsFirst) {
+        Random random = new Random(documents);
+        StringBuilder feed = new StringBuilder("[\n");
+        for (int i = 0; i < documents; i++) {
+            String id = "\"put\": \"id:benchmark:article::" + i + "\"";
+            StringBuilder fields = new StringBuilder("\"fields\": {");
+            fields.append("\"title\": \"").append(words(random, 8)).append("\", ");
+            fields.append("\"body\": \"").append(words(random, 200)).append("\", ");
+            fields.append("\"popularity\": ").append(random.nextInt(1000)).append(", ");
+            fields.append("\"tags\": [");
+            for (int j = 0; j < 5; j++)
+                fields.append(j > 0 ? ", " : "").append('"').append(words(random, 1)).append('"');
+            fields.append("], \"categories\": {");
+            for (int j = 0; j < 5; j++)
+                fields.append(j > 0 ? ", " : "").append('"').append(words(random, 2)).append("\": ").append(random.nextInt(100));
+            fields.append("}, \"embedding\": { \"cells\": [");
+            for (int j = 0; j < tensorSize; j++)
+                fields.append(j > 0 ? ", " : "").append("{ \"address\": { \"x\": \"").append(j)
+                      .append("\" }, \"value\": ").append(random.nextFloat()).append(" }");
+            fields.append("]}}");
+            feed.append(i > 0 ? ",\n" : "").append("{ ");
+            if (fieldsFirst)
+                feed.append(fields).append(", ").append(id);
+            else
+                feed.append(id).append(", ").append(fields);
+            feed.append(" }");
+        }
+        return Utf8.toBytes(feed.append("\n]\n").toString());
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            words.append(i > 0 ? " " : "");
+            for (int j = 2 + random.nextInt(8); j > 0; j--)
+                words.append((char)('a' + random.nextInt(26)));
+        }
+        return words.toString();
+    }
+
+    /**
+     * Reads the given feed repeatedly for the given time, and returns the number of documents read per second,
+     * and the number of bytes allocated per document
+     */
+    public double[] benchmark(byte[] feed, long durationMillis) {
+        ThreadMXBean threads = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long documents = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        long end = start + durationMillis * 1000000;
+        while (System.nanoTime() < end) {
+            JsonReader reader = new JsonReader(types, new ByteArrayInputStream(feed), parserFactory);
+            while (reader.next() != null)
+                documents++;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+        return new double[] { documents * 1.0e9 / elapsed, (double)allocated / documents };
+    }
+
+    public static void main(String[] args) {
+        int documents = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int tensorSize = (args.length > 1) ? Integer.parseInt(args[1]) : 128;
+        long durationMillis = (args.length > 2) ? (long)(Double.parseDouble(args[2]) * 1000) : 10000;
+
+        JsonReaderBenchmark benchmark = new JsonReaderBenchmark(tensorSize);
+        byte[] streamed = benchmark.feed(documents, tensorSize, false);
+        byte[] buffered = benchmark.feed(documents, tensorSize, true);
+        benchmark.benchmark(streamed, durationMillis / 2); // warm up
+        benchmark.benchmark(buffered, durationMillis / 2);
+
+        System.out.println("Reading " + documents + " documents with tensors of size " + tensorSize +
+                           ", " + streamed.length / documents + " bytes per document");
+        for (int i = 0; i < 3; i++) { // alternate, as both are sensitive to what else runs on the machine
+            double[] result = benchmark.benchmark(streamed, durationMillis);
+            System.out.println(String.format("streamed: %10.0f documents/s, %8.0f bytes allocated/document", result[0], result[1]));
+            result = benchmark.benchmark(buffered, durationMillis);
+            System.out.println(String.format("buffered: %10.0f documents/s, %8.0f bytes allocated/document", result[0], result[1]));
+        }
+    }
+
+}
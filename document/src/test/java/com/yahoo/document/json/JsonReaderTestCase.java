@@ -26,6 +26,7 @@ import com.yahoo.document.datatypes.BoolFieldValue;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.IntegerFieldValue;
 import com.yahoo.document.datatypes.MapFieldValue;
+import com.yahoo.document.datatypes.PrimitiveList;
 import com.yahoo.document.datatypes.Raw;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.Struct;
@@ -71,6 +72,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 
@@ -529,6 +531,26 @@ public class JsonReaderTestCase {
         assertEquals(new StringFieldValue("tralle"), a.get(1));
     }
 
+    @Test
+    public void testArrayIsReadIntoPrimitiveList() throws IOException {
+        JsonReader r = createReader(inputJson("{ 'put': 'id:unittest:testarray::whee',",
+                "  'fields': {",
+                "    'actualarray': [",
+                "      'nalle',",
+                "      'tralle' ]}}"));
+        DocumentParseInfo parseInfo = r.parseDocument().get();
+        DocumentType docType = r.readDocumentType(parseInfo.documentId);
+        DocumentPut put = new DocumentPut(new Document(docType, parseInfo.documentId));
+        new VespaJsonDocumentReader().readPut(parseInfo.fieldsBuffer, put);
+        Document doc = put.getDocument();
+        Array<?> a = (Array<?>) doc.getFieldValue(doc.getField("actualarray"));
+        PrimitiveList<?> values = a.getPrimitiveValues();
+        assertSame(PrimitiveList.Strings.class, values.getClass());
+        assertEquals(2, values.size());
+        assertEquals("nalle", ((PrimitiveList.Strings) values).getString(0));
+        assertEquals("tralle", ((PrimitiveList.Strings) values).getString(1));
+    }
+
     @Test
     public void testMap() throws IOException {
         JsonReader r = createReader(inputJson("{ 'put': 'id:unittest:testmap::whee',",
@@ -851,6 +873,100 @@ public class JsonReaderTestCase {
         controlBasicFeed(r);
     }
 
+    @Test
+    public void testStreamedPutsAreEqualToBufferedPuts() throws IOException {
+        String[] puts = {
+                inputJson("{ 'put': 'id:unittest:smoke::doc1',",
+                          "  'fields': { 'something': 'smoketest', 'flag': true, 'nalle': 'bamse', 'int1': 3 }}"),
+                inputJson("{ 'put': 'id:unittest:mirrors::whee',",
+                          "  'fields': { 'skuggsjaa': { 'sandra': 'person', 'cloud': 'another person' }}}"),
+                inputJson("{ 'put': 'id:unittest:testarray::whee',",
+                          "  'fields': { 'actualarray': [ 'person', 'another person' ]}}"),
+                inputJson("{ 'put': 'id:unittest:testset::whee',",
+                          "  'fields': { 'actualset': { 'person': 37, 'another person': 41 }}}"),
+                inputJson("{ 'put': 'id:unittest:testmap::whee',",
+                          "  'fields': { 'actualmap': [ { 'key': 'bamse', 'value': 'teddy' } ]}}"),
+                inputJson("{ 'put': 'id:unittest:testMapStringToArrayOfInt::whee',",
+                          "  'fields': { 'actualMapStringToArrayOfInt': { 'bamse': [1, 2, 3] }}}"),
+                inputJson("{ 'put': 'id:unittest:testtensor::whee',",
+                          "  'fields': { 'sparse_tensor': { 'cells': [",
+                          "    { 'address': { 'x': 'a', 'y': 'b' }, 'value': 2.0 },",
+                          "    { 'address': { 'x': 'c', 'y': 'b' }, 'value': 3.0 } ]}}}"),
+                inputJson("{ 'put': 'id:unittest:testnull::whee',",
+                          "  'fields': { 'intfield': null, 'stringfield': 'foo' }}")
+        };
+        StringBuilder feed = new StringBuilder("[");
+        for (String put : puts) {
+            feed.append(feed.length() > 1 ? "," : "").append(put);
+        }
+        JsonReader streaming = createReader(feed.append("]").toString());
+        for (String put : puts) {
+            JsonReader buffering = createReader(put);
+            DocumentParseInfo parseInfo = buffering.parseDocument().get();
+            DocumentPut expected = new DocumentPut(new Document(buffering.readDocumentType(parseInfo.documentId),
+                                                                parseInfo.documentId));
+            new VespaJsonDocumentReader().readPut(parseInfo.fieldsBuffer, expected);
+
+            DocumentPut actual = (DocumentPut) streaming.next();
+            assertEquals(expected.getDocument(), actual.getDocument());
+        }
+        assertNull(streaming.next());
+    }
+
+    @Test
+    public void testPutIsReadFromStreamOnlyWhenIdPrecedesFields() throws IOException {
+        String fields = "'fields': { 'something': 'smoketest', 'flag': true, 'nalle': 'bamse' }";
+        DocumentParseInfo streamed = new DocumentParser(parserFactory.createParser(
+                inputJson("{ 'put': 'id:unittest:smoke::whee', " + fields + " }")), types).parse(Optional.empty()).get();
+        assertTrue(streamed.fieldsBuffer.isEmpty());
+        smokeTestDoc(streamed.put.getDocument());
+
+        DocumentParseInfo buffered = new DocumentParser(parserFactory.createParser(
+                inputJson("{ " + fields + ", 'put': 'id:unittest:smoke::whee' }")), types).parse(Optional.empty()).get();
+        assertNull(buffered.put);
+        assertFalse(buffered.fieldsBuffer.isEmpty());
+    }
+
+    @Test
+    public void testStreamedPutWithConditionAfterFields() {
+        JsonReader r = createReader(inputJson("[",
+                "{ 'put': 'id:unittest:smoke::whee',",
+                "  'fields': { 'something': 'smoketest', 'flag': true, 'nalle': 'bamse' },",
+                "  'condition': 'smoke.nalle == \\\"bamse\\\"' },",
+                "{ 'remove': 'id:unittest:smoke::whee' }]"));
+        DocumentPut put = (DocumentPut) r.next();
+        smokeTestDoc(put.getDocument());
+        assertEquals("smoke.nalle == \"bamse\"", put.getCondition().getSelection());
+        assertTrue(r.next() instanceof DocumentRemove);
+        assertNull(r.next());
+    }
+
+    @Test
+    public void testErrorInStreamedPutLeavesReaderAtNextOperation() {
+        JsonReader r = createReader(inputJson("[",
+                "{ 'put': 'id:unittest:smoke::bad',",
+                "  'fields': { 'something': 'smoketest', 'misspelled': { 'nested': [ 1, 2 ] }, 'nalle': 'bamse' }},",
+                "{ 'put': 'id:unittest:nosuchtype::bad', 'fields': { 'something': { 'nested': 'value' }}},",
+                "{ 'put': 'id:unittest:smoke::good',",
+                "  'fields': { 'something': 'smoketest', 'flag': true, 'nalle': 'bamse' }}]"));
+        try {
+            r.next();
+            fail("Expected exception for unknown field");
+        } catch (IllegalArgumentException e) {
+            assertEquals("No field 'misspelled' in the structure of type 'smoke'", e.getMessage());
+        }
+        try {
+            r.next();
+            fail("Expected exception for unknown document type");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Document type nosuchtype does not exist", e.getMessage());
+        }
+        DocumentPut put = (DocumentPut) r.next();
+        assertEquals("id:unittest:smoke::good", put.getId().toString());
+        smokeTestDoc(put.getDocument());
+        assertNull(r.next());
+    }
+
     protected void controlBasicFeed(JsonReader r) {
         DocumentOperation d = r.next();
         Document doc = ((DocumentPut) d).getDocument();
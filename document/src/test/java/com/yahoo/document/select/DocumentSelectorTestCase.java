@@ -718,6 +718,32 @@ public class DocumentSelectorTestCase {
         assertEquals(Result.FALSE, evaluate("test.structarrmap{$x}.key == 17 AND test.stringweightedset{$x}", documents.get(1)));
     }
 
+    @Test
+    public void testSelectorIsReusedForManyDocuments() throws ParseException {
+        List<DocumentPut> documents = new ArrayList<>();
+        documents.add(createDocument("id:fo:test::anything", 24, 2.0f, "foo", "bar"));
+        documents.add(createDocument("id:oo:test::anything", 13, 4.1f, "bar", "foo"));
+        documents.add(createDocument("id:ba:test::anything", 42, 1.5f, "foobar", "foo"));
+
+        DocumentSelector glob = new DocumentSelector("test.hstring = \"foo*\"");
+        DocumentSelector regex = new DocumentSelector("test.hstring =~ id.namespace");
+        DocumentSelector typed = new DocumentSelector("test and test.hint > 20");
+        Result[] expectedGlob = { Result.TRUE, Result.FALSE, Result.TRUE };
+        Result[] expectedRegex = { Result.TRUE, Result.FALSE, Result.TRUE };
+        Result[] expectedTyped = { Result.TRUE, Result.FALSE, Result.TRUE };
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < documents.size(); i++) {
+                assertEquals(expectedGlob[i], glob.accepts(documents.get(i)));
+                assertEquals(expectedRegex[i], regex.accepts(documents.get(i)));
+                assertEquals(expectedTyped[i], typed.accepts(documents.get(i)));
+            }
+        }
+        assertEquals(Result.FALSE, typed.accepts(createRemove("id:ns:usergroup::1")));
+        assertEquals(Result.INVALID, typed.accepts(createRemove("id:ns:test::1")));
+        assertEquals(Result.FALSE, new DocumentSelector("(test and test.hint > 20) and usergroup").accepts(documents.get(0)));
+        assertEquals(Result.TRUE, new DocumentSelector("usergroup or test.hint > 20").accepts(documents.get(0)));
+    }
+
     @Test
     public void testTicket1769674() {
         assertParseError("music.uri=\"junk",
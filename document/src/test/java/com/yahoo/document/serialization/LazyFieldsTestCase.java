@@ -0,0 +1,121 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.CompressionConfig;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.datatypes.Array;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ */
+@SuppressWarnings("deprecation")
+public class LazyFieldsTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type = new DocumentType("lazy");
+
+    public LazyFieldsTestCase() {
+        type.addHeaderField("title", DataType.STRING);
+        type.addHeaderField("year", DataType.INT);
+        type.addField("body", DataType.STRING);
+        type.addField("tags", new ArrayDataType(DataType.STRING));
+        type.getBodyType().setCompressionConfig(new CompressionConfig(CompressionType.LZ4));
+        manager.registerDocumentType(type);
+    }
+
+    private Document createDocument() {
+        Document document = new Document(type, "id:ns:lazy::1");
+        document.setFieldValue("title", new StringFieldValue("a title"));
+        document.setFieldValue("year", new IntegerFieldValue(2019));
+        String text = "a body which is long enough to be compressed, compressed, compressed, compressed";
+        document.setFieldValue("body", new StringFieldValue(text));
+        Array<StringFieldValue> tags = new Array<>(type.getField("tags").getDataType());
+        tags.add(new StringFieldValue("first"));
+        tags.add(new StringFieldValue("second"));
+        document.setFieldValue("tags", tags);
+        return document;
+    }
+
+    private static byte[] serialize(Document document) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        DocumentSerializerFactory.createHead(buffer).write(document);
+        buffer.flip();
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
+
+    private Document deserialize(byte[] data, boolean lazy) {
+        GrowableByteBuffer buffer = GrowableByteBuffer.wrap(data);
+        return Document.createDocument(lazy ? DocumentDeserializerFactory.createHeadWithLazyFields(manager, buffer)
+                                            : DocumentDeserializerFactory.createHead(manager, buffer));
+    }
+
+    @Test
+    public void requireThatFieldsAreDeserializedWhenAccessed() {
+        Document original = createDocument();
+        Document lazy = deserialize(serialize(original), true);
+        assertEquals(2, lazy.getHeader().getSerializedFields().size());
+        assertEquals(2, lazy.getBody().getSerializedFields().size());
+        assertEquals(4, lazy.getFieldCount());
+
+        assertEquals(original.getFieldValue("body"), lazy.getFieldValue("body"));
+        assertEquals(1, lazy.getBody().getSerializedFields().size());
+        assertEquals(original.getFieldValue("year"), lazy.getFieldValue("year"));
+        assertEquals(4, lazy.getFieldCount());
+
+        assertEquals(original, lazy);
+        assertNull(lazy.getHeader().getSerializedFields());
+        assertNull(lazy.getBody().getSerializedFields());
+    }
+
+    @Test
+    public void requireThatUntouchedDocumentIsSerializedToTheSameBytes() {
+        byte[] data = serialize(createDocument());
+        assertArrayEquals(data, serialize(deserialize(data, true)));
+    }
+
+    @Test
+    public void requireThatModifiedFieldIsSerializedWithTheUntouchedOnes() {
+        Document expected = createDocument();
+        expected.setFieldValue("title", new StringFieldValue("another title"));
+        expected.removeFieldValue("tags");
+
+        Document lazy = deserialize(serialize(createDocument()), true);
+        lazy.setFieldValue("title", new StringFieldValue("another title"));
+        assertEquals(new StringFieldValue("first"), ((Array<?>)lazy.removeFieldValue("tags")).get(0));
+        assertEquals(3, lazy.getFieldCount());
+        assertEquals(1, lazy.getHeader().getSerializedFields().size());
+
+        assertEquals(expected, deserialize(serialize(lazy), false));
+    }
+
+    @Test
+    public void requireThatCloneIsIndependentOfOriginal() {
+        Document lazy = deserialize(serialize(createDocument()), true);
+        Document clone = lazy.clone();
+        FieldValue year = new IntegerFieldValue(1999);
+        clone.setFieldValue("year", year);
+        assertEquals(new IntegerFieldValue(2019), lazy.getFieldValue("year"));
+        assertEquals(year, clone.getFieldValue("year"));
+        assertNotEquals(lazy, clone);
+        clone.setFieldValue("year", new IntegerFieldValue(2019));
+        assertEquals(lazy, clone);
+    }
+
+}
@@ -0,0 +1,234 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.WeightedSetDataType;
+import com.yahoo.document.annotation.SpanTree;
+import com.yahoo.document.datatypes.Array;
+import com.yahoo.document.datatypes.DoubleFieldValue;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.LongFieldValue;
+import com.yahoo.document.datatypes.PrimitiveList;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.WeightedSet;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.text.Utf8;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class PrimitiveCollectionsTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type = new DocumentType("primitives");
+
+    public PrimitiveCollectionsTestCase() {
+        type.addField("ints", new ArrayDataType(DataType.INT));
+        type.addField("doubles", new ArrayDataType(DataType.DOUBLE));
+        type.addField("strings", new ArrayDataType(DataType.STRING));
+        type.addField("stringset", new WeightedSetDataType(DataType.STRING, false, false));
+        type.addField("longset", new WeightedSetDataType(DataType.LONG, false, false));
+        manager.registerDocumentType(type);
+    }
+
+    private Document createDocument() {
+        Document document = new Document(type, "id:ns:primitives::1");
+        Array<IntegerFieldValue> ints = new Array<>(type.getField("ints").getDataType());
+        Array<DoubleFieldValue> doubles = new Array<>(type.getField("doubles").getDataType());
+        Array<StringFieldValue> strings = new Array<>(type.getField("strings").getDataType());
+        for (int i = 0; i < 100; i++) {
+            ints.add(new IntegerFieldValue(i * 7));
+            doubles.add(new DoubleFieldValue(i / 3.0));
+            strings.add(new StringFieldValue("string" + i));
+        }
+        document.setFieldValue("ints", ints);
+        document.setFieldValue("doubles", doubles);
+        document.setFieldValue("strings", strings);
+
+        WeightedSet<StringFieldValue> stringSet = new WeightedSet<>(type.getField("stringset").getDataType());
+        WeightedSet<LongFieldValue> longSet = new WeightedSet<>(type.getField("longset").getDataType());
+        for (int i = 0; i < 50; i++) {
+            stringSet.put(new StringFieldValue("key" + i), i - 25);
+            longSet.put(new LongFieldValue(1L << i), i);
+        }
+        document.setFieldValue("stringset", stringSet);
+        document.setFieldValue("longset", longSet);
+        return document;
+    }
+
+    private static byte[] serialize(Document document) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        DocumentSerializerFactory.createHead(buffer).write(document);
+        buffer.flip();
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
+
+    private Document deserialize(byte[] data) {
+        return Document.createDocument(DocumentDeserializerFactory.createHead(manager, GrowableByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void requireThatCollectionsAreDeserializedIntoPrimitiveLists() {
+        Document document = deserialize(serialize(createDocument()));
+        assertSame(PrimitiveList.Ints.class, ((Array<?>)document.getFieldValue("ints")).getPrimitiveValues().getClass());
+        assertSame(PrimitiveList.Doubles.class, ((Array<?>)document.getFieldValue("doubles")).getPrimitiveValues().getClass());
+        assertSame(PrimitiveList.Strings.class, ((Array<?>)document.getFieldValue("strings")).getPrimitiveValues().getClass());
+        WeightedSet<?> stringSet = (WeightedSet<?>)document.getFieldValue("stringset");
+        assertSame(PrimitiveList.Strings.class, stringSet.getPrimitiveKeys().getClass());
+        assertEquals(50, stringSet.size());
+        assertEquals(50, stringSet.getPrimitiveWeights().size());
+        assertSame(PrimitiveList.Longs.class, ((WeightedSet<?>)document.getFieldValue("longset")).getPrimitiveKeys().getClass());
+    }
+
+    @Test
+    public void requireThatPrimitiveListsAreSerializedToTheSameBytes() {
+        byte[] data = serialize(createDocument());
+        assertArrayEquals(data, serialize(deserialize(data)));
+    }
+
+    @Test
+    public void requireThatPrimitiveListsAreEqualToFieldValues() {
+        Document original = createDocument();
+        Document document = deserialize(serialize(original));
+        assertEquals(original.getFieldValue("ints").hashCode(), document.getFieldValue("ints").hashCode());
+        assertEquals(original.getFieldValue("ints").toString(), document.getFieldValue("ints").toString());
+        assertEquals(0, original.getFieldValue("ints").compareTo(document.getFieldValue("ints")));
+        assertNotNull(((Array<?>)document.getFieldValue("ints")).getPrimitiveValues());
+        assertEquals(original, document);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void requireThatElementsCanBeModified() {
+        Document document = deserialize(serialize(createDocument()));
+        Array<IntegerFieldValue> ints = (Array<IntegerFieldValue>)document.getFieldValue("ints");
+        Array<IntegerFieldValue> clone = ints.clone();
+        assertNotNull(clone.getPrimitiveValues());
+
+        ints.get(3).assign(-1);
+        assertNull(ints.getPrimitiveValues());
+        assertEquals(new IntegerFieldValue(-1), ints.get(3));
+        assertEquals(new IntegerFieldValue(21), clone.get(3));
+        clone.add(new IntegerFieldValue(-1));
+        assertEquals(101, clone.size());
+
+        WeightedSet<LongFieldValue> longSet = (WeightedSet<LongFieldValue>)document.getFieldValue("longset");
+        longSet.put(new LongFieldValue(1L), 100);
+        assertNull(longSet.getPrimitiveKeys());
+        assertEquals(50, longSet.size());
+        assertEquals(Integer.valueOf(100), longSet.get(new LongFieldValue(1L)));
+        assertEquals(Integer.valueOf(49), longSet.get(new LongFieldValue(1L << 49)));
+
+        Document modified = deserialize(serialize(document));
+        assertEquals(new IntegerFieldValue(-1), ((Array<?>)modified.getFieldValue("ints")).get(3));
+        assertEquals(Integer.valueOf(100), ((WeightedSet<?>)modified.getFieldValue("longset")).get(new LongFieldValue(1L)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void requireThatStringsWithSpanTreesAreDeserializedIntoFieldValues() {
+        Document original = createDocument();
+        StringFieldValue annotated = new StringFieldValue("annotated");
+        annotated.setSpanTree(new SpanTree("tree"));
+        ((Array<StringFieldValue>)original.getFieldValue("strings")).add(annotated);
+
+        Document document = deserialize(serialize(original));
+        Array<StringFieldValue> strings = (Array<StringFieldValue>)document.getFieldValue("strings");
+        assertNull(strings.getPrimitiveValues());
+        assertEquals(101, strings.size());
+        assertNotNull(strings.get(100).getSpanTree("tree"));
+        assertEquals(original, document);
+    }
+
+    @Test
+    public void requireThatConcurrentReadersGetTheSameElements() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 100; round++) {
+                Document document = deserialize(serialize(createDocument()));
+                Array<?> ints = (Array<?>)document.getFieldValue("ints");
+                WeightedSet<?> longSet = (WeightedSet<?>)document.getFieldValue("longset");
+                CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<List<Object>>> elements = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    elements.add(executor.submit(() -> {
+                        barrier.await();
+                        return List.of(ints.get(42), longSet.iterator().next());
+                    }));
+                }
+                List<Object> first = elements.get(0).get();
+                for (Future<List<Object>> other : elements) {
+                    assertSame(first.get(0), other.get().get(0));
+                    assertSame(first.get(1), other.get().get(1));
+                }
+                assertEquals(50, longSet.size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void requireThatWeightedSetsWithRepeatedKeysAreDeserializedIntoMaps() {
+        Document original = new Document(type, "id:ns:primitives::1");
+        WeightedSet<StringFieldValue> stringSet = new WeightedSet<>(type.getField("stringset").getDataType());
+        stringSet.put(new StringFieldValue("repeatedA"), 1);
+        stringSet.put(new StringFieldValue("repeatedB"), 2);
+        original.setFieldValue("stringset", stringSet);
+        byte[] data = serialize(original);
+        byte[] repeatedB = Utf8.toBytes("repeatedB");
+        for (int i = 0; i + repeatedB.length <= data.length; i++) {
+            if (Arrays.equals(repeatedB, Arrays.copyOfRange(data, i, i + repeatedB.length)))
+                data[i + repeatedB.length - 1] = 'A';
+        }
+
+        WeightedSet<StringFieldValue> deserialized = (WeightedSet<StringFieldValue>)deserialize(data).getFieldValue("stringset");
+        assertNull(deserialized.getPrimitiveKeys());
+        assertEquals(1, deserialized.size());
+        assertTrue(deserialized.contains(new StringFieldValue("repeatedA")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void requireThatPrimitiveValuesWithRepeatedKeysAreRejected() {
+        WeightedSet<LongFieldValue> longSet = new WeightedSet<>(type.getField("longset").getDataType());
+        PrimitiveList.Longs keys = new PrimitiveList.Longs(3);
+        PrimitiveList.Ints weights = new PrimitiveList.Ints(3);
+        for (long key : new long[] { 3, 1, 3 }) {
+            keys.add(key);
+            weights.add(1);
+        }
+        assertTrue(keys.hasDuplicates());
+        try {
+            longSet.setPrimitiveValues((PrimitiveList<LongFieldValue>)(PrimitiveList<?>)keys, weights);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("The keys of a weighted set must be unique", e.getMessage());
+        }
+        assertEquals(0, longSet.size());
+    }
+
+}
@@ -54,6 +54,7 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
     private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
     private final ThrottlePolicy throttlePolicy;
     private final SourceSession session;
+    private final PutDocumentBatcher putBatcher;
     private String route;
     private String routeForGet;
     private int traceLevel;
@@ -86,6 +87,15 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
         if (handler == null) {
             handler = new MyReplyHandler(asyncParams.getResponseHandler(), responses);
         }
+        if (mbusParams.getMaxPutBatchCount() > 1) {
+            putBatcher = new PutDocumentBatcher(mbusParams.getMaxPutBatchCount(), mbusParams.getMaxPutBatchSize(),
+                                                mbusParams.getMaxPutBatchDelayMillis(),
+                                                mbusParams.getMaxPendingBatchedPutCount(), mbusParams.getMaxPendingBatchedPutSize(),
+                                                this::sendOrdered, handler);
+            handler = putBatcher;
+        } else {
+            putBatcher = null;
+        }
         session = bus.createSourceSession(handler, mbusParams.getSourceSessionParams());
     }
 
@@ -155,17 +165,39 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
             long reqId = requestId.incrementAndGet();
             msg.setContext(reqId);
             msg.getTrace().setLevel(traceLevel);
-            String toRoute = (msg.getType() == DocumentProtocol.MESSAGE_GETDOCUMENT ? routeForGet : route);
-            if (toRoute != null) {
-                return toResult(reqId, session.send(msg, toRoute, true));
-            } else {
-                return toResult(reqId, session.send(msg));
+            if (putBatcher != null && route != null) {
+                // Operations which may be reordered relative to batched puts to the same document go through the batcher
+                switch (msg.getType()) {
+                    case DocumentProtocol.MESSAGE_PUTDOCUMENT:
+                        return toResult(reqId, putBatcher.put((PutDocumentMessage)msg));
+                    case DocumentProtocol.MESSAGE_REMOVEDOCUMENT:
+                        RemoveDocumentMessage remove = (RemoveDocumentMessage)msg;
+                        return toResult(reqId, putBatcher.send(remove, remove.getDocumentId()));
+                    case DocumentProtocol.MESSAGE_UPDATEDOCUMENT:
+                        UpdateDocumentMessage update = (UpdateDocumentMessage)msg;
+                        return toResult(reqId, putBatcher.send(update, update.getDocumentUpdate().getId()));
+                }
             }
+            return toResult(reqId, sendToRoute(msg));
         } catch (Exception e) {
             return new Result(Result.ResultType.FATAL_ERROR, new Error(e.getMessage(), e));
         }
     }
 
+    private com.yahoo.messagebus.Result sendToRoute(Message msg) {
+        String toRoute = (msg.getType() == DocumentProtocol.MESSAGE_GETDOCUMENT ? routeForGet : route);
+        if (toRoute != null) {
+            return session.send(msg, toRoute, true);
+        } else {
+            return session.send(msg);
+        }
+    }
+
+    private com.yahoo.messagebus.Result sendOrdered(Message msg) {
+        msg.getTrace().setLevel(traceLevel);
+        return sendToRoute(msg);
+    }
+
     @Override
     public Response getNext() {
         return responses.poll();
@@ -178,6 +210,9 @@ public class MessageBusAsyncSession implements MessageBusSession, AsyncSession {
 
     @Override
     public void destroy() {
+        if (putBatcher != null) {
+            putBatcher.destroy();
+        }
         session.destroy();
     }
 
@@ -16,6 +16,12 @@ public class MessageBusParams extends DocumentAccessParams {
     private String route = "route:default";
     private String routeForGet = "route:default-get";
     private int traceLevel = 0;
+    private int maxPutBatchCount = 1;
+    private int maxPutBatchSize = 1024 * 1024;
+    private long maxPutBatchDelayMillis = 10;
+    private int maxPendingBatchedPutCount = 4096;
+    private long maxPendingBatchedPutSize = 64 * 1024 * 1024;
+    private boolean lazyDocumentFields = false;
     private RPCNetworkParams rpcNetworkParams = new RPCNetworkParams();
     private com.yahoo.messagebus.MessageBusParams mbusParams = new com.yahoo.messagebus.MessageBusParams();
     private SourceSessionParams sourceSessionParams = new SourceSessionParams();
@@ -144,6 +150,140 @@ public class MessageBusParams extends DocumentAccessParams {
         return this;
     }
 
+    /**
+     * Returns the max number of puts sent together in one batch message by async sessions. Batching is disabled
+     * when this is 1, which is the default.
+     *
+     * @return The max number of puts in a batch.
+     */
+    public int getMaxPutBatchCount() {
+        return maxPutBatchCount;
+    }
+
+    /**
+     * Sets the max number of puts sent together in one batch message by async sessions. Puts to documents in the same
+     * bucket group are collected into batches, which are routed once to the distributor owning them. Only puts
+     * with the same priority and timeout are batched together, and the traces of the individual puts are not
+     * returned. To keep the order of operations to each document, removes and updates to a bucket group are held
+     * back until the batches sent to it before them are replied to, and the other way around.
+     * <p>
+     * Batching requires support for {@link com.yahoo.documentapi.messagebus.protocol.PutDocumentBatchMessage} in
+     * the content cluster receiving the puts. The C++ document protocol and the distributors do not support this
+     * yet, so batching must stay disabled against current content clusters.
+     *
+     * @param maxPutBatchCount The max number of puts in a batch, or 1 to disable batching.
+     * @return This object for chaining.
+     */
+    public MessageBusParams setMaxPutBatchCount(int maxPutBatchCount) {
+        this.maxPutBatchCount = maxPutBatchCount;
+        return this;
+    }
+
+    /**
+     * Returns the max approximate size in bytes of a batch of puts.
+     *
+     * @return The max batch size.
+     */
+    public int getMaxPutBatchSize() {
+        return maxPutBatchSize;
+    }
+
+    /**
+     * Sets the max approximate size in bytes of a batch of puts. A batch is sent when it reaches this size.
+     *
+     * @param maxPutBatchSize The max batch size.
+     * @return This object for chaining.
+     */
+    public MessageBusParams setMaxPutBatchSize(int maxPutBatchSize) {
+        this.maxPutBatchSize = maxPutBatchSize;
+        return this;
+    }
+
+    /**
+     * Returns the max time in milliseconds a put waits for more puts to be batched with it.
+     *
+     * @return The max batch delay.
+     */
+    public long getMaxPutBatchDelayMillis() {
+        return maxPutBatchDelayMillis;
+    }
+
+    /**
+     * Sets the max time in milliseconds a put waits for more puts to be batched with it before its batch is sent.
+     *
+     * @param maxPutBatchDelayMillis The max batch delay.
+     * @return This object for chaining.
+     */
+    public MessageBusParams setMaxPutBatchDelayMillis(long maxPutBatchDelayMillis) {
+        this.maxPutBatchDelayMillis = maxPutBatchDelayMillis;
+        return this;
+    }
+
+    /**
+     * Returns the max number of batched puts which may be pending in an async session, that is added to a batch and
+     * not yet replied to. Puts beyond this are rejected with a transient error when they are sent.
+     *
+     * @return The max number of pending batched puts.
+     */
+    public int getMaxPendingBatchedPutCount() {
+        return maxPendingBatchedPutCount;
+    }
+
+    /**
+     * Sets the max number of batched puts which may be pending in an async session.
+     *
+     * @param maxPendingBatchedPutCount The max number of pending batched puts.
+     * @return This object for chaining.
+     */
+    public MessageBusParams setMaxPendingBatchedPutCount(int maxPendingBatchedPutCount) {
+        this.maxPendingBatchedPutCount = maxPendingBatchedPutCount;
+        return this;
+    }
+
+    /**
+     * Returns the max approximate size in bytes of the batched puts which may be pending in an async session.
+     * Puts beyond this are rejected with a transient error when they are sent.
+     *
+     * @return The max size of pending batched puts.
+     */
+    public long getMaxPendingBatchedPutSize() {
+        return maxPendingBatchedPutSize;
+    }
+
+    /**
+     * Sets the max approximate size in bytes of the batched puts which may be pending in an async session.
+     *
+     * @param maxPendingBatchedPutSize The max size of pending batched puts.
+     * @return This object for chaining.
+     */
+    public MessageBusParams setMaxPendingBatchedPutSize(long maxPendingBatchedPutSize) {
+        this.maxPendingBatchedPutSize = maxPendingBatchedPutSize;
+        return this;
+    }
+
+    /**
+     * Returns whether the fields of received documents are kept serialized until they are accessed.
+     *
+     * @return Whether document fields are deserialized lazily.
+     */
+    public boolean getLazyDocumentFields() {
+        return lazyDocumentFields;
+    }
+
+    /**
+     * Sets whether the fields of received documents should be kept serialized until they are accessed. This saves
+     * deserializing and serializing fields of documents which are only passed on, but reading a document then
+     * changes it, so such documents are not safe for concurrent access, not even for reading, and corrupt fields
+     * cause an exception when they are first accessed rather than when the message is received. Default is false.
+     *
+     * @param lazyDocumentFields Whether document fields should be deserialized lazily.
+     * @return This object for chaining.
+     */
+    public MessageBusParams setLazyDocumentFields(boolean lazyDocumentFields) {
+        this.lazyDocumentFields = lazyDocumentFields;
+        return this;
+    }
+
     /**
      * Returns the params object used to instantiate the rpc network layer for message bus.
      *
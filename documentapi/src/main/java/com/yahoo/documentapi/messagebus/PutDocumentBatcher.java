@@ -0,0 +1,367 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus;
+
+import com.yahoo.document.BucketId;
+import com.yahoo.document.BucketIdFactory;
+import com.yahoo.document.DocumentId;
+import com.yahoo.documentapi.messagebus.protocol.DocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentBatchMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentBatchReply;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.WriteDocumentReply;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Result;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects puts to documents in the same bucket group into batches, which are sent as single
+ * {@link PutDocumentBatchMessage}s when they reach the max count or size, or have waited for the max delay.
+ * The replies to batches are split into one reply for each put, which are passed on to the reply handler of this.
+ * <p>
+ * Only puts with the same priority and timeout are batched together. The batches of a bucket group are built
+ * and sent while holding the lock of that group, such that puts to the same document are sent in order.
+ * <p>
+ * Batches are sequenced on their bucket group, while other operations are sequenced on their document, so
+ * message bus does not order them against each other. Removes and updates to documents in a group where puts are
+ * batched must therefore also be sent through this: The pending batch of the group is sent first, and the operation
+ * is held back until all batches of the group are replied to. Puts added after it are in turn held back until
+ * all such operations of the group are replied to.
+ * <p>
+ * The number and size of the operations which are waiting in, or sent from, this is bounded, and operations which
+ * would exceed these bounds are rejected when they are added.
+ *
+ * @author agent
+ */
+class PutDocumentBatcher implements ReplyHandler {
+
+    /** The number of bucket bits which determines the distributor owning a bucket */
+    static final int BUCKET_GROUP_BITS = 16;
+
+    private final BucketIdFactory bucketIdFactory = new BucketIdFactory();
+    private final Map<BucketId, Group> groups = new ConcurrentHashMap<>();
+
+    /** The group of each operation other than puts which is sent and not yet replied to */
+    private final Map<Message, Group> sentOperations = new ConcurrentHashMap<>();
+
+    private final int maxCount;
+    private final int maxSize;
+    private final long maxDelayMillis;
+    private final int maxPendingCount;
+    private final long maxPendingSize;
+    private final Function<Message, Result> sender;
+    private final ReplyHandler handler;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "put-document-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The number of operations added to this which have not been replied to yet */
+    private int pendingCount = 0;
+
+    /** The approximate size of the operations added to this which have not been replied to yet */
+    private long pendingSize = 0;
+
+    /**
+     * Creates a batcher
+     *
+     * @param maxCount the max number of puts in a batch
+     * @param maxSize the max approximate size of a batch, in bytes
+     * @param maxDelayMillis the max time a put waits for its batch to fill up
+     * @param maxPendingCount the max number of operations which may be added to this and not yet replied to
+     * @param maxPendingSize the max approximate size in bytes of the operations which may be added to this and not yet replied to
+     * @param sender sends batches and other operations, returning whether they were accepted
+     * @param handler receives the replies to the operations
+     */
+    PutDocumentBatcher(int maxCount, int maxSize, long maxDelayMillis, int maxPendingCount, long maxPendingSize,
+                       Function<Message, Result> sender, ReplyHandler handler) {
+        this.maxCount = maxCount;
+        this.maxSize = maxSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxPendingCount = maxPendingCount;
+        this.maxPendingSize = maxPendingSize;
+        this.sender = sender;
+        this.handler = handler;
+    }
+
+    /**
+     * Adds the given put to the batch of its bucket group, and sends the batch if it is full. If the pending batch
+     * of the group has a different priority or timeout than the put, that batch is sent first. If other operations
+     * of the group are waiting or not yet replied to, the put is held back until they are.
+     *
+     * @return whether the put was accepted; it is rejected with {@link ErrorCode#SEND_QUEUE_FULL} if there are
+     *         too many pending operations in this already
+     */
+    Result put(PutDocumentMessage put) {
+        return add(put, put.getDocumentPut().getId());
+    }
+
+    /**
+     * Sends the given operation to the given document, ordered after the puts added to this before it, and before
+     * the puts added after it, to the same bucket group. This sends the pending batch of the group, and holds the
+     * operation back until all batches of the group are replied to.
+     *
+     * @return whether the operation was accepted; it is rejected with {@link ErrorCode#SEND_QUEUE_FULL} if there are
+     *         too many pending operations in this already, or with the error of the sender if sent immediately
+     */
+    Result send(DocumentMessage operation, DocumentId documentId) {
+        return add(operation, documentId);
+    }
+
+    private Result add(DocumentMessage operation, DocumentId documentId) {
+        int size = operation.getApproxSize();
+        if ( ! reserve(size)) {
+            return new Result(new Error(ErrorCode.SEND_QUEUE_FULL, "Too many pending operations, max is " +
+                                                                   maxPendingCount + " operations and " + maxPendingSize + " bytes"));
+        }
+        Result result;
+        try {
+            BucketId bucket = bucketIdFactory.getBucketId(documentId);
+            BucketId groupId = new BucketId(BUCKET_GROUP_BITS, bucket.getRawId());
+            result = groups.computeIfAbsent(groupId, Group::new).add(operation);
+        } catch (RuntimeException e) {
+            release(size);
+            throw e;
+        }
+        if ( ! result.isAccepted()) {
+            release(size);
+        }
+        return result;
+    }
+
+    private static boolean canBatchWith(PutDocumentBatchMessage batch, PutDocumentMessage put) {
+        return batch.getPriority() == put.getPriority() && batch.getTimeRemaining() == put.getTimeRemaining();
+    }
+
+    private synchronized boolean reserve(int size) {
+        if (pendingCount >= maxPendingCount || pendingSize + size > maxPendingSize) return false;
+        pendingCount++;
+        pendingSize += size;
+        return true;
+    }
+
+    private synchronized void release(int size) {
+        pendingCount--;
+        pendingSize -= size;
+    }
+
+    /** Returns the number of operations which are added to this and not yet replied to */
+    synchronized int pendingCount() { return pendingCount; }
+
+    /** Sends all pending batches, fails all operations waiting to be sent, and stops the timer of this */
+    void destroy() {
+        timer.shutdownNow();
+        for (Group group : groups.values()) {
+            group.destroy();
+        }
+    }
+
+    private Result sendToSender(Message message) {
+        try {
+            return sender.apply(message);
+        } catch (RuntimeException e) {
+            return new Result(new Error(ErrorCode.FATAL_ERROR, e.getMessage()));
+        }
+    }
+
+    /** Passes a reply with the given error for the given operation, which was not sent, to the handler of this */
+    private void fail(DocumentMessage operation, Error error) {
+        Reply reply = operation.createReply();
+        reply.setMessage(operation);
+        reply.setContext(operation.getContext());
+        reply.addError(error);
+        release(operation.getApproxSize());
+        handler.handleReply(reply);
+    }
+
+    @Override
+    public void handleReply(Reply reply) {
+        Message message = reply.getMessage();
+        if (message instanceof PutDocumentBatchMessage) {
+            PutDocumentBatchMessage batch = (PutDocumentBatchMessage)message;
+            replyToPuts(batch, reply);
+            groups.get(batch.getBucketId()).batchReplied();
+            return;
+        }
+        Group group = (message != null) ? sentOperations.remove(message) : null;
+        if (group != null) {
+            release(message.getApproxSize());
+        }
+        handler.handleReply(reply);
+        if (group != null) {
+            group.operationReplied();
+        }
+    }
+
+    /** Splits the given reply to a batch into one reply for each put, and passes those to the handler of this */
+    private void replyToPuts(PutDocumentBatchMessage batch, Reply reply) {
+        List<PutDocumentMessage> puts = batch.getPuts();
+        List<WriteDocumentReply> replies = (reply instanceof PutDocumentBatchReply)
+                                           ? ((PutDocumentBatchReply)reply).getReplies()
+                                           : Collections.emptyList();
+        for (int i = 0; i < puts.size(); i++) {
+            PutDocumentMessage put = puts.get(i);
+            release(put.getApproxSize());
+            WriteDocumentReply putReply = (WriteDocumentReply)put.createReply();
+            if (i < replies.size()) {
+                putReply.setHighestModificationTimestamp(replies.get(i).getHighestModificationTimestamp());
+                replies.get(i).getErrors().forEach(putReply::addError);
+            } else if ( ! reply.hasErrors()) {
+                putReply.addError(new Error(DocumentProtocol.ERROR_INTERNAL_FAILURE,
+                                            "Got no reply to this put in the reply to its batch"));
+            }
+            reply.getErrors().forEach(putReply::addError);
+            putReply.setMessage(put);
+            putReply.setContext(put.getContext());
+            handler.handleReply(putReply);
+        }
+    }
+
+    /**
+     * The pending batch and the operations waiting to be sent of a bucket group. Batches and operations of the group
+     * are built and sent while holding the lock of this. Either batches or other operations may be in flight
+     * at any time, not both.
+     */
+    private class Group {
+
+        private final BucketId id;
+
+        /** The batch which puts are currently added to, or null if none */
+        private PutDocumentBatchMessage batch = null;
+
+        /** Operations, including puts, which must wait for the batches or operations in flight to be replied to */
+        private final Deque<DocumentMessage> waiting = new ArrayDeque<>();
+
+        private int batchesInFlight = 0;
+        private int operationsInFlight = 0;
+
+        Group(BucketId id) {
+            this.id = id;
+        }
+
+        /** Adds the given operation to this, and returns the result of sending it, if it was sent at once */
+        synchronized Result add(DocumentMessage operation) {
+            if (waiting.isEmpty()) {
+                if (operation instanceof PutDocumentMessage) {
+                    if (operationsInFlight == 0) {
+                        addToBatch((PutDocumentMessage)operation);
+                        return Result.ACCEPTED;
+                    }
+                } else {
+                    sendBatch();
+                    if (batchesInFlight == 0) {
+                        return sendOperation(operation);
+                    }
+                }
+            }
+            waiting.add(operation);
+            return Result.ACCEPTED;
+        }
+
+        synchronized void batchReplied() {
+            batchesInFlight--;
+            sendWaiting();
+        }
+
+        synchronized void operationReplied() {
+            operationsInFlight--;
+            sendWaiting();
+        }
+
+        synchronized void flush(PutDocumentBatchMessage batch) {
+            if (this.batch != batch) return; // already sent when it became full
+            sendBatch();
+        }
+
+        synchronized void destroy() {
+            sendBatch();
+            for (DocumentMessage operation : waiting) {
+                fail(operation, new Error(ErrorCode.SEND_ABORTED, "Session destroyed before this was sent"));
+            }
+            waiting.clear();
+        }
+
+        /** Sends the waiting operations which may be sent now, in order */
+        private void sendWaiting() {
+            while ( ! waiting.isEmpty()) {
+                DocumentMessage next = waiting.peek();
+                if (next instanceof PutDocumentMessage) {
+                    if (operationsInFlight > 0) return;
+                    waiting.poll();
+                    addToBatch((PutDocumentMessage)next);
+                } else {
+                    sendBatch();
+                    if (batchesInFlight > 0) return;
+                    waiting.poll();
+                    Result result = sendOperation(next);
+                    if ( ! result.isAccepted()) {
+                        fail(next, result.getError());
+                    }
+                }
+            }
+        }
+
+        private void addToBatch(PutDocumentMessage put) {
+            if (batch != null && ! canBatchWith(batch, put)) {
+                sendBatch();
+            }
+            if (batch == null) {
+                PutDocumentBatchMessage created = new PutDocumentBatchMessage(id);
+                created.setPriority(put.getPriority());
+                created.setTimeRemaining(put.getTimeRemaining());
+                created.setLoadType(put.getLoadType());
+                batch = created;
+                timer.schedule(() -> flush(created), maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.addPut(put);
+            if (batch.getPuts().size() >= maxCount || batch.getApproxSize() >= maxSize) {
+                sendBatch();
+            }
+        }
+
+        /** Sends the pending batch of this, if any */
+        private void sendBatch() {
+            if (batch == null) return;
+            PutDocumentBatchMessage sent = batch;
+            batch = null;
+            batchesInFlight++;
+            Result result = sendToSender(sent);
+            if ( ! result.isAccepted()) {
+                batchesInFlight--;
+                Reply reply = sent.createReply();
+                reply.setMessage(sent);
+                reply.addError(result.getError());
+                replyToPuts(sent, reply);
+            }
+        }
+
+        /** Sends the given operation, which is not a put, and returns the result of sending it */
+        private Result sendOperation(DocumentMessage operation) {
+            operationsInFlight++;
+            sentOperations.put(operation, this);
+            Result result = sendToSender(operation);
+            if ( ! result.isAccepted()) {
+                operationsInFlight--;
+                sentOperations.remove(operation);
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -62,6 +62,7 @@ public class DocumentProtocol implements Protocol {
     public static final int MESSAGE_EMPTYBUCKETS = DOCUMENT_MESSAGE + 23;
     public static final int MESSAGE_REMOVELOCATION = DOCUMENT_MESSAGE + 24;
     public static final int MESSAGE_QUERYRESULT = DOCUMENT_MESSAGE + 25;
+    public static final int MESSAGE_PUTDOCUMENTBATCH = DOCUMENT_MESSAGE + 26;
 
     /**
      * All reply types that are implemented by this protocol.
@@ -84,6 +85,7 @@ public class DocumentProtocol implements Protocol {
     public static final int REPLY_EMPTYBUCKETS = DOCUMENT_REPLY + 23;
     public static final int REPLY_REMOVELOCATION = DOCUMENT_REPLY + 24;
     public static final int REPLY_QUERYRESULT = DOCUMENT_REPLY + 25;
+    public static final int REPLY_PUTDOCUMENTBATCH = DOCUMENT_REPLY + 26;
     public static final int REPLY_WRONGDISTRIBUTION = DOCUMENT_REPLY + 1000;
     public static final int REPLY_DOCUMENTIGNORED = DOCUMENT_REPLY + 1001;
 
@@ -274,6 +276,19 @@ public class DocumentProtocol implements Protocol {
     }
 
     public DocumentProtocol(DocumentTypeManager docMan, String configId, LoadTypeSet set) {
+        this(docMan, configId, set, false);
+    }
+
+    /**
+     * Creates a document protocol.
+     *
+     * @param docMan the document types to use, or null to get them from config
+     * @param configId the config id of the routing policies, or null to use "client"
+     * @param set the load types to use
+     * @param lazyDocumentFields whether the fields of received documents should be kept serialized until they are
+     *                           accessed, see {@link com.yahoo.documentapi.messagebus.MessageBusParams#setLazyDocumentFields}
+     */
+    public DocumentProtocol(DocumentTypeManager docMan, String configId, LoadTypeSet set, boolean lazyDocumentFields) {
         // Prepare config string for routing policy factories.
         String cfg = (configId == null ? "client" : configId);
         if (docMan != null) {
@@ -282,7 +297,7 @@ public class DocumentProtocol implements Protocol {
             this.docMan = new DocumentTypeManager();
             DocumentTypeManagerConfigurer.configure(this.docMan, cfg);
         }
-        routableRepository = new RoutableRepository(set);
+        routableRepository = new RoutableRepository(set, lazyDocumentFields);
 
         // When adding factories to this list, please KEEP THEM ORDERED alphabetically like they are now.
         putRoutingPolicyFactory("AND", new RoutingPolicyFactories.AndPolicyFactory());
@@ -312,6 +327,7 @@ public class DocumentProtocol implements Protocol {
         putRoutableFactory(MESSAGE_GETDOCUMENT, new RoutableFactories60.GetDocumentMessageFactory(), from6);
         putRoutableFactory(MESSAGE_MAPVISITOR, new RoutableFactories60.MapVisitorMessageFactory(), from6);
         putRoutableFactory(MESSAGE_PUTDOCUMENT, new RoutableFactories60.PutDocumentMessageFactory(), from6);
+        putRoutableFactory(MESSAGE_PUTDOCUMENTBATCH, new RoutableFactories60.PutDocumentBatchMessageFactory(), from6);
         putRoutableFactory(MESSAGE_QUERYRESULT, new RoutableFactories60.QueryResultMessageFactory(), from6);
         putRoutableFactory(MESSAGE_REMOVEDOCUMENT, new RoutableFactories60.RemoveDocumentMessageFactory(), from6);
         putRoutableFactory(MESSAGE_REMOVELOCATION, new RoutableFactories60.RemoveLocationMessageFactory(), from6);
@@ -330,6 +346,7 @@ public class DocumentProtocol implements Protocol {
         putRoutableFactory(REPLY_GETDOCUMENT, new RoutableFactories60.GetDocumentReplyFactory(), from6);
         putRoutableFactory(REPLY_MAPVISITOR, new RoutableFactories60.MapVisitorReplyFactory(), from6);
         putRoutableFactory(REPLY_PUTDOCUMENT, new RoutableFactories60.PutDocumentReplyFactory(), from6);
+        putRoutableFactory(REPLY_PUTDOCUMENTBATCH, new RoutableFactories60.PutDocumentBatchReplyFactory(), from6);
         putRoutableFactory(REPLY_QUERYRESULT, new RoutableFactories60.QueryResultReplyFactory(), from6);
         putRoutableFactory(REPLY_REMOVEDOCUMENT, new RoutableFactories60.RemoveDocumentReplyFactory(), from6);
         putRoutableFactory(REPLY_REMOVELOCATION, new RoutableFactories60.RemoveLocationReplyFactory(), from6);
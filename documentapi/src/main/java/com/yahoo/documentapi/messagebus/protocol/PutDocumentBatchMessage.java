@@ -0,0 +1,110 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.protocol;
+
+import com.yahoo.document.BucketId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of document puts to documents in the same bucket group. The batch is routed as a single message to the
+ * distributor owning the bucket, and is replied to with a {@link PutDocumentBatchReply} holding one reply for each
+ * put, in the order they were added. The batch is sent with a single priority and timeout, which should be those
+ * of all its puts.
+ * <p>
+ * This message is only decoded by the Java document protocol so far. The C++ document protocol and the
+ * distributors must support it before it can be sent to a content cluster.
+ *
+ * @author agent
+ */
+public class PutDocumentBatchMessage extends DocumentMessage {
+
+    private BucketId bucketId;
+    private final List<PutDocumentMessage> puts = new ArrayList<>();
+
+    /**
+     * Constructs a new, empty batch of puts to documents in the given bucket.
+     *
+     * @param bucketId the bucket containing all the documents of this batch
+     */
+    public PutDocumentBatchMessage(BucketId bucketId) {
+        this.bucketId = bucketId;
+    }
+
+    /**
+     * Returns the bucket containing all the documents of this batch. This is the bucket used to route it.
+     *
+     * @return the bucket id
+     */
+    public BucketId getBucketId() {
+        return bucketId;
+    }
+
+    /**
+     * Sets the bucket containing all the documents of this batch.
+     *
+     * @param bucketId the bucket id to set
+     */
+    public void setBucketId(BucketId bucketId) {
+        this.bucketId = bucketId;
+    }
+
+    /**
+     * Adds a put to the end of this batch. The put must be to a document in the bucket of this batch.
+     *
+     * @param put the put to add
+     */
+    public void addPut(PutDocumentMessage put) {
+        puts.add(put);
+    }
+
+    /**
+     * Returns the puts of this batch, in the order they were added.
+     *
+     * @return an unmodifiable list of the puts
+     */
+    public List<PutDocumentMessage> getPuts() {
+        return Collections.unmodifiableList(puts);
+    }
+
+    @Override
+    public DocumentReply createReply() {
+        return new PutDocumentBatchReply();
+    }
+
+    @Override
+    public int getApproxSize() {
+        int size = super.getApproxSize() + 8 + 4;
+        for (PutDocumentMessage put : puts) {
+            size += put.getApproxSize();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean hasSequenceId() {
+        return true;
+    }
+
+    /**
+     * Sequences batches by their bucket, which keeps the order of puts to each document. This does not order
+     * batches against other operations to the same documents, which are sequenced by document, so the sender
+     * must not have both in flight to the same bucket at the same time.
+     */
+    @Override
+    public long getSequenceId() {
+        return bucketId.getRawId();
+    }
+
+    @Override
+    public int getType() {
+        return DocumentProtocol.MESSAGE_PUTDOCUMENTBATCH;
+    }
+
+    @Override
+    public String toString() {
+        return "PutDocumentBatchMessage(" + bucketId + ", " + puts.size() + " puts)";
+    }
+
+}
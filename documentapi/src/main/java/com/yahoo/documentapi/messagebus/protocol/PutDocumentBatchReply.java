@@ -0,0 +1,31 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The reply to a {@link PutDocumentBatchMessage}, holding one reply for each put of the batch, in the same order.
+ * Errors added to this reply itself apply to all the puts of the batch.
+ *
+ * @author agent
+ */
+public class PutDocumentBatchReply extends DocumentReply {
+
+    private final List<WriteDocumentReply> replies = new ArrayList<>();
+
+    public PutDocumentBatchReply() {
+        super(DocumentProtocol.REPLY_PUTDOCUMENTBATCH);
+    }
+
+    /**
+     * Returns the replies to the puts of the batch. The receiver of the batch adds one reply for each put,
+     * carrying the modification timestamp of the put and any errors particular to it.
+     *
+     * @return the modifiable list of replies
+     */
+    public List<WriteDocumentReply> getReplies() {
+        return replies;
+    }
+
+}
@@ -13,6 +13,7 @@ import com.yahoo.document.serialization.DocumentSerializer;
 import com.yahoo.document.serialization.DocumentSerializerFactory;
 import com.yahoo.documentapi.messagebus.loadtypes.LoadTypeSet;
 import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.Error;
 import com.yahoo.messagebus.Routable;
 import com.yahoo.vdslib.DocumentSummary;
 import com.yahoo.vdslib.SearchResult;
@@ -608,6 +609,71 @@ public abstract class RoutableFactories60 {
         }
     }
 
+    public static class PutDocumentBatchMessageFactory extends DocumentMessageFactory {
+
+        private final PutDocumentMessageFactory putFactory = new PutDocumentMessageFactory();
+
+        @Override
+        protected DocumentMessage doDecode(DocumentDeserializer buf) {
+            PutDocumentBatchMessage msg = new PutDocumentBatchMessage(new BucketId(buf.getLong(null)));
+            int len = buf.getInt(null);
+            for (int i = 0; i < len; i++) {
+                PutDocumentMessage put = new PutDocumentMessage();
+                putFactory.decodeInto(put, buf);
+                msg.addPut(put);
+            }
+            return msg;
+        }
+
+        @Override
+        protected boolean doEncode(DocumentMessage obj, DocumentSerializer buf) {
+            PutDocumentBatchMessage msg = (PutDocumentBatchMessage)obj;
+            buf.putLong(null, msg.getBucketId().getRawId());
+            buf.putInt(null, msg.getPuts().size());
+            for (PutDocumentMessage put : msg.getPuts()) {
+                if ( ! putFactory.doEncode(put, buf)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static class PutDocumentBatchReplyFactory extends DocumentReplyFactory {
+
+        @Override
+        protected DocumentReply doDecode(DocumentDeserializer buf) {
+            PutDocumentBatchReply reply = new PutDocumentBatchReply();
+            int len = buf.getInt(null);
+            for (int i = 0; i < len; i++) {
+                WriteDocumentReply put = new WriteDocumentReply(DocumentProtocol.REPLY_PUTDOCUMENT);
+                put.setHighestModificationTimestamp(buf.getLong(null));
+                int errors = buf.getInt(null);
+                for (int j = 0; j < errors; j++) {
+                    int code = buf.getInt(null);
+                    put.addError(new Error(code, decodeString(buf)));
+                }
+                reply.getReplies().add(put);
+            }
+            return reply;
+        }
+
+        @Override
+        protected boolean doEncode(DocumentReply obj, DocumentSerializer buf) {
+            PutDocumentBatchReply reply = (PutDocumentBatchReply)obj;
+            buf.putInt(null, reply.getReplies().size());
+            for (WriteDocumentReply put : reply.getReplies()) {
+                buf.putLong(null, put.getHighestModificationTimestamp());
+                buf.putInt(null, put.getNumErrors());
+                for (int i = 0; i < put.getNumErrors(); i++) {
+                    buf.putInt(null, put.getError(i).getCode());
+                    encodeString(put.getError(i).getMessage(), buf);
+                }
+            }
+            return true;
+        }
+    }
+
     public static class PutDocumentMessageFactory extends DocumentMessageFactory {
         protected void decodeInto(PutDocumentMessage msg, DocumentDeserializer buf) {
             msg.setDocumentPut(new DocumentPut(Document.createDocument(buf)));
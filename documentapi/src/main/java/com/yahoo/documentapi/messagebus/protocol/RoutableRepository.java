@@ -29,9 +29,15 @@ final class RoutableRepository {
     private final CopyOnWriteHashMap<Integer, VersionMap> factoryTypes = new CopyOnWriteHashMap<>();
     private final CopyOnWriteHashMap<CacheKey, RoutableFactory> cache = new CopyOnWriteHashMap<>();
     private LoadTypeSet loadTypes;
+    private final boolean lazyDocumentFields;
 
-    public RoutableRepository(LoadTypeSet set) {
+    /**
+     * @param set the load types to use
+     * @param lazyDocumentFields whether the fields of decoded documents should be kept serialized until accessed
+     */
+    public RoutableRepository(LoadTypeSet set, boolean lazyDocumentFields) {
         loadTypes = set;
+        this.lazyDocumentFields = lazyDocumentFields;
     }
 
     /**
@@ -52,7 +58,8 @@ final class RoutableRepository {
         DocumentDeserializer in;
 
         if (version.getMajor() >= 5) {
-            in = DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data));
+            in = lazyDocumentFields ? DocumentDeserializerFactory.createHeadWithLazyFields(docMan, GrowableByteBuffer.wrap(data))
+                                    : DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data));
         } else {
             in = DocumentDeserializerFactory.create42(docMan, GrowableByteBuffer.wrap(data));
         }
@@ -0,0 +1,307 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus;
+
+import com.yahoo.document.BucketIdFactory;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.documentapi.messagebus.protocol.DocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentBatchMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentBatchReply;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.WriteDocumentReply;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.Result;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class PutDocumentBatcherTestCase {
+
+    private final DocumentType type = new DocumentType("music");
+    private final BlockingQueue<PutDocumentBatchMessage> sent = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Message> sentOperations = new LinkedBlockingQueue<>();
+    private final List<Reply> replies = new CopyOnWriteArrayList<>();
+
+    {
+        type.addField("title", DataType.STRING);
+    }
+
+    private PutDocumentMessage put(String id) {
+        PutDocumentMessage put = new PutDocumentMessage(new DocumentPut(new Document(type, id)));
+        put.setContext(id);
+        return put;
+    }
+
+    private PutDocumentBatcher batcher(int maxCount, int maxSize, long maxDelayMillis) {
+        return batcher(maxCount, maxSize, maxDelayMillis, Integer.MAX_VALUE);
+    }
+
+    private PutDocumentBatcher batcher(int maxCount, int maxSize, long maxDelayMillis, int maxPendingCount) {
+        return new PutDocumentBatcher(maxCount, maxSize, maxDelayMillis, maxPendingCount, Long.MAX_VALUE,
+                                      this::send, replies::add);
+    }
+
+    private Result send(Message message) {
+        if (message instanceof PutDocumentBatchMessage)
+            sent.add((PutDocumentBatchMessage)message);
+        else
+            sentOperations.add(message);
+        return Result.ACCEPTED;
+    }
+
+    private RemoveDocumentMessage remove(String id) {
+        RemoveDocumentMessage remove = new RemoveDocumentMessage(new DocumentId(id));
+        remove.setContext(id);
+        return remove;
+    }
+
+    private static void reply(PutDocumentBatcher batcher, Message message) {
+        Reply reply = ((DocumentMessage)message).createReply();
+        if (message instanceof PutDocumentBatchMessage) {
+            for (PutDocumentMessage put : ((PutDocumentBatchMessage)message).getPuts())
+                ((PutDocumentBatchReply)reply).getReplies().add((WriteDocumentReply)put.createReply());
+        }
+        reply.setMessage(message);
+        reply.setContext(message.getContext());
+        batcher.handleReply(reply);
+    }
+
+    @Test
+    public void requireThatBatchIsSentWhenFull() {
+        PutDocumentBatcher batcher = batcher(3, Integer.MAX_VALUE, 60000);
+        batcher.put(put("id:ns:music:n=1:a"));
+        batcher.put(put("id:ns:music:n=1:b"));
+        assertTrue(sent.isEmpty());
+        batcher.put(put("id:ns:music:n=1:c"));
+        PutDocumentBatchMessage batch = sent.poll();
+        assertNotNull(batch);
+        assertEquals(3, batch.getPuts().size());
+        assertEquals("id:ns:music:n=1:a", batch.getPuts().get(0).getDocumentPut().getId().toString());
+        assertEquals("id:ns:music:n=1:c", batch.getPuts().get(2).getDocumentPut().getId().toString());
+        assertEquals(PutDocumentBatcher.BUCKET_GROUP_BITS, batch.getBucketId().getUsedBits());
+        batcher.destroy();
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void requireThatBatchIsSentWhenReachingMaxSize() {
+        PutDocumentMessage first = put("id:ns:music:n=1:a");
+        PutDocumentBatcher batcher = batcher(100, 2 * first.getApproxSize(), 60000);
+        batcher.put(first);
+        assertTrue(sent.isEmpty());
+        batcher.put(put("id:ns:music:n=1:b"));
+        assertEquals(2, sent.poll().getPuts().size());
+        batcher.destroy();
+    }
+
+    @Test
+    public void requireThatPutsAreBatchedByBucketGroup() {
+        BucketIdFactory factory = new BucketIdFactory();
+        PutDocumentBatcher batcher = batcher(2, Integer.MAX_VALUE, 60000);
+        batcher.put(put("id:ns:music:n=1:a"));
+        batcher.put(put("id:ns:music:n=2:a"));
+        assertTrue(sent.isEmpty());
+        batcher.put(put("id:ns:music:n=2:b"));
+        PutDocumentBatchMessage batch = sent.poll();
+        assertEquals(2, batch.getPuts().size());
+        for (PutDocumentMessage put : batch.getPuts()) {
+            assertTrue(batch.getBucketId().contains(factory.getBucketId(put.getDocumentPut().getId())));
+        }
+        batcher.destroy();
+        assertEquals(1, sent.poll().getPuts().size());
+    }
+
+    @Test
+    public void requireThatBatchIsSentAfterMaxDelay() throws InterruptedException {
+        PutDocumentBatcher batcher = batcher(100, Integer.MAX_VALUE, 10);
+        batcher.put(put("id:ns:music:n=1:a"));
+        PutDocumentBatchMessage batch = sent.poll(60, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(1, batch.getPuts().size());
+        batcher.destroy();
+        assertNull(sent.poll());
+    }
+
+    @Test
+    public void requireThatBatchReplyIsSplitIntoOneReplyForEachPut() {
+        PutDocumentBatcher batcher = batcher(2, Integer.MAX_VALUE, 60000);
+        PutDocumentMessage first = put("id:ns:music:n=1:a");
+        PutDocumentMessage second = put("id:ns:music:n=1:b");
+        batcher.put(first);
+        batcher.put(second);
+        PutDocumentBatchMessage batch = sent.poll();
+
+        PutDocumentBatchReply reply = (PutDocumentBatchReply)batch.createReply();
+        WriteDocumentReply firstReply = new WriteDocumentReply(DocumentProtocol.REPLY_PUTDOCUMENT);
+        firstReply.setHighestModificationTimestamp(17);
+        reply.getReplies().add(firstReply);
+        WriteDocumentReply secondReply = new WriteDocumentReply(DocumentProtocol.REPLY_PUTDOCUMENT);
+        secondReply.addError(new Error(DocumentProtocol.ERROR_REJECTED, "rejected"));
+        reply.getReplies().add(secondReply);
+        reply.setMessage(batch);
+        batcher.handleReply(reply);
+
+        assertEquals(2, replies.size());
+        WriteDocumentReply a = (WriteDocumentReply)replies.get(0);
+        assertSame(first, a.getMessage());
+        assertEquals("id:ns:music:n=1:a", a.getContext());
+        assertEquals(DocumentProtocol.REPLY_PUTDOCUMENT, a.getType());
+        assertEquals(17, a.getHighestModificationTimestamp());
+        assertFalse(a.hasErrors());
+        Reply b = replies.get(1);
+        assertSame(second, b.getMessage());
+        assertEquals("id:ns:music:n=1:b", b.getContext());
+        assertEquals(1, b.getNumErrors());
+        assertEquals(DocumentProtocol.ERROR_REJECTED, b.getError(0).getCode());
+        batcher.destroy();
+    }
+
+    @Test
+    public void requireThatBatchErrorIsGivenToAllPuts() {
+        PutDocumentBatcher batcher = new PutDocumentBatcher(2, Integer.MAX_VALUE, 60000, Integer.MAX_VALUE, Long.MAX_VALUE,
+                                                            batch -> new Result(new Error(ErrorCode.SEND_QUEUE_FULL, "full")),
+                                                            replies::add);
+        batcher.put(put("id:ns:music:n=1:a"));
+        batcher.put(put("id:ns:music:n=1:b"));
+        assertEquals(2, replies.size());
+        assertEquals(0, batcher.pendingCount());
+        for (Reply reply : replies) {
+            assertEquals(DocumentProtocol.REPLY_PUTDOCUMENT, reply.getType());
+            assertEquals(1, reply.getNumErrors());
+            assertEquals(ErrorCode.SEND_QUEUE_FULL, reply.getError(0).getCode());
+        }
+        batcher.destroy();
+    }
+
+    @Test
+    public void requireThatPutsAreRejectedWhenTooManyArePending() {
+        PutDocumentBatcher batcher = batcher(2, Integer.MAX_VALUE, 60000, 3);
+        assertTrue(batcher.put(put("id:ns:music:n=1:a")).isAccepted());
+        assertTrue(batcher.put(put("id:ns:music:n=1:b")).isAccepted());
+        assertTrue(batcher.put(put("id:ns:music:n=1:c")).isAccepted());
+        Result rejected = batcher.put(put("id:ns:music:n=1:d"));
+        assertFalse(rejected.isAccepted());
+        assertEquals(ErrorCode.SEND_QUEUE_FULL, rejected.getError().getCode());
+        assertEquals(3, batcher.pendingCount());
+
+        PutDocumentBatchMessage batch = sent.poll();
+        Reply reply = batch.createReply();
+        reply.setMessage(batch);
+        batcher.handleReply(reply);
+        assertEquals(1, batcher.pendingCount());
+        assertTrue(batcher.put(put("id:ns:music:n=1:d")).isAccepted());
+        batcher.destroy();
+    }
+
+    @Test
+    public void requireThatOnlyPutsWithTheSamePriorityAndTimeoutAreBatchedTogether() {
+        PutDocumentBatcher batcher = batcher(100, Integer.MAX_VALUE, 60000);
+        batcher.put(put("id:ns:music:n=1:a"));
+        PutDocumentMessage highPriority = put("id:ns:music:n=1:b");
+        highPriority.setPriority(DocumentProtocol.Priority.HIGH_1);
+        batcher.put(highPriority);
+        PutDocumentBatchMessage first = sent.poll();
+        assertNotNull(first);
+        assertEquals(1, first.getPuts().size());
+        assertEquals("id:ns:music:n=1:a", first.getPuts().get(0).getDocumentPut().getId().toString());
+
+        PutDocumentMessage shortTimeout = put("id:ns:music:n=1:c");
+        shortTimeout.setPriority(DocumentProtocol.Priority.HIGH_1);
+        shortTimeout.setTimeRemaining(1000);
+        batcher.put(shortTimeout);
+        PutDocumentBatchMessage second = sent.poll();
+        assertNotNull(second);
+        assertEquals(DocumentProtocol.Priority.HIGH_1, second.getPriority());
+        assertEquals(List.of(highPriority), second.getPuts());
+
+        batcher.destroy();
+        PutDocumentBatchMessage third = sent.poll();
+        assertEquals(1000, third.getTimeRemaining());
+        assertEquals(List.of(shortTimeout), third.getPuts());
+    }
+
+    @Test
+    public void requireThatRemoveIsSentAfterTheBatchWithAnEarlierPutIsRepliedTo() {
+        PutDocumentBatcher batcher = batcher(100, Integer.MAX_VALUE, 60000);
+        batcher.put(put("id:ns:music:n=1:a"));
+        assertTrue(batcher.send(remove("id:ns:music:n=1:a"), new DocumentId("id:ns:music:n=1:a")).isAccepted());
+        PutDocumentBatchMessage batch = sent.poll();
+        assertNotNull("The pending batch is sent before the remove", batch);
+        assertTrue("The remove waits for the batch", sentOperations.isEmpty());
+
+        reply(batcher, batch);
+        Message remove = sentOperations.poll();
+        assertNotNull(remove);
+        assertEquals(DocumentProtocol.MESSAGE_REMOVEDOCUMENT, remove.getType());
+
+        batcher.put(put("id:ns:music:n=1:a"));
+        batcher.destroy();
+        assertTrue("A later put waits for the remove", sent.isEmpty());
+        reply(batcher, remove);
+
+        assertEquals(List.of(DocumentProtocol.REPLY_PUTDOCUMENT, DocumentProtocol.REPLY_PUTDOCUMENT, DocumentProtocol.REPLY_REMOVEDOCUMENT),
+                     replies.stream().map(Reply::getType).collect(Collectors.toList()));
+        assertFalse(replies.get(0).hasErrors());
+        assertEquals("The waiting put is failed on destroy", ErrorCode.SEND_ABORTED, replies.get(1).getError(0).getCode());
+        assertEquals("id:ns:music:n=1:a", replies.get(2).getContext());
+        assertEquals(0, batcher.pendingCount());
+    }
+
+    @Test
+    public void requireThatPutsAfterARemoveAreBatchedWhenTheRemoveIsRepliedTo() {
+        PutDocumentBatcher batcher = batcher(100, Integer.MAX_VALUE, 60000);
+        batcher.send(remove("id:ns:music:n=1:a"), new DocumentId("id:ns:music:n=1:a"));
+        Message remove = sentOperations.poll();
+        assertNotNull("Nothing to wait for", remove);
+        batcher.put(put("id:ns:music:n=1:a"));
+        batcher.put(put("id:ns:music:n=1:b"));
+        reply(batcher, remove);
+        assertTrue(sent.isEmpty());
+        batcher.destroy();
+        assertEquals(2, sent.poll().getPuts().size());
+    }
+
+    @Test
+    public void requireThatOperationsToOtherBucketGroupsAreNotHeldBack() {
+        PutDocumentBatcher batcher = batcher(100, Integer.MAX_VALUE, 60000);
+        batcher.put(put("id:ns:music:n=1:a"));
+        batcher.send(remove("id:ns:music:n=2:a"), new DocumentId("id:ns:music:n=2:a"));
+        assertNotNull(sentOperations.poll());
+        assertTrue(sent.isEmpty());
+        batcher.destroy();
+    }
+
+    @Test
+    public void requireThatOtherRepliesArePassedThrough() {
+        PutDocumentBatcher batcher = batcher(2, Integer.MAX_VALUE, 60000);
+        Reply reply = new WriteDocumentReply(DocumentProtocol.REPLY_REMOVEDOCUMENT);
+        batcher.handleReply(reply);
+        assertEquals(1, replies.size());
+        assertSame(reply, replies.get(0));
+        batcher.destroy();
+    }
+
+}
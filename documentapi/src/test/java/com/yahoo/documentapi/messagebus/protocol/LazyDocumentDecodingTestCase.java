@@ -0,0 +1,74 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.protocol;
+
+import com.yahoo.component.Version;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.documentapi.messagebus.loadtypes.LoadTypeSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ */
+public class LazyDocumentDecodingTestCase {
+
+    private static final Version version = new Version(6, 221, 0);
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentProtocol protocol;
+
+    public LazyDocumentDecodingTestCase() {
+        DocumentType type = new DocumentType("lazy");
+        type.addField("title", DataType.STRING);
+        type.addField("body", DataType.STRING);
+        manager.registerDocumentType(type);
+        protocol = new DocumentProtocol(manager, null, new LoadTypeSet(), true);
+    }
+
+    private byte[] encodedPut() {
+        Document document = new Document(manager.getDocumentType("lazy"), "id:ns:lazy::1");
+        document.setFieldValue("title", new StringFieldValue("the title"));
+        document.setFieldValue("body", new StringFieldValue("the body"));
+        return protocol.encode(version, new PutDocumentMessage(new DocumentPut(document)));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void requireThatTheFieldsOfReceivedDocumentsAreDeserializedWhenAccessed() {
+        PutDocumentMessage put = (PutDocumentMessage)protocol.decode(version, encodedPut());
+        Document document = put.getDocumentPut().getDocument();
+        assertNotNull(document.getBody().getSerializedFields());
+        assertEquals(2, document.getBody().getSerializedFields().size());
+
+        assertEquals(new StringFieldValue("the title"), document.getFieldValue("title"));
+        assertEquals(1, document.getBody().getSerializedFields().size());
+        assertEquals(new StringFieldValue("the body"), document.getFieldValue("body"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void requireThatTheFieldsOfReceivedDocumentsAreDeserializedImmediatelyByDefault() {
+        PutDocumentMessage put = (PutDocumentMessage)new DocumentProtocol(manager).decode(version, encodedPut());
+        Document document = put.getDocumentPut().getDocument();
+        assertNull(document.getBody().getSerializedFields());
+        assertEquals(new StringFieldValue("the title"), document.getFieldValue("title"));
+    }
+
+    @Test
+    public void requireThatReceivedDocumentsAreEncodedToTheSameBytes() {
+        byte[] encoded = encodedPut();
+        PutDocumentMessage put = (PutDocumentMessage)protocol.decode(version, encoded);
+        put.getDocumentPut().getDocument().getFieldValue("title");
+        assertArrayEquals(encoded, protocol.encode(version, put));
+    }
+
+}
@@ -30,6 +30,8 @@ import com.yahoo.documentapi.messagebus.protocol.GetBucketStateReply;
 import com.yahoo.documentapi.messagebus.protocol.GetDocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.GetDocumentReply;
 import com.yahoo.documentapi.messagebus.protocol.MapVisitorMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentBatchMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentBatchReply;
 import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.QueryResultMessage;
 import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
@@ -77,6 +79,7 @@ public class Messages60TestCase extends MessagesTestBase {
         out.put(DocumentProtocol.MESSAGE_GETDOCUMENT, new testGetDocumentMessage());
         out.put(DocumentProtocol.MESSAGE_MAPVISITOR, new testMapVisitorMessage());
         out.put(DocumentProtocol.MESSAGE_PUTDOCUMENT, new testPutDocumentMessage());
+        out.put(DocumentProtocol.MESSAGE_PUTDOCUMENTBATCH, new testPutDocumentBatchMessage());
         out.put(DocumentProtocol.MESSAGE_QUERYRESULT, new testQueryResultMessage());
         out.put(DocumentProtocol.MESSAGE_REMOVEDOCUMENT, new testRemoveDocumentMessage());
         out.put(DocumentProtocol.MESSAGE_REMOVELOCATION, new testRemoveLocationMessage());
@@ -95,6 +98,7 @@ public class Messages60TestCase extends MessagesTestBase {
         out.put(DocumentProtocol.REPLY_GETDOCUMENT, new testGetDocumentReply());
         out.put(DocumentProtocol.REPLY_MAPVISITOR, new testMapVisitorReply());
         out.put(DocumentProtocol.REPLY_PUTDOCUMENT, new testPutDocumentReply());
+        out.put(DocumentProtocol.REPLY_PUTDOCUMENTBATCH, new testPutDocumentBatchReply());
         out.put(DocumentProtocol.REPLY_QUERYRESULT, new testQueryResultReply());
         out.put(DocumentProtocol.REPLY_REMOVEDOCUMENT, new testRemoveDocumentReply());
         out.put(DocumentProtocol.REPLY_REMOVELOCATION, new testRemoveLocationReply());
@@ -644,6 +648,57 @@ public class Messages60TestCase extends MessagesTestBase {
         }
     }
 
+    public class testPutDocumentBatchMessage implements RunnableTest {
+
+        @Override
+        public void run() {
+            PutDocumentBatchMessage msg = new PutDocumentBatchMessage(new BucketId(16, 123));
+            for (int i = 0; i < 2; i++) {
+                PutDocumentMessage put = new PutDocumentMessage(new DocumentPut(new Document(protocol.getDocumentTypeManager().getDocumentType("testdoc"), "doc:scheme:" + i)));
+                put.setTimestamp(666 + i);
+                put.setCondition(new TestAndSetCondition(CONDITION_STRING));
+                msg.addPut(put);
+            }
+
+            assertEquals(BASE_MESSAGE_LENGTH + 12 + 2 * (40 + serializedLength(CONDITION_STRING)), serialize("PutDocumentBatchMessage", msg));
+
+            PutDocumentBatchMessage deserializedMsg = (PutDocumentBatchMessage)deserialize("PutDocumentBatchMessage", DocumentProtocol.MESSAGE_PUTDOCUMENTBATCH, Language.JAVA);
+            assertEquals(msg.getBucketId(), deserializedMsg.getBucketId());
+            assertEquals(2, deserializedMsg.getPuts().size());
+            for (int i = 0; i < 2; i++) {
+                PutDocumentMessage put = deserializedMsg.getPuts().get(i);
+                assertEquals("testdoc", put.getDocumentPut().getDocument().getDataType().getName());
+                assertEquals("doc:scheme:" + i, put.getDocumentPut().getDocument().getId().toString());
+                assertEquals(666 + i, put.getTimestamp());
+                assertEquals(CONDITION_STRING, put.getCondition().getSelection());
+            }
+        }
+    }
+
+    public class testPutDocumentBatchReply implements RunnableTest {
+
+        @Override
+        public void run() {
+            PutDocumentBatchReply reply = new PutDocumentBatchReply();
+            WriteDocumentReply first = new WriteDocumentReply(DocumentProtocol.REPLY_PUTDOCUMENT);
+            first.setHighestModificationTimestamp(30);
+            reply.getReplies().add(first);
+            WriteDocumentReply second = new WriteDocumentReply(DocumentProtocol.REPLY_PUTDOCUMENT);
+            second.addError(new com.yahoo.messagebus.Error(DocumentProtocol.ERROR_REJECTED, "foo"));
+            reply.getReplies().add(second);
+
+            assertEquals(44, serialize("PutDocumentBatchReply", reply));
+
+            PutDocumentBatchReply obj = (PutDocumentBatchReply)deserialize("PutDocumentBatchReply", DocumentProtocol.REPLY_PUTDOCUMENTBATCH, Language.JAVA);
+            assertEquals(2, obj.getReplies().size());
+            assertEquals(30, obj.getReplies().get(0).getHighestModificationTimestamp());
+            assertFalse(obj.getReplies().get(0).hasErrors());
+            assertEquals(1, obj.getReplies().get(1).getNumErrors());
+            assertEquals(DocumentProtocol.ERROR_REJECTED, obj.getReplies().get(1).getError(0).getCode());
+            assertEquals("foo", obj.getReplies().get(1).getError(0).getMessage());
+        }
+    }
+
     public class testUpdateDocumentMessage implements RunnableTest {
 
         @Override
@@ -2,8 +2,10 @@
 package com.yahoo.jrt;
 
 
+import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -99,13 +101,23 @@ public class Acceptor {
 
     private void run() {
         while (serverChannel.isOpen()) {
+            SocketChannel channel = null;
             try {
-                TransportThread tt = parent.selectThread();
-                tt.addConnection(new Connection(tt, owner, serverChannel.accept()));
+                channel = serverChannel.accept();
+                SocketAddress peer = channel.socket().getRemoteSocketAddress();
+                if (peer == null) { // the peer disconnected before we got to it
+                    continue;
+                }
+                TransportThread tt = parent.selectThread(peer);
+                Connection connection = new Connection(tt, owner, channel);
+                channel = null; // closed by the connection from here on
+                tt.addConnection(connection);
                 tt.sync();
             } catch (ClosedChannelException ignore) {
             } catch (Exception e) {
                 log.log(Level.WARNING, "Error accepting connection", e);
+            } finally {
+                close(channel);
             }
         }
         while (true) {
@@ -116,6 +128,15 @@ public class Acceptor {
         }
     }
 
+    private static void close(SocketChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Error closing accepted connection", e);
+        }
+    }
+
     /**
      * Initiate controlled shutdown of the acceptor thread
      *
@@ -9,11 +9,23 @@ class Buffer {
 
     static final int MAX_IO = 65000;
 
+    private final BufferPool pool;
+    private final int        initialSize;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
     private boolean    readMode;
 
+    private ByteBuffer allocate(int size) {
+        return (pool != null) ? pool.allocate(size) : ByteBuffer.allocate(size);
+    }
+
+    private void release(ByteBuffer old) {
+        if (pool != null) {
+            pool.release(old);
+        }
+    }
+
     private void setReadMode() {
         if (readMode) {
             buf.limit(writePos);
@@ -50,27 +62,58 @@ class Buffer {
             buf.compact();
             readPos = 0;
         } else {
-            int size = buf.capacity() * 2;
-            if (buf.capacity() + free < minFree) {
+            int size = Math.max(buf.capacity() * 2, initialSize);
+            if (size - used < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = allocate(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
+            release(buf);
             buf = tmp;
             readPos = 0;
         }
     }
 
     public Buffer(int size) {
+        pool = null;
+        initialSize = size;
         buf = ByteBuffer.allocate(size);
         readPos = 0;
         writePos = 0;
         readMode = false;
     }
 
+    /**
+     * Creates a buffer which allocates its backing storage from the
+     * given pool. Nothing is allocated until the buffer is first
+     * written to, such that the buffer may be created by any thread,
+     * while it must only be used by the thread owning the pool.
+     **/
+    Buffer(int size, BufferPool pool) {
+        this.pool = pool;
+        initialSize = size;
+        buf = ByteBuffer.allocate(0);
+        readPos = 0;
+        writePos = 0;
+        readMode = false;
+    }
+
+    /**
+     * Returns the storage of this buffer to its pool, discarding any
+     * content. The buffer may still be used afterwards, in which case
+     * new storage is allocated.
+     **/
+    public void release() {
+        release(buf);
+        buf = ByteBuffer.allocate(0);
+        readPos = 0;
+        writePos = 0;
+        readMode = false;
+    }
+
     public boolean shrink(int size) {
         int rpos = readMode? buf.position() : readPos;
         int wpos = readMode? writePos : buf.position();
@@ -78,11 +121,15 @@ class Buffer {
         if (used > size || buf.capacity() <= size) {
             return false;
         }
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        if (pool != null && pool.capacityFor(size) >= buf.capacity()) {
+            return false;
+        }
+        ByteBuffer tmp = allocate(size);
         tmp.order(buf.order());
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
+        release(buf);
         buf = tmp;
         readPos = 0;
         writePos = used;
@@ -0,0 +1,97 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A pool of direct byte buffers in power of two size classes. Direct
+ * buffers may be handed to socket channels without first being
+ * copied into a temporary direct buffer, but are expensive to
+ * allocate, so they are recycled here. A pool is owned by a single
+ * {@link TransportThread} and is not thread-safe.
+ **/
+class BufferPool {
+
+    static final int MIN_SIZE = 4096;
+    static final int MAX_SIZE = 1024 * 1024;
+    static final int MAX_FREE_PER_SIZE = 32;
+
+    private final List<ArrayDeque<ByteBuffer>> free = new ArrayList<>();
+    private long allocated = 0;
+    private long reused = 0;
+
+    public BufferPool() {
+        for (int i = 0; i <= sizeClass(MAX_SIZE); i++) {
+            free.add(new ArrayDeque<>());
+        }
+    }
+
+    private static int sizeClass(int size) {
+        int rounded = Math.max(MIN_SIZE, Integer.highestOneBit(size - 1) << 1);
+        return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(MIN_SIZE);
+    }
+
+    private static int sizeOf(int sizeClass) {
+        return MIN_SIZE << sizeClass;
+    }
+
+    /** Returns the capacity of the buffer this returns when asked to allocate the given size */
+    public int capacityFor(int size) {
+        return (size > MAX_SIZE) ? size : sizeOf(sizeClass(size));
+    }
+
+    /**
+     * Returns a cleared buffer with a capacity of at least the given
+     * size. Buffers larger than the largest size class are not pooled
+     * and are allocated on the heap.
+     **/
+    public ByteBuffer allocate(int size) {
+        if (size > MAX_SIZE) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buf = free.get(sizeClass(size)).pollFirst();
+        if (buf != null) {
+            reused++;
+            return buf;
+        }
+        allocated++;
+        return ByteBuffer.allocateDirect(sizeOf(sizeClass(size)));
+    }
+
+    /**
+     * Returns a buffer allocated by this pool to it. The buffer must
+     * not be used by the caller afterwards.
+     **/
+    public void release(ByteBuffer buf) {
+        if (!buf.isDirect() || buf.capacity() < MIN_SIZE || buf.capacity() > MAX_SIZE
+            || Integer.bitCount(buf.capacity()) != 1)
+        {
+            return;
+        }
+        ArrayDeque<ByteBuffer> sizeClassFree = free.get(sizeClass(buf.capacity()));
+        if (sizeClassFree.size() < MAX_FREE_PER_SIZE) {
+            buf.clear();
+            sizeClassFree.addFirst(buf);
+        }
+    }
+
+    /** Returns the number of direct buffers allocated by this pool */
+    public long allocated() { return allocated; }
+
+    /** Returns the number of times a pooled buffer was reused */
+    public long reused() { return reused; }
+
+    /** Returns the number of free buffers in this pool */
+    public int freeCount() {
+        int count = 0;
+        for (ArrayDeque<ByteBuffer> sizeClassFree : free) {
+            count += sizeClassFree.size();
+        }
+        return count;
+    }
+}
@@ -26,6 +26,7 @@ public class Transport {
     private final Connector         connector;
     private final Worker            worker;
     private final AtomicInteger     runCnt;
+    private final AtomicInteger     connectCnt = new AtomicInteger(0);
 
     private final TransportMetrics metrics = TransportMetrics.getInstance();
     private final ArrayList<TransportThread> threads = new ArrayList<TransportThread>();
@@ -67,6 +68,30 @@ public class Transport {
         return threads.get(rnd.nextInt(threads.size()));
     }
 
+    /**
+     * Select the transport thread handling connections with the given
+     * key. A key always selects the same thread, and different keys
+     * are spread evenly over all threads, such that all the IO and
+     * request handling of a connection stays in a single thread while
+     * the connections of this transport are shared between them.
+     *
+     * @return the transport thread for the given key
+     * @param key the key identifying a connection
+     **/
+    TransportThread selectThread(Object key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return threads.get(Math.floorMod(hash ^ (hash >>> 16), threads.size()));
+    }
+
+    /**
+     * Obtain the number of transport threads of this transport.
+     *
+     * @return number of transport threads
+     **/
+    public int numThreads() {
+        return threads.size();
+    }
+
     /**
      * Use the underlying CryptoEngine to create a CryptoSocket.
      *
@@ -111,7 +136,9 @@ public class Transport {
 
     /**
      * Connect to the given address. This method is called by a {@link
-     * Supervisor} object.
+     * Supervisor} object. Outgoing connections are assigned to the
+     * transport threads in round robin order, such that multiple
+     * connections to the same address are spread over the threads.
      *
      * @return the new connection
      * @param owner the one calling this method
@@ -119,7 +146,8 @@ public class Transport {
      * @param context application context for the new connection
      */
     Connection connect(Supervisor owner, Spec spec, Object context) {
-        Connection conn = new Connection(selectThread(), owner, spec, context);
+        TransportThread thread = threads.get(Math.floorMod(connectCnt.getAndIncrement(), threads.size()));
+        Connection conn = new Connection(thread, owner, spec, context);
         connector.connectLater(conn);
         return conn;
     }
@@ -77,6 +77,7 @@ public class TransportThread {
     private final Scheduler scheduler;
     private int             state;
     private final Selector  selector;
+    private final BufferPool bufferPool = new BufferPool();
 
     private void handleAddConnection(Connection conn) {
         if (conn.isClosed()) {
@@ -187,6 +188,14 @@ public class TransportThread {
         return parent;
     }
 
+    /**
+     * The pool the connections of this thread allocate their buffers
+     * from. It must only be used by this thread.
+     **/
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
     /**
      * Proxy method used to dispatch fatal errors to the enclosing
      * Transport.
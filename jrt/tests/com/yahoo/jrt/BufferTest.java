@@ -263,4 +263,61 @@ public class BufferTest {
         }
     }
 
+    @org.junit.Test
+    public void testPooledBuffer() {
+        BufferPool pool = new BufferPool();
+        Buffer     buf  = new Buffer(8192, pool);
+        assertEquals(0, pool.allocated());
+
+        ByteBuffer b = buf.getWritable(10);
+        assertTrue(b.isDirect());
+        assertEquals(8192, b.capacity());
+        b.put((byte)42);
+        assertEquals(1, pool.allocated());
+
+        byte[] x = new byte[10000];
+        Arrays.fill(x, (byte) 10);
+        b = buf.getWritable(x.length);
+        assertEquals(16384, b.capacity());
+        b.put(x);
+        assertEquals(2, pool.allocated());
+        assertEquals("the outgrown buffer is returned to the pool", 1, pool.freeCount());
+
+        b = buf.getReadable();
+        assertEquals(42, b.get());
+        byte[] y = new byte[x.length];
+        b.get(y);
+        assertTrue(Arrays.equals(x, y));
+
+        assertTrue(buf.shrink(8192));
+        assertEquals(8192, buf.getReadable().capacity());
+        assertEquals("the shrunk buffer reuses the pooled one", 1, pool.reused());
+        assertFalse(buf.shrink(5000));
+
+        buf.release();
+        assertEquals(0, buf.bytes());
+        assertEquals(2, pool.freeCount());
+        buf.getWritable(1).put((byte)43);
+        assertEquals(43, buf.getReadable().get());
+        assertEquals(2, pool.allocated());
+        assertEquals(2, pool.reused());
+    }
+
+    @org.junit.Test
+    public void testBufferPoolSizeClasses() {
+        BufferPool pool = new BufferPool();
+        assertEquals(BufferPool.MIN_SIZE, pool.capacityFor(1));
+        assertEquals(BufferPool.MIN_SIZE, pool.allocate(BufferPool.MIN_SIZE).capacity());
+        assertEquals(2 * BufferPool.MIN_SIZE, pool.allocate(BufferPool.MIN_SIZE + 1).capacity());
+        ByteBuffer large = pool.allocate(BufferPool.MAX_SIZE + 1);
+        assertFalse("buffers larger than the size classes are not pooled", large.isDirect());
+        pool.release(large);
+        pool.release(ByteBuffer.allocate(BufferPool.MIN_SIZE));
+        assertEquals(0, pool.freeCount());
+        for (int i = 0; i < BufferPool.MAX_FREE_PER_SIZE + 1; i++) {
+            pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE));
+        }
+        assertEquals(BufferPool.MAX_FREE_PER_SIZE, pool.freeCount());
+    }
+
 }
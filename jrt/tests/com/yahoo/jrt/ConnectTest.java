@@ -1,6 +1,11 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.jrt;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class ConnectTest {
@@ -43,4 +48,18 @@ public class ConnectTest {
         server.transport().shutdown().join();
     }
 
+    @org.junit.Test
+    public void testConnectionsAreAssignedToTransportThreadsByHash() {
+        Transport transport = new Transport(4);
+        Set<TransportThread> used = new HashSet<>();
+        for (int port = 10000; port < 10100; port++) {
+            TransportThread thread = transport.selectThread("tcp/localhost:" + port);
+            assertSame(thread, transport.selectThread("tcp/localhost:" + port));
+            used.add(thread);
+        }
+        assertEquals(4, transport.numThreads());
+        assertEquals(4, used.size());
+        transport.shutdown().join();
+    }
+
 }
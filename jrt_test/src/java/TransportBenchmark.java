@@ -0,0 +1,115 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+
+import com.yahoo.jrt.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures the throughput and latency of synchronous RPC requests over
+ * many connections between a client and a server using the same
+ * number of transport threads, for an increasing number of threads.
+ *
+ * usage: TransportBenchmark [connections] [seconds] [threads ...]
+ */
+public class TransportBenchmark {
+
+    private final Supervisor server;
+    private final Supervisor client;
+    private final Acceptor acceptor;
+
+    public TransportBenchmark(int threads) throws ListenFailedException {
+        server = new Supervisor(new Transport(threads));
+        client = new Supervisor(new Transport(threads));
+        server.addMethod(new Method("inc", "i", "i", this, "rpc_inc"));
+        acceptor = server.listen(new Spec(0));
+    }
+
+    public void rpc_inc(Request req) {
+        req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() + 1));
+    }
+
+    /** Runs one client thread per connection for the given time, and returns the number of requests and the latencies */
+    public long[] run(int connections, double seconds) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean(false);
+        CountDownLatch started = new CountDownLatch(connections);
+        long[][] latencies = new long[connections][];
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            final int id = i;
+            Thread worker = new Thread(() -> {
+                Target target = client.connect(new Spec("localhost", acceptor.port()));
+                long[] mine = new long[1024];
+                int count = 0;
+                started.countDown();
+                for (int value = 0; ! stop.get(); value++) {
+                    Request req = new Request("inc");
+                    req.parameters().add(new Int32Value(value));
+                    long start = System.nanoTime();
+                    target.invokeSync(req, 60.0);
+                    long latency = System.nanoTime() - start;
+                    if (req.isError() || req.returnValues().get(0).asInt32() != value + 1) {
+                        System.err.println("request failed: " + req.errorMessage());
+                        break;
+                    }
+                    if (count == mine.length) {
+                        mine = Arrays.copyOf(mine, mine.length * 2);
+                    }
+                    mine[count++] = latency;
+                }
+                target.close();
+                latencies[id] = Arrays.copyOf(mine, count);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        started.await();
+        Thread.sleep((long)(seconds * 1000));
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    }
+
+    public void shutdown() {
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        return sorted[(int)Math.min(sorted.length - 1, sorted.length * percentile / 100.0)] / 1000000.0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        double seconds = (args.length > 1) ? Double.parseDouble(args[1]) : 5.0;
+        int[] threadCounts = (args.length > 2)
+            ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 1, 2, 4, 8 };
+
+        TransportBenchmark warmup = new TransportBenchmark(1);
+        warmup.run(connections, seconds / 2);
+        warmup.shutdown();
+
+        System.out.println("Running " + connections + " connections for " + seconds + " s on " +
+                           Runtime.getRuntime().availableProcessors() + " processors");
+        for (int threads : threadCounts) {
+            TransportBenchmark benchmark = new TransportBenchmark(threads);
+            long[] latencies = benchmark.run(connections, seconds);
+            benchmark.shutdown();
+            System.out.println(String.format("%3d transport threads: %10.0f requests/s, latency ms: p50 %.3f p99 %.3f max %.3f",
+                                             threads, latencies.length / seconds,
+                                             percentileMillis(latencies, 50), percentileMillis(latencies, 99),
+                                             percentileMillis(latencies, 100)));
+        }
+    }
+
+}
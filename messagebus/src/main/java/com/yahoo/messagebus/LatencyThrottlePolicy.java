@@ -0,0 +1,352 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.concurrent.Timer;
+import com.yahoo.log.LogLevel;
+
+import java.util.logging.Logger;
+
+/**
+ * This is an implementation of the {@link ThrottlePolicy} that sizes the window of pending messages from the measured
+ * round-trip time of messages, in the style of TCP Vegas, instead of from throughput as {@link DynamicThrottlePolicy}
+ * does.
+ *
+ * Once per round trip, that is, when as many replies as the current window size have been received, the average
+ * round-trip time of the round is compared to the minimum round-trip time seen recently, which is the time a message
+ * takes when it is not queued. From this the number of messages waiting in queues is estimated as
+ * <code>windowSize * (1 - minRtt / rtt)</code>. The window is grown when fewer messages than the queue size target
+ * are queued, shrunk when more are, and multiplicatively backed off when any reply of the round failed with a
+ * transient error, such as {@link ErrorCode#SESSION_BUSY}, or the round-trip time exceeds the max latency. Other
+ * errors, e.g. a failed test-and-set condition, are the answer of a receiver to the message, and are not taken as a
+ * sign of congestion. This keeps the window close to the point where the receivers are
+ * saturated, rather than growing it until throughput collapses.
+ *
+ * As a window kept above that point leaves a standing queue which inflates the round-trip times measured, the
+ * minimum round-trip time is measured anew periodically, in the style of BBR, by running a round with half the
+ * window size to drain the queues. Only messages sent after such a round has begun are used to measure it, as
+ * those sent before it waited in the queues built by the larger window.
+ *
+ * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
+ *
+ * @author agent
+ */
+public class LatencyThrottlePolicy extends StaticThrottlePolicy {
+
+    private static final Logger log = Logger.getLogger(LatencyThrottlePolicy.class.getName());
+    private static final long IDLE_TIME_MILLIS = 60000;
+
+    private final Timer timer;
+    private double windowSizeIncrement = 2;
+    private double windowSize = 20;
+    private double minWindowSize = 1;
+    private double maxWindowSize = Integer.MAX_VALUE;
+    private double windowSizeBackOff = 0.7;
+    private double minQueueSize = 2;
+    private double maxQueueSize = 8;
+    private double maxLatencyMillis = Double.POSITIVE_INFINITY;
+    private long minRttPeriodMillis = 10000;
+    private long timeOfLastMessage;
+
+    private int roundReplies = 0;
+    private int roundErrors = 0;
+    private int roundRttCount = 0;
+    private long roundRttSum = 0;
+
+    private double minRtt = Double.POSITIVE_INFINITY;
+    private long minRttTime;
+    private boolean probing = false;
+    private double smoothedRtt = 0;
+    private double lastQueueSize = 0;
+
+    private long increaseCount = 0;
+    private long decreaseCount = 0;
+    private long backOffCount = 0;
+
+    /**
+     * Constructs a new instance of this policy and sets the appropriate default values of member data.
+     */
+    public LatencyThrottlePolicy() {
+        this(SystemTimer.INSTANCE);
+    }
+
+    /**
+     * Constructs a new instance of this class using the given clock to measure round-trip times.
+     *
+     * @param timer the timer to use
+     */
+    public LatencyThrottlePolicy(Timer timer) {
+        this.timer = timer;
+        this.timeOfLastMessage = timer.milliTime();
+        this.minRttTime = timeOfLastMessage;
+    }
+
+    @Override
+    public boolean canSend(Message message, int pendingCount) {
+        if ( ! super.canSend(message, pendingCount)) {
+            return false;
+        }
+        long time = timer.milliTime();
+        if (time - timeOfLastMessage > IDLE_TIME_MILLIS) {
+            windowSize = Math.max(minWindowSize, Math.min(windowSize, pendingCount + windowSizeIncrement));
+        }
+        timeOfLastMessage = time;
+        return pendingCount < currentWindowSize();
+    }
+
+    private double currentWindowSize() {
+        return probing ? Math.max(minWindowSize, windowSize / 2) : windowSize;
+    }
+
+    @Override
+    public void processMessage(Message message) {
+        super.processMessage(message);
+        message.setContext(new PendingMessage((Integer)message.getContext(), timer.milliTime(), probing));
+    }
+
+    @Override
+    public void processReply(Reply reply) {
+        PendingMessage pending = (PendingMessage)reply.getContext();
+        reply.setContext(pending.size);
+        super.processReply(reply);
+
+        long time = timer.milliTime();
+        boolean congested = isCongested(reply);
+        long rtt = time - pending.sendTime;
+        if ( ! congested) {
+            smoothedRtt = (smoothedRtt == 0) ? rtt : smoothedRtt + (rtt - smoothedRtt) / 8;
+        }
+        if (probing && ! pending.probe) {
+            if (congested) {
+                ++roundErrors;
+            }
+            return; // Sent with the full window, so the round-trip time is not that of a drained queue
+        }
+        if (congested) {
+            ++roundErrors;
+        } else {
+            roundRttSum += rtt;
+            ++roundRttCount;
+        }
+        if (++roundReplies >= currentWindowSize()) {
+            resize(time);
+        }
+    }
+
+    /** Returns whether the given reply failed because the receiver, or the way to it, is overloaded */
+    private static boolean isCongested(Reply reply) {
+        for (int i = 0; i < reply.getNumErrors(); ++i) {
+            if (ErrorCode.isTransient(reply.getError(i).getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resize(long time) {
+        double rtt = (roundRttCount > 0) ? Math.max(1.0, (double)roundRttSum / roundRttCount) : Double.POSITIVE_INFINITY;
+        boolean probed = probing;
+        updateMinRtt(rtt, roundRttCount, time);
+
+        if (roundErrors > 0 || rtt > maxLatencyMillis) {
+            windowSize = Math.min(windowSize * windowSizeBackOff, windowSize - windowSizeIncrement);
+            ++backOffCount;
+        } else if ( ! probed) {
+            lastQueueSize = windowSize * (1 - minRtt / rtt);
+            if (lastQueueSize < minQueueSize) {
+                windowSize += windowSizeIncrement;
+                ++increaseCount;
+            } else if (lastQueueSize > maxQueueSize) {
+                windowSize -= windowSizeIncrement;
+                ++decreaseCount;
+            }
+        }
+        windowSize = Math.max(minWindowSize, windowSize);
+        windowSize = Math.min(maxWindowSize, windowSize);
+
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.log(LogLevel.DEBUG, "windowSize " + windowSize + " rtt " + rtt + " minRtt " + minRtt +
+                                    " queueSize " + lastQueueSize + " errors " + roundErrors);
+        }
+        roundReplies = 0;
+        roundErrors = 0;
+        roundRttCount = 0;
+        roundRttSum = 0;
+    }
+
+    /**
+     * Keeps the minimum round-trip time seen since it was last probed for. When it has not been probed for in a
+     * period, the next round is run with a smaller window, and the round-trip time of the messages sent in that
+     * round replaces the minimum, such that it is forgotten when the receivers become permanently slower, e.g
+     * because the documents fed become larger.
+     */
+    private void updateMinRtt(double rtt, int okReplies, long time) {
+        if (probing) {
+            probing = false;
+            minRttTime = time;
+            if (okReplies > 0) {
+                minRtt = rtt;
+            }
+        } else {
+            minRtt = Math.min(minRtt, rtt);
+            probing = (time - minRttTime > minRttPeriodMillis);
+        }
+    }
+
+    /**
+     * Sets the step size used when increasing or decreasing window size.
+     *
+     * @param windowSizeIncrement the step size to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWindowSizeIncrement(double windowSizeIncrement) {
+        this.windowSizeIncrement = windowSizeIncrement;
+        return this;
+    }
+
+    public double getWindowSizeIncrement() {
+        return windowSizeIncrement;
+    }
+
+    /**
+     * Sets the factor to multiply the window size by when a round has errors or exceeds the max latency. This value
+     * is capped to the [0, 1] range.
+     *
+     * @param windowSizeBackOff the back off to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWindowSizeBackOff(double windowSizeBackOff) {
+        this.windowSizeBackOff = Math.max(0, Math.min(1, windowSizeBackOff));
+        return this;
+    }
+
+    public double getWindowSizeBackOff() {
+        return windowSizeBackOff;
+    }
+
+    /**
+     * Sets the range of the estimated number of queued messages the window size is adjusted to stay within. The
+     * window is grown while fewer messages are queued, and shrunk while more are.
+     *
+     * @param min the number of queued messages below which the window is grown
+     * @param max the number of queued messages above which the window is shrunk
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setQueueSizeTarget(double min, double max) {
+        this.minQueueSize = min;
+        this.maxQueueSize = Math.max(min, max);
+        return this;
+    }
+
+    /**
+     * Sets the round-trip time, in milliseconds, above which the window size is backed off regardless of how many
+     * messages are estimated to be queued. The default is no limit.
+     *
+     * @param maxLatencyMillis the max latency to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMaxLatency(double maxLatencyMillis) {
+        this.maxLatencyMillis = maxLatencyMillis;
+        return this;
+    }
+
+    public double getMaxLatency() {
+        return maxLatencyMillis;
+    }
+
+    /**
+     * Sets the period, in milliseconds, after which the minimum round-trip time is probed for anew.
+     *
+     * @param minRttPeriodMillis the period to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMinRttPeriod(long minRttPeriodMillis) {
+        this.minRttPeriodMillis = minRttPeriodMillis;
+        return this;
+    }
+
+    /**
+     * Sets the maximium number of pending operations allowed at any time, in order to avoid using too much
+     * resources.
+     *
+     * @param max the max to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMaxWindowSize(double max) {
+        this.maxWindowSize = max;
+        return this;
+    }
+
+    public double getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * Sets the minimium number of pending operations allowed at any time, in order to keep a level of performance.
+     *
+     * @param min the min to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMinWindowSize(double min) {
+        this.minWindowSize = min;
+        this.windowSize = Math.max(min, windowSize);
+        return this;
+    }
+
+    public double getMinWindowSize() {
+        return minWindowSize;
+    }
+
+    @Override
+    public LatencyThrottlePolicy setMaxPendingCount(int maxCount) {
+        super.setMaxPendingCount(maxCount);
+        maxWindowSize = maxCount;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of pending messages allowed.
+     *
+     * @return the max limit
+     */
+    @Override
+    public int getMaxPendingCount() {
+        return (int)windowSize;
+    }
+
+    /** Returns the current window size */
+    public double getWindowSize() { return windowSize; }
+
+    /** Returns the minimum round-trip time in milliseconds since it was last probed for, or infinity if none */
+    public double getMinRtt() { return minRtt; }
+
+    /** Returns an exponentially weighted moving average of the round-trip times of messages, in milliseconds */
+    public double getSmoothedRtt() { return smoothedRtt; }
+
+    /** Returns the number of messages estimated to be queued at the end of the last round without errors */
+    public double getQueueSize() { return lastQueueSize; }
+
+    /** Returns the number of rounds after which the window size was increased */
+    public long getIncreaseCount() { return increaseCount; }
+
+    /** Returns the number of rounds after which the window size was decreased */
+    public long getDecreaseCount() { return decreaseCount; }
+
+    /** Returns the number of rounds after which the window size was backed off due to errors or latency */
+    public long getBackOffCount() { return backOffCount; }
+
+    private static class PendingMessage {
+
+        final int size;
+        final long sendTime;
+        final boolean probe;
+
+        PendingMessage(int size, long sendTime, boolean probe) {
+            this.size = size;
+            this.sendTime = sendTime;
+            this.probe = probe;
+        }
+
+    }
+
+}
@@ -3,18 +3,22 @@ package com.yahoo.messagebus;
 
 import com.yahoo.log.LogLevel;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 /**
  * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
- * method, and are run in the order they were enqueued.</p>
+ * tasks. Tasks are enqueued using the thread-safe {@link #enqueue(Task)}
+ * method, and are run in the order they were enqueued. The queue is lock-free,
+ * and the thread runs all the tasks it finds in the queue before running the
+ * recurrent tasks and going back to sleep.</p>
  *
  * @author Simon Thoresen Hult
  */
@@ -22,8 +26,11 @@ public class Messenger implements Runnable {
 
     private static final Logger log = Logger.getLogger(Messenger.class.getName());
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
+    private static final long idleNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicBoolean sleeping = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
-    private final Queue<Task> queue = new ArrayDeque<>();
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
 
     private final Thread thread = new Thread(this, "Messenger");
 
@@ -97,11 +104,9 @@ public class Messenger implements Runnable {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
-            }
+        queue.offer(task);
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+            LockSupport.unpark(thread);
         }
     }
 
@@ -131,15 +136,11 @@ public class Messenger implements Runnable {
         enqueue(Terminate.INSTANCE);
         if (!destroyed.getAndSet(true)) {
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
-                    }
-                }
                 thread.join();
             } catch (final InterruptedException e) {
                 // ignore
             }
+            destroyQueuedTasks(); // tasks enqueued while the thread terminated
             done = true;
         }
         return done;
@@ -148,50 +149,63 @@ public class Messenger implements Runnable {
     @Override
     public void run() {
         while (true) {
-            Task task = null;
-            synchronized (this) {
-                if (queue.isEmpty()) {
-                    try {
-                        wait(10);
-                    } catch (final InterruptedException e) {
-                        continue;
+            boolean idle = true;
+            for (Task task = queue.poll(); task != null; task = queue.poll()) {
+                if (task == Terminate.INSTANCE) {
+                    for (final Task child : children) {
+                        child.destroy();
                     }
+                    destroyQueuedTasks();
+                    return;
                 }
-                if (queue.size() > 0) {
-                    task = queue.poll();
-                }
-            }
-            if (task == Terminate.INSTANCE) {
-                break;
-            }
-            if (task != null) {
-                try {
-                    task.run();
-                } catch (final Exception e) {
-                    log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
-                }
-                try {
-                    task.destroy();
-                } catch (final Exception e) {
-                    log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
-                                e.toString());
-                    log.warning("Someone, somewhere might have to wait indefinetly for something.");
-                }
+                idle = false;
+                runTask(task);
             }
             for (final Task child : children) {
                 child.run();
             }
+            if (idle) {
+                sleep();
+            }
+        }
+    }
+
+    private void runTask(final Task task) {
+        try {
+            task.run();
+        } catch (final Exception e) {
+            log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
         }
-        for (final Task child : children) {
-            child.destroy();
+        destroyTask(task);
+    }
+
+    private static void destroyTask(final Task task) {
+        try {
+            task.destroy();
+        } catch (final Exception e) {
+            log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
+                        e.toString());
+            log.warning("Someone, somewhere might have to wait indefinetly for something.");
         }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                final Task task = queue.poll();
-                task.destroy();
-            }
-            notify();
+    }
+
+    private void destroyQueuedTasks() {
+        for (Task task = queue.poll(); task != null; task = queue.poll()) {
+            destroyTask(task);
+        }
+    }
+
+    /**
+     * Parks the thread until a task is enqueued, or until it is time to run the recurrent tasks again.
+     * The sleeping flag is set before checking the queue a last time, such that a task enqueued after
+     * that check will unpark the thread.
+     */
+    private void sleep() {
+        sleeping.set(true);
+        if (queue.isEmpty()) {
+            LockSupport.parkNanos(this, idleNanos);
         }
+        sleeping.set(false);
     }
 
     /**
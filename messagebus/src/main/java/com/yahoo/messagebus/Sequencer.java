@@ -1,8 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -13,13 +13,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
  *
+ * The sequencing state is split into stripes by sequence id, each guarded by its own lock, such that messages with
+ * unrelated ids can be filtered by many threads in parallel, while messages with the same id are still strictly
+ * ordered by the stripe they share.
+ *
  * @author Simon Thoresen Hult
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
+    private static final int DEFAULT_NUM_STRIPES = 64;
+
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+    private final Stripe[] stripes;
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -27,7 +33,31 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      * @param sender The underlying sender.
      */
     public Sequencer(MessageHandler sender) {
+        this(sender, DEFAULT_NUM_STRIPES);
+    }
+
+    /**
+     * Constructs a new sequencer on top of the given async sender, with the given number of stripes.
+     *
+     * @param sender     The underlying sender.
+     * @param numStripes The number of stripes to split the sequencing state into, rounded up to a power of two.
+     */
+    Sequencer(MessageHandler sender, int numStripes) {
         this.sender = sender;
+        int size = 1;
+        while (size < numStripes) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /** Returns the stripe holding the sequencing state of the given id */
+    private Stripe stripe(long seqId) {
+        long hash = seqId * 0x9E3779B97F4A7C15L; // sequence ids are often bucket ids, which share their low bits
+        return stripes[(int)(hash >>> 32) & (stripes.length - 1)];
     }
 
     /**
@@ -38,15 +68,17 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    for (Queue<Message> queue : stripe.seqMap.values()) {
+                        if (queue != null) {
+                            for (Message msg : queue) {
+                                msg.discard();
+                            }
                         }
                     }
+                    stripe.seqMap.clear();
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -65,11 +97,13 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
+        Stripe stripe = stripe(seqId);
+        synchronized (stripe) {
+            Map<Long, Queue<Message>> seqMap = stripe.seqMap;
             if (seqMap.containsKey(seqId)) {
                 Queue<Message> queue = seqMap.get(seqId);
                 if (queue == null) {
-                    queue = new LinkedList<>();
+                    queue = new ArrayDeque<>();
                     seqMap.put(seqId, queue);
                 }
                 if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
@@ -138,7 +172,9 @@ public class Sequencer implements MessageHandler, ReplyHandler {
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
         Message msg = null;
-        synchronized (this) {
+        Stripe stripe = stripe(seqId);
+        synchronized (stripe) {
+            Map<Long, Queue<Message>> seqMap = stripe.seqMap;
             Queue<Message> queue = seqMap.get(seqId);
             if (queue == null || queue.isEmpty()) {
                 seqMap.remove(seqId);
@@ -152,4 +188,12 @@ public class Sequencer implements MessageHandler, ReplyHandler {
         ReplyHandler handler = reply.popHandler();
         handler.handleReply(reply);
     }
+
+    /** The sequencing state of the ids mapped to one stripe, guarded by the monitor of the stripe */
+    private static class Stripe {
+
+        final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+
+    }
+
 }
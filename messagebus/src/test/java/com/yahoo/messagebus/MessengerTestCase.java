@@ -3,9 +3,13 @@ package com.yahoo.messagebus;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +99,53 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    public void requireThatTasksFromManyThreadsAreRunInTheOrderTheyWereEnqueued() throws InterruptedException {
+        Messenger msn = new Messenger();
+        msn.start();
+        int threads = 8;
+        int tasksPerThread = 10000;
+        int[] lastRun = new int[threads];
+        AtomicInteger outOfOrder = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(threads * tasksPerThread);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int producer = i;
+            producers.add(new Thread(() -> {
+                for (int j = 1; j <= tasksPerThread; j++) {
+                    int sequence = j;
+                    msn.enqueue(new Messenger.Task() {
+                        @Override
+                        public void run() {
+                            if (lastRun[producer] != sequence - 1) outOfOrder.incrementAndGet();
+                            lastRun[producer] = sequence;
+                        }
+
+                        @Override
+                        public void destroy() {
+                            done.countDown();
+                        }
+                    });
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(0, outOfOrder.get());
+        for (int i = 0; i < threads; i++)
+            assertEquals(tasksPerThread, lastRun[i]);
+        msn.destroy();
+    }
+
+    @Test
+    public void requireThatTasksEnqueuedBeforeDestroyAreDestroyed() throws InterruptedException {
+        Messenger msn = new Messenger();
+        MyTask task = new MyTask();
+        msn.enqueue(task);
+        assertTrue(msn.destroy());
+        assertTrue(task.destroyLatch.await(60, TimeUnit.SECONDS));
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
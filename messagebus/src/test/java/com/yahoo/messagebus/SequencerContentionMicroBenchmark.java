@@ -0,0 +1,98 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.messagebus.test.SimpleMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of the sequencer when many threads send sequenced messages with unrelated ids, which
+ * are replied to directly by the sender, for a single stripe, corresponding to one lock for the whole sequencer,
+ * and for the default number of stripes.
+ *
+ * usage: SequencerContentionMicroBenchmark [threads] [seconds]
+ *
+ * @author agent
+ */
+public class SequencerContentionMicroBenchmark {
+
+    private final int threads;
+    private final Sequencer sequencer;
+
+    public SequencerContentionMicroBenchmark(int threads, int stripes) {
+        this.threads = threads;
+        this.sequencer = new Sequencer(msg -> {
+            Reply reply = new EmptyReply();
+            reply.swapState(msg);
+            reply.setMessage(msg);
+            reply.popHandler().handleReply(reply);
+        }, stripes);
+    }
+
+    /** Returns the number of messages per second over all threads */
+    public long benchmark(long durationMillis) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean(false);
+        LongAdder messages = new LongAdder();
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long firstId = i * 1000000L;
+            Thread worker = new Thread(() -> {
+                ReplyHandler handler = reply -> { };
+                started.countDown();
+                long count = 0;
+                while ( ! stop.get()) {
+                    Message msg = new SequencedMessage(firstId + (count & 1023));
+                    msg.pushHandler(handler);
+                    sequencer.handleMessage(msg);
+                    count++;
+                }
+                messages.add(count);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        started.await();
+        long start = System.nanoTime();
+        Thread.sleep(durationMillis);
+        stop.set(true);
+        for (Thread worker : workers)
+            worker.join();
+        return messages.sum() * 1000000000L / (System.nanoTime() - start);
+    }
+
+    private static class SequencedMessage extends SimpleMessage {
+
+        private final long seqId;
+
+        SequencedMessage(long seqId) {
+            super("benchmark");
+            this.seqId = seqId;
+        }
+
+        @Override
+        public boolean hasSequenceId() { return true; }
+
+        @Override
+        public long getSequenceId() { return seqId; }
+
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        long durationMillis = (args.length > 1) ? (long)(Double.parseDouble(args[1]) * 1000) : 5000;
+        new SequencerContentionMicroBenchmark(threads, 64).benchmark(durationMillis / 2); // warm up
+
+        System.out.println("Running " + threads + " threads for " + durationMillis + " ms on " +
+                           Runtime.getRuntime().availableProcessors() + " processors");
+        for (int stripes : new int[] { 1, 64 }) {
+            long rate = new SequencerContentionMicroBenchmark(threads, stripes).benchmark(durationMillis);
+            System.out.println(String.format("%3d stripes: %12d messages/s", stripes, rate));
+        }
+    }
+
+}
@@ -4,8 +4,19 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -104,6 +115,67 @@ public class SequencerTestCase {
         assertEquals(0, dst.size());
     }
 
+    @Test
+    public void testConcurrentSendersKeepOrderForEachId() throws InterruptedException {
+        int threads = 8;
+        int ids = 4;
+        int messagesPerThread = 2000;
+        Map<Long, AtomicInteger> pending = new ConcurrentHashMap<>();
+        Map<Long, List<Integer>> received = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        ExecutorService replier = Executors.newSingleThreadExecutor();
+        Sequencer seq = new Sequencer(msg -> {
+            long id = msg.getSequenceId();
+            if (pending.computeIfAbsent(id, __ -> new AtomicInteger()).incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            received.computeIfAbsent(id, __ -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(((OrderedMessage)msg).number);
+            replier.execute(() -> {
+                pending.get(id).decrementAndGet();
+                Reply reply = new EmptyReply();
+                reply.swapState(msg);
+                reply.setMessage(msg);
+                reply.popHandler().handleReply(reply);
+            });
+        }, 4);
+
+        AtomicInteger replies = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads * messagesPerThread);
+        ReplyHandler handler = reply -> { replies.incrementAndGet(); done.countDown(); };
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long id = t % ids;
+            int offset = t * messagesPerThread;
+            Thread sender = new Thread(() -> {
+                for (int i = 0; i < messagesPerThread; i++) {
+                    Message msg = new OrderedMessage(id + ids * (i % 2), offset + i);
+                    msg.pushHandler(handler);
+                    seq.handleMessage(msg);
+                }
+            });
+            senders.add(sender);
+            sender.start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        replier.shutdown();
+
+        assertEquals(threads * messagesPerThread, replies.get());
+        assertEquals(0, overlaps.get());
+        for (List<Integer> numbers : received.values()) {
+            int[] last = new int[threads];
+            Arrays.fill(last, -1);
+            for (int number : numbers) {
+                int thread = number / messagesPerThread;
+                assertTrue(number > last[thread]);
+                last[thread] = number;
+            }
+        }
+    }
+
     @SuppressWarnings("serial")
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
@@ -161,6 +233,16 @@ public class SequencerTestCase {
         }
     }
 
+    private static class OrderedMessage extends MyMessage {
+
+        final int number;
+
+        OrderedMessage(long seqId, int number) {
+            super(true, seqId);
+            this.number = number;
+        }
+    }
+
     private static class MyMessage extends SimpleMessage {
 
         final boolean hasSeqId;
@@ -14,7 +14,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -204,6 +206,154 @@ public class ThrottlerTestCase {
         assertTrue(windowSize >= 40 && windowSize <= 50);
     }
 
+    @Test
+    public void testLatencyWindowSize() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+
+        int windowSize = getWindowSize(policy, timer, 100);
+        assertTrue(windowSize >= 100 && windowSize <= 120);
+
+        windowSize = getWindowSize(policy, timer, 200);
+        assertTrue(windowSize >= 200 && windowSize <= 220);
+
+        windowSize = getWindowSize(policy, timer, 50);
+        assertTrue(windowSize >= 50 && windowSize <= 70);
+        assertTrue(policy.getIncreaseCount() > 0);
+        assertTrue(policy.getDecreaseCount() > 0);
+        assertEquals(1000, policy.getMinRtt(), 1e-9);
+    }
+
+    @Test
+    public void testLatencyWindowSizeIsBackedOffAboveMaxLatency() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+        policy.setMaxLatency(1500)
+              .setQueueSizeTarget(100, 200);
+
+        int windowSize = getWindowSize(policy, timer, 100);
+        assertTrue(windowSize >= 100 && windowSize <= 160);
+        assertTrue(policy.getBackOffCount() > 0);
+        assertTrue(policy.getSmoothedRtt() <= 1600);
+    }
+
+    @Test
+    public void testLatencyWindowSizeIsBackedOffOnErrors() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+        policy.setMinWindowSize(40);
+
+        for (int i = 0; i < 10; i++) {
+            List<Message> pending = new ArrayList<>();
+            while (policy.canSend(new SimpleMessage("foo"), pending.size())) {
+                Message msg = new SimpleMessage("foo");
+                policy.processMessage(msg);
+                pending.add(msg);
+            }
+            timer.millis += 10;
+            for (Message msg : pending) {
+                Reply reply = new SimpleReply("bar");
+                reply.setContext(msg.getContext());
+                reply.addError(new Error(ErrorCode.SESSION_BUSY, "busy"));
+                policy.processReply(reply);
+            }
+        }
+        assertEquals(40, policy.getMaxPendingCount());
+        assertEquals(10, policy.getBackOffCount());
+        assertEquals(0, policy.getPendingSize());
+    }
+
+    @Test
+    public void testLatencyWindowSizeIsNotBackedOffOnApplicationErrors() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+
+        for (int i = 0; i < 10; i++) {
+            timer.millis += 1000;
+            for (Message msg : sendAll(policy)) {
+                timer.millis += 1;
+                Reply reply = new SimpleReply("bar");
+                reply.setContext(msg.getContext());
+                reply.addError(new Error(ErrorCode.APP_FATAL_ERROR, "condition not met"));
+                policy.processReply(reply);
+            }
+        }
+        assertEquals(0, policy.getBackOffCount());
+        assertTrue(policy.getMaxPendingCount() > 20);
+    }
+
+    @Test
+    public void testLatencyMinRttIsProbedOnlyWithMessagesSentWhileProbing() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+        policy.setMinRttPeriod(500);
+
+        List<Message> first = sendAll(policy);
+        timer.millis += 1000;
+        for (Message msg : first.subList(1, first.size())) {
+            reply(policy, msg);
+        }
+        List<Message> queued = sendAll(policy, 1); // Sent with the full window, before the probe round begins
+        reply(policy, first.get(0));
+        assertEquals(1000, policy.getMinRtt(), 1e-9);
+
+        timer.millis += 4000;
+        for (Message msg : queued) {
+            reply(policy, msg);
+        }
+        assertEquals(1000, policy.getMinRtt(), 1e-9);
+
+        List<Message> probes = sendAll(policy);
+        assertEquals((int)policy.getWindowSize() / 2, probes.size());
+        timer.millis += 1200;
+        for (Message msg : probes) {
+            reply(policy, msg);
+        }
+        assertEquals(1200, policy.getMinRtt(), 1e-9);
+    }
+
+    private static List<Message> sendAll(ThrottlePolicy policy) {
+        return sendAll(policy, 0);
+    }
+
+    private static List<Message> sendAll(ThrottlePolicy policy, int pendingCount) {
+        List<Message> sent = new ArrayList<>();
+        while (policy.canSend(new SimpleMessage("foo"), pendingCount + sent.size())) {
+            Message msg = new SimpleMessage("foo");
+            policy.processMessage(msg);
+            sent.add(msg);
+        }
+        return sent;
+    }
+
+    private static void reply(ThrottlePolicy policy, Message msg) {
+        Reply reply = new SimpleReply("bar");
+        reply.setContext(msg.getContext());
+        policy.processReply(reply);
+    }
+
+    /** Simulates a receiver which processes maxPending messages in parallel in one second, and queues the rest */
+    private int getWindowSize(LatencyThrottlePolicy policy, CustomTimer timer, int maxPending) {
+        for (int i = 0; i < 999; ++i) {
+            List<Message> pending = new ArrayList<>();
+            while (policy.canSend(new SimpleMessage("foo"), pending.size())) {
+                Message msg = new SimpleMessage("foo");
+                policy.processMessage(msg);
+                pending.add(msg);
+            }
+
+            long tripTime = (pending.size() < maxPending) ? 1000 : 1000L * pending.size() / maxPending;
+            timer.millis += tripTime;
+
+            for (Message msg : pending) {
+                Reply reply = new SimpleReply("bar");
+                reply.setContext(msg.getContext());
+                policy.processReply(reply);
+            }
+        }
+        return policy.getMaxPendingCount();
+    }
+
     private int getWindowSize(DynamicThrottlePolicy policy, CustomTimer timer, int maxPending) {
         Message msg = new SimpleMessage("foo");
         Reply reply = new SimpleReply("bar");
@@ -24,9 +24,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
@@ -44,6 +51,8 @@ import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
 class ClientFeederV3 {
 
     protected static final Logger log = Logger.getLogger(ClientFeederV3.class.getName());
+    // The max number of operations of a request which are parsed ahead of the one being sent.
+    private static final int MAX_PENDING_PARSED_OPERATIONS = 4 * Runtime.getRuntime().availableProcessors();
     // This is for all clients on this gateway, for load balancing from client.
     private final static AtomicInteger outstandingOperations = new AtomicInteger(0);
     private final BlockingQueue<OperationStatus> feedReplies = new LinkedBlockingQueue<>();
@@ -59,6 +68,7 @@ class ClientFeederV3 {
     private final AtomicInteger ongoingRequests = new AtomicInteger(0);
     private String hostName;
     private AtomicInteger threadsAvailableForFeeding;
+    private final Executor parsers;
 
     ClientFeederV3(
             ReferencedResource<SharedSourceSession> sourceSession,
@@ -68,6 +78,24 @@ class ClientFeederV3 {
             Metric metric,
             ReplyHandler feedReplyHandler,
             AtomicInteger threadsAvailableForFeeding) {
+        this(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler,
+             threadsAvailableForFeeding, null);
+    }
+
+    /**
+     * Creates a client feeder which parses the operations of a request on the given parsers when not null,
+     * and on the thread handling the request otherwise. Operations are always sent by the thread handling the request.
+     */
+    ClientFeederV3(
+            ReferencedResource<SharedSourceSession> sourceSession,
+            FeedReaderFactory feedReaderFactory,
+            DocumentTypeManager docTypeManager,
+            String clientId,
+            Metric metric,
+            ReplyHandler feedReplyHandler,
+            AtomicInteger threadsAvailableForFeeding,
+            Executor parsers) {
+        this.parsers = parsers;
         this.sourceSession = sourceSession;
         this.clientId = clientId;
         this.feedReplyHandler = feedReplyHandler;
@@ -184,14 +212,7 @@ class ClientFeederV3 {
             try {
                 message = getNextMessage(operationId.get(), requestInputStream, settings);
             } catch (Exception e) {
-                if (log.isLoggable(LogLevel.DEBUG)) {
-                    log.log(LogLevel.DEBUG, Exceptions.toMessageString(e), e);
-                }
-                metric.add(MetricNames.PARSE_ERROR, 1, null);
-
-                repliesFromOldMessages.add(new OperationStatus(
-                        Exceptions.toMessageString(e), operationId.get(), ErrorCode.ERROR, false, ""));
-
+                addParseError(operationId.get(), e, repliesFromOldMessages);
                 continue;
             }
             if (message != null)
@@ -200,6 +221,16 @@ class ClientFeederV3 {
         }
     }
 
+    private void addParseError(String operationId, Exception e, BlockingQueue<OperationStatus> repliesFromOldMessages) {
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.log(LogLevel.DEBUG, Exceptions.toMessageString(e), e);
+        }
+        metric.add(MetricNames.PARSE_ERROR, 1, null);
+
+        repliesFromOldMessages.add(new OperationStatus(
+                Exceptions.toMessageString(e), operationId, ErrorCode.ERROR, false, ""));
+    }
+
     private Result sendMessage(
             FeederSettings settings,
             DocumentOperationMessageV3 msg,
@@ -226,6 +257,10 @@ class ClientFeederV3 {
             InputStream requestInputStream,
             BlockingQueue<OperationStatus> repliesFromOldMessages,
             AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        if (parsers != null) {
+            feedInParallel(settings, requestInputStream, repliesFromOldMessages, threadsAvailableForFeeding);
+            return;
+        }
         while (true) {
 
             Optional<DocumentOperationMessageV3> msg = pullMessageFromRequest(settings, requestInputStream, repliesFromOldMessages);
@@ -233,34 +268,129 @@ class ClientFeederV3 {
             if (! msg.isPresent()) {
                 break;
             }
-            setMessageParameters(msg.get(), settings);
+            send(settings, msg.get(), repliesFromOldMessages, threadsAvailableForFeeding);
+        }
+    }
 
-            Result result;
-            try {
-                result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
+    /**
+     * Reads the operations of a request and sends them on this thread, while parsing them on the parsers.
+     * Up to {@link #MAX_PENDING_PARSED_OPERATIONS} operations are parsed ahead of the one being sent, and
+     * operations are sent in the order they are read. Returns when all operations of the request have been sent.
+     */
+    private void feedInParallel(
+            FeederSettings settings,
+            InputStream requestInputStream,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        Deque<Future<DocumentOperationMessageV3>> parsed = new ArrayDeque<>();
+        try {
+            while (true) {
+                Optional<String> operationId;
+                try {
+                    operationId = streamReaderV3.getNextOperationId(requestInputStream);
+                } catch (IOException ioe) {
+                    if (log.isLoggable(LogLevel.DEBUG)) {
+                        log.log(LogLevel.DEBUG, Exceptions.toMessageString(ioe), ioe);
+                    }
+                    break;
+                }
+                if (! operationId.isPresent()) {
+                    break;
+                }
 
-            } catch  (RuntimeException e) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), Exceptions.toMessageString(e),
-                        ErrorCode.ERROR, false, msg.get().getMessage()));
-                continue;
+                byte[] operation;
+                try {
+                    operation = streamReaderV3.readNextOperation(requestInputStream);
+                } catch (Exception e) {
+                    addParseError(operationId.get(), e, repliesFromOldMessages);
+                    break; // We no longer know where the next operation starts
+                }
+                try {
+                    parsed.add(CompletableFuture.supplyAsync(
+                            () -> parse(operationId.get(), operation, settings, repliesFromOldMessages), parsers));
+                } catch (RejectedExecutionException e) {
+                    repliesFromOldMessages.add(createOperationStatus(operationId.get(), "Feed handler is shutting down",
+                            ErrorCode.TRANSIENT_ERROR, false, null));
+                    continue;
+                }
+                if (parsed.size() >= MAX_PENDING_PARSED_OPERATIONS) {
+                    sendParsed(parsed.poll(), settings, repliesFromOldMessages, threadsAvailableForFeeding);
+                }
             }
-
-            if (result.isAccepted()) {
-                outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
-                continue;
-            } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.ERROR, isConditionNotMet, msg.get().getMessage()));
-                continue;
+            while ( ! parsed.isEmpty()) {
+                sendParsed(parsed.poll(), settings, repliesFromOldMessages, threadsAvailableForFeeding);
             }
+        } finally {
+            parsed.forEach(operation -> operation.cancel(false));
+        }
+    }
+
+    /** Returns the message of the given operation, or null if it has none or could not be parsed */
+    private DocumentOperationMessageV3 parse(
+            String operationId,
+            byte[] operation,
+            FeederSettings settings,
+            BlockingQueue<OperationStatus> repliesFromOldMessages) {
+        DocumentOperationMessageV3 message;
+        try {
+            message = createMessage(operationId, streamReaderV3.parseOperation(operation, settings));
+        } catch (Exception e) {
+            addParseError(operationId, e, repliesFromOldMessages);
+            return null;
+        }
+        if (message != null) {
+            setRoute(message, settings);
+        }
+        return message;
+    }
+
+    private void sendParsed(
+            Future<DocumentOperationMessageV3> parsed,
+            FeederSettings settings,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        DocumentOperationMessageV3 message;
+        try {
+            message = parsed.get();
+        } catch (ExecutionException e) {
+            log.log(LogLevel.WARNING, "Unhandled exception while parsing: " + Exceptions.toMessageString(e), e);
+            return;
+        }
+        if (message != null) {
+            send(settings, message, repliesFromOldMessages, threadsAvailableForFeeding);
+        }
+    }
+
+    private void send(
+            FeederSettings settings,
+            DocumentOperationMessageV3 msg,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        setMessageParameters(msg, settings);
+
+        Result result;
+        try {
+            result = sendMessage(settings, msg, threadsAvailableForFeeding);
+
+        } catch  (RuntimeException e) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), Exceptions.toMessageString(e),
+                    ErrorCode.ERROR, false, msg.getMessage()));
+            return;
+        }
+
+        if (result.isAccepted()) {
+            outstandingOperations.incrementAndGet();
+            updateOpsPerSec();
+            log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+        } else if (!result.getError().isFatal()) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.TRANSIENT_ERROR, false, msg.getMessage()));
+        } else {
+            // should probably not happen, but everybody knows stuff that
+            // shouldn't happen, happens all the time
+            boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.ERROR, isConditionNotMet, msg.getMessage()));
         }
     }
 
@@ -277,7 +407,11 @@ class ClientFeederV3 {
     protected DocumentOperationMessageV3 getNextMessage(
             String operationId, InputStream requestInputStream, FeederSettings settings) throws Exception {
         FeedOperation operation = streamReaderV3.getNextOperation(requestInputStream, settings);
+        return createMessage(operationId, operation);
+    }
 
+    /** Returns the message of the given operation, or null if none */
+    private DocumentOperationMessageV3 createMessage(String operationId, FeedOperation operation) {
         // This is a bit hard to set up while testing, so we accept that things are not perfect.
         if (sourceSession.getResource().session() != null) {
             metric.set(
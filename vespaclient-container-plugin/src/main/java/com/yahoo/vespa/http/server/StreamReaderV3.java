@@ -8,6 +8,8 @@ import com.yahoo.vespa.http.server.util.ByteLimitedInputStream;
 import com.yahoo.vespaxmlparser.FeedOperation;
 import com.yahoo.vespaxmlparser.FeedReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
@@ -22,6 +24,9 @@ public class StreamReaderV3 {
 
     protected static final Logger log = Logger.getLogger(StreamReaderV3.class.getName());
 
+    /** The max size of a single operation read by {@link #readNextOperation} */
+    static final int MAX_OPERATION_SIZE_BYTES = 64 * 1024 * 1024;
+
     private final FeedReaderFactory feedReaderFactory;
     private final DocumentTypeManager docTypeManager;
 
@@ -42,6 +47,34 @@ public class StreamReaderV3 {
         return op;
     }
 
+    /**
+     * Reads the next operation from the stream without parsing it, such that it may be parsed by another thread.
+     * If this throws, the stream is no longer positioned at the start of an operation.
+     *
+     * @return the bytes of the operation, to be passed to {@link #parseOperation}
+     * @throws IllegalStateException if the length of the operation is missing, negative or larger than
+     *                               {@link #MAX_OPERATION_SIZE_BYTES}
+     */
+    public byte[] readNextOperation(InputStream requestInputStream) throws IOException {
+        int length = readByteLength(requestInputStream);
+        if (length < 0 || length > MAX_OPERATION_SIZE_BYTES) {
+            throw new IllegalStateException("Operation length " + length + " is not between 0 and " +
+                                            MAX_OPERATION_SIZE_BYTES + " bytes.");
+        }
+        // Let the buffer grow as bytes arrive rather than trusting the length sent by the client
+        byte[] operation = new ByteLimitedInputStream(requestInputStream, length).readAllBytes();
+        if (operation.length < length) {
+            throw new EOFException("Stream ended after " + operation.length + " of " + length + " bytes of an operation.");
+        }
+        return operation;
+    }
+
+    /** Parses an operation read by {@link #readNextOperation} */
+    public FeedOperation parseOperation(byte[] operation, FeederSettings settings) throws Exception {
+        FeedReader reader = feedReaderFactory.createReader(new ByteArrayInputStream(operation), docTypeManager, settings.dataFormat);
+        return reader.read();
+    }
+
     public Optional<String> getNextOperationId(InputStream requestInputStream) throws IOException {
         StringBuilder idBuf = new StringBuilder(100);
         int c;
@@ -0,0 +1,144 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.google.common.base.Splitter;
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.jdisc.HttpResponse;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.shared.SharedSourceSession;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.text.Utf8;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.ErrorCode;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.OperationStatus;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+public class ClientFeederV3TestCase {
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<Thread> senders = new CopyOnWriteArrayList<>();
+
+    @Test(timeout = 60000)
+    public void requireThatOperationsAreParsedInParallelAndSentInOrderByTheRequestThread() throws Exception {
+        ExecutorService parsers = Executors.newFixedThreadPool(4);
+        List<String> operationIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            operationIds.add("op" + i);
+
+        List<String> replies = feed(parsers, operationIds);
+        parsers.shutdown();
+
+        assertEquals(operationIds, sent);
+        for (Thread sender : senders)
+            assertEquals(Thread.currentThread(), sender);
+        assertEquals(100, replies.stream().filter(reply -> reply.contains(" OK ")).count());
+    }
+
+    @Test(timeout = 60000)
+    public void requireThatOperationsWhichCanNotBeParsedGetTransientErrors() throws Exception {
+        ExecutorService parsers = Executors.newFixedThreadPool(1);
+        parsers.shutdown();
+
+        List<String> replies = feed(parsers, List.of("op0", "op1"));
+
+        assertTrue(sent.isEmpty());
+        assertTrue(replies.get(0), replies.get(0).startsWith("op0 TRANSIENT_ERROR "));
+        assertTrue(replies.get(1), replies.get(1).startsWith("op1 TRANSIENT_ERROR "));
+    }
+
+    @Test(timeout = 60000)
+    public void requireThatOperationsWithInvalidLengthsEndTheRequest() throws Exception {
+        ExecutorService parsers = Executors.newFixedThreadPool(1);
+        for (String length : List.of("-1", "7fffffff", "x")) {
+            List<String> replies = feed(parsers, "op0 " + length + "\n" + operation("op0") + operation("op1"));
+            assertEquals(1, replies.size());
+            assertTrue(replies.get(0), replies.get(0).startsWith("op0 ERROR "));
+        }
+        parsers.shutdown();
+        assertTrue(sent.isEmpty());
+    }
+
+    /** Feeds puts with the given operation ids, and returns the rendered replies */
+    private List<String> feed(ExecutorService parsers, List<String> operationIds) throws Exception {
+        StringBuilder wireData = new StringBuilder();
+        for (String operationId : operationIds)
+            wireData.append(operation(operationId));
+        return feed(parsers, wireData.toString());
+    }
+
+    /** Feeds the given request data, and returns the rendered replies */
+    private List<String> feed(ExecutorService parsers, String wireData) throws Exception {
+        HttpResponse response = feeder(parsers).handleRequest(request(wireData));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.render(out);
+        return Splitter.on("\n").omitEmptyStrings().splitToList(Utf8.toString(out.toByteArray()));
+    }
+
+    private ClientFeederV3 feeder(ExecutorService parsers) throws Exception {
+        SharedSourceSession session = mock(SharedSourceSession.class);
+        when(session.sendMessageBlocking(any())).thenAnswer(invocation -> {
+            Message message = (Message)invocation.getArguments()[0];
+            ReplyContext context = (ReplyContext)message.getContext();
+            sent.add(context.docId);
+            senders.add(Thread.currentThread());
+            context.feedReplies.add(new OperationStatus("ok", context.docId, ErrorCode.OK, false, ""));
+            return Result.ACCEPTED;
+        });
+        DocumentTypeManager docTypeManager = new DocumentTypeManager();
+        DocumentType documentType = new DocumentType("testdocument");
+        documentType.addField("title", DataType.STRING);
+        docTypeManager.registerDocumentType(documentType);
+        return new ClientFeederV3(new ReferencedResource<>(session, () -> {}),
+                                  new FeedReaderFactory(),
+                                  docTypeManager,
+                                  "client",
+                                  new DummyMetric(),
+                                  new FeedReplyReader(new DummyMetric(), new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                                  new AtomicInteger(10),
+                                  parsers);
+    }
+
+    /** Returns a put with the given id, framed as in a request */
+    private static String operation(String operationId) {
+        String docData = "[{\"put\": \"id:testdocument:testdocument::" + operationId + "\", \"fields\": { \"title\": \"value\"}}]";
+        return operationId + " " + Integer.toHexString(docData.length()) + "\n" + docData;
+    }
+
+    private static HttpRequest request(String wireData) {
+        HttpRequest request = HttpRequest.createTestRequest("http://dummyhostname:19020/reserved-for-internal-use/feedapi",
+                                                            com.yahoo.jdisc.http.HttpRequest.Method.POST,
+                                                            new ByteArrayInputStream(Utf8.toBytes(wireData)));
+        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.DATA_FORMAT, FeedParams.DataFormat.JSON_UTF8.name());
+        request.getJDiscRequest().headers().add(Headers.TIMEOUT, "1000000000");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "client");
+        request.getJDiscRequest().headers().add(Headers.DRAIN, "true");
+        return request;
+    }
+
+}
@@ -159,7 +159,7 @@ public abstract class TensorAddress implements Comparable<TensorAddress> {
     /** Supports building of a tensor address */
     public static class Builder {
 
-        private Pattern identifierPattern = Pattern.compile("[A-Za-z0-9_]+");
+        private static final Pattern identifierPattern = Pattern.compile("[A-Za-z0-9_]+");
 
         private final TensorType type;
         private final String[] labels;